@@ -15,7 +15,9 @@
 package io.cassandrareaper;
 
 import io.cassandrareaper.jmx.JmxConnectionFactory;
+import io.cassandrareaper.service.HostReservations;
 import io.cassandrareaper.service.RepairManager;
+import io.cassandrareaper.service.SegmentPlanCache;
 import io.cassandrareaper.storage.IStorage;
 
 import java.net.InetAddress;
@@ -41,6 +43,8 @@ public final class AppContext {
   public final AtomicBoolean isRunning = new AtomicBoolean(true);
   public IStorage storage;
   public RepairManager repairManager;
+  public final HostReservations hostReservations = new HostReservations();
+  public final SegmentPlanCache segmentPlans = new SegmentPlanCache();
   public JmxConnectionFactory jmxConnectionFactory;
   public ReaperApplicationConfiguration config;
   public MetricRegistry metricRegistry = new MetricRegistry();
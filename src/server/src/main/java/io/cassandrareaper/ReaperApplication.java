@@ -16,6 +16,7 @@ package io.cassandrareaper;
 
 import io.cassandrareaper.ReaperApplicationConfiguration.DatacenterAvailability;
 import io.cassandrareaper.ReaperApplicationConfiguration.JmxCredentials;
+import io.cassandrareaper.jmx.JmxCallTimeouts;
 import io.cassandrareaper.jmx.JmxConnectionFactory;
 import io.cassandrareaper.jmx.JmxConnectionsInitializer;
 import io.cassandrareaper.resources.ClusterResource;
@@ -32,6 +33,7 @@ import io.cassandrareaper.service.PurgeManager;
 import io.cassandrareaper.service.RepairManager;
 import io.cassandrareaper.service.SchedulingManager;
 import io.cassandrareaper.storage.CassandraStorage;
+import io.cassandrareaper.storage.EmbeddedStorage;
 import io.cassandrareaper.storage.IDistributedStorage;
 import io.cassandrareaper.storage.IStorage;
 import io.cassandrareaper.storage.MemoryStorage;
@@ -186,6 +188,15 @@ public final class ReaperApplication extends Application<ReaperApplicationConfig
       if (config.useAddressTranslator()) {
         context.jmxConnectionFactory.setAddressTranslator(new EC2MultiRegionAddressTranslator());
       }
+
+      context.jmxConnectionFactory.setJmxCallTimeouts(
+          new JmxCallTimeouts(config.getJmxCallTimeoutInSeconds(), config.getJmxCallTimeoutsInSeconds()));
+
+      try {
+        CollectorRegistry.defaultRegistry.register(context.jmxConnectionFactory.getJmxCallMetrics());
+      } catch (IllegalArgumentException e) {
+        LOG.warn("Cannot export JMX call metrics to Prometheus", e);
+      }
     }
 
     JmxCredentials jmxAuth = config.getJmxAuth();
@@ -321,6 +332,10 @@ public final class ReaperApplication extends Application<ReaperApplicationConfig
       storage = new MemoryStorage();
     } else if ("cassandra".equalsIgnoreCase(config.getStorageType())) {
       storage = new CassandraStorage(config, environment);
+    } else if ("embedded".equalsIgnoreCase(config.getStorageType())) {
+      EmbeddedStorage embeddedStorage = new EmbeddedStorage(config.getEmbeddedStorageConfiguration());
+      environment.lifecycle().manage(embeddedStorage);
+      storage = embeddedStorage;
     } else if ("postgres".equalsIgnoreCase(config.getStorageType())
         || "h2".equalsIgnoreCase(config.getStorageType())
         || "database".equalsIgnoreCase(config.getStorageType())) {
@@ -388,22 +403,29 @@ public final class ReaperApplication extends Application<ReaperApplicationConfig
   }
 
   private void initializeJmxSeedsForAllClusters() {
-    LOG.info("Initializing JMX seed list for all clusters...");
-    try (JmxConnectionsInitializer jmxConnectionsIntializer = JmxConnectionsInitializer.create(context);
-        Timer.Context cxt = context
-                .metricRegistry
-                .timer(MetricRegistry.name(JmxConnectionFactory.class, "jmxConnectionsIntializer"))
-                .time()) {
-
-      context
-          .storage
-          .getClusters()
-          .parallelStream()
-          .forEach(cluster -> jmxConnectionsIntializer.on(cluster));
-
-      LOG.info("Initialized JMX seed list for all clusters.");
+    LOG.info("Initializing JMX seed list for all clusters in the background...");
+    JmxConnectionsInitializer jmxConnectionsIntializer = JmxConnectionsInitializer.create(context);
+    Timer.Context cxt = context
+        .metricRegistry
+        .timer(MetricRegistry.name(JmxConnectionFactory.class, "jmxConnectionsIntializer"))
+        .time();
+
+    try {
+      jmxConnectionsIntializer
+          .on(context.storage.getClusters())
+          .whenComplete((result, error) -> {
+            cxt.stop();
+            if (null != error) {
+              LOG.error("Failed initializing JMX seed list", error);
+            } else {
+              LOG.info("Initialized JMX seed list for all clusters.");
+            }
+          });
     } catch (RuntimeException e) {
       LOG.error("Failed initializing JMX seed list", e);
+    } finally {
+      // connections already asked for are still attempted
+      jmxConnectionsIntializer.close();
     }
   }
 }
@@ -77,6 +77,21 @@ public final class ReaperApplicationConfiguration extends Configuration {
   @NotNull
   private Integer hangingRepairTimeoutMins;
 
+  @JsonProperty
+  private Boolean adaptiveSegmentTimeouts;
+
+  @JsonProperty
+  private Integer splitSegmentsAfterFailures;
+
+  @JsonProperty
+  private Boolean segmentsByDataSize;
+
+  @JsonProperty
+  private Integer maxThreadsPerCluster;
+
+  @JsonProperty
+  private Integer instanceTakeoverTimeoutInSeconds;
+
   @NotEmpty
   private String storageType;
 
@@ -94,6 +109,12 @@ public final class ReaperApplicationConfiguration extends Configuration {
   @JsonProperty
   private AutoSchedulingConfiguration autoScheduling;
 
+  @JsonProperty
+  private DeadlineSchedulingConfiguration deadlineScheduling = new DeadlineSchedulingConfiguration();
+
+  @JsonProperty
+  private AdaptiveIntensityConfiguration adaptiveIntensity = new AdaptiveIntensityConfiguration();
+
   @JsonProperty
   @DefaultValue("true")
   private Boolean enableDynamicSeedList;
@@ -109,6 +130,15 @@ public final class ReaperApplicationConfiguration extends Configuration {
   @DefaultValue("5")
   private Integer jmxConnectionTimeoutInSeconds;
 
+  @JsonProperty
+  private Integer jmxCallTimeoutInSeconds;
+
+  @JsonProperty
+  private Map<String, Integer> jmxCallTimeoutsInSeconds;
+
+  @JsonProperty
+  private Integer jmxConnectionsInitializerThreadCount;
+
   @JsonProperty
   private DatacenterAvailability datacenterAvailability;
 
@@ -134,6 +164,8 @@ public final class ReaperApplicationConfiguration extends Configuration {
 
   private DataSourceFactory relationalDb = new DataSourceFactory();
 
+  private EmbeddedStorageConfiguration embedded = new EmbeddedStorageConfiguration();
+
   public int getSegmentCount() {
     return segmentCount == null ? 0 : segmentCount;
   }
@@ -287,6 +319,22 @@ public final class ReaperApplicationConfiguration extends Configuration {
     this.autoScheduling = autoRepairScheduling;
   }
 
+  public DeadlineSchedulingConfiguration getDeadlineScheduling() {
+    return deadlineScheduling;
+  }
+
+  public void setDeadlineScheduling(DeadlineSchedulingConfiguration deadlineScheduling) {
+    this.deadlineScheduling = deadlineScheduling;
+  }
+
+  public AdaptiveIntensityConfiguration getAdaptiveIntensity() {
+    return adaptiveIntensity;
+  }
+
+  public void setAdaptiveIntensity(AdaptiveIntensityConfiguration adaptiveIntensity) {
+    this.adaptiveIntensity = adaptiveIntensity;
+  }
+
   public void setEnableDynamicSeedList(boolean enableDynamicSeedList) {
     this.enableDynamicSeedList = enableDynamicSeedList;
   }
@@ -321,6 +369,16 @@ public final class ReaperApplicationConfiguration extends Configuration {
     this.cassandra = cassandra;
   }
 
+  @JsonProperty("embedded")
+  public EmbeddedStorageConfiguration getEmbeddedStorageConfiguration() {
+    return embedded;
+  }
+
+  @JsonProperty("embedded")
+  public void setEmbeddedStorageConfiguration(EmbeddedStorageConfiguration embedded) {
+    this.embedded = embedded;
+  }
+
   public int getHangingRepairTimeoutMins() {
     return hangingRepairTimeoutMins;
   }
@@ -334,11 +392,99 @@ public final class ReaperApplicationConfiguration extends Configuration {
     return jmxConnectionTimeoutInSeconds != null ? jmxConnectionTimeoutInSeconds : 20;
   }
 
+  @JsonProperty
+  public void setJmxCallTimeoutInSeconds(int jmxCallTimeoutInSeconds) {
+    this.jmxCallTimeoutInSeconds = jmxCallTimeoutInSeconds;
+  }
+
+  /**
+   * @return how long a JMX call may run before Reaper gives up on it, 0 for no limit
+   */
+  public int getJmxCallTimeoutInSeconds() {
+    return jmxCallTimeoutInSeconds != null ? jmxCallTimeoutInSeconds : 60;
+  }
+
+  @JsonProperty
+  public void setJmxCallTimeoutsInSeconds(Map<String, Integer> jmxCallTimeoutsInSeconds) {
+    this.jmxCallTimeoutsInSeconds = jmxCallTimeoutsInSeconds;
+  }
+
+  /**
+   * @return how long given JMX operations, named after their MBean methods, may run instead
+   */
+  public Map<String, Integer> getJmxCallTimeoutsInSeconds() {
+    return jmxCallTimeoutsInSeconds != null ? jmxCallTimeoutsInSeconds : Collections.emptyMap();
+  }
+
+  @JsonProperty
+  public void setJmxConnectionsInitializerThreadCount(int jmxConnectionsInitializerThreadCount) {
+    this.jmxConnectionsInitializerThreadCount = jmxConnectionsInitializerThreadCount;
+  }
+
+  /**
+   * @return how many JMX connections to seed hosts may be opened at once at startup
+   */
+  public int getJmxConnectionsInitializerThreadCount() {
+    return jmxConnectionsInitializerThreadCount != null ? jmxConnectionsInitializerThreadCount : 10;
+  }
+
   @JsonProperty
   public void setHangingRepairTimeoutMins(int hangingRepairTimeoutMins) {
     this.hangingRepairTimeoutMins = hangingRepairTimeoutMins;
   }
 
+  public boolean useAdaptiveSegmentTimeouts() {
+    return adaptiveSegmentTimeouts != null ? adaptiveSegmentTimeouts : false;
+  }
+
+  public void setAdaptiveSegmentTimeouts(boolean adaptiveSegmentTimeouts) {
+    this.adaptiveSegmentTimeouts = adaptiveSegmentTimeouts;
+  }
+
+  /**
+   * @return how many times a segment may fail before it is split in smaller segments, 0 to never split segments
+   */
+  public int getSplitSegmentsAfterFailures() {
+    return splitSegmentsAfterFailures != null ? splitSegmentsAfterFailures : 0;
+  }
+
+  public void setSplitSegmentsAfterFailures(int splitSegmentsAfterFailures) {
+    this.splitSegmentsAfterFailures = splitSegmentsAfterFailures;
+  }
+
+  /**
+   * @return the most threads of the repair runner pool the repairs of one cluster may hold at once, 0 for no limit
+   */
+  public int getMaxThreadsPerCluster() {
+    return maxThreadsPerCluster != null ? maxThreadsPerCluster : 0;
+  }
+
+  public void setMaxThreadsPerCluster(int maxThreadsPerCluster) {
+    this.maxThreadsPerCluster = maxThreadsPerCluster;
+  }
+
+  /**
+   * @return how long a Reaper instance may go without a heartbeat before the others take over its repair runs
+   */
+  public int getInstanceTakeoverTimeoutInSeconds() {
+    return instanceTakeoverTimeoutInSeconds != null ? instanceTakeoverTimeoutInSeconds : 60;
+  }
+
+  public void setInstanceTakeoverTimeoutInSeconds(int instanceTakeoverTimeoutInSeconds) {
+    this.instanceTakeoverTimeoutInSeconds = instanceTakeoverTimeoutInSeconds;
+  }
+
+  /**
+   * @return true if new segments hold about the same amount of data, rather than the same number of tokens
+   */
+  public boolean getSegmentsByDataSize() {
+    return segmentsByDataSize != null ? segmentsByDataSize : false;
+  }
+
+  public void setSegmentsByDataSize(boolean segmentsByDataSize) {
+    this.segmentsByDataSize = segmentsByDataSize;
+  }
+
   public DatacenterAvailability getDatacenterAvailability() {
     return this.datacenterAvailability != null ? this.datacenterAvailability : DatacenterAvailability.ALL;
   }
@@ -419,6 +565,9 @@ public final class ReaperApplicationConfiguration extends Configuration {
     @JsonProperty
     private List<String> excludedKeyspaces = Collections.emptyList();
 
+    @JsonProperty
+    private Boolean balancedPlacement = false;
+
     public Boolean isEnabled() {
       return enabled;
     }
@@ -471,6 +620,14 @@ public final class ReaperApplicationConfiguration extends Configuration {
       return excludedKeyspaces;
     }
 
+    public boolean isBalancedPlacement() {
+      return balancedPlacement;
+    }
+
+    public void setBalancedPlacement(boolean balancedPlacement) {
+      this.balancedPlacement = balancedPlacement;
+    }
+
     @Override
     public String toString() {
       return "AutoSchedulingConfiguration{"
@@ -484,10 +641,114 @@ public final class ReaperApplicationConfiguration extends Configuration {
           + timeBeforeFirstSchedule
           + ", scheduleSpreadPeriod="
           + scheduleSpreadPeriod
+          + ", balancedPlacement="
+          + balancedPlacement
           + '}';
     }
   }
 
+  public static final class DeadlineSchedulingConfiguration {
+
+    /** Admit due schedules earliest-deadline-first instead of as soon as they are due. */
+    @JsonProperty
+    private Boolean enabled = false;
+
+    /** The gc_grace_seconds that repairs must keep up with. */
+    @JsonProperty
+    private Duration gcGrace = Duration.ofDays(10);
+
+    /** Scheduled repair runs allowed to run at once on each cluster. */
+    @JsonProperty
+    private Integer maxConcurrentRunsPerCluster = 2;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public Duration getGcGrace() {
+      return gcGrace;
+    }
+
+    public void setGcGrace(Duration gcGrace) {
+      this.gcGrace = gcGrace;
+    }
+
+    public int getMaxConcurrentRunsPerCluster() {
+      return maxConcurrentRunsPerCluster;
+    }
+
+    public void setMaxConcurrentRunsPerCluster(int maxConcurrentRunsPerCluster) {
+      this.maxConcurrentRunsPerCluster = maxConcurrentRunsPerCluster;
+    }
+  }
+
+  public static final class AdaptiveIntensityConfiguration {
+
+    /** Adapt the delay between segments and the parallelism of runs to the load of the repaired replicas. */
+    @JsonProperty
+    private Boolean enabled = false;
+
+    /** ValidationExecutor tasks pending on a replica above which repairs slow down. */
+    @JsonProperty
+    private Integer maxPendingValidations = 2;
+
+    /** Messages dropped per second on a replica, over the last minute, above which repairs slow down. */
+    @JsonProperty
+    private Double maxDroppedMessagesRate = 1.0;
+
+    /** 99th percentile of client request latency on a replica above which repairs slow down. */
+    @JsonProperty
+    private Duration maxClientRequestP99 = Duration.ofMillis(100);
+
+    /** How much faster than the run's intensity repairs may go when the replicas are idle. */
+    @JsonProperty
+    private Double maxSpeedup = 4.0;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getMaxPendingValidations() {
+      return maxPendingValidations;
+    }
+
+    public void setMaxPendingValidations(int maxPendingValidations) {
+      this.maxPendingValidations = maxPendingValidations;
+    }
+
+    public double getMaxDroppedMessagesRate() {
+      return maxDroppedMessagesRate;
+    }
+
+    public void setMaxDroppedMessagesRate(double maxDroppedMessagesRate) {
+      this.maxDroppedMessagesRate = maxDroppedMessagesRate;
+    }
+
+    public Duration getMaxClientRequestP99() {
+      return maxClientRequestP99;
+    }
+
+    public void setMaxClientRequestP99(Duration maxClientRequestP99) {
+      this.maxClientRequestP99 = maxClientRequestP99;
+    }
+
+    public double getMaxSpeedup() {
+      return maxSpeedup;
+    }
+
+    public void setMaxSpeedup(double maxSpeedup) {
+      this.maxSpeedup = maxSpeedup;
+    }
+  }
+
   public enum DatacenterAvailability {
     /* We require direct JMX access to all nodes across all datacenters */
     ALL,
@@ -497,6 +758,45 @@ public final class ReaperApplicationConfiguration extends Configuration {
     EACH
   }
 
+  public static final class EmbeddedStorageConfiguration {
+
+    /** Path of the store file. Parent directories are created on startup. */
+    @JsonProperty
+    private String path = System.getProperty("user.home") + "/.reaper/reaper.mv.db";
+
+    /** Size of the page cache in megabytes. */
+    @JsonProperty
+    private Integer cacheSizeInMb = 16;
+
+    /** Maximum delay before buffered writes are committed to disk. */
+    @JsonProperty
+    private Duration autoCommitDelay = Duration.ofSeconds(1);
+
+    public String getPath() {
+      return path;
+    }
+
+    public void setPath(String path) {
+      this.path = path;
+    }
+
+    public int getCacheSizeInMb() {
+      return cacheSizeInMb;
+    }
+
+    public void setCacheSizeInMb(int cacheSizeInMb) {
+      this.cacheSizeInMb = cacheSizeInMb;
+    }
+
+    public Duration getAutoCommitDelay() {
+      return autoCommitDelay;
+    }
+
+    public void setAutoCommitDelay(Duration autoCommitDelay) {
+      this.autoCommitDelay = autoCommitDelay;
+    }
+  }
+
   public static final class AccessControlConfiguration {
 
     @JsonProperty private ShiroConfiguration shiro;
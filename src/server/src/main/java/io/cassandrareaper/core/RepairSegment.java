@@ -129,7 +129,9 @@ public final class RepairSegment {
   public enum State {
     NOT_STARTED,
     RUNNING,
-    DONE
+    DONE,
+    /** Replaced by smaller segments of the same run, which repair its token ranges instead. */
+    SUPERSEDED
   }
 
   @JsonPOJOBuilder(buildMethodName = "build", withPrefix = "with")
@@ -228,7 +230,7 @@ public final class RepairSegment {
         Preconditions.checkState(null == endTime || State.DONE == state, "endTime can only be set if segment is DONE");
 
         Preconditions.checkState(
-            null != startTime || State.NOT_STARTED == state,
+            null != startTime || (State.RUNNING != state && State.DONE != state),
             "startTime must be set if segment is RUNNING or DONE");
       } else {
         if (null != endTime && State.DONE != state) {
@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.jmx;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import io.prometheus.client.Collector;
+
+/**
+ * Latencies and failures of the JMX calls made to each host, by cluster, host and operation.
+ *
+ * <p>They are kept in the metric registry, under {@code JmxProxyImpl.<cluster>.<host>.calls.<operation>}, and exported
+ * to Prometheus with cluster, host, operation and exception labels, as {@code reaper_jmx_call_seconds} and
+ * {@code reaper_jmx_call_errors_total}.
+ */
+public final class JmxCallMetrics extends Collector implements Collector.Describable {
+
+  static final String LATENCY_METRIC = "reaper_jmx_call_seconds";
+  static final String ERRORS_METRIC = "reaper_jmx_call_errors_total";
+
+  private static final List<String> CALL_LABELS = ImmutableList.of("cluster", "host", "operation");
+  private static final List<String> ERROR_LABELS = ImmutableList.of("cluster", "host", "operation", "exception");
+  private static final double[] QUANTILES = {0.5, 0.75, 0.95, 0.98, 0.99, 0.999};
+  private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  private final MetricRegistry metricRegistry;
+  private final ConcurrentMap<List<String>, Timer> calls = Maps.newConcurrentMap();
+  private final ConcurrentMap<List<String>, Counter> errors = Maps.newConcurrentMap();
+
+  public JmxCallMetrics(MetricRegistry metricRegistry) {
+    this.metricRegistry = metricRegistry;
+  }
+
+  Timer timer(String cluster, String host, String operation) {
+    return calls.computeIfAbsent(
+        ImmutableList.of(cluster, host, operation),
+        key -> metricRegistry.timer(metricName(cluster, host, operation)));
+  }
+
+  void markError(String cluster, String host, String operation, Throwable error) {
+    String exception = error.getClass().getSimpleName();
+    errors
+        .computeIfAbsent(
+            ImmutableList.of(cluster, host, operation, exception),
+            key -> metricRegistry.counter(
+                MetricRegistry.name(metricName(cluster, host, operation), "errors", exception)))
+        .inc();
+  }
+
+  void markTimeout(String cluster, String host, String operation) {
+    metricRegistry.counter(MetricRegistry.name(metricName(cluster, host, operation), "timeouts")).inc();
+  }
+
+  static String metricName(String cluster, String host, String operation) {
+    return MetricRegistry.name(
+        JmxProxyImpl.class, cluster.replace('.', '-'), host.replace('.', '-'), "calls", operation);
+  }
+
+  /**
+   * @param cluster the cluster to summarise the hosts of, all clusters when absent
+   * @return the hosts with the highest tail latency first
+   */
+  public List<HostLatency> getSlowestHosts(Optional<String> cluster, int limit) {
+    Map<List<String>, List<Map.Entry<List<String>, Timer>>> byHost = calls.entrySet().stream()
+        .filter(call -> !cluster.isPresent() || cluster.get().equals(call.getKey().get(0)))
+        .collect(Collectors.groupingBy(call -> call.getKey().subList(0, 2)));
+
+    return byHost.entrySet().stream()
+        .map(host -> new HostLatency(host.getKey(), host.getValue(), errorsOf(host.getKey())))
+        .sorted(Comparator.comparingDouble((HostLatency host) -> host.p99Millis).reversed())
+        .limit(limit)
+        .collect(Collectors.toList());
+  }
+
+  private long errorsOf(List<String> clusterAndHost) {
+    return errors.entrySet().stream()
+        .filter(error -> clusterAndHost.equals(error.getKey().subList(0, 2)))
+        .mapToLong(error -> error.getValue().getCount())
+        .sum();
+  }
+
+  @Override
+  public List<MetricFamilySamples> collect() {
+    List<MetricFamilySamples.Sample> latencies = Lists.newArrayList();
+    calls.forEach((labels, timer) -> {
+      Snapshot snapshot = timer.getSnapshot();
+      for (double quantile : QUANTILES) {
+        latencies.add(
+            new MetricFamilySamples.Sample(
+                LATENCY_METRIC,
+                ImmutableList.<String>builder().addAll(CALL_LABELS).add("quantile").build(),
+                ImmutableList.<String>builder().addAll(labels).add(doubleToGoString(quantile)).build(),
+                snapshot.getValue(quantile) / NANOS_PER_SECOND));
+      }
+      latencies.add(new MetricFamilySamples.Sample(LATENCY_METRIC + "_count", CALL_LABELS, labels, timer.getCount()));
+    });
+
+    List<MetricFamilySamples.Sample> failures = errors.entrySet().stream()
+        .map(error -> new MetricFamilySamples.Sample(
+            ERRORS_METRIC, ERROR_LABELS, error.getKey(), error.getValue().getCount()))
+        .collect(Collectors.toList());
+
+    return Arrays.asList(
+        new MetricFamilySamples(LATENCY_METRIC, Type.SUMMARY, "Latency of JMX calls", latencies),
+        new MetricFamilySamples(ERRORS_METRIC, Type.COUNTER, "Failed JMX calls by exception", failures));
+  }
+
+  @Override
+  public List<MetricFamilySamples> describe() {
+    return Arrays.asList(
+        new MetricFamilySamples(LATENCY_METRIC, Type.SUMMARY, "Latency of JMX calls", Collections.emptyList()),
+        new MetricFamilySamples(ERRORS_METRIC, Type.COUNTER, "Failed JMX calls by exception", Collections.emptyList()));
+  }
+
+  public static final class HostLatency {
+
+    @JsonProperty
+    public final String cluster;
+
+    @JsonProperty
+    public final String host;
+
+    @JsonProperty
+    public final long calls;
+
+    @JsonProperty
+    public final long errors;
+
+    @JsonProperty("mean_millis")
+    public final double meanMillis;
+
+    @JsonProperty("p99_millis")
+    public final double p99Millis;
+
+    @JsonProperty("slowest_operation")
+    public final String slowestOperation;
+
+    private HostLatency(List<String> clusterAndHost, List<Map.Entry<List<String>, Timer>> operations, long errors) {
+      this.cluster = clusterAndHost.get(0);
+      this.host = clusterAndHost.get(1);
+      this.errors = errors;
+      this.calls = operations.stream().mapToLong(operation -> operation.getValue().getCount()).sum();
+
+      double totalNanos = operations.stream()
+          .mapToDouble(operation -> operation.getValue().getSnapshot().getMean() * operation.getValue().getCount())
+          .sum();
+
+      this.meanMillis = 0 < calls ? toMillis(totalNanos / calls) : 0;
+
+      this.p99Millis = toMillis(
+          operations.stream()
+              .mapToDouble(operation -> operation.getValue().getSnapshot().get99thPercentile())
+              .max()
+              .orElse(0));
+
+      this.slowestOperation = operations.stream()
+          .max(Comparator.comparingDouble(operation -> operation.getValue().getSnapshot().getMean()))
+          .map(operation -> operation.getKey().get(2))
+          .orElse(null);
+    }
+
+    private static double toMillis(double nanos) {
+      return nanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+  }
+}
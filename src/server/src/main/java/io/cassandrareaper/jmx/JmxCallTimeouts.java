@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.jmx;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * How long each JMX operation, named after the MBean method it calls, may run before its caller gives up on it.
+ */
+public final class JmxCallTimeouts {
+
+  public static final int DEFAULT_TIMEOUT_SECONDS = 60;
+
+  // operations that legitimately run for long: snapshots flush memtables, and major compactions run to completion
+  private static final Map<String, Integer> DEFAULT_OPERATION_TIMEOUTS_SECONDS = ImmutableMap.of(
+      "takeSnapshot", 600,
+      "takeColumnFamilySnapshot", 600,
+      "clearSnapshot", 600,
+      "forceKeyspaceCompaction", 0);
+
+  static final JmxCallTimeouts DEFAULT = new JmxCallTimeouts(DEFAULT_TIMEOUT_SECONDS, ImmutableMap.of());
+
+  private final long defaultTimeoutMillis;
+  private final Map<String, Long> timeoutMillisByOperation;
+
+  /**
+   * @param defaultTimeoutSeconds how long operations may run, 0 for no limit
+   * @param operationTimeoutsSeconds how long given operations may run instead, 0 for no limit
+   */
+  public JmxCallTimeouts(int defaultTimeoutSeconds, Map<String, Integer> operationTimeoutsSeconds) {
+    this.defaultTimeoutMillis = TimeUnit.SECONDS.toMillis(defaultTimeoutSeconds);
+
+    ImmutableMap.Builder<String, Long> timeouts = ImmutableMap.builder();
+    DEFAULT_OPERATION_TIMEOUTS_SECONDS.forEach((operation, seconds) -> {
+      if (!operationTimeoutsSeconds.containsKey(operation)) {
+        timeouts.put(operation, TimeUnit.SECONDS.toMillis(seconds));
+      }
+    });
+    operationTimeoutsSeconds.forEach(
+        (operation, seconds) -> timeouts.put(operation, TimeUnit.SECONDS.toMillis(seconds)));
+    this.timeoutMillisByOperation = timeouts.build();
+  }
+
+  /**
+   * @return how long the operation may run in milliseconds, 0 for no limit
+   */
+  long getTimeoutMillis(String operation) {
+    return timeoutMillisByOperation.getOrDefault(operation, defaultTimeoutMillis);
+  }
+}
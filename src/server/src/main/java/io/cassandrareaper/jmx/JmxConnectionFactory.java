@@ -45,21 +45,25 @@ public class JmxConnectionFactory {
   private static final ConcurrentMap<String, JmxProxy> JMX_CONNECTIONS = Maps.newConcurrentMap();
   private final MetricRegistry metricRegistry;
   private final HostConnectionCounters hostConnectionCounters;
+  private final JmxCallMetrics jmxCallMetrics;
   private Map<String, Integer> jmxPorts;
   private JmxCredentials jmxAuth;
   private Map<String, JmxCredentials> jmxCredentials;
   private EC2MultiRegionAddressTranslator addressTranslator;
+  private JmxCallTimeouts jmxCallTimeouts = JmxCallTimeouts.DEFAULT;
 
   @VisibleForTesting
   public JmxConnectionFactory() {
     this.metricRegistry = new MetricRegistry();
     hostConnectionCounters = new HostConnectionCounters(metricRegistry);
+    jmxCallMetrics = new JmxCallMetrics(metricRegistry);
     registerConnectionsGauge();
   }
 
   public JmxConnectionFactory(MetricRegistry metricRegistry) {
     this.metricRegistry = metricRegistry;
     hostConnectionCounters = new HostConnectionCounters(metricRegistry);
+    jmxCallMetrics = new JmxCallMetrics(metricRegistry);
     registerConnectionsGauge();
   }
 
@@ -176,10 +180,18 @@ public class JmxConnectionFactory {
     this.addressTranslator = addressTranslator;
   }
 
+  public final void setJmxCallTimeouts(JmxCallTimeouts jmxCallTimeouts) {
+    this.jmxCallTimeouts = jmxCallTimeouts;
+  }
+
   public final HostConnectionCounters getHostConnectionCounters() {
     return hostConnectionCounters;
   }
 
+  public final JmxCallMetrics getJmxCallMetrics() {
+    return jmxCallMetrics;
+  }
+
   public Optional<JmxCredentials> getJmxCredentialsForCluster(String clusterName) {
     Optional<JmxCredentials> jmxCreds = Optional.ofNullable(jmxAuth);
     if (jmxCredentials != null && jmxCredentials.containsKey(clusterName)) {
@@ -221,7 +233,14 @@ public class JmxConnectionFactory {
       try {
         JmxProxy proxy =
             JmxProxyImpl.connect(
-                host, username, password, addressTranslator, connectionTimeout, metricRegistry);
+                host,
+                username,
+                password,
+                addressTranslator,
+                connectionTimeout,
+                jmxCallTimeouts,
+                jmxCallMetrics,
+                metricRegistry);
         hostConnectionCounters.incrementSuccessfulConnections(host);
         return proxy;
       } catch (ReaperException | InterruptedException ex) {
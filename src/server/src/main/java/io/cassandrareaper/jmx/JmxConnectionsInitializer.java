@@ -16,95 +16,130 @@ package io.cassandrareaper.jmx;
 
 import io.cassandrareaper.AppContext;
 import io.cassandrareaper.ReaperApplicationConfiguration.DatacenterAvailability;
+import io.cassandrareaper.ReaperException;
 import io.cassandrareaper.core.Cluster;
 import io.cassandrareaper.core.Node;
+import io.cassandrareaper.core.RepairRun;
 import io.cassandrareaper.storage.IDistributedStorage;
 
-import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Optional;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Opens the JMX connections to the seed hosts of clusters ahead of their first use.
+ *
+ * <p>Connections are opened on a bounded pool, in the order they were asked for, the clusters with running repairs
+ * first, without holding up the caller.
+ */
 public final class JmxConnectionsInitializer implements AutoCloseable {
 
   private static final Logger LOG = LoggerFactory.getLogger(JmxConnectionsInitializer.class);
-  private final ExecutorService executor = Executors.newFixedThreadPool(10);
+  private static final String PENDING_CONNECTIONS = MetricRegistry.name(JmxConnectionsInitializer.class, "pending");
 
   private final AppContext context;
+  private final ExecutorService executor;
+  private final AtomicInteger pending = new AtomicInteger(0);
+  private final Counter connected;
+  private final Counter failed;
 
   private JmxConnectionsInitializer(AppContext context) {
     this.context = context;
+
+    this.executor = Executors.newFixedThreadPool(
+        context.config.getJmxConnectionsInitializerThreadCount(),
+        new ThreadFactoryBuilder().setNameFormat("JmxConnectionsInitializer-%d").setDaemon(true).build());
+
+    this.connected = context.metricRegistry.counter(MetricRegistry.name(JmxConnectionsInitializer.class, "connected"));
+    this.failed = context.metricRegistry.counter(MetricRegistry.name(JmxConnectionsInitializer.class, "failed"));
+
+    // the gauge follows the latest initializer
+    context.metricRegistry.remove(PENDING_CONNECTIONS);
+    context.metricRegistry.register(PENDING_CONNECTIONS, (Gauge<Integer>) pending::get);
   }
 
   public static JmxConnectionsInitializer create(AppContext context) {
     return new JmxConnectionsInitializer(context);
   }
 
+  /**
+   * Connects to the seed hosts of the cluster, returning once every connection was attempted.
+   */
   public void on(Cluster cluster) {
-    if (context.storage instanceof IDistributedStorage
-        && context.config.getDatacenterAvailability() != DatacenterAvailability.ALL) {
-      LOG.info("Initializing JMX seed list for cluster {}...", cluster.getName());
-      List<Callable<Optional<String>>> jmxTasks = Lists.newArrayList();
-      List<String> seedHosts = Lists.newArrayList();
-      seedHosts.addAll(cluster.getSeedHosts());
-
-      for (int i = 0; i < seedHosts.size(); i++) {
-        jmxTasks.add(connectToJmx(cluster, Arrays.asList(seedHosts.get(i))));
-        if (i % 10 == 0 || i == seedHosts.size() - 1) {
-          tryConnectingToJmxSeeds(jmxTasks);
-          jmxTasks = Lists.newArrayList();
-        }
-      }
+    on(Collections.singletonList(cluster)).join();
+  }
+
+  /**
+   * Starts connecting to the seed hosts of the clusters, the clusters with running repairs first.
+   *
+   * @return a future completed once every connection was attempted
+   */
+  public CompletableFuture<Void> on(Collection<Cluster> clusters) {
+    if (!(context.storage instanceof IDistributedStorage)
+        || context.config.getDatacenterAvailability() == DatacenterAvailability.ALL) {
+      return CompletableFuture.completedFuture(null);
     }
+    Set<String> clustersWithRunningRepairs = getClustersWithRunningRepairs();
+
+    List<CompletableFuture<Void>> connections = Lists.newArrayList();
+    clusters.stream()
+        .sorted(Comparator.comparing((Cluster cluster) -> !clustersWithRunningRepairs.contains(cluster.getName())))
+        .forEach(cluster -> {
+          LOG.info("Initializing JMX seed list for cluster {}...", cluster.getName());
+          for (String seedHost : cluster.getSeedHosts()) {
+            pending.incrementAndGet();
+            connections.add(CompletableFuture.runAsync(() -> connectToJmx(cluster, seedHost), executor));
+          }
+        });
+
+    return CompletableFuture.allOf(connections.toArray(new CompletableFuture<?>[connections.size()]));
   }
 
-  private Callable<Optional<String>> connectToJmx(Cluster cluster, List<String> endpoints) {
-    return () -> {
-      try {
-        JmxProxy jmxProxy = context.jmxConnectionFactory.connectAny(
-                endpoints
-                    .stream()
-                    .map(host -> Node.builder().withCluster(cluster).withHostname(host).build())
-                    .collect(Collectors.toList()),
-                (int) JmxProxy.DEFAULT_JMX_CONNECTION_TIMEOUT.getSeconds());
-
-        return Optional.of(endpoints.get(0));
-
-      } catch (RuntimeException e) {
-        LOG.info("failed to connect to hosts {} through JMX", endpoints.get(0), e);
-        return Optional.empty();
-      }
-    };
+  private Set<String> getClustersWithRunningRepairs() {
+    try {
+      return context.storage.getRepairRunsWithState(RepairRun.RunState.RUNNING)
+          .stream()
+          .map(RepairRun::getClusterName)
+          .collect(Collectors.toSet());
+    } catch (RuntimeException e) {
+      LOG.warn("Failed listing the running repairs, initializing JMX connections in no particular order", e);
+      return Collections.emptySet();
+    }
   }
 
-  private void tryConnectingToJmxSeeds(List<Callable<Optional<String>>> jmxTasks) {
+  private void connectToJmx(Cluster cluster, String host) {
     try {
-      List<Future<Optional<String>>> endpointFutures
-          = executor.invokeAll(jmxTasks, (int) JmxProxy.DEFAULT_JMX_CONNECTION_TIMEOUT.getSeconds(), TimeUnit.SECONDS);
-
-      for (Future<Optional<String>> endpointFuture : endpointFutures) {
-        try {
-          endpointFuture.get((int) JmxProxy.DEFAULT_JMX_CONNECTION_TIMEOUT.getSeconds(), TimeUnit.SECONDS);
-        } catch (RuntimeException | ExecutionException | TimeoutException expected) {
-          LOG.trace("Failed accessing one node through JMX", expected);
-        }
-      }
-    } catch (InterruptedException e) {
-      LOG.debug("Interrupted when trying to compile the list of nodes accessible through JMX", e);
+      context.jmxConnectionFactory.connectAny(
+          Collections.singletonList(Node.builder().withCluster(cluster).withHostname(host).build()),
+          (int) JmxProxy.DEFAULT_JMX_CONNECTION_TIMEOUT.getSeconds());
+
+      connected.inc();
+    } catch (ReaperException | RuntimeException e) {
+      LOG.info("failed to connect to hosts {} through JMX", host, e);
+      failed.inc();
+    } finally {
+      pending.decrementAndGet();
     }
   }
 
+  /**
+   * Stops accepting clusters, the connections already asked for still being attempted.
+   */
   @Override
   public void close() throws RuntimeException {
     executor.shutdown();
@@ -79,8 +79,18 @@ public interface JmxProxy extends NotificationListener {
 
   List<RingRange> getRangesForLocalEndpoint(String keyspace) throws ReaperException;
 
+  /**
+   * @return the version of the schema the node this proxy is connected to has, changing whenever the schema changes
+   */
+  String getSchemaVersion();
+
   Set<String> getTableNamesForKeyspace(String keyspace) throws ReaperException;
 
+  /**
+   * @return tokens of keys sampled from the index summaries of all the tables of the node, evenly spread over its data
+   */
+  List<BigInteger> getSampledKeyTokens() throws ReaperException;
+
   /**
    * @return list of tokens in the cluster
    */
@@ -47,6 +47,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
+import javax.annotation.Nullable;
 import javax.management.Attribute;
 import javax.management.AttributeList;
 import javax.management.InstanceNotFoundException;
@@ -68,6 +69,7 @@ import javax.validation.constraints.NotNull;
 
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
 import com.datastax.driver.core.VersionNumber;
 import com.datastax.driver.core.policies.EC2MultiRegionAddressTranslator;
 import com.google.common.base.Preconditions;
@@ -106,6 +108,10 @@ final class JmxProxyImpl implements JmxProxy {
 
 
   private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool();
+  private static final int NOTIFICATION_STRIPES = 8;
+
+  private static final StripedRepairNotificationExecutor REPAIR_NOTIFICATIONS
+      = new StripedRepairNotificationExecutor(NOTIFICATION_STRIPES);
 
   private final JMXConnector jmxConnector;
   private final MBeanServerConnection mbeanServer;
@@ -116,7 +122,6 @@ final class JmxProxyImpl implements JmxProxy {
   private final String host;
   private final String hostBeforeTranslation;
   private final String clusterName;
-  private final ConcurrentMap<Integer, ExecutorService> repairStatusExecutors = Maps.newConcurrentMap();
   private final ConcurrentMap<Integer, RepairStatusHandler> repairStatusHandlers = Maps.newConcurrentMap();
   private final MetricRegistry metricRegistry;
   private final StreamManagerMBean smProxy;
@@ -145,6 +150,7 @@ final class JmxProxyImpl implements JmxProxy {
     this.metricRegistry = metricRegistry;
     this.smProxy = smProxy;
     registerConnectionsGauge();
+    REPAIR_NOTIFICATIONS.registerGauges(metricRegistry);
   }
 
   /**
@@ -156,6 +162,8 @@ final class JmxProxyImpl implements JmxProxy {
       String password,
       final EC2MultiRegionAddressTranslator addressTranslator,
       int connectionTimeout,
+      JmxCallTimeouts callTimeouts,
+      JmxCallMetrics callMetrics,
       MetricRegistry metricRegistry)
       throws ReaperException, InterruptedException {
 
@@ -172,6 +180,8 @@ final class JmxProxyImpl implements JmxProxy {
           password,
           addressTranslator,
           connectionTimeout,
+          callTimeouts,
+          callMetrics,
           metricRegistry);
   }
 
@@ -186,6 +196,8 @@ final class JmxProxyImpl implements JmxProxy {
    * @param password password to use for JMX authentication
    * @param addressTranslator if EC2MultiRegionAddressTranslator isn't null it will be used to
    *     translate addresses
+   * @param callTimeouts how long each call made through the connection may run
+   * @param callMetrics where to record the latency and failures of the calls made through the connection
    */
   private static JmxProxy connect(
       String originalHost,
@@ -194,6 +206,8 @@ final class JmxProxyImpl implements JmxProxy {
       String password,
       final EC2MultiRegionAddressTranslator addressTranslator,
       int connectionTimeout,
+      JmxCallTimeouts callTimeouts,
+      JmxCallMetrics callMetrics,
       MetricRegistry metricRegistry) throws ReaperException, InterruptedException {
 
     JMXServiceURL jmxUrl;
@@ -220,14 +234,16 @@ final class JmxProxyImpl implements JmxProxy {
       env.put("com.sun.jndi.rmi.factory.socket", getRmiClientSocketFactory());
       JMXConnector jmxConn = connectWithTimeout(jmxUrl, connectionTimeout, TimeUnit.SECONDS, env);
       MBeanServerConnection mbeanServerConn = jmxConn.getMBeanServerConnection();
+      // the cluster name labels the calls, so ask for it through proxies that only enforce deadlines
+      TimedMBeans untracked = new TimedMBeans(mbeanServerConn, null, host, callTimeouts, callMetrics);
+      StorageServiceMBean bootstrapProxy = untracked.proxy(ObjectNames.STORAGE_SERVICE, StorageServiceMBean.class);
+      String cassandraVersion = bootstrapProxy.getReleaseVersion();
+      String cluster = Cluster.toSymbolicName(bootstrapProxy.getClusterName());
 
-      StorageServiceMBean ssProxy
-          = JMX.newMBeanProxy(mbeanServerConn, ObjectNames.STORAGE_SERVICE, StorageServiceMBean.class);
-
-      String cassandraVersion = ssProxy.getReleaseVersion();
-      if (cassandraVersion.startsWith("2.0") || cassandraVersion.startsWith("1.")) {
-        ssProxy = JMX.newMBeanProxy(mbeanServerConn, ObjectNames.STORAGE_SERVICE, StorageServiceMBean20.class);
-      }
+      TimedMBeans mbeans = new TimedMBeans(mbeanServerConn, cluster, host, callTimeouts, callMetrics);
+      StorageServiceMBean ssProxy = cassandraVersion.startsWith("2.0") || cassandraVersion.startsWith("1.")
+          ? mbeans.proxy(ObjectNames.STORAGE_SERVICE, StorageServiceMBean20.class)
+          : mbeans.proxy(ObjectNames.STORAGE_SERVICE, StorageServiceMBean.class);
 
       JmxProxy proxy
           = new JmxProxyImpl(
@@ -235,12 +251,12 @@ final class JmxProxyImpl implements JmxProxy {
               originalHost,
               jmxConn,
               ssProxy,
-              mbeanServerConn,
-              JMX.newMBeanProxy(mbeanServerConn, ObjectNames.COMPACTION_MANAGER, CompactionManagerMBean.class),
-              JMX.newMBeanProxy(mbeanServerConn, ObjectNames.ENDPOINT_SNITCH_INFO, EndpointSnitchInfoMBean.class),
-              JMX.newMBeanProxy(mbeanServerConn, ObjectNames.FAILURE_DETECTOR, FailureDetectorMBean.class),
+              mbeans.connection(),
+              mbeans.proxy(ObjectNames.COMPACTION_MANAGER, CompactionManagerMBean.class),
+              mbeans.proxy(ObjectNames.ENDPOINT_SNITCH_INFO, EndpointSnitchInfoMBean.class),
+              mbeans.proxy(ObjectNames.FAILURE_DETECTOR, FailureDetectorMBean.class),
               metricRegistry,
-              JMX.newMBeanProxy(mbeanServerConn, ObjectNames.STREAM_MANAGER, StreamManagerMBean.class));
+              mbeans.proxy(ObjectNames.STREAM_MANAGER, StreamManagerMBean.class));
 
       // registering listeners throws bunch of exceptions, so do it here rather than in the constructor
       mbeanServerConn.addNotificationListener(ObjectNames.STORAGE_SERVICE, proxy, null, null);
@@ -293,6 +309,25 @@ final class JmxProxyImpl implements JmxProxy {
     }
   }
 
+  @Override
+  public List<BigInteger> getSampledKeyTokens() throws ReaperException {
+    Preconditions.checkNotNull(ssProxy, "Looks like the proxy is not connected");
+    try {
+      List<BigInteger> tokens = Lists.newArrayList();
+      for (String token : ssProxy.sampleKeyRange()) {
+        try {
+          tokens.add(new BigInteger(token));
+        } catch (NumberFormatException e) {
+          LOG.debug("Ignoring sampled token {} of an unsupported partitioner", token);
+        }
+      }
+      return tokens;
+    } catch (RuntimeException e) {
+      LOG.error(e.getMessage());
+      throw new ReaperException(e.getMessage(), e);
+    }
+  }
+
   @Override
   public List<RingRange> getRangesForLocalEndpoint(String keyspace) throws ReaperException {
     Preconditions.checkNotNull(ssProxy, "Looks like the proxy is not connected");
@@ -384,6 +419,12 @@ final class JmxProxyImpl implements JmxProxy {
     return ssProxy.getKeyspaces();
   }
 
+  @Override
+  public String getSchemaVersion() {
+    Preconditions.checkNotNull(ssProxy, "Looks like the proxy is not connected");
+    return ssProxy.getSchemaVersion();
+  }
+
   @Override
   public Set<String> getTableNamesForKeyspace(String keyspace) throws ReaperException {
     Set<String> tableNames = new HashSet<>();
@@ -612,7 +653,6 @@ final class JmxProxyImpl implements JmxProxy {
             associatedTokens,
             repairThreadCount);
       }
-      repairStatusExecutors.putIfAbsent(repairNo, Executors.newSingleThreadExecutor());
       repairStatusHandlers.putIfAbsent(repairNo, repairStatusHandler);
       return repairNo;
     } catch (RuntimeException e) {
@@ -754,12 +794,15 @@ final class JmxProxyImpl implements JmxProxy {
    */
   @Override
   public void handleNotification(final Notification notification, Object handback) {
-    // pass off the work immediately to a separate thread
+    // pass off the work immediately to the stripe of the repair, which keeps its notifications in order
     final int repairNo = "repair".equals(notification.getType())
         ? ((int[]) notification.getUserData())[0]
         : Integer.parseInt(((String) notification.getSource()).split(":")[1]);
 
-    repairStatusExecutors.get(repairNo).submit(() -> {
+    Timer dispatchLatency
+        = metricRegistry.timer(MetricRegistry.name(JmxProxyImpl.class, "repairNotifications", "dispatchLatency"));
+
+    REPAIR_NOTIFICATIONS.submit(host, repairNo, () -> {
       String threadName = Thread.currentThread().getName();
       try {
         String type = notification.getType();
@@ -774,7 +817,7 @@ final class JmxProxyImpl implements JmxProxy {
       } finally {
         Thread.currentThread().setName(threadName);
       }
-    });
+    }, dispatchLatency);
   }
 
   /**
@@ -845,10 +888,6 @@ final class JmxProxyImpl implements JmxProxy {
   @Override
   public void removeRepairStatusHandler(int repairNo) {
     repairStatusHandlers.remove(repairNo);
-    ExecutorService repairStatusExecutor = repairStatusExecutors.remove(repairNo);
-    if (null != repairStatusExecutor) {
-      repairStatusExecutor.shutdown();
-    }
   }
 
   /** Cleanly shut down by un-registering the listener and closing the JMX connection. */
@@ -1109,4 +1148,42 @@ final class JmxProxyImpl implements JmxProxy {
       }
     }
   }
+
+  /**
+   * Creates the MBean proxies of a connection, each call made through them having a deadline and being recorded.
+   */
+  private static final class TimedMBeans {
+
+    private final MBeanServerConnection connection;
+    private final String cluster;
+    private final String host;
+    private final JmxCallTimeouts callTimeouts;
+    private final JmxCallMetrics callMetrics;
+
+    TimedMBeans(
+        MBeanServerConnection connection,
+        @Nullable String cluster,
+        String host,
+        JmxCallTimeouts callTimeouts,
+        JmxCallMetrics callMetrics) {
+
+      this.connection = connection;
+      this.cluster = cluster;
+      this.host = host;
+      this.callTimeouts = callTimeouts;
+      this.callMetrics = callMetrics;
+    }
+
+    <T> T proxy(ObjectName name, Class<T> mbeanInterface) {
+      return timed(mbeanInterface, JMX.newMBeanProxy(connection, name, mbeanInterface));
+    }
+
+    MBeanServerConnection connection() {
+      return timed(MBeanServerConnection.class, connection);
+    }
+
+    private <T> T timed(Class<T> iface, T target) {
+      return TimedJmxInvocationHandler.wrap(iface, target, cluster, host, callTimeouts, callMetrics);
+    }
+  }
 }
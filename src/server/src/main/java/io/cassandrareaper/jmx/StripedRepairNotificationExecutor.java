@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.jmx;
+
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Processes the repair notifications of all the JMX connections on a fixed set of single threaded stripes.
+ *
+ * <p>The notifications of a repair command always go to the same stripe, chosen from its host and command number, so
+ * they are processed in the order they were received without starting a thread per repair.
+ */
+final class StripedRepairNotificationExecutor {
+
+  private static final Logger LOG = LoggerFactory.getLogger(StripedRepairNotificationExecutor.class);
+
+  private final ThreadPoolExecutor[] stripes;
+
+  StripedRepairNotificationExecutor(int stripeCount) {
+    stripes = new ThreadPoolExecutor[stripeCount];
+    for (int i = 0; i < stripeCount; i++) {
+      stripes[i] = new ThreadPoolExecutor(
+          1,
+          1,
+          0,
+          TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<>(),
+          new ThreadFactoryBuilder().setNameFormat("RepairNotifications-" + i).setDaemon(true).build());
+    }
+  }
+
+  /**
+   * Queues the processing of a notification of the repair command behind the previous ones of the same command.
+   *
+   * @param dispatchLatency times how long the notification waits for its stripe
+   */
+  void submit(String host, int repairNo, Runnable task, Timer dispatchLatency) {
+    Timer.Context queued = dispatchLatency.time();
+    stripes[stripe(host, repairNo)].execute(() -> {
+      queued.stop();
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        LOG.error("Failed processing a notification of repair {} on {}", repairNo, host, e);
+      }
+    });
+  }
+
+  int stripe(String host, int repairNo) {
+    return Math.floorMod(Objects.hash(host, repairNo), stripes.length);
+  }
+
+  int getQueueDepth(int stripe) {
+    return stripes[stripe].getQueue().size();
+  }
+
+  /**
+   * Registers a gauge of the queue depth of each stripe, unless they already are.
+   */
+  void registerGauges(MetricRegistry metricRegistry) {
+    for (int i = 0; i < stripes.length; i++) {
+      int stripe = i;
+      String name = MetricRegistry.name(JmxProxyImpl.class, "repairNotifications", "stripe" + i, "queued");
+      try {
+        if (!metricRegistry.getGauges().containsKey(name)) {
+          metricRegistry.register(name, (Gauge<Integer>) () -> getQueueDepth(stripe));
+        }
+      } catch (IllegalArgumentException e) {
+        LOG.debug("Gauge {} was registered concurrently", name, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.jmx;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.annotation.Nullable;
+
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Runs each call made through a JMX proxy with the deadline of its operation, so that a node hanging in a GC pause or
+ * half dead can't block the calling thread forever, and records the latency and failures of the calls in
+ * {@link JmxCallMetrics}.
+ *
+ * <p>A call past its deadline is interrupted and fails with a {@link SocketTimeoutException}, thrown as is by the
+ * methods declaring an {@code IOException} and wrapped in an {@code UndeclaredThrowableException} by the others, the
+ * same way as the other I/O failures of JMX proxies.
+ *
+ * <p>Calls run on a small pool of threads per host. Interrupting a call blocked in a socket read doesn't always free
+ * its thread, so a host that stopped answering holds at most that many threads, and its later calls time out while
+ * waiting for one.
+ */
+final class TimedJmxInvocationHandler implements InvocationHandler {
+
+  static final int MAX_CALLS_PER_HOST = 4;
+
+  private static final Logger LOG = LoggerFactory.getLogger(TimedJmxInvocationHandler.class);
+
+  private static final ConcurrentMap<String, ThreadPoolExecutor> CALLS = Maps.newConcurrentMap();
+
+  private final Object target;
+  private final String cluster;
+  private final String host;
+  private final JmxCallTimeouts timeouts;
+  private final JmxCallMetrics metrics;
+
+  private TimedJmxInvocationHandler(
+      Object target,
+      @Nullable String cluster,
+      String host,
+      JmxCallTimeouts timeouts,
+      JmxCallMetrics metrics) {
+
+    this.target = target;
+    this.cluster = cluster;
+    this.host = host;
+    this.timeouts = timeouts;
+    this.metrics = metrics;
+  }
+
+  /**
+   * @param cluster the cluster of the host, or null while it is still unknown, in which case calls aren't recorded
+   * @return a proxy of the interface that calls the target with the deadlines of its operations
+   */
+  static <T> T wrap(
+      Class<T> iface,
+      T target,
+      @Nullable String cluster,
+      String host,
+      JmxCallTimeouts timeouts,
+      JmxCallMetrics metrics) {
+
+    return iface.cast(
+        Proxy.newProxyInstance(
+            iface.getClassLoader(),
+            new Class<?>[] {iface},
+            new TimedJmxInvocationHandler(target, cluster, host, timeouts, metrics)));
+  }
+
+  @Override
+  public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+    if (Object.class.equals(method.getDeclaringClass())) {
+      return invokeTarget(method, args);
+    }
+    String operation = method.getName();
+    if (null == cluster) {
+      return invokeWithDeadline(method, args);
+    }
+    try (Timer.Context cx = metrics.timer(cluster, host, operation).time()) {
+      return invokeWithDeadline(method, args);
+    } catch (Throwable e) {
+      if (e instanceof SocketTimeoutException) {
+        metrics.markTimeout(cluster, host, operation);
+      }
+      metrics.markError(cluster, host, operation, e);
+      throw e;
+    }
+  }
+
+  private Object invokeWithDeadline(Method method, Object[] args) throws Throwable {
+    String operation = method.getName();
+    long timeoutMillis = timeouts.getTimeoutMillis(operation);
+    if (0 >= timeoutMillis) {
+      return invokeTarget(method, args);
+    }
+    ThreadPoolExecutor calls = callsTo(host);
+    Future<Object> call = calls.submit(() -> method.invoke(target, args));
+    try {
+      return call.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (TimeoutException e) {
+      call.cancel(true);
+      // drops the call from the queue if it never got a thread
+      calls.purge();
+      LOG.warn("JMX call {} to {} did not complete within {} ms", operation, host, timeoutMillis);
+      throw new SocketTimeoutException(
+          String.format("JMX call %s to %s did not complete within %d ms", operation, host, timeoutMillis));
+    } catch (InterruptedException e) {
+      call.cancel(true);
+      throw e;
+    } catch (ExecutionException e) {
+      throw e.getCause() instanceof InvocationTargetException ? e.getCause().getCause() : e.getCause();
+    }
+  }
+
+  private static ThreadPoolExecutor callsTo(String host) {
+    return CALLS.computeIfAbsent(host, key -> {
+      ThreadPoolExecutor calls = new ThreadPoolExecutor(
+          MAX_CALLS_PER_HOST,
+          MAX_CALLS_PER_HOST,
+          1,
+          TimeUnit.MINUTES,
+          new LinkedBlockingQueue<>(),
+          new ThreadFactoryBuilder().setNameFormat("JmxCall-" + host + "-%d").setDaemon(true).build());
+
+      calls.allowCoreThreadTimeOut(true);
+      return calls;
+    });
+  }
+
+  private Object invokeTarget(Method method, Object[] args) throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
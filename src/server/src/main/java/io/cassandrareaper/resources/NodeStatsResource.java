@@ -16,6 +16,7 @@ package io.cassandrareaper.resources;
 
 import io.cassandrareaper.AppContext;
 import io.cassandrareaper.ReaperException;
+import io.cassandrareaper.core.Cluster;
 import io.cassandrareaper.core.Node;
 import io.cassandrareaper.core.StreamSession;
 import io.cassandrareaper.service.CompactionService;
@@ -23,11 +24,13 @@ import io.cassandrareaper.service.MetricsGrabber;
 import io.cassandrareaper.service.StreamManager;
 
 import java.util.List;
+import java.util.Optional;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
@@ -41,6 +44,7 @@ import org.slf4j.LoggerFactory;
 public final class NodeStatsResource {
 
   private static final Logger LOG = LoggerFactory.getLogger(NodeStatsResource.class);
+  private static final int DEFAULT_JMX_LATENCIES_LIMIT = 10;
 
   private final AppContext context;
   private final StreamManager streamManager;
@@ -157,4 +161,23 @@ public final class NodeStatsResource {
       return Response.serverError().entity(e.getMessage()).build();
     }
   }
+
+  /**
+   * Endpoint used to find the nodes answering JMX calls the slowest.
+   *
+   * @return the hosts with the highest tail latency of JMX calls first, optionally only those of a cluster.
+   */
+  @GET
+  @Path("/jmxLatencies")
+  public Response getJmxLatencies(
+      @QueryParam("clusterName") Optional<String> clusterName,
+      @QueryParam("limit") Optional<Integer> limit) {
+
+    return Response.ok()
+        .entity(
+            context.jmxConnectionFactory
+                .getJmxCallMetrics()
+                .getSlowestHosts(clusterName.map(Cluster::toSymbolicName), limit.orElse(DEFAULT_JMX_LATENCIES_LIMIT)))
+        .build();
+  }
 }
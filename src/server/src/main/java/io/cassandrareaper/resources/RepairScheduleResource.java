@@ -415,6 +415,7 @@ public final class RepairScheduleResource {
           .build(repairScheduleId);
 
       context.storage.updateRepairSchedule(newSchedule);
+      SchedulingManager.scheduleChanged(newSchedule);
       return Response.ok().entity(getRepairScheduleStatus(newSchedule)).build();
     } else {
       return Response.status(404)
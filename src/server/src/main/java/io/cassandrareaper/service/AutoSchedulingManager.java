@@ -74,5 +74,6 @@ public final class AutoSchedulingManager extends TimerTask {
         LOG.error("Error while scheduling repairs for cluster {}", cluster, e);
       }
     }
+    clusterRepairScheduler.retainClusters(clusters);
   }
 }
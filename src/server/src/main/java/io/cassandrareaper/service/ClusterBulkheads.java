@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import java.util.Map;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Maps;
+
+/**
+ * Bounds the threads of the repair manager's pool that the repairs of each cluster may hold at once, segment runners
+ * and repair runners together, so that a cluster whose nodes hang on JMX can't take every thread and stall the repairs
+ * of the others.
+ *
+ * <p>Segments of a cluster at its limit wait in the fair scheduler's queue, and its repair runners are rescheduled.
+ */
+final class ClusterBulkheads {
+
+  private final int maxThreadsPerCluster;
+  private final MetricRegistry metricRegistry;
+  private final Map<String, Integer> activeByCluster = Maps.newHashMap();
+
+  /**
+   * @param maxThreadsPerCluster the most threads a cluster may hold, 0 for no limit
+   */
+  ClusterBulkheads(int maxThreadsPerCluster, MetricRegistry metricRegistry) {
+    this.maxThreadsPerCluster = maxThreadsPerCluster;
+    this.metricRegistry = metricRegistry;
+  }
+
+  synchronized boolean hasCapacity(String clusterName) {
+    return 0 >= maxThreadsPerCluster || getActive(clusterName) < maxThreadsPerCluster;
+  }
+
+  /**
+   * Takes a thread for the cluster, if it is below its limit.
+   *
+   * @return false, counting a rejection, if the cluster already holds all its threads
+   */
+  synchronized boolean tryAcquire(String clusterName) {
+    if (!hasCapacity(clusterName)) {
+      metricRegistry.meter(metricName(clusterName, "rejected")).mark();
+      return false;
+    }
+    if (null == activeByCluster.put(clusterName, getActive(clusterName) + 1)) {
+      String activeMetric = metricName(clusterName, "active");
+      if (!metricRegistry.getGauges().containsKey(activeMetric)) {
+        metricRegistry.register(activeMetric, (Gauge<Integer>) () -> getActive(clusterName));
+      }
+    }
+    return true;
+  }
+
+  synchronized void release(String clusterName) {
+    activeByCluster.computeIfPresent(clusterName, (name, active) -> 1 < active ? active - 1 : null);
+  }
+
+  synchronized int getActive(String clusterName) {
+    return activeByCluster.getOrDefault(clusterName, 0);
+  }
+
+  private static String metricName(String clusterName, String metric) {
+    return MetricRegistry.name(
+        RepairManager.class, "clusterThreads", clusterName.replaceAll("[^A-Za-z0-9]", ""), metric);
+  }
+}
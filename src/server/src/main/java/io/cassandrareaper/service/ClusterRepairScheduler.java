@@ -17,18 +17,27 @@ package io.cassandrareaper.service;
 import io.cassandrareaper.AppContext;
 import io.cassandrareaper.ReaperException;
 import io.cassandrareaper.core.Cluster;
+import io.cassandrareaper.core.RepairRun;
 import io.cassandrareaper.core.RepairSchedule;
 import io.cassandrareaper.core.RepairUnit;
 import io.cassandrareaper.jmx.JmxProxy;
 
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
@@ -41,10 +50,15 @@ public final class ClusterRepairScheduler {
   private static final Logger LOG = LoggerFactory.getLogger(ClusterRepairScheduler.class);
   private static final String REPAIR_OWNER = "auto-scheduling";
   private static final String SYSTEM_KEYSPACE_PREFIX = "system";
+  private static final long PLACEMENT_SLOT_MILLIS = TimeUnit.MINUTES.toMillis(15);
+  private static final long DEFAULT_RUN_DURATION_MILLIS = TimeUnit.HOURS.toMillis(1);
+  // bounds how long deleted or lost auto schedules can go unnoticed while the schema doesn't change
+  private static final long FULL_COMPARISON_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
 
   private final AppContext context;
   private final RepairUnitService repairUnitService;
   private final RepairScheduleService repairScheduleService;
+  private final ConcurrentMap<String, KnownSchema> knownSchemas = Maps.newConcurrentMap();
 
   public ClusterRepairScheduler(AppContext context) {
     this.context = context;
@@ -53,16 +67,148 @@ public final class ClusterRepairScheduler {
   }
 
   public void scheduleRepairs(Cluster cluster) throws ReaperException {
-    AtomicInteger scheduleIndex = new AtomicInteger();
-    ScheduledRepairDiffView schedulesDiff = ScheduledRepairDiffView.compareWithExistingSchedules(context, cluster);
+    JmxProxy jmxProxy
+        = context.jmxConnectionFactory.connectAny(cluster, context.config.getJmxConnectionTimeoutInSeconds());
+
+    String schemaVersion = jmxProxy.getSchemaVersion();
+    KnownSchema knownSchema = knownSchemas.get(cluster.getName());
+    boolean fullComparison = null == knownSchema || knownSchema.isFullComparisonDue();
+    if (!fullComparison && knownSchema.hasVersion(schemaVersion)) {
+      LOG.debug("Schema of cluster {} is still at version {}, skipping it", cluster.getName(), schemaVersion);
+      return;
+    }
+
+    Set<String> keyspacesInCluster = keyspacesInCluster(jmxProxy, cluster);
+    ScheduledRepairDiffView schedulesDiff = fullComparison
+        ? ScheduledRepairDiffView.compareWithExistingSchedules(context, cluster, keyspacesInCluster)
+        : ScheduledRepairDiffView.compareWithKnownSchema(context, cluster, keyspacesInCluster, knownSchema);
+
     schedulesDiff.keyspacesDeleted().forEach(keyspace -> deleteRepairSchedule(cluster, keyspace));
-    schedulesDiff
+
+    List<String> candidates = schedulesDiff
         .keyspacesWithoutSchedules()
         .stream()
-        .filter(keyspace -> keyspaceCandidateForRepair(cluster, keyspace))
-        .forEach(
-            keyspace
-              -> createRepairSchedule(cluster, keyspace, nextActivationStartDate(scheduleIndex.getAndIncrement())));
+        .filter(keyspace -> !keyspaceExcludedFromRepair(cluster, keyspace))
+        .collect(Collectors.toList());
+
+    Set<String> keyspacesWithoutTables = candidates
+        .stream()
+        .filter(keyspace -> keyspaceHasNoTable(jmxProxy, cluster, keyspace))
+        .collect(Collectors.toSet());
+
+    List<String> keyspaces = candidates
+        .stream()
+        .filter(keyspace -> !keyspacesWithoutTables.contains(keyspace))
+        .collect(Collectors.toList());
+
+    if (context.config.getAutoScheduling().isBalancedPlacement() && !keyspaces.isEmpty()) {
+      placeRepairSchedules(cluster, keyspaces);
+    } else {
+      AtomicInteger scheduleIndex = new AtomicInteger();
+      keyspaces.forEach(
+          keyspace
+            -> createRepairSchedule(cluster, keyspace, nextActivationStartDate(scheduleIndex.getAndIncrement())));
+    }
+    knownSchemas.put(
+        cluster.getName(),
+        new KnownSchema(
+            schemaVersion,
+            keyspacesInCluster,
+            keyspacesWithoutTables,
+            fullComparison ? DateTime.now().getMillis() : knownSchema.fullyComparedAtMillis));
+  }
+
+  /**
+   * Forgets the schema of clusters that are no longer managed, so they are fully compared again if re-added.
+   */
+  public void retainClusters(Collection<Cluster> clusters) {
+    Set<String> names = clusters.stream().map(Cluster::getName).collect(Collectors.toSet());
+    knownSchemas.keySet().retainAll(names);
+  }
+
+  /**
+   * Places the new keyspaces' schedules, and re-balances the existing auto-scheduled ones, so that the number of
+   * repairs expected to run at once on the cluster stays flat across the scheduleDaysBetween cycle.
+   *
+   * <p>Durations come from past runs of each keyspace. Keyspaces that never completed a run are assumed to take as long
+   * as the median keyspace, or the scheduleSpreadPeriod when nothing ran yet. New keyspaces are placed around the
+   * current activations of the existing schedules. An existing auto-scheduled repair is then only moved when that
+   * lowers the peak it runs in, and only later, so re-balancing never adds a repair or shortens a repair cycle.
+   */
+  private void placeRepairSchedules(Cluster cluster, List<String> newKeyspaces) {
+    long cycleMillis = TimeUnit.DAYS.toMillis(context.config.getScheduleDaysBetween());
+    DateTime origin = nextActivationStartDate(0);
+    Map<String, Long> durations = pastRunDurationsByKeyspace(cluster);
+    long defaultDuration = medianDuration(durations.values());
+    SchedulePlacement placement = new SchedulePlacement(cycleMillis, PLACEMENT_SLOT_MILLIS);
+
+    List<Placeable> existingPlaceables = Lists.newArrayList();
+    for (RepairSchedule schedule : context.storage.getRepairSchedulesForCluster(cluster.getName())) {
+      if (RepairSchedule.State.ACTIVE == schedule.getState()) {
+        String keyspace = context.storage.getRepairUnit(schedule.getRepairUnitId()).getKeyspaceName();
+        long duration = durations.getOrDefault(keyspace, defaultDuration);
+        long offset = schedule.getNextActivation().getMillis() - origin.getMillis();
+        placement.pin(offset, duration);
+        if (REPAIR_OWNER.equals(schedule.getOwner()) && 0 <= offset) {
+          existingPlaceables.add(new Placeable(keyspace, Optional.of(schedule), duration, offset));
+        }
+      }
+    }
+    List<Placeable> newPlaceables = newKeyspaces.stream()
+        .map(keyspace -> new Placeable(
+            keyspace, Optional.empty(), durations.getOrDefault(keyspace, defaultDuration), cycleMillis))
+        .collect(Collectors.toList());
+
+    // longest first, and in the order keyspaces were given when durations are equal
+    Comparator<Placeable> longestFirst
+        = Comparator.comparingLong((Placeable placeable) -> placeable.duration).reversed();
+
+    newPlaceables.sort(longestFirst);
+    for (Placeable placeable : newPlaceables) {
+      createRepairSchedule(
+          cluster, placeable.keyspace, origin.plus(placement.place(placeable.duration, placeable.offset)));
+    }
+    existingPlaceables.sort(longestFirst);
+    for (Placeable placeable : existingPlaceables) {
+      moveRepairSchedule(
+          placeable.schedule.get(), origin.plus(placement.moveLater(placeable.offset, placeable.duration)));
+    }
+    LOG.info(
+        "Placed repair schedules of cluster {}, at most {} expected to run at once",
+        cluster.getName(),
+        placement.peak());
+  }
+
+  private void moveRepairSchedule(RepairSchedule schedule, DateTime nextActivation) {
+    if (PLACEMENT_SLOT_MILLIS <= Math.abs(schedule.getNextActivation().getMillis() - nextActivation.getMillis())) {
+      RepairSchedule moved = schedule.with().nextActivation(nextActivation).build(schedule.getId());
+      if (context.storage.updateRepairSchedule(moved)) {
+        SchedulingManager.scheduleChanged(moved);
+        LOG.info("Scheduled repair {} moved to {}", schedule.getId(), nextActivation);
+      }
+    }
+  }
+
+  private Map<String, Long> pastRunDurationsByKeyspace(Cluster cluster) {
+    Map<UUID, List<RepairRun>> runsByUnit = context.storage
+        .getRepairRunsForCluster(cluster.getName(), Optional.empty())
+        .stream()
+        .collect(Collectors.groupingBy(RepairRun::getRepairUnitId));
+
+    Map<String, Long> durations = Maps.newHashMap();
+    runsByUnit.forEach((unitId, runs) -> RepairRunService.estimateDurationMillis(runs).ifPresent(
+        duration -> durations.merge(context.storage.getRepairUnit(unitId).getKeyspaceName(), duration, Math::max)));
+    return durations;
+  }
+
+  private long medianDuration(Collection<Long> durations) {
+    if (durations.isEmpty()) {
+      return context.config.getAutoScheduling().hasScheduleSpreadPeriod()
+          ? context.config.getAutoScheduling().getScheduleSpreadPeriod().toMillis()
+          : DEFAULT_RUN_DURATION_MILLIS;
+    }
+    List<Long> sorted = durations.stream().sorted().collect(Collectors.toList());
+    return sorted.get(sorted.size() / 2);
   }
 
   private DateTime nextActivationStartDate(int scheduleIndex) {
@@ -87,20 +233,13 @@ public final class ClusterRepairScheduler {
         });
   }
 
-  private boolean keyspaceCandidateForRepair(Cluster cluster, String keyspace) {
+  private boolean keyspaceExcludedFromRepair(Cluster cluster, String keyspace) {
     if (keyspace.toLowerCase().startsWith(ClusterRepairScheduler.SYSTEM_KEYSPACE_PREFIX)
         || context.config.getAutoScheduling().getExcludedKeyspaces().contains(keyspace)) {
       LOG.debug("Scheduled repair skipped for system keyspace {} in cluster {}.", keyspace, cluster.getName());
-      return false;
+      return true;
     }
-    if (keyspaceHasNoTable(context, cluster, keyspace)) {
-      LOG.warn(
-          "No tables found for keyspace {} in cluster {}. No repair will be scheduled for this keyspace.",
-          keyspace,
-          cluster.getName());
-      return false;
-    }
-    return true;
+    return false;
   }
 
   private void createRepairSchedule(Cluster cluster, String keyspace, DateTime nextActivationTime) {
@@ -125,38 +264,74 @@ public final class ClusterRepairScheduler {
     LOG.info("Scheduled repair created: {}", repairSchedule);
   }
 
-  private boolean keyspaceHasNoTable(AppContext context, Cluster cluster, String keyspace) {
+  private boolean keyspaceHasNoTable(JmxProxy jmxProxy, Cluster cluster, String keyspace) {
     try {
-      JmxProxy jmxProxy =
-          context.jmxConnectionFactory.connectAny(
-              cluster, context.config.getJmxConnectionTimeoutInSeconds());
-
-      Set<String> tables = jmxProxy.getTableNamesForKeyspace(keyspace);
-      return tables.isEmpty();
+      if (jmxProxy.getTableNamesForKeyspace(keyspace).isEmpty()) {
+        LOG.warn(
+            "No tables found for keyspace {} in cluster {}. No repair will be scheduled for this keyspace.",
+            keyspace,
+            cluster.getName());
+        return true;
+      }
+      return false;
     } catch (ReaperException e) {
       throw Throwables.propagate(e);
     }
   }
 
+  private static Set<String> keyspacesInCluster(JmxProxy jmxProxy, Cluster cluster) {
+    List<String> keyspaces = jmxProxy.getKeyspaces();
+    if (keyspaces.isEmpty()) {
+      String message = format("No keyspace found in cluster %s", cluster.getName());
+      LOG.debug(message);
+      throw new IllegalArgumentException(message);
+    }
+    return Sets.newHashSet(keyspaces);
+  }
+
   private static class ScheduledRepairDiffView {
 
     private final ImmutableSet<String> keyspacesThatRequireSchedules;
     private final ImmutableSet<String> keyspacesDeleted;
 
-    ScheduledRepairDiffView(AppContext context, Cluster cluster) throws ReaperException {
-      Set<String> allKeyspacesInCluster = keyspacesInCluster(context, cluster);
-      Set<String> keyspacesThatHaveSchedules = keyspacesThatHaveSchedules(context, cluster);
+    ScheduledRepairDiffView(Set<String> keyspacesThatRequireSchedules, Set<String> keyspacesDeleted) {
+      this.keyspacesThatRequireSchedules = ImmutableSet.copyOf(keyspacesThatRequireSchedules);
+      this.keyspacesDeleted = ImmutableSet.copyOf(keyspacesDeleted);
+    }
 
-      keyspacesThatRequireSchedules
-          = Sets.difference(allKeyspacesInCluster, keyspacesThatHaveSchedules).immutableCopy();
+    static ScheduledRepairDiffView compareWithExistingSchedules(
+        AppContext context,
+        Cluster cluster,
+        Set<String> allKeyspacesInCluster) {
 
-      keyspacesDeleted = Sets.difference(keyspacesThatHaveSchedules, allKeyspacesInCluster).immutableCopy();
-    }
+      Set<String> keyspacesThatHaveSchedules = keyspacesThatHaveSchedules(context, cluster);
 
-    static ScheduledRepairDiffView compareWithExistingSchedules(AppContext context, Cluster cluster)
-        throws ReaperException {
+      return new ScheduledRepairDiffView(
+          Sets.difference(allKeyspacesInCluster, keyspacesThatHaveSchedules),
+          Sets.difference(keyspacesThatHaveSchedules, allKeyspacesInCluster));
+    }
 
-      return new ScheduledRepairDiffView(context, cluster);
+    /**
+     * Only looks at the keyspaces added or removed since the schema was last seen, and at the ones that had no table
+     * then, without reading all of the cluster's schedules.
+     */
+    static ScheduledRepairDiffView compareWithKnownSchema(
+        AppContext context,
+        Cluster cluster,
+        Set<String> allKeyspacesInCluster,
+        KnownSchema knownSchema) {
+
+      Set<String> keyspacesToCheck = Sets.union(
+          Sets.difference(allKeyspacesInCluster, knownSchema.keyspaces),
+          Sets.intersection(allKeyspacesInCluster, knownSchema.keyspacesWithoutTables));
+
+      return new ScheduledRepairDiffView(
+          keyspacesToCheck
+              .stream()
+              .filter(keyspace
+                  -> context.storage.getRepairSchedulesForClusterAndKeyspace(cluster.getName(), keyspace).isEmpty())
+              .collect(Collectors.toSet()),
+          Sets.difference(knownSchema.keyspaces, allKeyspacesInCluster));
     }
 
     Set<String> keyspacesWithoutSchedules() {
@@ -167,26 +342,62 @@ public final class ClusterRepairScheduler {
       return keyspacesDeleted;
     }
 
-    private Set<String> keyspacesThatHaveSchedules(AppContext context, Cluster cluster) {
+    private static Set<String> keyspacesThatHaveSchedules(AppContext context, Cluster cluster) {
       Collection<RepairSchedule> currentSchedules = context.storage.getRepairSchedulesForCluster(cluster.getName());
       return currentSchedules
           .stream()
           .map(repairSchedule -> context.storage.getRepairUnit(repairSchedule.getRepairUnitId()).getKeyspaceName())
           .collect(Collectors.toSet());
     }
+  }
 
-    private Set<String> keyspacesInCluster(AppContext context, Cluster cluster) throws ReaperException {
-      JmxProxy jmxProxy =
-          context.jmxConnectionFactory.connectAny(
-              cluster, context.config.getJmxConnectionTimeoutInSeconds());
+  /**
+   * The keyspaces of a cluster as of a given schema version, and when they were last compared with all its schedules.
+   */
+  private static final class KnownSchema {
+
+    private final String version;
+    private final ImmutableSet<String> keyspaces;
+    private final ImmutableSet<String> keyspacesWithoutTables;
+    private final long fullyComparedAtMillis;
+
+    KnownSchema(
+        String version,
+        Set<String> keyspaces,
+        Set<String> keyspacesWithoutTables,
+        long fullyComparedAtMillis) {
+
+      this.version = version;
+      this.keyspaces = ImmutableSet.copyOf(keyspaces);
+      this.keyspacesWithoutTables = ImmutableSet.copyOf(keyspacesWithoutTables);
+      this.fullyComparedAtMillis = fullyComparedAtMillis;
+    }
 
-      List<String> keyspaces = jmxProxy.getKeyspaces();
-      if (keyspaces.isEmpty()) {
-        String message = format("No keyspace found in cluster %s", cluster.getName());
-        LOG.debug(message);
-        throw new IllegalArgumentException(message);
-      }
-      return Sets.newHashSet(keyspaces);
+    boolean hasVersion(String schemaVersion) {
+      return null != version && version.equals(schemaVersion);
+    }
+
+    /**
+     * Schedules can be deleted, from the API or by another instance, without the schema changing.
+     */
+    boolean isFullComparisonDue() {
+      return DateTime.now().getMillis() - fullyComparedAtMillis >= FULL_COMPARISON_INTERVAL_MILLIS;
+    }
+  }
+
+  private static final class Placeable {
+
+    private final String keyspace;
+    private final Optional<RepairSchedule> schedule;
+    private final long duration;
+    // the latest offset of a new keyspace, the current one of an existing schedule
+    private final long offset;
+
+    Placeable(String keyspace, Optional<RepairSchedule> schedule, long duration, long offset) {
+      this.keyspace = keyspace;
+      this.schedule = schedule;
+      this.duration = duration;
+      this.offset = offset;
     }
   }
 }
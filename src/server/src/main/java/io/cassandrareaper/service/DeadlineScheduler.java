@@ -0,0 +1,189 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.AppContext;
+import io.cassandrareaper.ReaperApplicationConfiguration.DeadlineSchedulingConfiguration;
+import io.cassandrareaper.core.RepairRun;
+import io.cassandrareaper.core.RepairSchedule;
+import io.cassandrareaper.core.RepairUnit;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Admits due repair schedules earliest-deadline-first under a per-cluster budget of concurrent runs.
+ *
+ * <p>A repair unit must be repaired again within gc_grace of its last successful repair. The latest time a run can
+ * start and still meet that deadline is the deadline minus the run's estimated duration, and the slack is what is left
+ * until then. Slack is exposed per repair unit as a gauge, a negative slack means the unit is falling behind.
+ */
+final class DeadlineScheduler {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DeadlineScheduler.class);
+
+  private final AppContext context;
+  private final long gcGraceMillis;
+  private final int maxConcurrentRunsPerCluster;
+  private final ConcurrentMap<UUID, Deadline> deadlines = Maps.newConcurrentMap();
+  private final ConcurrentMap<UUID, String> slackGauges = Maps.newConcurrentMap();
+
+  DeadlineScheduler(AppContext context, DeadlineSchedulingConfiguration config) {
+    this.context = context;
+    this.gcGraceMillis = config.getGcGrace().toMillis();
+    this.maxConcurrentRunsPerCluster = config.getMaxConcurrentRunsPerCluster();
+  }
+
+  /**
+   * Recomputes the deadlines of the given schedules, keeping the slack gauges up to date.
+   *
+   * <p>The deadlines and gauges of the repair units no longer having an active schedule, deleted or paused, are
+   * dropped.
+   */
+  void update(Collection<RepairSchedule> schedules) {
+    Set<UUID> activeUnits = schedules.stream()
+        .filter(schedule -> RepairSchedule.State.ACTIVE == schedule.getState())
+        .map(RepairSchedule::getRepairUnitId)
+        .collect(Collectors.toSet());
+
+    Sets.newHashSet(deadlines.keySet())
+        .stream()
+        .filter(unitId -> !activeUnits.contains(unitId))
+        .forEach(this::forget);
+
+    schedules.stream()
+        .filter(schedule -> RepairSchedule.State.ACTIVE == schedule.getState())
+        .forEach(this::deadline);
+  }
+
+  /**
+   * Orders the due schedules by deadline and returns the ones that fit in their cluster's budget of concurrent runs.
+   */
+  List<RepairSchedule> admit(Collection<RepairSchedule> dueSchedules) {
+    Map<UUID, Deadline> due = Maps.newHashMap();
+    dueSchedules.forEach(schedule -> due.put(schedule.getId(), deadline(schedule)));
+
+    Map<String, Long> runningByCluster = context.storage.getRepairRunsWithState(RepairRun.RunState.RUNNING)
+        .stream()
+        .collect(Collectors.groupingBy(RepairRun::getClusterName, Collectors.counting()));
+
+    List<RepairSchedule> admitted = Lists.newArrayList();
+    dueSchedules.stream()
+        .sorted(Comparator.comparing(schedule -> due.get(schedule.getId()).latestStart))
+        .forEach(schedule -> {
+          Deadline deadline = due.get(schedule.getId());
+          long running = runningByCluster.getOrDefault(deadline.clusterName, 0L);
+          if (running < maxConcurrentRunsPerCluster) {
+            runningByCluster.put(deadline.clusterName, running + 1);
+            admitted.add(schedule);
+          } else {
+            LOG.info(
+                "deferring schedule {}, cluster {} already runs {} repairs (slack {}s)",
+                schedule.getId(),
+                deadline.clusterName,
+                running,
+                deadline.slackSeconds(DateTime.now()));
+          }
+        });
+    return admitted;
+  }
+
+  private Deadline deadline(RepairSchedule schedule) {
+    RepairUnit unit = context.storage.getRepairUnit(schedule.getRepairUnitId());
+    Deadline deadline = Deadline.of(
+        unit.getClusterName(),
+        context.storage.getRepairRunsForUnit(unit.getId()),
+        schedule.getCreationTime(),
+        gcGraceMillis);
+
+    if (null == deadlines.put(unit.getId(), deadline)) {
+      String name = MetricRegistry.name(
+          DeadlineScheduler.class,
+          "slack",
+          unit.getClusterName().replaceAll("[^A-Za-z0-9]", ""),
+          unit.getKeyspaceName(),
+          unit.getId().toString());
+
+      if (!context.metricRegistry.getGauges().containsKey(name)) {
+        context.metricRegistry.register(
+            name,
+            (Gauge<Long>) () -> deadlines.getOrDefault(unit.getId(), deadline).slackSeconds(DateTime.now()));
+        slackGauges.put(unit.getId(), name);
+      }
+    }
+    return deadline;
+  }
+
+  private void forget(UUID unitId) {
+    deadlines.remove(unitId);
+    String gauge = slackGauges.remove(unitId);
+    if (null != gauge) {
+      context.metricRegistry.remove(gauge);
+    }
+  }
+
+  @VisibleForTesting
+  static final class Deadline {
+
+    final String clusterName;
+    final DateTime deadline;
+    final DateTime latestStart;
+
+    private Deadline(String clusterName, DateTime deadline, long estimatedDurationMillis) {
+      this.clusterName = clusterName;
+      this.deadline = deadline;
+      this.latestStart = deadline.minus(estimatedDurationMillis);
+    }
+
+    /**
+     * @param runs the repair unit's runs
+     * @param since when the unit's data started needing repair, used if it never had a successful repair
+     */
+    static Deadline of(String clusterName, Collection<RepairRun> runs, DateTime since, long gcGraceMillis) {
+      DateTime lastRepair = runs.stream()
+          .filter(run -> RepairRun.RunState.DONE == run.getRunState())
+          .map(RepairRun::getEndTime)
+          .filter(Objects::nonNull)
+          .max(Comparator.naturalOrder())
+          .orElse(since);
+
+      return new Deadline(
+          clusterName,
+          lastRepair.plus(gcGraceMillis),
+          RepairRunService.estimateDurationMillis(runs).orElse(0L));
+    }
+
+    long slackSeconds(DateTime now) {
+      return (latestStart.getMillis() - now.getMillis()) / 1000;
+    }
+  }
+}
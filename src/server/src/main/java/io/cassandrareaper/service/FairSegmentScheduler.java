@@ -0,0 +1,210 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+/**
+ * Queues the segments of all repair runs in front of the repair manager's executor and hands them to it in deficit
+ * round robin order, so that a cluster submitting many short segments can't starve the runs of another one.
+ *
+ * <p>Clusters share the running slots equally. Within a cluster, runs get a share of its slots proportional to their
+ * intensity. At most {@code maxRunning} segments are handed to the executor at once, the others waiting in their run's
+ * queue. Clusters holding all the threads their bulkhead allows are skipped until one of their segments or runners
+ * is done.
+ */
+final class FairSegmentScheduler {
+
+  private static final double MIN_WEIGHT = 0.01;
+
+  private final ListeningExecutorService executor;
+  private final int maxRunning;
+  private final ClusterBulkheads bulkheads;
+
+  private final DeficitRoundRobin<String> clusters = new DeficitRoundRobin<>();
+  private final Map<String, DeficitRoundRobin<UUID>> runsByCluster = Maps.newHashMap();
+  private final Map<UUID, Deque<Task>> tasksByRun = Maps.newHashMap();
+  private final Map<String, Integer> queuedByCluster = Maps.newHashMap();
+  private int running;
+
+  FairSegmentScheduler(ListeningExecutorService executor, int maxRunning, ClusterBulkheads bulkheads) {
+    this.executor = executor;
+    this.maxRunning = maxRunning;
+    this.bulkheads = bulkheads;
+  }
+
+  /**
+   * Queues the segment runner behind the other segments of its run.
+   *
+   * @param weight the run's share of its cluster's slots, relative to the other runs of the cluster
+   * @return a future completed when the runner has run
+   */
+  ListenableFuture<?> submit(String clusterName, UUID runId, double weight, Runnable runner) {
+    SettableFuture<Object> result = SettableFuture.create();
+    synchronized (this) {
+      clusters.activate(clusterName, 1);
+      runsByCluster.computeIfAbsent(clusterName, name -> new DeficitRoundRobin<>())
+          .activate(runId, Math.max(MIN_WEIGHT, weight));
+      tasksByRun.computeIfAbsent(runId, id -> new ArrayDeque<>()).add(new Task(clusterName, runner, result));
+      queuedByCluster.merge(clusterName, 1, Integer::sum);
+    }
+    dispatch();
+    return result;
+  }
+
+  synchronized int getQueuedSegments(String clusterName) {
+    return queuedByCluster.getOrDefault(clusterName, 0);
+  }
+
+  /**
+   * Hands queued segments to the executor while there are free slots.
+   */
+  void dispatch() {
+    Task task;
+    while (null != (task = nextTask())) {
+      Task dispatched = task;
+      ListenableFuture<?> future;
+      try {
+        future = executor.submit(dispatched.runner);
+      } catch (RejectedExecutionException e) {
+        synchronized (this) {
+          --running;
+        }
+        bulkheads.release(dispatched.clusterName);
+        dispatched.result.setException(e);
+        continue;
+      }
+      future.addListener(
+          () -> {
+            synchronized (this) {
+              --running;
+            }
+            bulkheads.release(dispatched.clusterName);
+            dispatched.result.setFuture(future);
+            dispatch();
+          },
+          MoreExecutors.directExecutor());
+    }
+  }
+
+  private synchronized Task nextTask() {
+    if (running >= maxRunning) {
+      return null;
+    }
+    String clusterName = clusters.next(bulkheads::hasCapacity);
+    if (null == clusterName || !bulkheads.tryAcquire(clusterName)) {
+      return null;
+    }
+    DeficitRoundRobin<UUID> runs = runsByCluster.get(clusterName);
+    UUID runId = runs.next(run -> true);
+
+    Deque<Task> tasks = tasksByRun.get(runId);
+    final Task task = tasks.poll();
+    if (tasks.isEmpty()) {
+      tasksByRun.remove(runId);
+      runs.deactivate(runId);
+      if (runs.isEmpty()) {
+        runsByCluster.remove(clusterName);
+        clusters.deactivate(clusterName);
+      }
+    }
+    queuedByCluster.merge(clusterName, -1, Integer::sum);
+    ++running;
+    return task;
+  }
+
+  private static final class Task {
+
+    private final String clusterName;
+    private final Runnable runner;
+    private final SettableFuture<Object> result;
+
+    private Task(String clusterName, Runnable runner, SettableFuture<Object> result) {
+      this.clusterName = clusterName;
+      this.runner = runner;
+      this.result = result;
+    }
+  }
+
+  /**
+   * Deficit round robin over keys that each cost one per item served: visiting a key credits it its weight, and it is
+   * served while its credit covers an item before the next key is visited.
+   */
+  private static final class DeficitRoundRobin<K> {
+
+    private final Deque<K> active = new ArrayDeque<>();
+    private final Map<K, Double> weights = Maps.newHashMap();
+    private final Map<K, Double> deficits = Maps.newHashMap();
+    private boolean credited;
+
+    void activate(K key, double weight) {
+      if (null == weights.put(key, weight)) {
+        deficits.put(key, 0.0);
+        active.addLast(key);
+      }
+    }
+
+    void deactivate(K key) {
+      if (key.equals(active.peekFirst())) {
+        credited = false;
+      }
+      active.remove(key);
+      weights.remove(key);
+      deficits.remove(key);
+    }
+
+    boolean isEmpty() {
+      return active.isEmpty();
+    }
+
+    /**
+     * @return the eligible key to serve an item of, charging it for the item, or null if no key is eligible
+     */
+    K next(Predicate<K> eligible) {
+      if (active.stream().noneMatch(eligible)) {
+        return null;
+      }
+      while (true) {
+        K key = active.peekFirst();
+        if (!eligible.test(key)) {
+          active.addLast(active.pollFirst());
+          credited = false;
+          continue;
+        }
+        if (!credited) {
+          deficits.merge(key, weights.get(key), Double::sum);
+          credited = true;
+        }
+        if (1 <= deficits.get(key)) {
+          deficits.merge(key, -1.0, Double::sum);
+          return key;
+        }
+        active.addLast(active.pollFirst());
+        credited = false;
+      }
+    }
+  }
+}
@@ -19,14 +19,27 @@ import io.cassandrareaper.ReaperApplicationConfiguration;
 import io.cassandrareaper.ReaperException;
 import io.cassandrareaper.core.Node;
 import io.cassandrareaper.core.NodeMetrics;
+import io.cassandrareaper.core.RepairRun;
 import io.cassandrareaper.jmx.JmxProxy;
 import io.cassandrareaper.storage.IDistributedStorage;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import javax.management.JMException;
 
@@ -35,25 +48,58 @@ import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
 final class Heart implements AutoCloseable {
 
-  private static final AtomicBoolean GAUGES_REGISTERED = new AtomicBoolean(false);
   private static final Logger LOG = LoggerFactory.getLogger(Heart.class);
   private static final long DEFAULT_MAX_FREQUENCY = TimeUnit.SECONDS.toMillis(10);
+  // while metric requests keep coming, they are looked for at this interval rather than on each beat only
+  private static final long RELAY_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(1);
+  private static final long RELAY_QUIET_MILLIS = TimeUnit.MINUTES.toMillis(1);
+  // metrics of the nodes requested from this instance are refreshed ahead of the next requests for a while
+  private static final long PREFETCH_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+  private static final long PREFETCH_EXPIRY_MILLIS = TimeUnit.MINUTES.toMillis(10);
+  // storage reads and JMX calls of a refresh, which all block, run on at most this many threads
+  private static final int MAX_CONCURRENT_CALLS = 16;
 
   private final AtomicLong lastBeat = new AtomicLong(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(1));
-  private final ForkJoinPool forkJoinPool = new ForkJoinPool(64);
   private final AppContext context;
   private final long maxBeatFrequencyMillis;
   private final AtomicBoolean updatingNodeMetrics = new AtomicBoolean(false);
+  private final ScheduledThreadPoolExecutor refresher;
+  private final ThreadPoolExecutor calls;
+  private final AtomicBoolean relayScheduled = new AtomicBoolean(false);
+  private final AtomicLong lastRequestAnswered = new AtomicLong(0);
+  private final Map<Pair<UUID, String>, ServedNode> servedNodes = Maps.newConcurrentMap();
+  private final Set<Pair<String, String>> fetchingHosts = Sets.newConcurrentHashSet();
+  private final AtomicBoolean gaugesRegistered = new AtomicBoolean(false);
+  private volatile Set<UUID> runningRunIds = Collections.emptySet();
 
   private Heart(AppContext context, long maxBeatFrequency) {
     this.context = context;
     this.maxBeatFrequencyMillis = maxBeatFrequency;
+
+    this.refresher = new ScheduledThreadPoolExecutor(
+        1,
+        new ThreadFactoryBuilder().setNameFormat("NodeMetricsRefresh-%d").setDaemon(true).build());
+    this.refresher.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+
+    this.calls = new ThreadPoolExecutor(
+        MAX_CONCURRENT_CALLS,
+        MAX_CONCURRENT_CALLS,
+        1,
+        TimeUnit.MINUTES,
+        new LinkedBlockingQueue<>(),
+        new ThreadFactoryBuilder().setNameFormat("NodeMetricsCall-%d").setDaemon(true).build());
+    this.calls.allowCoreThreadTimeOut(true);
   }
 
   static Heart create(AppContext context) {
@@ -73,6 +119,12 @@ final class Heart implements AutoCloseable {
       ((IDistributedStorage) context.storage).saveHeartbeat();
 
       if (ReaperApplicationConfiguration.DatacenterAvailability.EACH == context.config.getDatacenterAvailability()) {
+        // requests can come for runs that other instances process, as each run is processed by a single instance
+        runningRunIds = context.storage.getRepairRunsWithState(RepairRun.RunState.RUNNING)
+            .stream()
+            .map(RepairRun::getId)
+            .collect(Collectors.toSet());
+
         updateRequestedNodeMetrics();
       }
     }
@@ -85,103 +137,215 @@ final class Heart implements AutoCloseable {
   @Override
   public void close() {
     try {
-      forkJoinPool.shutdown();
-      forkJoinPool.awaitTermination(10, TimeUnit.SECONDS);
+      refresher.shutdown();
+      refresher.awaitTermination(10, TimeUnit.SECONDS);
+      calls.shutdown();
+      calls.awaitTermination(10, TimeUnit.SECONDS);
     } catch (InterruptedException ignore) {
     } finally {
-      forkJoinPool.shutdownNow();
+      refresher.shutdownNow();
+      calls.shutdownNow();
     }
   }
 
+  /**
+   * Answers the requests for node metrics that instances of other datacenters stored for the running repair runs, and
+   * refreshes the metrics of the nodes recently requested from this instance ahead of their next request.
+   *
+   * <p>Requests are looked for on each beat, and at a short interval for as long as they keep coming.
+   */
   private void updateRequestedNodeMetrics() {
     Preconditions.checkArgument(context.storage instanceof IDistributedStorage);
-    IDistributedStorage storage = ((IDistributedStorage) context.storage);
     registerGauges();
 
     if (!updatingNodeMetrics.getAndSet(true)) {
-      int jmxTimeoutSeconds = context.config.getJmxConnectionTimeoutInSeconds();
-
-      forkJoinPool.submit(() -> {
-        try (Timer.Context t0 = timer(context, "updatingNodeMetrics")) {
-
-          forkJoinPool.submit(() -> {
-            context.repairManager.repairRunners.keySet()
-                .parallelStream()
-                .forEach(runId -> {
-
-                  storage.getNodeMetrics(runId)
-                      .parallelStream()
-                      .filter(nodeMetrics -> nodeMetrics.isRequested())
-                      .forEach(req -> {
-
-                        LOG.info("Got metric request for node {} in {}", req.getNode(), req.getCluster());
-                        try (Timer.Context t1 = timer(
-                            context,
-                            req.getCluster().replace('.', '-'),
-                            req.getNode().replace('.', '-'))) {
-
-                          try {
-                            JmxProxy nodeProxy
-                                = context.jmxConnectionFactory.connect(
-                                   Node.builder().withClusterName(req.getCluster()).withHostname(req.getNode()).build(),
-                                   jmxTimeoutSeconds);
-
-                            storage.storeNodeMetrics(
-                                runId,
-                                NodeMetrics.builder()
-                                    .withNode(req.getNode())
-                                    .withCluster(req.getCluster())
-                                    .withDatacenter(req.getDatacenter())
-                                    .withPendingCompactions(nodeProxy.getPendingCompactions())
-                                    .withHasRepairRunning(nodeProxy.isRepairRunning())
-                                    .withActiveAnticompactions(0) // for future use
-                                    .build());
-
-                            LOG.info("Responded to metric request for node {}", req.getNode());
-                          } catch (ReaperException | RuntimeException | InterruptedException ex) {
-                            LOG.debug("failed seed connection in cluster " + req.getCluster(), ex);
-                          } catch (JMException e) {
-                            LOG.warn(
-                                "failed querying JMX MBean for metrics on node {} of cluster {} due to {}",
-                                req.getNode(), req.getCluster(), e.getMessage());
-                          }
-                        }
-                      });
-                });
-          }).get();
-
-        } catch (ExecutionException | InterruptedException | RuntimeException ex) {
-          LOG.warn("failed updateAllReachableNodeMetrics submission", ex);
-        } finally {
-          assert updatingNodeMetrics.get();
-          updatingNodeMetrics.set(false);
+      try {
+        refresher.execute(this::refreshNodeMetrics);
+      } catch (RejectedExecutionException ex) {
+        LOG.debug("not refreshing node metrics while closing", ex);
+        updatingNodeMetrics.set(false);
+      }
+    }
+  }
+
+  /**
+   * Fans the storage reads and the JMX calls of the refresh out to the bounded pool of calls, fetching the metrics of
+   * each host once whatever the number of runs that requested them, and gives up on the calls still running once the
+   * refresh is past its deadline.
+   */
+  private void refreshNodeMetrics() {
+    IDistributedStorage storage = ((IDistributedStorage) context.storage);
+    int jmxTimeoutSeconds = context.config.getJmxConnectionTimeoutInSeconds();
+    long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(jmxTimeoutSeconds);
+
+    try (Timer.Context t0 = timer(context, "updatingNodeMetrics")) {
+      List<Future<Collection<NodeMetrics>>> reads = Lists.newArrayList();
+      List<UUID> runIds = Lists.newArrayList(Sets.union(context.repairManager.repairRunners.keySet(), runningRunIds));
+      for (UUID runId : runIds) {
+        reads.add(calls.submit(() -> storage.getNodeMetrics(runId)));
+      }
+
+      // the runs that want the metrics of each host
+      Map<Pair<String, String>, List<Pair<UUID, NodeMetrics>>> requestsByHost = Maps.newHashMap();
+      for (int i = 0; i < reads.size(); i++) {
+        UUID runId = runIds.get(i);
+        for (NodeMetrics req : await(reads.get(i), deadline, Collections.emptyList())) {
+          if (req.isRequested()) {
+            LOG.info("Got metric request for node {} in {}", req.getNode(), req.getCluster());
+            long now = System.currentTimeMillis();
+            lastRequestAnswered.set(now);
+            servedNodes.put(Pair.of(runId, req.getNode()), new ServedNode(runId, req, now));
+            requestsByHost.computeIfAbsent(hostOf(req), host -> Lists.newArrayList()).add(Pair.of(runId, req));
+          }
+        }
+      }
+
+      long now = System.currentTimeMillis();
+      servedNodes.values().removeIf(served -> served.requestedAt + PREFETCH_EXPIRY_MILLIS < now);
+      servedNodes.values()
+          .stream()
+          .filter(served -> served.refreshedAt + PREFETCH_INTERVAL_MILLIS <= now)
+          .forEach(served -> requestsByHost
+              .computeIfAbsent(hostOf(served.request), host -> Lists.newArrayList())
+              .add(Pair.of(served.runId, served.request)));
+
+      List<Future<?>> fetches = Lists.newArrayList();
+      requestsByHost.forEach((host, requests) -> {
+        // a host whose fetch of a previous refresh is still running is left to it
+        if (fetchingHosts.add(host)) {
+          fetches.add(calls.submit(() -> {
+            try {
+              respond(storage, requests, jmxTimeoutSeconds);
+            } finally {
+              fetchingHosts.remove(host);
+            }
+          }));
         }
       });
+      fetches.forEach(fetch -> await(fetch, deadline, null));
+    } catch (RuntimeException ex) {
+      LOG.warn("failed updateAllReachableNodeMetrics submission", ex);
+    } finally {
+      assert updatingNodeMetrics.get();
+      updatingNodeMetrics.set(false);
+      scheduleRelay();
+    }
+  }
+
+  private <T> T await(Future<T> future, long deadline, T orElse) {
+    try {
+      return future.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+    } catch (TimeoutException ex) {
+      LOG.debug("node metrics refresh went past its deadline", ex);
+      context.metricRegistry.meter(MetricRegistry.name(Heart.class, "nodeMetrics", "deadlineExceeded")).mark();
+      future.cancel(true);
+    } catch (ExecutionException ex) {
+      LOG.warn("failed refreshing node metrics", ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+    return orElse;
+  }
+
+  private void scheduleRelay() {
+    if (lastRequestAnswered.get() + RELAY_QUIET_MILLIS > System.currentTimeMillis()
+        && !relayScheduled.getAndSet(true)) {
+      try {
+        refresher.schedule(
+            () -> {
+              relayScheduled.set(false);
+              updateRequestedNodeMetrics();
+            },
+            RELAY_INTERVAL_MILLIS,
+            TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException ignore) {
+        // closing
+      }
     }
   }
 
+  /**
+   * Fetches the metrics of a host once over JMX, and stores them for each of the runs that wanted them.
+   */
+  private void respond(IDistributedStorage storage, List<Pair<UUID, NodeMetrics>> requests, int jmxTimeoutSeconds) {
+    NodeMetrics req = requests.get(0).getRight();
+    try (Timer.Context t1 = timer(context, req.getCluster().replace('.', '-'), req.getNode().replace('.', '-'))) {
+      try {
+        JmxProxy nodeProxy
+            = context.jmxConnectionFactory.connect(
+               Node.builder().withClusterName(req.getCluster()).withHostname(req.getNode()).build(),
+               jmxTimeoutSeconds);
+
+        NodeMetrics metrics = NodeMetrics.builder()
+            .withNode(req.getNode())
+            .withCluster(req.getCluster())
+            .withDatacenter(req.getDatacenter())
+            .withPendingCompactions(nodeProxy.getPendingCompactions())
+            .withHasRepairRunning(nodeProxy.isRepairRunning())
+            .withActiveAnticompactions(0) // for future use
+            .build();
+
+        long now = System.currentTimeMillis();
+        for (Pair<UUID, NodeMetrics> request : requests) {
+          storage.storeNodeMetrics(request.getLeft(), metrics);
+          ServedNode served = servedNodes.get(Pair.of(request.getLeft(), req.getNode()));
+          if (null != served) {
+            served.refreshedAt = now;
+          }
+        }
+        LOG.info("Responded to metric request for node {}", req.getNode());
+      } catch (ReaperException | RuntimeException | InterruptedException ex) {
+        LOG.debug("failed seed connection in cluster " + req.getCluster(), ex);
+      } catch (JMException e) {
+        LOG.warn(
+            "failed querying JMX MBean for metrics on node {} of cluster {} due to {}",
+            req.getNode(), req.getCluster(), e.getMessage());
+      }
+    }
+  }
+
+  private static Pair<String, String> hostOf(NodeMetrics metrics) {
+    return Pair.of(metrics.getCluster(), metrics.getNode());
+  }
+
   private static Timer.Context timer(AppContext context, String... names) {
     return context.metricRegistry.timer(MetricRegistry.name(Heart.class, names)).time();
   }
 
-  private void registerGauges() throws IllegalArgumentException {
-    if (!GAUGES_REGISTERED.getAndSet(true)) {
+  /**
+   * Registers the gauges of this heart's pools, replacing those of any previous heart.
+   */
+  private void registerGauges() {
+    if (!gaugesRegistered.getAndSet(true)) {
+      registerGauge("activeCallCount", calls::getActiveCount);
+      registerGauge("queuedCallCount", () -> calls.getQueue().size());
+      registerGauge("fetchingHostCount", fetchingHosts::size);
+      registerGauge("servedNodeCount", servedNodes::size);
+    }
+  }
 
-      context.metricRegistry.register(
-          MetricRegistry.name(Heart.class, "runningThreadCount"),
-          (Gauge<Integer>) () -> forkJoinPool.getRunningThreadCount());
+  private void registerGauge(String name, Gauge<Integer> gauge) {
+    String metricName = MetricRegistry.name(Heart.class, "nodeMetrics", name);
+    context.metricRegistry.remove(metricName);
+    try {
+      context.metricRegistry.register(metricName, gauge);
+    } catch (IllegalArgumentException ex) {
+      LOG.debug("Gauge {} was registered concurrently", metricName, ex);
+    }
+  }
 
-      context.metricRegistry.register(
-          MetricRegistry.name(Heart.class, "activeThreadCount"),
-          (Gauge<Integer>) () -> forkJoinPool.getActiveThreadCount());
+  private static final class ServedNode {
 
-      context.metricRegistry.register(
-          MetricRegistry.name(Heart.class, "queuedTaskCount"),
-          (Gauge<Long>) () -> forkJoinPool.getQueuedTaskCount());
+    private final UUID runId;
+    private final NodeMetrics request;
+    private final long requestedAt;
+    private volatile long refreshedAt;
 
-      context.metricRegistry.register(
-          MetricRegistry.name(Heart.class, "queuedSubmissionCount"),
-          (Gauge<Integer>) () -> forkJoinPool.getQueuedSubmissionCount());
+    private ServedNode(UUID runId, NodeMetrics request, long requestedAt) {
+      this.runId = runId;
+      this.request = request;
+      this.requestedAt = requestedAt;
+      this.refreshedAt = requestedAt;
     }
   }
 }
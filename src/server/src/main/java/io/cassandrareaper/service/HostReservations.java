@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+/**
+ * The hosts of each cluster that are busy repairing a segment, shared by all the repair runs of this Reaper instance.
+ *
+ * <p>A segment reserves all its replicas at once before its repair is triggered, and releases them when it is done, so
+ * runs on different keyspaces interleave on disjoint replicas instead of discovering each other through JMX.
+ */
+public final class HostReservations {
+
+  private final Map<String, Map<String, UUID>> ownersByCluster = Maps.newHashMap();
+
+  /**
+   * Reserves all the hosts for the owner, or none of them if any is already reserved by someone else.
+   *
+   * @return true if the owner now holds all the hosts
+   */
+  synchronized boolean reserve(String clusterName, UUID ownerId, Collection<String> hosts) {
+    Map<String, UUID> owners = ownersByCluster.computeIfAbsent(clusterName, name -> Maps.newHashMap());
+    for (String host : hosts) {
+      UUID owner = owners.get(host);
+      if (null != owner && !ownerId.equals(owner)) {
+        return false;
+      }
+    }
+    hosts.forEach(host -> owners.put(host, ownerId));
+    return true;
+  }
+
+  synchronized void release(String clusterName, UUID ownerId) {
+    Map<String, UUID> owners = ownersByCluster.get(clusterName);
+    if (null != owners) {
+      owners.values().removeIf(ownerId::equals);
+      if (owners.isEmpty()) {
+        ownersByCluster.remove(clusterName);
+      }
+    }
+  }
+
+  synchronized Set<String> getReservedHosts(String clusterName) {
+    return ImmutableSet.copyOf(ownersByCluster.getOrDefault(clusterName, Collections.emptyMap()).keySet());
+  }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import org.joda.time.DateTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares the running repair runs between the Reaper instances of a distributed storage by consistent hashing.
+ *
+ * <p>Each live instance, as told by the heartbeats of the running reapers, takes a number of points on a hash ring and
+ * owns the runs hashing right before them. An instance whose last heartbeat is older than the takeover timeout leaves
+ * the ring, so its runs are taken over by the others, and joining or leaving only moves the runs of the arcs gained or
+ * lost.
+ */
+final class InstanceRing {
+
+  private static final Logger LOG = LoggerFactory.getLogger(InstanceRing.class);
+  private static final HashFunction HASH = Hashing.murmur3_128();
+  private static final int POINTS_PER_INSTANCE = 64;
+
+  private final UUID self;
+  private final long takeoverTimeoutMillis;
+  private volatile Set<UUID> instances;
+  private volatile NavigableMap<Long, UUID> ring;
+
+  InstanceRing(UUID self, long takeoverTimeoutMillis) {
+    this.self = self;
+    this.takeoverTimeoutMillis = takeoverTimeoutMillis;
+    this.instances = Collections.singleton(self);
+    this.ring = ring(instances);
+  }
+
+  /**
+   * Rebuilds the ring from the last heartbeat of each running reaper, this instance being always part of it.
+   *
+   * @return true if instances joined or left the ring
+   */
+  synchronized boolean update(Map<UUID, DateTime> heartbeats, long nowMillis) {
+    Set<UUID> live = heartbeats.entrySet()
+        .stream()
+        .filter(heartbeat -> null != heartbeat.getValue())
+        .filter(heartbeat -> nowMillis - heartbeat.getValue().getMillis() <= takeoverTimeoutMillis)
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toCollection(TreeSet::new));
+
+    live.add(self);
+    if (live.equals(instances)) {
+      return false;
+    }
+    LOG.info("Reaper instances changed from {} to {}, rebalancing repair runs", instances, live);
+    instances = Collections.unmodifiableSet(live);
+    ring = ring(live);
+    return true;
+  }
+
+  boolean owns(UUID runId) {
+    return self.equals(ownerOf(runId));
+  }
+
+  UUID ownerOf(UUID runId) {
+    NavigableMap<Long, UUID> points = ring;
+    Map.Entry<Long, UUID> point = points.ceilingEntry(hash(runId.toString()));
+    return (null != point ? point : points.firstEntry()).getValue();
+  }
+
+  Set<UUID> getInstances() {
+    return instances;
+  }
+
+  private static NavigableMap<Long, UUID> ring(Set<UUID> instances) {
+    NavigableMap<Long, UUID> points = new TreeMap<>();
+    for (UUID instance : instances) {
+      for (int i = 0; i < POINTS_PER_INSTANCE; i++) {
+        points.put(hash(instance + ":" + i), instance);
+      }
+    }
+    return points;
+  }
+
+  private static long hash(String key) {
+    return HASH.hashString(key, StandardCharsets.UTF_8).asLong();
+  }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.AppContext;
+import io.cassandrareaper.ReaperApplicationConfiguration.AdaptiveIntensityConfiguration;
+import io.cassandrareaper.ReaperException;
+import io.cassandrareaper.core.DroppedMessages;
+import io.cassandrareaper.core.MetricsHistogram;
+import io.cassandrareaper.core.Node;
+import io.cassandrareaper.core.ThreadPoolStat;
+
+import java.util.Collection;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.JMException;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Adapts the pace of a repair run to the load of the replicas it repairs, additive increase and multiplicative
+ * decrease.
+ *
+ * <p>After each segment its replicas are sampled. If any of them is above one of the configured limits the run's speed
+ * is halved, if all of them are below half of every limit the speed grows by a quarter, otherwise it is kept. The delay
+ * between segments that the run's intensity asks for is divided by the speed, and below a speed of one the run's
+ * parallelism shrinks with it. Pending compactions back off at half of maxPendingCompactions, so the controller slows
+ * repairs down before segments start being postponed.
+ */
+final class IntensityController {
+
+  private static final Logger LOG = LoggerFactory.getLogger(IntensityController.class);
+
+  private static final double MIN_SPEED = 1.0 / 16;
+  private static final double ADDITIVE_INCREASE = 0.25;
+  private static final double MULTIPLICATIVE_DECREASE = 0.5;
+
+  private final AdaptiveIntensityConfiguration config;
+  private final int maxPendingCompactions;
+  private final int maxParallelism;
+  private double speed = 1;
+
+  IntensityController(AdaptiveIntensityConfiguration config, int maxPendingCompactions, int maxParallelism) {
+    this.config = config;
+    this.maxPendingCompactions = maxPendingCompactions;
+    this.maxParallelism = maxParallelism;
+  }
+
+  /**
+   * Adjusts the speed to the pressure of the replicas of the last repaired segment.
+   */
+  synchronized void observe(Pressure pressure) {
+    double ratio = pressure.ratioToLimits(config, maxPendingCompactions);
+    double previous = speed;
+    if (1 < ratio) {
+      speed = Math.max(MIN_SPEED, speed * MULTIPLICATIVE_DECREASE);
+    } else if (ratio <= 0.5) {
+      speed = Math.min(config.getMaxSpeedup(), speed + ADDITIVE_INCREASE);
+    }
+    if (previous != speed) {
+      LOG.info("Repair speed changed from {} to {}, replicas at {} of their limits", previous, speed, ratio);
+    }
+  }
+
+  synchronized double getSpeed() {
+    return speed;
+  }
+
+  /**
+   * @return the delay before the next segment, given the one the run's intensity asks for
+   */
+  long delayMillis(long intensityDelayMillis) {
+    return (long) (intensityDelayMillis / getSpeed());
+  }
+
+  int allowedParallelism() {
+    return (int) Math.max(1, Math.ceil(maxParallelism * Math.min(1, getSpeed())));
+  }
+
+  @VisibleForTesting
+  static final class Pressure {
+
+    final int pendingCompactions;
+    final int pendingValidations;
+    final double droppedMessagesRate;
+    final double clientRequestP99Micros;
+
+    Pressure(
+        int pendingCompactions,
+        int pendingValidations,
+        double droppedMessagesRate,
+        double clientRequestP99Micros) {
+
+      this.pendingCompactions = pendingCompactions;
+      this.pendingValidations = pendingValidations;
+      this.droppedMessagesRate = droppedMessagesRate;
+      this.clientRequestP99Micros = clientRequestP99Micros;
+    }
+
+    /**
+     * @return the highest of the signals relative to its limit, above 1 when a limit is exceeded
+     */
+    double ratioToLimits(AdaptiveIntensityConfiguration config, int maxPendingCompactions) {
+      double maxP99Micros = TimeUnit.MILLISECONDS.toMicros(config.getMaxClientRequestP99().toMillis());
+      return Math.max(
+          Math.max(
+              pendingCompactions / Math.max(1, maxPendingCompactions / 2.0),
+              pendingValidations / (double) Math.max(1, config.getMaxPendingValidations())),
+          Math.max(
+              ratio(droppedMessagesRate, config.getMaxDroppedMessagesRate()),
+              ratio(clientRequestP99Micros, maxP99Micros)));
+    }
+
+    /**
+     * @return the value relative to the limit, a limit of 0 being exceeded by any positive value
+     */
+    private static double ratio(double value, double limit) {
+      if (0 < limit) {
+        return value / limit;
+      }
+      return 0 < value ? Double.POSITIVE_INFINITY : 0;
+    }
+
+    /**
+     * Reads the load of the replicas, keeping the highest value of each signal.
+     *
+     * @return nothing if none of the replicas could be read
+     */
+    static Optional<Pressure> sample(AppContext context, String clusterName, Collection<String> replicas) {
+      MetricsGrabber grabber = MetricsGrabber.create(context);
+      Pressure pressure = null;
+      for (String replica : replicas) {
+        Node node = Node.builder().withClusterName(clusterName).withHostname(replica).build();
+        try {
+          int pendingCompactions = context.jmxConnectionFactory
+              .connect(node, context.config.getJmxConnectionTimeoutInSeconds())
+              .getPendingCompactions();
+
+          int pendingValidations = grabber.getTpStats(node).stream()
+              .filter(stat -> "ValidationExecutor".equals(stat.getName()))
+              .map(ThreadPoolStat::getPendingTasks)
+              .filter(pending -> null != pending)
+              .mapToInt(Integer::intValue)
+              .sum();
+
+          double droppedMessagesRate = grabber.getDroppedMessages(node).stream()
+              .map(DroppedMessages::getOneMinuteRate)
+              .filter(rate -> null != rate)
+              .mapToDouble(Double::doubleValue)
+              .sum();
+
+          double clientRequestP99Micros = grabber.getClientRequestLatencies(node).stream()
+              .filter(histogram -> "Latency".equals(histogram.getType()))
+              .map(MetricsHistogram::getP99)
+              .filter(p99 -> null != p99)
+              .mapToDouble(Double::doubleValue)
+              .max()
+              .orElse(0);
+
+          Pressure replicaPressure
+              = new Pressure(pendingCompactions, pendingValidations, droppedMessagesRate, clientRequestP99Micros);
+
+          pressure = null == pressure ? replicaPressure : pressure.max(replicaPressure);
+        } catch (ReaperException | JMException | RuntimeException e) {
+          LOG.debug("Failed reading the load of replica {}", replica, e);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          LOG.debug("Interrupted while reading the load of replica {}", replica, e);
+          break;
+        }
+      }
+      return Optional.ofNullable(pressure);
+    }
+
+    private Pressure max(Pressure other) {
+      return new Pressure(
+          Math.max(pendingCompactions, other.pendingCompactions),
+          Math.max(pendingValidations, other.pendingValidations),
+          Math.max(droppedMessagesRate, other.droppedMessagesRate),
+          Math.max(clientRequestP99Micros, other.clientRequestP99Micros));
+    }
+  }
+}
@@ -0,0 +1,146 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.core.RepairSegment;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Groups the segments of a repair run in waves of segments that share no replica, so they can be repaired at the same
+ * time without any of them being postponed because a replica is already busy.
+ *
+ * <p>Segments conflict when their replica sets intersect. Waves are colors of that conflict graph, assigned greedily in
+ * token order: each segment goes in the first wave none of whose replicas it uses. A segment whose replicas can't be
+ * resolved from the ring conflicts with every other segment.
+ */
+final class ParallelRepairPlan {
+
+  private final Map<UUID, Set<String>> replicasBySegment;
+  private final List<List<UUID>> waves;
+
+  private ParallelRepairPlan(Map<UUID, Set<String>> replicasBySegment, List<List<UUID>> waves) {
+    this.replicasBySegment = replicasBySegment;
+    this.waves = waves;
+  }
+
+  static ParallelRepairPlan create(
+      Collection<RepairSegment> segments,
+      Map<List<String>, List<String>> rangeToEndpoint) {
+
+
+    List<Map.Entry<RingRange, Set<String>>> ranges = Lists.newArrayList();
+    Set<String> allEndpoints = Sets.newHashSet();
+    rangeToEndpoint.forEach((range, endpoints) -> {
+      RingRange ringRange = new RingRange(range.toArray(new String[range.size()]));
+      ranges.add(Maps.immutableEntry(ringRange, ImmutableSet.copyOf(endpoints)));
+      allEndpoints.addAll(endpoints);
+    });
+    RingRangeIndex<Map.Entry<RingRange, Set<String>>> ring = RingRangeIndex.of(ranges, Map.Entry::getKey);
+
+    List<RepairSegment> sorted = Lists.newArrayList(segments);
+    sorted.sort(Comparator.comparing(segment -> segment.getTokenRange().getBaseRange().getStart()));
+
+    Map<UUID, Set<String>> replicasBySegment = Maps.newHashMap();
+    List<List<UUID>> waves = Lists.newArrayList();
+    List<Set<String>> hostsByWave = Lists.newArrayList();
+    for (RepairSegment segment : sorted) {
+      Set<String> replicas = replicasOf(segment, ring).orElse(allEndpoints);
+      replicasBySegment.put(segment.getId(), ImmutableSet.copyOf(replicas));
+
+      int wave = 0;
+      while (wave < waves.size() && !Collections.disjoint(hostsByWave.get(wave), replicas)) {
+        ++wave;
+      }
+      if (wave == waves.size()) {
+        waves.add(Lists.newArrayList());
+        hostsByWave.add(Sets.newHashSet());
+      }
+      waves.get(wave).add(segment.getId());
+      hostsByWave.get(wave).addAll(replicas);
+    }
+
+    List<List<UUID>> immutableWaves = Lists.newArrayList();
+    waves.forEach(wave -> immutableWaves.add(ImmutableList.copyOf(wave)));
+    return new ParallelRepairPlan(replicasBySegment, ImmutableList.copyOf(immutableWaves));
+  }
+
+  /**
+   * @return the size of the largest wave, the most segments that can be repaired at once
+   */
+  int getParallelism() {
+    return Math.max(1, waves.stream().mapToInt(List::size).max().orElse(1));
+  }
+
+  int getWaveCount() {
+    return waves.size();
+  }
+
+  /**
+   * @return true if all the segments are planned, false if some were added to the run since
+   */
+  boolean covers(Collection<UUID> segmentIds) {
+    return replicasBySegment.keySet().containsAll(segmentIds);
+  }
+
+  Set<String> getReplicas(UUID segmentId) {
+    return replicasBySegment.getOrDefault(segmentId, Collections.emptySet());
+  }
+
+  /**
+   * Picks, in wave order, the first of the free segments that shares no replica with the busy hosts.
+   */
+  Optional<UUID> nextSegment(Set<UUID> freeSegments, Set<String> busyHosts) {
+    for (List<UUID> wave : waves) {
+      for (UUID segmentId : wave) {
+        if (freeSegments.contains(segmentId) && Collections.disjoint(replicasBySegment.get(segmentId), busyHosts)) {
+          return Optional.of(segmentId);
+        }
+      }
+    }
+    return Optional.empty();
+  }
+
+  private static Optional<Set<String>> replicasOf(
+      RepairSegment segment,
+      RingRangeIndex<Map.Entry<RingRange, Set<String>>> ring) {
+
+    if (0 == ring.size()) {
+      return Optional.empty();
+    }
+    Set<String> replicas = Sets.newHashSet();
+    for (RingRange tokenRange : segment.getTokenRange().getTokenRanges()) {
+      List<Map.Entry<RingRange, Set<String>>> enclosing = ring.enclosing(tokenRange);
+      if (enclosing.isEmpty()) {
+        return Optional.empty();
+      }
+      replicas.addAll(enclosing.get(0).getValue());
+    }
+    return Optional.of(replicas);
+  }
+}
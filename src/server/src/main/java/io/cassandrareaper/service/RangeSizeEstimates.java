@@ -0,0 +1,103 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Estimates how much data token ranges hold, from the tokens of keys sampled on the nodes.
+ *
+ * <p>Cassandra samples keys at regular intervals of its index summaries, so each sampled token stands for about the
+ * same number of partitions, and the number of samples in a range is proportional to the number of partitions it
+ * holds.
+ */
+final class RangeSizeEstimates {
+
+  private final List<BigInteger> samples;
+
+  RangeSizeEstimates(Collection<BigInteger> sampledTokens) {
+    samples = Lists.newArrayList(sampledTokens);
+    Collections.sort(samples);
+  }
+
+  int total() {
+    return samples.size();
+  }
+
+  /**
+   * @return the number of samples in the range, all of them if the range covers the whole ring
+   */
+  int count(RingRange range) {
+    int start = countUpTo(range.getStart());
+    int end = countUpTo(range.getEnd());
+    return range.isWrapping() ? samples.size() - start + end : end - start;
+  }
+
+  /**
+   * Cuts a range in up to {@code parts} subranges holding about the same number of samples. Subranges without samples
+   * are not cut further, so fewer parts come out of a range with few samples.
+   *
+   * @return the tokens ending each subrange but the last, in ring order
+   */
+  List<BigInteger> cuts(RingRange range, int parts) {
+    List<BigInteger> inRange = samplesIn(range);
+    List<BigInteger> cuts = Lists.newArrayList();
+    for (int part = 1; part < parts; part++) {
+      int index = part * inRange.size() / parts - 1;
+      if (index < 0) {
+        continue;
+      }
+      BigInteger cut = inRange.get(index);
+      boolean duplicate = !cuts.isEmpty() && cuts.get(cuts.size() - 1).equals(cut);
+      if (!duplicate && !cut.equals(range.getStart()) && !cut.equals(range.getEnd())) {
+        cuts.add(cut);
+      }
+    }
+    return cuts;
+  }
+
+  private List<BigInteger> samplesIn(RingRange range) {
+    int start = countUpTo(range.getStart());
+    int end = countUpTo(range.getEnd());
+    if (!range.isWrapping()) {
+      return samples.subList(start, end);
+    }
+    List<BigInteger> inRange = Lists.newArrayList(samples.subList(start, samples.size()));
+    inRange.addAll(samples.subList(0, end));
+    return inRange;
+  }
+
+  /**
+   * @return the number of samples lower than or equal to the token
+   */
+  private int countUpTo(BigInteger token) {
+    int low = 0;
+    int high = samples.size();
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (SegmentGenerator.lowerThanOrEqual(samples.get(middle), token)) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+}
@@ -15,6 +15,7 @@
 package io.cassandrareaper.service;
 
 import io.cassandrareaper.AppContext;
+import io.cassandrareaper.ReaperApplicationConfiguration.DatacenterAvailability;
 import io.cassandrareaper.ReaperException;
 import io.cassandrareaper.core.Node;
 import io.cassandrareaper.core.RepairRun;
@@ -30,9 +31,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+import com.codahale.metrics.Gauge;
 import com.codahale.metrics.InstrumentedScheduledExecutorService;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
@@ -55,6 +58,9 @@ public final class RepairManager implements AutoCloseable {
   private final AppContext context;
   private final Heart heart;
   private final ListeningScheduledExecutorService executor;
+  private final ClusterBulkheads bulkheads;
+  private final FairSegmentScheduler segmentScheduler;
+  private final InstanceRing instances;
   private final long repairTimeoutMillis;
   private final long retryDelayMillis;
 
@@ -73,6 +79,20 @@ public final class RepairManager implements AutoCloseable {
 
     this.executor = MoreExecutors.listeningDecorator(
         new InstrumentedScheduledExecutorService(executor, context.metricRegistry));
+
+    this.bulkheads = new ClusterBulkheads(
+        null != context.config ? context.config.getMaxThreadsPerCluster() : 0,
+        context.metricRegistry);
+
+    // segments hold their thread until their repair is done, so at most one runs per thread of the pool
+    this.segmentScheduler = new FairSegmentScheduler(
+        this.executor,
+        executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getCorePoolSize() : Integer.MAX_VALUE,
+        bulkheads);
+
+    this.instances = new InstanceRing(
+        AppContext.REAPER_INSTANCE_ID,
+        TimeUnit.SECONDS.toMillis(null != context.config ? context.config.getInstanceTakeoverTimeoutInSeconds() : 60));
   }
 
   public static RepairManager create(
@@ -96,7 +116,11 @@ public final class RepairManager implements AutoCloseable {
   public void resumeRunningRepairRuns() throws ReaperException {
     try {
       heart.beat();
-      Collection<RepairRun> runningRepairRuns = context.storage.getRepairRunsWithState(RepairRun.RunState.RUNNING);
+      updateInstances();
+      Collection<RepairRun> runningRepairRuns = context.storage.getRepairRunsWithState(RepairRun.RunState.RUNNING)
+          .stream()
+          .filter(repairRun -> ownsRun(repairRun.getId()))
+          .collect(Collectors.toList());
       Collection<RepairRun> pausedRepairRuns = context.storage.getRepairRunsWithState(RepairRun.RunState.PAUSED);
       abortAllRunningSegmentsWithNoLeader(runningRepairRuns);
       abortAllRunningSegmentsInKnownPausedRepairRuns(pausedRepairRuns);
@@ -107,6 +131,28 @@ public final class RepairManager implements AutoCloseable {
     }
   }
 
+  private void updateInstances() {
+    if (context.storage instanceof IDistributedStorage) {
+      instances.update(((IDistributedStorage) context.storage).getRunningReapers(), System.currentTimeMillis());
+    }
+  }
+
+  /**
+   * @return true if this Reaper instance is the one to process the run, which is always the case unless several
+   *     instances share a distributed storage with datacenterAvailability ALL. With LOCAL or EACH every instance
+   *     processes the segments its datacenter can reach, so runs are not partitioned.
+   */
+  boolean ownsRun(UUID runId) {
+    return !partitionsRuns(context) || instances.owns(runId);
+  }
+
+  /**
+   * @return true if each running repair run is processed by a single one of the Reaper instances
+   */
+  static boolean partitionsRuns(AppContext context) {
+    return null == context.config || DatacenterAvailability.ALL == context.config.getDatacenterAvailability();
+  }
+
   private void abortAllRunningSegmentsWithNoLeader(Collection<RepairRun> runningRepairRuns) throws ReaperException {
     runningRepairRuns
         .forEach((repairRun) -> {
@@ -121,9 +167,7 @@ public final class RepairManager implements AutoCloseable {
     for (RepairRun repairRun : runningRepairRuns) {
       if (!repairRunners.containsKey(repairRun.getId())) {
         LOG.info("Restarting run id {} that has no runner", repairRun.getId());
-        // it may be that this repair is already "running" actively on other reaper instances
-        //  nonetheless we need to make it actively running on this reaper instance as well
-        //   so to help in running the queued segments
+        // the run hashes to this reaper instance, which takes it over from any instance that ran it before
         startRepairRun(repairRun);
       }
     }
@@ -298,8 +342,8 @@ public final class RepairManager implements AutoCloseable {
       try {
         RepairRunner newRunner = new RepairRunner(context, runId);
         repairRunners.put(runId, newRunner);
-        executor.submit(newRunner);
-      } catch (ReaperException e) {
+        executor.submit(() -> runInBulkhead(newRunner));
+      } catch (ReaperException | RuntimeException e) {
         LOG.warn("Failed to schedule repair for repair run #" + runId, e);
       }
     } else {
@@ -335,11 +379,47 @@ public final class RepairManager implements AutoCloseable {
   }
 
   void scheduleRetry(RepairRunner runner) {
-    executor.schedule(runner, retryDelayMillis, TimeUnit.MILLISECONDS);
+    executor.schedule(() -> runInBulkhead(runner), retryDelayMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Runs the repair runner within its cluster's bulkhead, or reschedules it if the cluster holds all its threads.
+   */
+  private void runInBulkhead(RepairRunner runner) {
+    String clusterName = runner.getClusterName();
+    if (!bulkheads.tryAcquire(clusterName)) {
+      LOG.debug("Cluster {} holds all its threads, rescheduling run {}", clusterName, runner.getRepairRunId());
+      scheduleRetry(runner);
+      return;
+    }
+    try {
+      runner.run();
+    } finally {
+      bulkheads.release(clusterName);
+      segmentScheduler.dispatch();
+    }
   }
 
-  ListenableFuture<?> submitSegment(SegmentRunner runner) {
-    return executor.submit(runner);
+  /**
+   * Queues the segment runner, segments being handed to the executor fairly between clusters and between the runs of
+   * a cluster.
+   *
+   * @param weight the run's share of its cluster's segment slots, relative to the other runs of the cluster
+   */
+  ListenableFuture<?> submitSegment(String clusterName, UUID runId, double weight, SegmentRunner runner) {
+    String metricName
+        = MetricRegistry.name(RepairManager.class, "queuedSegments", clusterName.replaceAll("[^A-Za-z0-9]", ""));
+
+    if (!context.metricRegistry.getGauges().containsKey(metricName)) {
+      try {
+        context.metricRegistry.register(
+            metricName,
+            (Gauge<Integer>) () -> segmentScheduler.getQueuedSegments(clusterName));
+      } catch (IllegalArgumentException e) {
+        LOG.trace("Gauge {} was registered concurrently", metricName, e);
+      }
+    }
+    return segmentScheduler.submit(clusterName, runId, weight, runner);
   }
 
   void removeRunner(RepairRunner runner) {
@@ -26,11 +26,14 @@ import io.cassandrareaper.jmx.JmxProxy;
 
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.OptionalDouble;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
@@ -55,6 +58,7 @@ public final class RepairRunService {
   public static final int DEFAULT_SEGMENT_COUNT_PER_NODE = 16;
 
   private static final Logger LOG = LoggerFactory.getLogger(RepairRunService.class);
+  private static final int RUNS_IN_DURATION_ESTIMATE = 5;
 
   private final AppContext context;
 
@@ -167,21 +171,47 @@ public final class RepairRunService {
       Map<List<String>, List<RingRange>> replicasToRange = buildReplicasToRangeMap(rangeToEndpoint);
       String cassandraVersion = jmxProxy.getCassandraVersion();
 
+      String fingerprint = SegmentPlanCache.fingerprint(
+          targetCluster.getPartitioner(),
+          tokens,
+          rangeToEndpoint,
+          cassandraVersion,
+          repairUnit,
+          segmentCount,
+          segmentCountPerNode,
+          context.config.getSegmentsByDataSize());
+
+      Optional<List<Segment>> plan = context.segmentPlans.get(fingerprint);
+      if (plan.isPresent()) {
+        LOG.debug("Reusing {} segments generated for the same ring of cluster {}",
+            plan.get().size(), targetCluster.getName());
+        return plan.get();
+      }
+
       int globalSegmentCount = segmentCount;
       if (globalSegmentCount == 0) {
         globalSegmentCount = computeGlobalSegmentCount(segmentCountPerNode, endpointToRange);
       }
 
-      segments =
-          filterSegmentsByNodes(
-              sg.generateSegments(
-                  globalSegmentCount,
-                  tokens,
-                  repairUnit.getIncrementalRepair(),
-                  replicasToRange,
-                  cassandraVersion),
-              repairUnit,
-              endpointToRange);
+      List<Segment> generatedSegments = context.config.getSegmentsByDataSize()
+          ? sg.generateSegments(
+              globalSegmentCount,
+              tokens,
+              repairUnit.getIncrementalRepair(),
+              replicasToRange,
+              cassandraVersion,
+              estimateRangeSizes(targetCluster, endpointToRange.keySet()))
+          : sg.generateSegments(
+              globalSegmentCount,
+              tokens,
+              repairUnit.getIncrementalRepair(),
+              replicasToRange,
+              cassandraVersion);
+
+      segments = filterSegmentsByNodes(generatedSegments, repairUnit, endpointToRange);
+      if (!segments.isEmpty()) {
+        context.segmentPlans.put(fingerprint, segments);
+      }
 
     } catch (ReaperException e) {
       LOG.warn("couldn't connect to any host: {}, life sucks...", seedHosts, e);
@@ -195,6 +225,30 @@ public final class RepairRunService {
     return segments;
   }
 
+  /**
+   * Samples the keys of every node, so that ranges are estimated from all their reachable replicas.
+   */
+  private RangeSizeEstimates estimateRangeSizes(Cluster cluster, Collection<String> endpoints) {
+    List<BigInteger> sampledTokens = Lists.newArrayList();
+    for (String endpoint : endpoints) {
+      Node node = Node.builder().withClusterName(cluster.getName()).withHostname(endpoint).build();
+      try {
+        sampledTokens.addAll(
+            context.jmxConnectionFactory
+                .connect(node, context.config.getJmxConnectionTimeoutInSeconds())
+                .getSampledKeyTokens());
+      } catch (ReaperException e) {
+        LOG.warn("Failed sampling the keys of {}, its ranges are estimated from their other replicas", endpoint, e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        LOG.warn("Interrupted while sampling the keys of {}", endpoint, e);
+        break;
+      }
+    }
+    LOG.debug("Sampled {} key tokens in cluster {}", sampledTokens.size(), cluster.getName());
+    return new RangeSizeEstimates(sampledTokens);
+  }
+
   static int computeGlobalSegmentCount(
       int segmentCountPerNode,
       Map<String, List<RingRange>> endpointToRange) {
@@ -204,6 +258,23 @@ public final class RepairRunService {
         * (segmentCountPerNode != 0 ? segmentCountPerNode : DEFAULT_SEGMENT_COUNT_PER_NODE);
   }
 
+  /**
+   * Estimates how long a repair run will take from the most recent successful runs of the same repair unit.
+   *
+   * @return the average duration in milliseconds, or empty if none of the runs was successful
+   */
+  static Optional<Long> estimateDurationMillis(Collection<RepairRun> runs) {
+    OptionalDouble average = runs.stream()
+        .filter(run -> RepairRun.RunState.DONE == run.getRunState())
+        .filter(run -> null != run.getStartTime() && null != run.getEndTime())
+        .sorted(Comparator.comparing(RepairRun::getEndTime).reversed())
+        .limit(RUNS_IN_DURATION_ESTIMATE)
+        .mapToLong(run -> run.getEndTime().getMillis() - run.getStartTime().getMillis())
+        .average();
+
+    return average.isPresent() ? Optional.of((long) average.getAsDouble()) : Optional.empty();
+  }
+
   static List<Segment> filterSegmentsByNodes(
       List<Segment> segments,
       RepairUnit repairUnit,
@@ -213,22 +284,16 @@ public final class RepairRunService {
     if (repairUnit.getNodes().isEmpty()) {
       return segments;
     } else {
+      List<RingRange> nodeRanges = Lists.newArrayList();
+      for (Entry<String, List<RingRange>> entry : endpointToRange.entrySet()) {
+        if (repairUnit.getNodes().contains(entry.getKey())) {
+          nodeRanges.addAll(entry.getValue());
+        }
+      }
+      RingRangeIndex<RingRange> index = RingRangeIndex.of(nodeRanges, range -> range);
       return segments
           .stream()
-          .filter(
-              segment -> {
-                RingRange firstRange = segment.getBaseRange();
-                for (Entry<String, List<RingRange>> entry : endpointToRange.entrySet()) {
-                  if (repairUnit.getNodes().contains(entry.getKey())) {
-                    for (RingRange range : entry.getValue()) {
-                      if (range.encloses(firstRange)) {
-                        return true;
-                      }
-                    }
-                  }
-                }
-                return false;
-              })
+          .filter(segment -> !index.enclosing(segment.getBaseRange()).isEmpty())
           .collect(Collectors.toList());
     }
   }
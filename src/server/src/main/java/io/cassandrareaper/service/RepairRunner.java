@@ -24,9 +24,9 @@ import io.cassandrareaper.core.Segment;
 import io.cassandrareaper.jmx.EndpointSnitchInfoProxy;
 import io.cassandrareaper.jmx.JmxProxy;
 
+import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -38,8 +38,9 @@ import java.util.stream.Collectors;
 
 import com.codahale.metrics.Gauge;
 import com.codahale.metrics.MetricRegistry;
-import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -53,14 +54,23 @@ final class RepairRunner implements Runnable {
 
   private static final Logger LOG = LoggerFactory.getLogger(RepairRunner.class);
 
+  private static final int SPLIT_PARTS = 4;
+  // a segment of the generated ring is cut in at most SPLIT_PARTS ^ MAX_SPLIT_DEPTH segments
+  private static final int MAX_SPLIT_DEPTH = 2;
+
   private final AppContext context;
   private final UUID repairRunId;
   private final String clusterName;
+  private final String partitioner;
   private JmxProxy jmxConnection;
   private final AtomicReferenceArray<UUID> currentlyRunningSegments;
-  private final List<RingRange> parallelRanges;
+  private final Map<List<String>, List<String>> rangeToEndpoint;
+  private volatile ParallelRepairPlan plan;
+  private final Optional<IntensityController> intensityController;
+  private final Optional<SegmentDurations> segmentDurations;
   private final String metricNameForMillisSinceLastRepairPerKeyspace;
   private final String metricNameForMillisSinceLastRepair;
+  private final List<String> gaugeNames = Lists.newArrayList();
   private float repairProgress;
   private float segmentsDone;
   private float segmentsTotal;
@@ -75,33 +85,46 @@ final class RepairRunner implements Runnable {
     assert cluster.isPresent() : "No Cluster with name " + repairRun.get().getClusterName() + " found from storage";
     RepairUnit repairUnitOpt = context.storage.getRepairUnit(repairRun.get().getRepairUnitId());
     this.clusterName = cluster.get().getName();
+    this.partitioner = cluster.get().getPartitioner();
 
     JmxProxy jmx = this.context.jmxConnectionFactory
         .connectAny(cluster.get(), context.config.getJmxConnectionTimeoutInSeconds());
 
     String keyspace = repairUnitOpt.getKeyspaceName();
-    int parallelRepairs
-        = getPossibleParallelRepairsCount(jmx.getRangeToEndpointMap(keyspace), jmx.getEndpointToHostId());
+    rangeToEndpoint = jmx.getRangeToEndpointMap(keyspace);
+    int parallelRepairs = getPossibleParallelRepairsCount(rangeToEndpoint, jmx.getEndpointToHostId());
+
+    plan = createPlan();
+    // segments of a wave share no replica, so a larger wave is the most that can run without postponing each other
+    parallelRepairs = Math.min(parallelRepairs, plan.getParallelism());
 
     if (repairUnitOpt.getIncrementalRepair()) {
       // with incremental repair, can't have more parallel repairs than nodes
       // Same goes for local mode
       parallelRepairs = 1;
     }
+    LOG.debug(
+        "Repair run {} has {} waves of segments, running {} in parallel",
+        repairRunId,
+        plan.getWaveCount(),
+        parallelRepairs);
+
+    intensityController = context.config.getAdaptiveIntensity().isEnabled()
+        ? Optional.of(new IntensityController(
+            context.config.getAdaptiveIntensity(),
+            context.config.getMaxPendingCompactions(),
+            parallelRepairs))
+        : Optional.empty();
+
+    segmentDurations = context.config.useAdaptiveSegmentTimeouts() || 0 < context.config.getSplitSegmentsAfterFailures()
+        ? Optional.of(SegmentDurations.fromPastRuns(context.storage, repairUnitOpt.getId()))
+        : Optional.empty();
+
     currentlyRunningSegments = new AtomicReferenceArray(parallelRepairs);
     for (int i = 0; i < parallelRepairs; i++) {
       currentlyRunningSegments.set(i, null);
     }
 
-    Collection<RepairSegment> repairSegments = context.storage.getRepairSegmentsForRun(repairRunId);
-
-    parallelRanges =
-        getParallelRanges(
-            parallelRepairs,
-            Lists.newArrayList(
-                Collections2.transform(
-                    repairSegments, segment -> segment.getTokenRange().getBaseRange())));
-
     String repairUnitClusterName = repairUnitOpt.getClusterName();
     String repairUnitKeyspaceName = repairUnitOpt.getKeyspaceName();
 
@@ -111,8 +134,8 @@ final class RepairRunner implements Runnable {
 
     String metricNameForRepairProgress = metricName("repairProgress", repairUnitClusterName, repairRunId);
 
-    context.metricRegistry.register(metricNameForRepairProgressPerKeyspace, (Gauge<Float>) ()  -> repairProgress);
-    context.metricRegistry.register(metricNameForRepairProgress, (Gauge<Float>) ()  -> repairProgress);
+    registerGauge(metricNameForRepairProgressPerKeyspace, (Gauge<Float>) ()  -> repairProgress);
+    registerGauge(metricNameForRepairProgress, (Gauge<Float>) ()  -> repairProgress);
 
     metricNameForMillisSinceLastRepairPerKeyspace
         = metricName("millisSinceLastRepair", repairUnitClusterName, repairUnitKeyspaceName, repairRunId);
@@ -124,22 +147,82 @@ final class RepairRunner implements Runnable {
 
     String metricNameForDoneSegments = metricName("segmentsDone", repairUnitClusterName, repairRunId);
 
-    context.metricRegistry.register(metricNameForDoneSegmentsPerKeyspace, (Gauge<Float>) ()  -> segmentsDone);
-    context.metricRegistry.register(metricNameForDoneSegments, (Gauge<Integer>) ()  -> (int)segmentsDone);
+    registerGauge(metricNameForDoneSegmentsPerKeyspace, (Gauge<Float>) ()  -> segmentsDone);
+    registerGauge(metricNameForDoneSegments, (Gauge<Integer>) ()  -> (int)segmentsDone);
 
     String metricNameForTotalSegmentsPerKeyspace
         = metricName("segmentsTotal", repairUnitClusterName, repairUnitKeyspaceName, repairRunId);
 
     String metricNameForTotalSegments = metricName("segmentsTotal", repairUnitClusterName, repairRunId);
 
-    context.metricRegistry.register(metricNameForTotalSegmentsPerKeyspace, (Gauge<Integer>) ()  -> (int)segmentsTotal);
-    context.metricRegistry.register(metricNameForTotalSegments, (Gauge<Float>) ()  -> segmentsTotal);
+    registerGauge(metricNameForTotalSegmentsPerKeyspace, (Gauge<Integer>) ()  -> (int)segmentsTotal);
+    registerGauge(metricNameForTotalSegments, (Gauge<Float>) ()  -> segmentsTotal);
+
+    registerGauge(
+        metricName("parallelRepairs", repairUnitClusterName, repairRunId),
+        (Gauge<Integer>) () -> currentlyRunningSegments.length());
+
+    registerGauge(
+        metricName("repairWaves", repairUnitClusterName, repairRunId),
+        (Gauge<Integer>) () -> plan.getWaveCount());
+
+    if (segmentDurations.isPresent()) {
+      Set<Pair<BigInteger, BigInteger>> outliers = segmentDurations.get().outliers();
+      if (!outliers.isEmpty()) {
+        LOG.warn(
+            "Token ranges {} of keyspace {} repeatedly took much longer to repair than the others",
+            outliers,
+            repairUnitKeyspaceName);
+      }
+      registerGauge(
+          metricName("slowTokenRanges", repairUnitClusterName, repairUnitKeyspaceName, repairRunId),
+          (Gauge<Integer>) () -> outliers.size());
+    }
+
+    if (intensityController.isPresent()) {
+      registerGauge(
+          metricName("repairSpeed", repairUnitClusterName, repairRunId),
+          (Gauge<Double>) () -> intensityController.get().getSpeed());
+
+      registerGauge(
+          metricName("allowedParallelRepairs", repairUnitClusterName, repairRunId),
+          (Gauge<Integer>) () -> intensityController.get().allowedParallelism());
+    }
+  }
+
+  /**
+   * Registers a gauge of the run, replacing the one of an earlier runner of the same run, as runs handed over to
+   * another Reaper instance can come back to this one.
+   */
+  private void registerGauge(String name, Gauge<?> gauge) {
+    context.metricRegistry.remove(name);
+    context.metricRegistry.register(name, gauge);
+    gaugeNames.add(name);
   }
 
   UUID getRepairRunId() {
     return repairRunId;
   }
 
+  String getClusterName() {
+    return clusterName;
+  }
+
+  private ParallelRepairPlan createPlan() {
+    Collection<RepairSegment> repairSegments = context.storage.getRepairSegmentsForRun(repairRunId).stream()
+        .filter(segment -> RepairSegment.State.SUPERSEDED != segment.getState())
+        .collect(Collectors.toList());
+
+    return ParallelRepairPlan.create(repairSegments, rangeToEndpoint);
+  }
+
+  /**
+   * @return the controller adapting the run's pace to the load of its replicas, if adaptive intensity is enabled
+   */
+  Optional<IntensityController> getIntensityController() {
+    return intensityController;
+  }
+
   static int getPossibleParallelRepairsCount(
       Map<List<String>, List<String>> ranges,
       Map<String, String> hostsInRing) throws ReaperException {
@@ -160,34 +243,6 @@ final class RepairRunner implements Runnable {
         Math.max(1, hostsInRing.keySet().size() / ranges.values().iterator().next().size()));
   }
 
-  static List<RingRange> getParallelRanges(int parallelRepairs, List<RingRange> segments)
-      throws ReaperException {
-
-    if (parallelRepairs == 0) {
-      String msg = "Can't repair anything with 0 threads";
-      LOG.error(msg);
-      throw new ReaperException(msg);
-    }
-
-    Collections.sort(segments, RingRange.START_COMPARATOR);
-
-    List<RingRange> parallelRanges = Lists.newArrayList();
-    for (int i = 0; i < parallelRepairs - 1; i++) {
-      parallelRanges.add(
-          new RingRange(
-              segments.get(i * segments.size() / parallelRepairs).getStart(),
-              segments.get((i + 1) * segments.size() / parallelRepairs).getStart()));
-    }
-    parallelRanges.add(
-        new RingRange(
-            segments.get((parallelRepairs - 1) * segments.size() / parallelRepairs).getStart(),
-            segments.get(0).getStart()));
-
-    LOG.debug("Parallel ranges : {}", parallelRanges);
-
-    return parallelRanges;
-  }
-
   /**
    * Starts/resumes a repair run that is supposed to run.
    */
@@ -211,6 +266,12 @@ final class RepairRunner implements Runnable {
           start();
           break;
         case RUNNING:
+          if (!context.repairManager.ownsRun(repairRunId)) {
+            LOG.info("Repair run {} now belongs to another Reaper instance, handing it over", repairRunId);
+            gaugeNames.forEach(context.metricRegistry::remove);
+            context.repairManager.removeRunner(this);
+            return;
+          }
           startNextSegment();
           // We're updating the node list of the cluster at the start of each new run.
           // Helps keeping up with topology changes.
@@ -319,14 +380,18 @@ final class RepairRunner implements Runnable {
     // so that a rescheduling of this runner will happen.
     boolean repairStarted = false;
 
+    // replicas of the running segments of all runs on the cluster, which no newly started segment may share
+    Set<String> busyHosts = Sets.newHashSet(context.hostReservations.getReservedHosts(clusterName));
+    int running = 0;
     for (int rangeIndex = 0; rangeIndex < currentlyRunningSegments.length(); rangeIndex++) {
-
-      if (currentlyRunningSegments.get(rangeIndex) != null) {
+      UUID runningSegmentId = currentlyRunningSegments.get(rangeIndex);
+      if (runningSegmentId != null) {
         anythingRunningStill = true;
+        ++running;
+        busyHosts.addAll(plan.getReplicas(runningSegmentId));
 
         // Just checking that no currently running segment runner is stuck.
-        RepairSegment supposedlyRunningSegment
-            = context.storage.getRepairSegment(repairRunId, currentlyRunningSegments.get(rangeIndex)).get();
+        RepairSegment supposedlyRunningSegment = context.storage.getRepairSegment(repairRunId, runningSegmentId).get();
         DateTime startTime = supposedlyRunningSegment.getStartTime();
         if (startTime != null && startTime.isBefore(DateTime.now().minusDays(1))) {
           LOG.warn(
@@ -344,44 +409,61 @@ final class RepairRunner implements Runnable {
               supposedlyRunningSegment.getId(),
               supposedlyRunningSegment.getStartTime());
         }
+      }
+    }
+
+    Map<UUID, RepairSegment> freeSegments = Maps.newHashMap();
+    context.storage.getSegmentsWithState(repairRunId, RepairSegment.State.NOT_STARTED)
+        .forEach(segment -> freeSegments.put(segment.getId(), segment));
+
+    if (!plan.covers(freeSegments.keySet())) {
+      LOG.debug("Segments of repair run {} were split, planning them again", repairRunId);
+      plan = createPlan();
+    }
+
+    int allowedParallelism = intensityController
+        .map(IntensityController::allowedParallelism)
+        .orElse(currentlyRunningSegments.length());
+
+    for (int rangeIndex = 0; rangeIndex < currentlyRunningSegments.length(); rangeIndex++) {
+      if (currentlyRunningSegments.get(rangeIndex) != null) {
         // No need to try starting new repair for already active slot.
         continue;
       }
+      if (running >= allowedParallelism) {
+        LOG.debug("Not starting more segments, the replicas' load allows {} in parallel", allowedParallelism);
+        break;
+      }
 
       // We have an empty slot, so let's start new segment runner if possible.
-      LOG.info("Running segment for range {}", parallelRanges.get(rangeIndex));
-      Optional<RepairSegment> nextRepairSegment =
-          context.storage.getNextFreeSegmentInRange(
-              repairRunId, Optional.of(parallelRanges.get(rangeIndex)));
-
-      if (!nextRepairSegment.isPresent()) {
-        LOG.debug("No repair segment available for range {}", parallelRanges.get(rangeIndex));
+      Optional<UUID> nextSegmentId = plan.nextSegment(freeSegments.keySet(), busyHosts);
 
+      if (!nextSegmentId.isPresent()) {
+        LOG.debug("No repair segment available whose replicas aren't busy with {}", busyHosts);
+        break;
+      }
+      RepairSegment nextRepairSegment = freeSegments.remove(nextSegmentId.get());
+      LOG.info("Next segment to run : {}", nextRepairSegment.getId());
+      UUID segmentId = nextRepairSegment.getId();
+      boolean wasSet = currentlyRunningSegments.compareAndSet(rangeIndex, null, segmentId);
+      if (!wasSet) {
+        LOG.debug("Didn't set segment id `{}` to slot {} because it was busy", segmentId, rangeIndex);
       } else {
-        LOG.info("Next segment to run : {}", nextRepairSegment.get().getId());
-        UUID segmentId = nextRepairSegment.get().getId();
-        boolean wasSet = currentlyRunningSegments.compareAndSet(rangeIndex, null, segmentId);
-        if (!wasSet) {
-          LOG.debug("Didn't set segment id `{}` to slot {} because it was busy", segmentId, rangeIndex);
-        } else {
-          LOG.debug("Did set segment id `{}` to slot {}", segmentId, rangeIndex);
-          scheduleRetry =
-              repairSegment(
-                  rangeIndex,
-                  nextRepairSegment.get().getId(),
-                  nextRepairSegment.get().getTokenRange());
-          if (!scheduleRetry) {
-            break;
-          }
-          segmentsTotal = context.storage.getSegmentAmountForRepairRun(repairRunId);
-          repairStarted = true;
+        LOG.debug("Did set segment id `{}` to slot {}", segmentId, rangeIndex);
+        busyHosts.addAll(plan.getReplicas(segmentId));
+        ++running;
+        scheduleRetry = repairSegment(rangeIndex, segmentId, nextRepairSegment.getTokenRange());
+        if (!scheduleRetry) {
+          break;
         }
+        segmentsTotal = countSegmentsToRepair();
+        repairStarted = true;
       }
     }
 
     if (!repairStarted && !anythingRunningStill) {
       segmentsDone = context.storage.getSegmentAmountForRepairRunWithState(repairRunId, RepairSegment.State.DONE);
-      segmentsTotal = context.storage.getSegmentAmountForRepairRun(repairRunId);
+      segmentsTotal = countSegmentsToRepair();
 
       LOG.info("Repair amount done {}", segmentsDone);
       repairProgress = segmentsDone / segmentsTotal;
@@ -478,14 +560,18 @@ final class RepairRunner implements Runnable {
           context,
           segmentId,
           potentialCoordinators,
-          context.repairManager.getRepairTimeoutMillis(),
+          segmentDurations
+              .filter(durations -> context.config.useAdaptiveSegmentTimeouts())
+              .map(durations -> durations.timeoutMillis(segment, context.repairManager.getRepairTimeoutMillis()))
+              .orElse(context.repairManager.getRepairTimeoutMillis()),
           intensity,
           validationParallelism,
           clusterName,
           repairUnit,
           this);
 
-      ListenableFuture<?> segmentResult = context.repairManager.submitSegment(segmentRunner);
+      ListenableFuture<?> segmentResult
+          = context.repairManager.submitSegment(clusterName, repairRunId, intensity, segmentRunner);
       Futures.addCallback(
           segmentResult,
           new FutureCallback<Object>() {
@@ -551,6 +637,10 @@ final class RepairRunner implements Runnable {
           // Successful repair
           break;
 
+        case SUPERSEDED:
+          // Split in smaller segments, that will be repaired instead
+          break;
+
         default:
           // Another thread has started a new repair on this segment already
           // Or maybe the same repair segment id should never be re-run in which case this is an error
@@ -566,6 +656,82 @@ final class RepairRunner implements Runnable {
     }
   }
 
+  private int countSegmentsToRepair() {
+    return context.storage.getSegmentAmountForRepairRun(repairRunId)
+        - context.storage.getSegmentAmountForRepairRunWithState(repairRunId, RepairSegment.State.SUPERSEDED);
+  }
+
+  /**
+   * Replaces a segment by smaller segments of the same run if it failed too many times, or if its range's past
+   * durations predict that it would time out. The caller must hold the lead on the segment.
+   *
+   * @return true if the segment was superseded, and must not be repaired
+   */
+  boolean splitIfSlow(RepairSegment segment) {
+    int splitAfterFailures = context.config.getSplitSegmentsAfterFailures();
+    if (0 >= splitAfterFailures || RepairSegment.State.NOT_STARTED != segment.getState()) {
+      return false;
+    }
+    boolean failing = splitAfterFailures <= segment.getFailCount();
+    boolean slow = segmentDurations
+        .flatMap(durations -> durations.predictedMillis(segment.getTokenRange()))
+        .filter(predicted -> predicted > context.repairManager.getRepairTimeoutMillis())
+        .isPresent();
+
+    if (!failing && !slow) {
+      return false;
+    }
+    if (MAX_SPLIT_DEPTH <= splitDepth(segment)) {
+      LOG.debug("Segment {} of repair run {} can't be split further", segment.getId(), repairRunId);
+      return false;
+    }
+    List<Segment> subranges;
+    try {
+      subranges = new SegmentGenerator(partitioner).split(segment.getTokenRange(), SPLIT_PARTS);
+    } catch (ReaperException e) {
+      LOG.warn("Cannot split segment {} of repair run {}", segment.getId(), repairRunId, e);
+      return false;
+    }
+    if (subranges.size() < 2) {
+      return false;
+    }
+
+    synchronized (this) {
+      context.storage.addRepairSegments(
+          subranges.stream()
+              .map(subrange -> RepairSegment.builder(subrange, segment.getRepairUnitId()))
+              .collect(Collectors.toList()),
+          repairRunId);
+
+      context.storage.updateRepairSegment(
+          segment.with().withState(RepairSegment.State.SUPERSEDED).withId(segment.getId()).build());
+
+      RepairRun repairRun = context.storage.getRepairRun(repairRunId).get();
+      context.storage.updateRepairRun(
+          repairRun.with().segmentCount(repairRun.getSegmentCount() + subranges.size() - 1).build(repairRunId));
+    }
+    LOG.info(
+        "Split segment {} in {} segments, after {} failures{}",
+        segment.getId(),
+        subranges.size(),
+        segment.getFailCount(),
+        slow ? " and as its range is predicted to time out" : "");
+
+    context.metricRegistry.counter(metricName("segmentsSplit", clusterName, repairRunId)).inc();
+    return true;
+  }
+
+  /**
+   * @return how many times the range of the segment was split, counted from the superseded segments enclosing it
+   */
+  private int splitDepth(RepairSegment segment) {
+    RingRange range = segment.getTokenRange().getBaseRange();
+    return (int) context.storage.getSegmentsWithState(repairRunId, RepairSegment.State.SUPERSEDED).stream()
+        .map(parent -> parent.getTokenRange().getTokenRanges())
+        .filter(parentRanges -> parentRanges.stream().anyMatch(parentRange -> parentRange.encloses(range)))
+        .count();
+  }
+
   void updateLastEvent(String newEvent) {
     synchronized (this) {
       RepairRun repairRun = context.storage.getRepairRun(repairRunId).get();
@@ -91,6 +91,8 @@ public final class RepairScheduleService {
         .segmentCountPerNode(segmentCountPerNode)
         .owner(owner);
 
-    return context.storage.addRepairSchedule(scheduleBuilder);
+    RepairSchedule schedule = context.storage.addRepairSchedule(scheduleBuilder);
+    SchedulingManager.scheduleChanged(schedule);
+    return schedule;
   }
 }
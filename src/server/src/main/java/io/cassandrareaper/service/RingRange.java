@@ -36,14 +36,21 @@ public final class RingRange {
   private final BigInteger start;
   private final BigInteger end;
 
+  // Murmur3 tokens fit in a long, so comparisons between such ranges skip BigInteger
+  private final boolean longTokens;
+  private final long startLong;
+  private final long endLong;
+
   public RingRange(BigInteger start, BigInteger end) {
     this.start = start;
     this.end = end;
+    longTokens = start.bitLength() < Long.SIZE && end.bitLength() < Long.SIZE;
+    startLong = longTokens ? start.longValue() : 0;
+    endLong = longTokens ? end.longValue() : 0;
   }
 
   public RingRange(String... range) {
-    start = new BigInteger(range[0]);
-    end = new BigInteger(range[1]);
+    this(new BigInteger(range[0]), new BigInteger(range[1]));
   }
 
   public BigInteger getStart() {
@@ -71,6 +78,9 @@ public final class RingRange {
    * @return true if other is enclosed in this range.
    */
   public boolean encloses(RingRange other) {
+    if (longTokens && other.longTokens) {
+      return enclosesLongTokens(other);
+    }
     if (!isWrapping()) {
       return !other.isWrapping()
           && SegmentGenerator.greaterThanOrEqual(other.start, start)
@@ -84,12 +94,22 @@ public final class RingRange {
     }
   }
 
+  private boolean enclosesLongTokens(RingRange other) {
+    boolean otherWrapping = other.startLong >= other.endLong;
+    if (startLong < endLong) {
+      return !otherWrapping && other.startLong >= startLong && other.endLong <= endLong;
+    } else {
+      return (!otherWrapping && (other.startLong >= startLong || other.endLong <= endLong))
+          || (other.startLong >= startLong && other.endLong <= endLong);
+    }
+  }
+
   /**
    * @return true if 0 is inside of this range. Note that if start == end, then wrapping is true
    */
   @JsonIgnore
   public boolean isWrapping() {
-    return SegmentGenerator.greaterThanOrEqual(start, end);
+    return longTokens ? startLong >= endLong : SegmentGenerator.greaterThanOrEqual(start, end);
   }
 
   @Override
@@ -0,0 +1,191 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
+/**
+ * An immutable index of values by the token range they cover, to find the values whose range encloses, is enclosed by
+ * or overlaps a token range, or owns a token, without scanning all of them.
+ *
+ * <p>Ranges are cut at the top of the ring into linear intervals, a wrapping range (start,end] into (start,+inf) and
+ * (-inf,end], which are kept in an interval tree: sorted by their low bound, each node of the implicit balanced tree
+ * knowing the highest bound of its subtree. A query visits O(log n + k) nodes, k being the number of ranges it
+ * overlaps. Enclosure queries filter the overlapping ranges with {@link RingRange#encloses}, so they answer exactly as
+ * a scan would. Values are returned in the order they were indexed.
+ */
+public final class RingRangeIndex<V> {
+
+  private final List<V> values;
+  private final List<RingRange> ranges;
+
+  // the intervals sorted by low bound, null standing for -inf in lows and +inf in highs
+  private final BigInteger[] lows;
+  private final BigInteger[] highs;
+  private final int[] owners;
+  private final BigInteger[] subtreeHighs;
+
+  private RingRangeIndex(List<V> values, List<RingRange> ranges) {
+    this.values = values;
+    this.ranges = ranges;
+
+    List<Interval> intervals = Lists.newArrayList();
+    for (int i = 0; i < ranges.size(); i++) {
+      intervals.addAll(Interval.of(ranges.get(i), i));
+    }
+    intervals.sort(Comparator.comparing(interval -> interval.low, Comparator.nullsFirst(Comparator.naturalOrder())));
+
+    lows = new BigInteger[intervals.size()];
+    highs = new BigInteger[intervals.size()];
+    owners = new int[intervals.size()];
+    subtreeHighs = new BigInteger[intervals.size()];
+    for (int i = 0; i < intervals.size(); i++) {
+      lows[i] = intervals.get(i).low;
+      highs[i] = intervals.get(i).high;
+      owners[i] = intervals.get(i).owner;
+    }
+    if (!intervals.isEmpty()) {
+      computeSubtreeHighs(0, intervals.size());
+    }
+  }
+
+  public static <V> RingRangeIndex<V> of(Collection<V> values, Function<V, RingRange> rangeOf) {
+    List<V> indexed = ImmutableList.copyOf(values);
+    return new RingRangeIndex<>(indexed, indexed.stream().map(rangeOf).collect(Collectors.toList()));
+  }
+
+  public int size() {
+    return values.size();
+  }
+
+  /**
+   * @return the values whose range shares at least one token with the range
+   */
+  public List<V> overlapping(RingRange range) {
+    return query(range, index -> true);
+  }
+
+  /**
+   * @return the values whose range is enclosed in the range, the segments of a run inside a parallel range
+   */
+  public List<V> enclosedBy(RingRange range) {
+    return query(range, index -> range.encloses(ranges.get(index)));
+  }
+
+  /**
+   * @return the values whose range encloses the range, the replicas owning a segment
+   */
+  public List<V> enclosing(RingRange range) {
+    return query(range, index -> ranges.get(index).encloses(range));
+  }
+
+  /**
+   * @return the values whose range (start,end] contains the token
+   */
+  public List<V> owning(BigInteger token) {
+    return query(new RingRange(token.subtract(BigInteger.ONE), token), index -> true);
+  }
+
+  private List<V> query(RingRange range, Predicate<Integer> filter) {
+    List<Integer> found = Lists.newArrayList();
+    for (Interval interval : Interval.of(range, -1)) {
+      collect(0, lows.length, interval.low, interval.high, found);
+    }
+    return found.stream()
+        .sorted()
+        .distinct()
+        .filter(filter)
+        .map(values::get)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Collects the owners of the intervals of the subtree [from,to) that overlap (low,high].
+   */
+  private void collect(int from, int to, BigInteger low, BigInteger high, List<Integer> found) {
+    if (from >= to) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    if (!below(low, subtreeHighs[middle])) {
+      // every interval of the subtree ends at or before the query starts
+      return;
+    }
+    collect(from, middle, low, high, found);
+    if (below(lows[middle], high)) {
+      if (below(low, highs[middle])) {
+        found.add(owners[middle]);
+      }
+      collect(middle + 1, to, low, high, found);
+    }
+  }
+
+  private BigInteger computeSubtreeHighs(int from, int to) {
+    int middle = (from + to) >>> 1;
+    BigInteger high = highs[middle];
+    if (from < middle) {
+      high = highest(high, computeSubtreeHighs(from, middle));
+    }
+    if (middle + 1 < to) {
+      high = highest(high, computeSubtreeHighs(middle + 1, to));
+    }
+    subtreeHighs[middle] = high;
+    return high;
+  }
+
+  private static BigInteger highest(BigInteger high, BigInteger other) {
+    return null == high || null == other ? null : high.max(other);
+  }
+
+  /**
+   * @return true if the low bound is below the high bound, a null low being -inf and a null high +inf
+   */
+  private static boolean below(BigInteger low, BigInteger high) {
+    return null == low || null == high || low.compareTo(high) < 0;
+  }
+
+  private static final class Interval {
+
+    private final BigInteger low;
+    private final BigInteger high;
+    private final int owner;
+
+    private Interval(BigInteger low, BigInteger high, int owner) {
+      this.low = low;
+      this.high = high;
+      this.owner = owner;
+    }
+
+    static List<Interval> of(RingRange range, int owner) {
+      if (!range.isWrapping()) {
+        return ImmutableList.of(new Interval(range.getStart(), range.getEnd(), owner));
+      }
+      if (range.getStart().equals(range.getEnd())) {
+        // a range from a token to itself is the whole ring
+        return ImmutableList.of(new Interval(null, null, owner));
+      }
+      return ImmutableList.of(new Interval(range.getStart(), null, owner), new Interval(null, range.getEnd(), owner));
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.core.RepairSchedule;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.joda.time.DateTime;
+
+/**
+ * Active repair schedules ordered by their next activation.
+ *
+ * <p>An ordered set is used as the min-heap so that updating a schedule removes its stale entry in O(log n).
+ */
+final class ScheduleActivationQueue {
+
+  private final NavigableSet<Activation> queue = new TreeSet<>(
+      Comparator.<Activation>comparingLong(activation -> activation.time)
+          .thenComparing(activation -> activation.scheduleId));
+
+  private final Map<UUID, Activation> activations = Maps.newHashMap();
+
+  /**
+   * Tracks the schedule if it is active, and forgets it otherwise.
+   */
+  synchronized void update(RepairSchedule schedule) {
+    if (RepairSchedule.State.ACTIVE == schedule.getState()) {
+      put(schedule.getId(), schedule.getNextActivation());
+    } else {
+      remove(schedule.getId());
+    }
+  }
+
+  /**
+   * Tracks the schedule for activation at the given time, replacing any previous activation.
+   */
+  synchronized void put(UUID scheduleId, DateTime activationTime) {
+    remove(scheduleId);
+    Activation activation = new Activation(scheduleId, activationTime.getMillis());
+    activations.put(scheduleId, activation);
+    queue.add(activation);
+  }
+
+  synchronized void remove(UUID scheduleId) {
+    Activation activation = activations.remove(scheduleId);
+    if (null != activation) {
+      queue.remove(activation);
+    }
+  }
+
+  /**
+   * Replaces the tracked schedules with the given ones.
+   */
+  synchronized void reset(Collection<RepairSchedule> schedules) {
+    queue.clear();
+    activations.clear();
+    schedules.forEach(this::update);
+  }
+
+  /**
+   * Removes and returns, in activation order, the schedules whose activation is not after the given time.
+   */
+  synchronized List<UUID> pollDue(DateTime now) {
+    List<UUID> due = Lists.newArrayList();
+    while (!queue.isEmpty() && queue.first().time <= now.getMillis()) {
+      Activation activation = queue.pollFirst();
+      activations.remove(activation.scheduleId);
+      due.add(activation.scheduleId);
+    }
+    return due;
+  }
+
+  synchronized Optional<DateTime> nextActivation() {
+    return queue.isEmpty() ? Optional.empty() : Optional.of(new DateTime(queue.first().time));
+  }
+
+  synchronized int size() {
+    return queue.size();
+  }
+
+  private static final class Activation {
+
+    private final UUID scheduleId;
+    private final long time;
+
+    Activation(UUID scheduleId, long time) {
+      this.scheduleId = scheduleId;
+      this.time = time;
+    }
+  }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import com.google.common.base.Preconditions;
+
+/**
+ * Packs repair runs into a repeating cycle so the number of runs overlapping at any time stays as flat as possible.
+ *
+ * <p>The cycle is split in equal slots, each counting the runs that overlap it. Runs wrap around the end of the cycle.
+ * Callers place the longest runs first, each at the offset that keeps the peak of the slots it covers lowest, then the
+ * total overlap lowest, then as early as possible. Runs already placed are pinned first, and can be moved afterwards.
+ */
+final class SchedulePlacement {
+
+  private final long slotMillis;
+  private final int[] load;
+
+  SchedulePlacement(long cycleMillis, long slotMillis) {
+    Preconditions.checkArgument(0 < slotMillis && slotMillis <= cycleMillis, "slot must fit in the cycle");
+    this.slotMillis = slotMillis;
+    this.load = new int[(int) (cycleMillis / slotMillis)];
+  }
+
+  /**
+   * Adds the load of a run that cannot be moved.
+   */
+  void pin(long offsetMillis, long durationMillis) {
+    add(slot(offsetMillis), width(durationMillis));
+  }
+
+  /**
+   * Removes the load of a pinned run.
+   */
+  void unpin(long offsetMillis, long durationMillis) {
+    int start = slot(offsetMillis);
+    for (int i = 0; i < width(durationMillis); ++i) {
+      --load[(start + i) % load.length];
+    }
+  }
+
+  /**
+   * Places a run no later than the given offset into the cycle, and adds its load.
+   *
+   * @return the chosen offset into the cycle, in milliseconds
+   */
+  long place(long durationMillis, long maxOffsetMillis) {
+    long offset = bestOffset(durationMillis, 0, maxOffsetMillis);
+    pin(offset, durationMillis);
+    return offset;
+  }
+
+  /**
+   * Moves a pinned run to a later offset of the cycle if that lowers the peak of the slots it covers.
+   *
+   * @return the offset the run is now pinned at, in milliseconds
+   */
+  long moveLater(long offsetMillis, long durationMillis) {
+    unpin(offsetMillis, durationMillis);
+    long offset = offsetMillis;
+    if (offsetMillis < load.length * slotMillis) {
+      long later = bestOffset(durationMillis, offsetMillis, load.length * slotMillis);
+      if (offsetMillis <= later && peak(later, durationMillis) < peak(offsetMillis, durationMillis)) {
+        offset = later;
+      }
+    }
+    pin(offset, durationMillis);
+    return offset;
+  }
+
+  /**
+   * @return the offset, between the given ones, that keeps the load of the slots a run would cover lowest
+   */
+  private long bestOffset(long durationMillis, long minOffsetMillis, long maxOffsetMillis) {
+    int width = width(durationMillis);
+    int firstStart = (int) Math.min(load.length - 1, Math.max(0, (minOffsetMillis + slotMillis - 1) / slotMillis));
+    int lastStart = (int) Math.min(load.length - 1, Math.max(firstStart, maxOffsetMillis / slotMillis));
+
+    int best = firstStart;
+    int bestPeak = Integer.MAX_VALUE;
+    long bestOverlap = Long.MAX_VALUE;
+    for (int start = firstStart; start <= lastStart; ++start) {
+      int peak = 0;
+      long overlap = 0;
+      for (int i = 0; i < width; ++i) {
+        int slotLoad = load[(start + i) % load.length];
+        peak = Math.max(peak, slotLoad);
+        overlap += slotLoad;
+      }
+      if (peak < bestPeak || (peak == bestPeak && overlap < bestOverlap)) {
+        best = start;
+        bestPeak = peak;
+        bestOverlap = overlap;
+      }
+    }
+    return best * slotMillis;
+  }
+
+  private int peak(long offsetMillis, long durationMillis) {
+    int start = slot(offsetMillis);
+    int peak = 0;
+    for (int i = 0; i < width(durationMillis); ++i) {
+      peak = Math.max(peak, load[(start + i) % load.length]);
+    }
+    return peak;
+  }
+
+  int peak() {
+    int peak = 0;
+    for (int slotLoad : load) {
+      peak = Math.max(peak, slotLoad);
+    }
+    return peak;
+  }
+
+  private void add(int start, int width) {
+    for (int i = 0; i < width; ++i) {
+      ++load[(start + i) % load.length];
+    }
+  }
+
+  private int slot(long offsetMillis) {
+    return (int) (Math.floorMod(offsetMillis, load.length * slotMillis) / slotMillis);
+  }
+
+  private int width(long durationMillis) {
+    return (int) Math.min(load.length, Math.max(1, (durationMillis + slotMillis - 1) / slotMillis));
+  }
+}
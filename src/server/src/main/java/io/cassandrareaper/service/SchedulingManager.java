@@ -19,48 +19,82 @@ import io.cassandrareaper.ReaperException;
 import io.cassandrareaper.core.RepairRun;
 import io.cassandrareaper.core.RepairSchedule;
 import io.cassandrareaper.core.RepairUnit;
+import io.cassandrareaper.storage.IDistributedStorage;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public final class SchedulingManager extends TimerTask {
+public final class SchedulingManager {
 
   private static final Logger LOG = LoggerFactory.getLogger(SchedulingManager.class);
 
-  private static volatile TimerTask SCHEDULING_MANAGER;
+  /* full reads of all schedules only catch up with changes made by other reaper instances */
+  private static final long RECONCILE_INTERVAL_MINUTES = 10;
+
+  /* a due schedule that could not be activated, e.g. another instance holds its lead, is retried after this */
+  private static final int RETRY_DELAY_SECONDS = 60;
+
+  private static volatile SchedulingManager SCHEDULING_MANAGER;
 
   private final AppContext context;
   private final RepairRunService repairRunService;
+  private final ScheduleActivationQueue activations = new ScheduleActivationQueue();
+  private final Optional<DeadlineScheduler> deadlineScheduler;
 
-  /* nextActivatedSchedule used for nicer logging only */
-  private RepairSchedule nextActivatedSchedule;
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("SchedulingManager-%d").setDaemon(true).build());
 
+  /* guarded by this */
+  private ScheduledFuture<?> nextWakeup;
 
   private SchedulingManager(AppContext context) {
     this.context = context;
     this.repairRunService = RepairRunService.create(context);
+    this.deadlineScheduler = context.config.getDeadlineScheduling().isEnabled()
+        ? Optional.of(new DeadlineScheduler(context, context.config.getDeadlineScheduling()))
+        : Optional.empty();
   }
 
   public static void start(AppContext context) {
     if (null == SCHEDULING_MANAGER) {
       LOG.info("Starting new SchedulingManager instance");
       SCHEDULING_MANAGER = new SchedulingManager(context);
-      Timer timer = new Timer("SchedulingManagerTimer");
-      timer.schedule(SCHEDULING_MANAGER, 1000L, 1000L * 60);
+      SCHEDULING_MANAGER.executor.scheduleWithFixedDelay(
+          () -> SCHEDULING_MANAGER.guarded(SCHEDULING_MANAGER::reconcile),
+          1,
+          TimeUnit.MINUTES.toSeconds(RECONCILE_INTERVAL_MINUTES),
+          TimeUnit.SECONDS);
     } else {
       LOG.warn("there is already one instance of SchedulingManager running, not starting new one");
     }
   }
 
+  /**
+   * Makes the scheduler aware of a new or changed schedule, so it is activated on time without waiting for the next
+   * full reconciliation.
+   */
+  public static void scheduleChanged(RepairSchedule schedule) {
+    SchedulingManager manager = SCHEDULING_MANAGER;
+    if (null != manager) {
+      manager.activations.update(schedule);
+      manager.rearm();
+    }
+  }
+
   public static RepairSchedule pauseRepairSchedule(AppContext context, RepairSchedule schedule) {
     RepairSchedule updatedSchedule
         = schedule.with().state(RepairSchedule.State.PAUSED).pauseTime(DateTime.now()).build(schedule.getId());
@@ -68,6 +102,7 @@ public final class SchedulingManager extends TimerTask {
     if (!context.storage.updateRepairSchedule(updatedSchedule)) {
       throw new IllegalStateException(String.format("failed updating repair schedule %s", updatedSchedule.getId()));
     }
+    scheduleChanged(updatedSchedule);
     return updatedSchedule;
   }
 
@@ -78,33 +113,80 @@ public final class SchedulingManager extends TimerTask {
     if (!context.storage.updateRepairSchedule(updatedSchedule)) {
       throw new IllegalStateException(String.format("failed updating repair schedule %s", updatedSchedule.getId()));
     }
+    scheduleChanged(updatedSchedule);
     return updatedSchedule;
   }
 
   /**
-   * Called regularly, do not block!
+   * Reloads every schedule from storage, then activates the ones that are due.
    */
-  @Override
-  public void run() {
-    if (context.isRunning.get()) {
-      LOG.debug("Checking for repair schedules...");
-      UUID lastId = null;
+  private void reconcile() {
+    LOG.debug("Reloading all repair schedules...");
+    Collection<RepairSchedule> schedules = context.storage.getAllRepairSchedules();
+    activations.reset(schedules);
+    deadlineScheduler.ifPresent(scheduler -> scheduler.update(schedules));
+    activateDueSchedules();
+  }
+
+  /**
+   * Activates the schedules that are due. Each one is re-read from storage first, so that changes made meanwhile
+   * (including activations by other reaper instances) are honoured.
+   */
+  private void activateDueSchedules() {
+    List<RepairSchedule> due = activations.pollDue(DateTime.now())
+        .stream()
+        .map(scheduleId -> context.storage.getRepairSchedule(scheduleId))
+        .filter(Optional::isPresent)
+        .map(Optional::get)
+        .collect(Collectors.toList());
+
+    // in deadline mode the schedules left out are tracked again below, and retried after the delay
+    List<RepairSchedule> admitted = deadlineScheduler.isPresent() ? deadlineScheduler.get().admit(due) : due;
+
+    for (RepairSchedule schedule : due) {
       try {
-        Collection<RepairSchedule> schedules = context.storage.getAllRepairSchedules();
-        boolean anyRunStarted = false;
-        for (RepairSchedule schedule : schedules) {
-          lastId = schedule.getId();
-          anyRunStarted = manageSchedule(schedule) || anyRunStarted;
-        }
-        if (!anyRunStarted && nextActivatedSchedule != null) {
-          LOG.debug(
-              "not scheduling new repairs yet, next activation is '{}' for schedule id '{}'",
-              nextActivatedSchedule.getNextActivation(),
-              nextActivatedSchedule.getId());
+        if (admitted.contains(schedule)) {
+          manageSchedule(schedule);
         }
+      } finally {
+        context.storage.getRepairSchedule(schedule.getId()).ifPresent(this::track);
+      }
+    }
+    rearm();
+  }
+
+  private void track(RepairSchedule schedule) {
+    activations.update(schedule);
+    if (RepairSchedule.State.ACTIVE == schedule.getState() && schedule.getNextActivation().isBeforeNow()) {
+      activations.put(schedule.getId(), DateTime.now().plusSeconds(RETRY_DELAY_SECONDS));
+    }
+  }
+
+  /**
+   * Arms the single wake-up for the earliest pending activation.
+   */
+  private synchronized void rearm() {
+    if (null != nextWakeup) {
+      nextWakeup.cancel(false);
+      nextWakeup = null;
+    }
+    Optional<DateTime> nextActivation = activations.nextActivation();
+    if (nextActivation.isPresent()) {
+      LOG.debug("{} active schedules, next activation at {}", activations.size(), nextActivation.get());
+      long delay = Math.max(0, nextActivation.get().getMillis() - DateTime.now().getMillis());
+      nextWakeup = executor.schedule(() -> guarded(this::activateDueSchedules), delay, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Runs on the scheduler thread, do not block!
+   */
+  private void guarded(Runnable task) {
+    if (context.isRunning.get()) {
+      try {
+        task.run();
       } catch (Throwable ex) {
-        LOG.error("failed managing schedule for run with id: {}", lastId);
-        LOG.error("catch exception", ex);
+        LOG.error("failed managing repair schedules", ex);
         try {
           assert false : "if assertions are enabled then exit the jvm";
         } catch (AssertionError ae) {
@@ -127,74 +209,19 @@ public final class SchedulingManager extends TimerTask {
     switch (schdle.getState()) {
       case ACTIVE:
         if (schdle.getNextActivation().isBeforeNow()) {
-
-          RepairSchedule schedule =
-              schdle.with().nextActivation(schdle.getFollowingActivation()).build(schdle.getId());
-
-          context.storage.updateRepairSchedule(schedule);
-
-          LOG.info(
-              "repair unit '{}' should be repaired based on RepairSchedule with id '{}'",
-              schedule.getRepairUnitId(),
-              schedule.getId());
-
-          RepairUnit repairUnit = context.storage.getRepairUnit(schedule.getRepairUnitId());
-          if (repairRunAlreadyScheduled(schedule, repairUnit)) {
+          if (!takeLead(schdle.getId())) {
+            LOG.debug("schedule {} is being activated by another reaper instance", schdle.getId());
             return false;
           }
-
           try {
-            RepairRun newRepairRun = createNewRunForUnit(schedule, repairUnit);
-
-            ImmutableList<UUID> newRunHistory =
-                new ImmutableList.Builder<UUID>()
-                    .addAll(schedule.getRunHistory())
-                    .add(newRepairRun.getId())
-                    .build();
-
-            RepairSchedule latestSchedule =
-                context.storage.getRepairSchedule(schedule.getId()).get();
-
-            if (equal(schedule, latestSchedule)) {
-
-              boolean result =
-                  context.storage.updateRepairSchedule(
-                      schedule.with().runHistory(newRunHistory).build(schedule.getId()));
-              // FIXME – concurrency is broken unless we atomically add/remove run history items
-              // boolean result = context.storage
-              //        .addRepairRunToRepairSchedule(schedule.getId(), newRepairRun.getId());
-
-              if (result) {
-                context.repairManager.startRepairRun(newRepairRun);
-                return true;
-              }
-            } else if (schedule.getRunHistory().size() < latestSchedule.getRunHistory().size()) {
-              latestSchedule.getRunHistory().get(latestSchedule.getRunHistory().size() - 1);
-              LOG.info(
-                  "schedule {} has already added a new repair run {}",
-                  schedule.getId(),
-                  newRepairRun.getId());
-              // this repair_run is identified as a duplicate (for this activation):
-              // so take the last repair run, and try start it. it's ok if already running.
-              newRepairRun = context.storage.getRepairRun(newRepairRun.getId()).get();
-              context.repairManager.startRepairRun(newRepairRun);
-            } else {
-              LOG.warn(
-                  "schedule {} has been altered by someone else. not running repair",
-                  schedule.getId());
-            }
-            // this duplicated repair_run needs to be removed from the schedule's history
-            // FIXME – concurrency is broken unless we atomically add/remove run history items
-            // boolean result = context.storage
-            //        .deleteRepairRunFromRepairSchedule(schedule.getId(), newRepairRun.getId());
-          } catch (ReaperException e) {
-            LOG.error(e.getMessage(), e);
-          }
-        } else {
-          if (nextActivatedSchedule == null
-              || nextActivatedSchedule.getNextActivation().isAfter(schdle.getNextActivation())) {
-
-            nextActivatedSchedule = schdle;
+            // re-read once inside leader-election, another instance may just have activated it
+            Optional<RepairSchedule> latest = context.storage.getRepairSchedule(schdle.getId());
+            return latest.isPresent()
+                && RepairSchedule.State.ACTIVE == latest.get().getState()
+                && latest.get().getNextActivation().isBeforeNow()
+                && activateSchedule(latest.get());
+          } finally {
+            releaseLead(schdle.getId());
           }
         }
         break;
@@ -207,6 +234,87 @@ public final class SchedulingManager extends TimerTask {
     return false;
   }
 
+  /**
+   * Moves the schedule to its following activation, then creates and starts a new repair run for it.
+   *
+   * @return boolean indicating whether a new RepairRun instance was created and started.
+   */
+  private boolean activateSchedule(RepairSchedule schdle) {
+    RepairSchedule schedule = schdle.with().nextActivation(schdle.getFollowingActivation()).build(schdle.getId());
+
+    context.storage.updateRepairSchedule(schedule);
+
+    LOG.info(
+        "repair unit '{}' should be repaired based on RepairSchedule with id '{}'",
+        schedule.getRepairUnitId(),
+        schedule.getId());
+
+    RepairUnit repairUnit = context.storage.getRepairUnit(schedule.getRepairUnitId());
+    if (repairRunAlreadyScheduled(schedule, repairUnit)) {
+      return false;
+    }
+
+    try {
+      RepairRun newRepairRun = createNewRunForUnit(schedule, repairUnit);
+
+      ImmutableList<UUID> newRunHistory =
+          new ImmutableList.Builder<UUID>()
+              .addAll(schedule.getRunHistory())
+              .add(newRepairRun.getId())
+              .build();
+
+      RepairSchedule latestSchedule =
+          context.storage.getRepairSchedule(schedule.getId()).get();
+
+      if (equal(schedule, latestSchedule)) {
+
+        boolean result =
+            context.storage.updateRepairSchedule(
+                schedule.with().runHistory(newRunHistory).build(schedule.getId()));
+        // FIXME – concurrency is broken unless we atomically add/remove run history items
+        // boolean result = context.storage
+        //        .addRepairRunToRepairSchedule(schedule.getId(), newRepairRun.getId());
+
+        if (result) {
+          context.repairManager.startRepairRun(newRepairRun);
+          return true;
+        }
+      } else if (schedule.getRunHistory().size() < latestSchedule.getRunHistory().size()) {
+        latestSchedule.getRunHistory().get(latestSchedule.getRunHistory().size() - 1);
+        LOG.info(
+            "schedule {} has already added a new repair run {}",
+            schedule.getId(),
+            newRepairRun.getId());
+        // this repair_run is identified as a duplicate (for this activation):
+        // so take the last repair run, and try start it. it's ok if already running.
+        newRepairRun = context.storage.getRepairRun(newRepairRun.getId()).get();
+        context.repairManager.startRepairRun(newRepairRun);
+      } else {
+        LOG.warn(
+            "schedule {} has been altered by someone else. not running repair",
+            schedule.getId());
+      }
+      // this duplicated repair_run needs to be removed from the schedule's history
+      // FIXME – concurrency is broken unless we atomically add/remove run history items
+      // boolean result = context.storage
+      //        .deleteRepairRunFromRepairSchedule(schedule.getId(), newRepairRun.getId());
+    } catch (ReaperException e) {
+      LOG.error(e.getMessage(), e);
+    }
+    return false;
+  }
+
+  private boolean takeLead(UUID scheduleId) {
+    return !(context.storage instanceof IDistributedStorage)
+        || ((IDistributedStorage) context.storage).takeLead(scheduleId);
+  }
+
+  private void releaseLead(UUID scheduleId) {
+    if (context.storage instanceof IDistributedStorage) {
+      ((IDistributedStorage) context.storage).releaseLead(scheduleId);
+    }
+  }
+
   private static boolean equal(RepairSchedule s1, RepairSchedule s2) {
     Preconditions.checkArgument(s1.getId().equals(s2.getId()), "%s does not equal %s", s1.getId(), s2.getId());
 
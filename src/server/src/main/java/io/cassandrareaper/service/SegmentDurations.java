@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.core.RepairRun;
+import io.cassandrareaper.core.RepairSegment;
+import io.cassandrareaper.core.Segment;
+import io.cassandrareaper.storage.IStorage;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import org.apache.commons.lang3.tuple.Pair;
+
+/**
+ * Durations of the past segments of a repair unit, by token range, used to time out each segment from how long its
+ * range usually takes instead of the configured worst case.
+ *
+ * <p>A segment's timeout is a margin over the 95th percentile of its range's past durations, or of the whole unit's
+ * while its range has too few of them. Ranges whose median duration is far above the unit's are chronic outliers.
+ */
+final class SegmentDurations {
+
+  private static final int RUNS_IN_ESTIMATE = 5;
+  private static final int MIN_SAMPLES_PER_RANGE = 3;
+  private static final int MIN_SAMPLES = 10;
+  private static final double PERCENTILE = 0.95;
+  private static final int MARGIN = 3;
+  private static final int OUTLIER_FACTOR = 4;
+  private static final int MAX_TIMEOUT_EXTENSIONS = 10;
+  private static final long MIN_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+  private final Map<Pair<BigInteger, BigInteger>, long[]> durationsByRange;
+  private final long[] durations;
+
+  private SegmentDurations(Map<Pair<BigInteger, BigInteger>, long[]> durationsByRange, long[] durations) {
+    this.durationsByRange = durationsByRange;
+    this.durations = durations;
+  }
+
+  /**
+   * Reads the segments of the last successful runs of the repair unit.
+   */
+  static SegmentDurations fromPastRuns(IStorage storage, UUID repairUnitId) {
+    List<RepairSegment> segments = Lists.newArrayList();
+    storage.getRepairRunsForUnit(repairUnitId).stream()
+        .filter(run -> RepairRun.RunState.DONE == run.getRunState() && null != run.getEndTime())
+        .sorted(Comparator.comparing(RepairRun::getEndTime).reversed())
+        .limit(RUNS_IN_ESTIMATE)
+        .forEach(run -> segments.addAll(storage.getRepairSegmentsForRun(run.getId())));
+
+    return of(segments);
+  }
+
+  static SegmentDurations of(Collection<RepairSegment> segments) {
+    Map<Pair<BigInteger, BigInteger>, List<Long>> byRange = segments.stream()
+        .filter(segment -> RepairSegment.State.DONE == segment.getState())
+        .filter(segment -> null != segment.getStartTime() && null != segment.getEndTime())
+        .collect(Collectors.groupingBy(
+            segment -> range(segment.getTokenRange()),
+            Collectors.mapping(
+                segment -> segment.getEndTime().getMillis() - segment.getStartTime().getMillis(),
+                Collectors.toList())));
+
+    Map<Pair<BigInteger, BigInteger>, long[]> durationsByRange = Maps.newHashMap();
+    byRange.forEach((range, millis) -> durationsByRange.put(range, sorted(millis)));
+    return new SegmentDurations(
+        durationsByRange,
+        sorted(byRange.values().stream().flatMap(List::stream).collect(Collectors.toList())));
+  }
+
+  /**
+   * @return the timeout of the segment from its range's past durations, or the default one without enough history
+   */
+  long timeoutMillis(Segment segment, long defaultTimeoutMillis) {
+    long[] samples = durationsByRange.get(range(segment));
+    if (null == samples || samples.length < MIN_SAMPLES_PER_RANGE) {
+      if (durations.length < MIN_SAMPLES) {
+        return defaultTimeoutMillis;
+      }
+      samples = durations;
+    }
+    long timeout = Math.max(MIN_TIMEOUT_MILLIS, percentile(samples, PERCENTILE) * MARGIN);
+    return Math.min(timeout, defaultTimeoutMillis * MAX_TIMEOUT_EXTENSIONS);
+  }
+
+  /**
+   * @return the 95th percentile of the past durations of the segment's range, if it has enough of them
+   */
+  Optional<Long> predictedMillis(Segment segment) {
+    long[] samples = durationsByRange.get(range(segment));
+    return null != samples && MIN_SAMPLES_PER_RANGE <= samples.length
+        ? Optional.of(percentile(samples, PERCENTILE))
+        : Optional.empty();
+  }
+
+  /**
+   * @return the token ranges whose median duration is more than a few times the unit's
+   */
+  Set<Pair<BigInteger, BigInteger>> outliers() {
+    if (durations.length < MIN_SAMPLES) {
+      return Collections.emptySet();
+    }
+    long median = percentile(durations, 0.5);
+    return durationsByRange.entrySet().stream()
+        .filter(entry -> MIN_SAMPLES_PER_RANGE <= entry.getValue().length)
+        .filter(entry -> percentile(entry.getValue(), 0.5) > OUTLIER_FACTOR * Math.max(1, median))
+        .map(Map.Entry::getKey)
+        .collect(Collectors.toSet());
+  }
+
+  private static Pair<BigInteger, BigInteger> range(Segment segment) {
+    return Pair.of(segment.getBaseRange().getStart(), segment.getBaseRange().getEnd());
+  }
+
+  private static long[] sorted(List<Long> millis) {
+    long[] sorted = millis.stream().mapToLong(Long::longValue).toArray();
+    Arrays.sort(sorted);
+    return sorted;
+  }
+
+  private static long percentile(long[] sorted, double percentile) {
+    return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)];
+  }
+}
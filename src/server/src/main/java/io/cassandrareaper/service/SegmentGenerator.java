@@ -22,6 +22,7 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.function.Function;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
@@ -42,6 +43,7 @@ final class SegmentGenerator {
   private final BigInteger rangeMin;
   private final BigInteger rangeMax;
   private final BigInteger rangeSize;
+  private final boolean longTokens;
 
   SegmentGenerator(String partitioner) throws ReaperException {
     if (partitioner.endsWith("RandomPartitioner")) {
@@ -54,6 +56,7 @@ final class SegmentGenerator {
       throw new ReaperException("Unsupported partitioner " + partitioner);
     }
     rangeSize = rangeMax.subtract(rangeMin).add(BigInteger.ONE);
+    longTokens = isLongRing(rangeMin, rangeMax);
     this.partitioner = partitioner;
   }
 
@@ -61,9 +64,17 @@ final class SegmentGenerator {
     this.rangeMin = rangeMin;
     this.rangeMax = rangeMax;
     rangeSize = rangeMax.subtract(rangeMin).add(BigInteger.ONE);
+    longTokens = isLongRing(rangeMin, rangeMax);
     partitioner = "(" + rangeMin + "," + rangeMax + ")";
   }
 
+  /**
+   * @return true if the ring is the Murmur3 one, all the longs, so that its token arithmetic can be done on longs
+   */
+  private static boolean isLongRing(BigInteger rangeMin, BigInteger rangeMax) {
+    return BigInteger.valueOf(Long.MIN_VALUE).equals(rangeMin) && BigInteger.valueOf(Long.MAX_VALUE).equals(rangeMax);
+  }
+
   static BigInteger max(BigInteger big0, BigInteger big1) {
     return greaterThan(big0, big1) ? big0 : big1;
   }
@@ -116,15 +127,7 @@ final class SegmentGenerator {
       for (int i = 0; i < tokenRangeCount; i++) {
         BigInteger start = ringTokens.get(i);
         BigInteger stop = ringTokens.get((i + 1) % tokenRangeCount);
-
-        if (!inRange(start) || !inRange(stop)) {
-          throw new ReaperException(
-              String.format("Tokens (%s,%s) not in range of %s", start, stop, partitioner));
-        }
-        if (start.equals(stop) && tokenRangeCount != 1) {
-          throw new ReaperException(
-              String.format("Tokens (%s,%s): two nodes have the same token", start, stop));
-        }
+        checkTokens(start, stop, tokenRangeCount);
 
         BigInteger rs = stop.subtract(start);
         if (lowerThanOrEqual(rs, BigInteger.ZERO)) {
@@ -144,16 +147,9 @@ final class SegmentGenerator {
         LOG.info("Dividing token range [{},{}) into {} segments", start, stop, segmentCount);
 
         // Make big0 list of all the endpoints for the repair segments, including both start and stop
-        List<BigInteger> endpointTokens = Lists.newArrayList();
-        for (int j = 0; j <= segmentCount; j++) {
-          BigInteger offset =
-              rs.multiply(BigInteger.valueOf(j)).divide(BigInteger.valueOf(segmentCount));
-          BigInteger reaperToken = start.add(offset);
-          if (greaterThan(reaperToken, rangeMax)) {
-            reaperToken = reaperToken.subtract(rangeSize);
-          }
-          endpointTokens.add(reaperToken);
-        }
+        List<BigInteger> endpointTokens = longTokens && !start.equals(stop)
+            ? longEndpointTokens(start.longValue(), stop.longValue(), segmentCount)
+            : endpointTokens(start, rs, segmentCount);
 
         // Append the segments between the endpoints
         for (int j = 0; j < segmentCount; j++) {
@@ -169,14 +165,7 @@ final class SegmentGenerator {
       }
 
       // verify that the whole range is repaired
-      BigInteger total = BigInteger.ZERO;
-      for (Segment segment : repairSegments) {
-        for (RingRange range : segment.getTokenRanges()) {
-          BigInteger size = range.span(rangeSize);
-          total = total.add(size);
-        }
-      }
-      if (!total.equals(rangeSize) && !incrementalRepair) {
+      if (!coversWholeRing(repairSegments) && !incrementalRepair) {
         throw new ReaperException("Not entire ring would get repaired");
       }
     } else {
@@ -190,10 +179,128 @@ final class SegmentGenerator {
     return repairSegments;
   }
 
+  /**
+   * Like {@link #generateSegments(int, List, Boolean, Map, String)}, but sizing segments by the amount of data they
+   * hold rather than by their number of tokens, so that they take about the same time to repair.
+   */
+  List<Segment> generateSegments(
+      int totalSegmentCount,
+      List<BigInteger> ringTokens,
+      Boolean incrementalRepair,
+      Map<List<String>, List<RingRange>> replicasToRange,
+      String cassandraVersion,
+      RangeSizeEstimates estimates)
+      throws ReaperException {
+
+    if (0 == estimates.total()) {
+      LOG.info("No data size estimates, sizing segments by their number of tokens");
+      return generateSegments(totalSegmentCount, ringTokens, incrementalRepair, replicasToRange, cassandraVersion);
+    }
+    int tokenRangeCount = ringTokens.size();
+    if (tokenRangeCount >= totalSegmentCount && supportsSegmentCoalescing(cassandraVersion)) {
+      LOG.info("Less segments required than there are vnode. Coalescing token ranges by estimated size...");
+      return coalesceTokenRanges(
+          BigInteger.valueOf(Math.max(1, estimates.total() / totalSegmentCount)),
+          replicasToRange,
+          range -> BigInteger.valueOf(estimates.count(range)));
+    }
+
+    List<Segment> repairSegments = Lists.newArrayList();
+    for (int i = 0; i < tokenRangeCount; i++) {
+      BigInteger start = ringTokens.get(i);
+      BigInteger stop = ringTokens.get((i + 1) % tokenRangeCount);
+      checkTokens(start, stop, tokenRangeCount);
+
+      RingRange range = new RingRange(start, stop);
+      // segmentCount = ceiling((estimated size / total estimated size) * totalSegmentCount)
+      long weightedCount = (long) estimates.count(range) * totalSegmentCount;
+      int segmentCount = (int) Math.max(1, (weightedCount + estimates.total() - 1) / estimates.total());
+
+      List<BigInteger> endpointTokens = Lists.newArrayList(start);
+      endpointTokens.addAll(estimates.cuts(range, segmentCount));
+      endpointTokens.add(stop);
+      LOG.info(
+          "Dividing token range [{},{}) into {} segments by estimated size", start, stop, endpointTokens.size() - 1);
+
+      for (int j = 0; j < endpointTokens.size() - 1; j++) {
+        repairSegments.add(
+            Segment.builder()
+                .withTokenRange(new RingRange(endpointTokens.get(j), endpointTokens.get(j + 1)))
+                .build());
+      }
+    }
+    return repairSegments;
+  }
+
+  private List<BigInteger> endpointTokens(BigInteger start, BigInteger rs, int segmentCount) {
+    List<BigInteger> endpointTokens = Lists.newArrayList();
+    for (int j = 0; j <= segmentCount; j++) {
+      BigInteger offset = rs.multiply(BigInteger.valueOf(j)).divide(BigInteger.valueOf(segmentCount));
+      BigInteger reaperToken = start.add(offset);
+      if (greaterThan(reaperToken, rangeMax)) {
+        reaperToken = reaperToken.subtract(rangeSize);
+      }
+      endpointTokens.add(reaperToken);
+    }
+    return endpointTokens;
+  }
+
+  /**
+   * Same as {@link #endpointTokens} on the Murmur3 ring. The span between two distinct tokens fits in an unsigned long,
+   * and adding to a token wraps around the ring the way long addition overflows.
+   */
+  private static List<BigInteger> longEndpointTokens(long start, long stop, int segmentCount) {
+    long span = stop - start;
+    // floor(span * j / segmentCount), without overflowing
+    long quotient = Long.divideUnsigned(span, segmentCount);
+    long remainder = Long.remainderUnsigned(span, segmentCount);
+
+    List<BigInteger> endpointTokens = Lists.newArrayListWithCapacity(segmentCount + 1);
+    for (int j = 0; j <= segmentCount; j++) {
+      endpointTokens.add(BigInteger.valueOf(start + quotient * j + remainder * j / segmentCount));
+    }
+    return endpointTokens;
+  }
+
+  private boolean coversWholeRing(List<Segment> segments) {
+    if (!longTokens) {
+      BigInteger total = BigInteger.ZERO;
+      for (Segment segment : segments) {
+        for (RingRange range : segment.getTokenRanges()) {
+          total = total.add(range.span(rangeSize));
+        }
+      }
+      return total.equals(rangeSize);
+    }
+    // the spans add up to 2^64 if the whole ring is covered, overflowing an unsigned long exactly once
+    long total = 0;
+    int overflows = 0;
+    for (Segment segment : segments) {
+      for (RingRange range : segment.getTokenRanges()) {
+        long span = range.getEnd().longValue() - range.getStart().longValue();
+        long sum = total + span;
+        if (0 == span || Long.compareUnsigned(sum, total) < 0) {
+          // a range from a token to itself is the whole ring
+          ++overflows;
+        }
+        total = sum;
+      }
+    }
+    return 0 == total && 1 == overflows;
+  }
+
   @VisibleForTesting
   List<Segment> coalesceTokenRanges(
       BigInteger targetSegmentSize, Map<List<String>, List<RingRange>> replicasToRange) {
 
+    return coalesceTokenRanges(targetSegmentSize, replicasToRange, range -> range.span(rangeSize));
+  }
+
+  private List<Segment> coalesceTokenRanges(
+      BigInteger targetSegmentSize,
+      Map<List<String>, List<RingRange>> replicasToRange,
+      Function<RingRange, BigInteger> sizeOf) {
+
     List<Segment> coalescedRepairSegments = Lists.newArrayList();
     List<RingRange> tokenRangesForCurrentSegment = Lists.newArrayList();
     BigInteger tokenCount = BigInteger.ZERO;
@@ -201,7 +308,7 @@ final class SegmentGenerator {
     for (Entry<List<String>, List<RingRange>> tokenRangesByReplica : replicasToRange.entrySet()) {
       LOG.info("Coalescing segments for nodes {}", tokenRangesByReplica.getKey());
       for (RingRange tokenRange : tokenRangesByReplica.getValue()) {
-        if (tokenRange.span(rangeSize).add(tokenCount).compareTo(targetSegmentSize) > 0
+        if (sizeOf.apply(tokenRange).add(tokenCount).compareTo(targetSegmentSize) > 0
             && !tokenRangesForCurrentSegment.isEmpty()) {
           // enough tokens in that segment
           LOG.info(
@@ -214,7 +321,7 @@ final class SegmentGenerator {
           tokenCount = BigInteger.ZERO;
         }
 
-        tokenCount = tokenCount.add(tokenRange.span(rangeSize));
+        tokenCount = tokenCount.add(sizeOf.apply(tokenRange));
         tokenRangesForCurrentSegment.add(tokenRange);
 
       }
@@ -235,6 +342,54 @@ final class SegmentGenerator {
     return coalescedRepairSegments;
   }
 
+  /**
+   * Splits a segment in up to {@code parts} smaller segments. The token ranges of a coalesced segment are shared out
+   * among them, the single range of any other segment is cut in subranges of about the same size.
+   *
+   * @return the segment alone if it can't be split
+   */
+  List<Segment> split(Segment segment, int parts) {
+    List<RingRange> tokenRanges = segment.getTokenRanges();
+    List<Segment> segments = Lists.newArrayList();
+    if (1 < tokenRanges.size()) {
+      int count = Math.min(parts, tokenRanges.size());
+      for (int i = 0; i < count; i++) {
+        List<RingRange> share
+            = tokenRanges.subList(i * tokenRanges.size() / count, (i + 1) * tokenRanges.size() / count);
+
+        segments.add(Segment.builder().withTokenRanges(Lists.newArrayList(share)).build());
+      }
+      return segments;
+    }
+
+    RingRange range = tokenRanges.get(0);
+    BigInteger span = range.span(rangeSize);
+    int count = span.min(BigInteger.valueOf(parts)).intValue();
+    BigInteger start = range.getStart();
+    for (int i = 1; i <= count; i++) {
+      BigInteger end = range.getEnd();
+      if (i < count) {
+        end = range.getStart().add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(count)));
+        if (greaterThan(end, rangeMax)) {
+          end = end.subtract(rangeSize);
+        }
+      }
+      segments.add(Segment.builder().withTokenRange(new RingRange(start, end)).build());
+      start = end;
+    }
+    LOG.debug("Split segment {} in {}", range, segments.size());
+    return segments;
+  }
+
+  private void checkTokens(BigInteger start, BigInteger stop, int tokenRangeCount) throws ReaperException {
+    if (!inRange(start) || !inRange(stop)) {
+      throw new ReaperException(String.format("Tokens (%s,%s) not in range of %s", start, stop, partitioner));
+    }
+    if (start.equals(stop) && tokenRangeCount != 1) {
+      throw new ReaperException(String.format("Tokens (%s,%s): two nodes have the same token", start, stop));
+    }
+  }
+
   private static boolean allTokensHaveBeenCoalesced(
       List<Segment> coalescedRepairSegments, Map<List<String>, List<RingRange>> replicasToRange) {
     int coalescedRanges =
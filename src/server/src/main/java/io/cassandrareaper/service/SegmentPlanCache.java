@@ -0,0 +1,90 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.core.RepairUnit;
+import io.cassandrareaper.core.Segment;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+
+/**
+ * The segments generated for the repair units of this Reaper instance, keyed by a fingerprint of everything their
+ * generation depends on: the ring's partitioner and tokens, the keyspace's replicas, the Cassandra version and the
+ * segment settings.
+ *
+ * <p>A run whose fingerprint was seen before reuses the segments of the previous one, skipping their generation and
+ * the sampling of the nodes' keys. Plans sized by data expire, so that they follow the data as it grows.
+ */
+public final class SegmentPlanCache {
+
+  private static final int MAX_PLANS = 100;
+  private static final long EXPIRY_DAYS = 30;
+
+  private final Cache<String, List<Segment>> plans
+      = CacheBuilder.newBuilder().maximumSize(MAX_PLANS).expireAfterWrite(EXPIRY_DAYS, TimeUnit.DAYS).build();
+
+  Optional<List<Segment>> get(String fingerprint) {
+    return Optional.ofNullable(plans.getIfPresent(fingerprint));
+  }
+
+  void put(String fingerprint, List<Segment> segments) {
+    plans.put(fingerprint, ImmutableList.copyOf(segments));
+  }
+
+  /**
+   * @return a hash of the inputs of the segment generation, independent of the order tokens and ranges come in
+   */
+  static String fingerprint(
+      String partitioner,
+      List<BigInteger> tokens,
+      Map<List<String>, List<String>> rangeToEndpoint,
+      String cassandraVersion,
+      RepairUnit repairUnit,
+      int segmentCount,
+      int segmentCountPerNode,
+      boolean segmentsByDataSize) {
+
+    Map<String, List<String>> replicas = new TreeMap<>();
+    rangeToEndpoint.forEach((range, endpoints) -> replicas.put(range.toString(), endpoints));
+
+    // replicas are kept in their order, the first one being the range's primary owner
+    String inputs = String.join(
+        "\n",
+        partitioner,
+        cassandraVersion,
+        repairUnit.getKeyspaceName(),
+        new TreeSet<>(repairUnit.getNodes()).toString(),
+        String.valueOf(repairUnit.getIncrementalRepair()),
+        String.valueOf(segmentCount),
+        String.valueOf(segmentCountPerNode),
+        String.valueOf(segmentsByDataSize),
+        new TreeSet<>(tokens).toString(),
+        replicas.toString());
+
+    return Hashing.sha256().hashString(inputs, StandardCharsets.UTF_8).toString();
+  }
+}
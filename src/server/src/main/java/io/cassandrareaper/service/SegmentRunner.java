@@ -31,6 +31,7 @@ import io.cassandrareaper.storage.IDistributedStorage;
 import java.lang.management.ManagementFactory;
 import java.lang.management.OperatingSystemMXBean;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -52,7 +53,9 @@ import javax.management.JMException;
 
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.sun.management.UnixOperatingSystemMXBean;
@@ -81,7 +84,8 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
 
   private static final long SLEEP_TIME_AFTER_POSTPONE_IN_MS = 10000;
   private static final ExecutorService METRICS_GRABBER_EXECUTOR = Executors.newFixedThreadPool(10);
-  private static final long METRICS_POLL_INTERVAL_MS = TimeUnit.SECONDS.toMillis(10);
+  private static final long METRICS_MIN_POLL_INTERVAL_MS = 250;
+  private static final long METRICS_MAX_POLL_INTERVAL_MS = TimeUnit.SECONDS.toMillis(5);
   private static final long METRICS_MAX_WAIT_MS = TimeUnit.MINUTES.toMillis(2);
 
   private final AppContext context;
@@ -95,10 +99,17 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
   private final RepairRunner repairRunner;
   private final RepairUnit repairUnit;
   private volatile int repairNo;
+  // notifications of the repair command that arrived before triggerRepair(..) returned its number, replayed after it
+  private final List<Runnable> earlyNotifications = Lists.newArrayList();
+  private boolean repairTriggered;
   private final AtomicBoolean segmentFailed;
   private final UUID leaderElectionId;
   private final AtomicBoolean successOrFailedNotified = new AtomicBoolean(false);
   private final AtomicBoolean completeNotified = new AtomicBoolean(false);
+  private volatile Collection<String> reservedReplicas = Collections.emptyList();
+  private volatile Collection<String> repairedReplicas = Collections.emptyList();
+  // authoritative copy of the segment while its repair command runs, written through to storage on state changes
+  private volatile RepairSegment trackedSegment;
 
 
   SegmentRunner(
@@ -135,7 +146,7 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
     if (takeLead()) {
       try {
         if (runRepair()) {
-          long delay = intensityBasedDelayMillis(intensity);
+          long delay = adaptiveDelayMillis(intensityBasedDelayMillis(intensity));
           try {
             Thread.sleep(delay);
           } catch (InterruptedException e) {
@@ -238,6 +249,12 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
       String keyspace = repairUnit.getKeyspaceName();
       boolean fullRepair = !repairUnit.getIncrementalRepair();
 
+      if (fullRepair && repairRunner.splitIfSlow(segment)) {
+        return false;
+      }
+      if (!reserveReplicas(segment, keyspace, coordinator)) {
+        return false;
+      }
       LazyInitializer<Set<String>> busyHosts = new BusyHostsInitializer(coordinator);
       if (!canRepair(segment, keyspace, coordinator, busyHosts)) {
         LOG.info(
@@ -292,7 +309,7 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
                     .withStartTime(DateTime.now())
                     .withId(segmentId)
                     .build();
-            context.storage.updateRepairSegment(segment);
+            updateTrackedSegment(segment);
 
             repairNo = coordinator.triggerRepair(
                     segment.getStartToken(),
@@ -305,13 +322,14 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
                     this,
                     segment.getTokenRange().getTokenRanges(),
                     repairUnit.getRepairThreadCount());
+            replayEarlyNotifications();
 
             if (0 != repairNo) {
               processTriggeredSegment(segment, coordinator, repairNo);
             } else {
               LOG.info("Nothing to repair for segment {} in keyspace {}", segmentId, keyspace);
 
-              context.storage.updateRepairSegment(
+              updateTrackedSegment(
                   segment
                       .with()
                       .withState(RepairSegment.State.DONE)
@@ -334,6 +352,7 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
       LOG.warn("Open files amount for process: " + getOpenFilesAmount());
       return false;
     } finally {
+      releaseReplicas();
       SEGMENT_RUNNERS.remove(segment.getId());
       context.metricRegistry
           .histogram(MetricRegistry.name(SegmentRunner.class, "open-files"))
@@ -363,21 +382,23 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
 
         boolean isDoneOrTimedOut = lastLoopTime + 60_000 > System.currentTimeMillis();
 
-        isDoneOrTimedOut |= RepairSegment.State.DONE == context.storage
-            .getRepairSegment(segment.getRunId(), segmentId).get().getState();
+        isDoneOrTimedOut |= RepairSegment.State.DONE == trackedSegment.getState();
 
         if (isDoneOrTimedOut) {
           break;
         }
         renewLead();
+        // other instances or the API may have aborted or postponed the segment meanwhile
+        refreshTrackedSegment();
+        renewReplicasReservation();
         lastLoopTime = System.currentTimeMillis();
       }
     } catch (InterruptedException e) {
       LOG.warn("Repair command {} on segment {} interrupted", this.repairNo, segmentId, e);
     } finally {
       coordinator.removeRepairStatusHandler(repairNo);
-      RepairSegment resultingSegment
-          = context.storage.getRepairSegment(repairRunner.getRepairRunId(), segmentId).get();
+      // the segment may have been aborted or postponed from elsewhere while it ran
+      RepairSegment resultingSegment = refreshTrackedSegment();
 
       LOG.info(
           "Repair command {} on segment {} returned with state {}",
@@ -441,6 +462,57 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
         repairUnit.getKeyspaceName());
   }
 
+  /**
+   * Writes a state change of the segment to storage and keeps it as the runner's copy, so that the notifications of the
+   * repair command don't need to read the segment back.
+   */
+  private void updateTrackedSegment(RepairSegment segment) {
+    context.storage.updateRepairSegment(segment);
+    trackedSegment = segment;
+  }
+
+  /**
+   * Re-reads the segment from storage, under the same lock as the notifications' writes so that it can't overwrite a
+   * newer state with an older read.
+   */
+  private RepairSegment refreshTrackedSegment() {
+    synchronized (condition) {
+      trackedSegment = context.storage.getRepairSegment(repairRunner.getRepairRunId(), segmentId).get();
+      return trackedSegment;
+    }
+  }
+
+  /**
+   * Handles, in their order, the notifications that arrived before the repair command's number was known.
+   */
+  private void replayEarlyNotifications() {
+    List<Runnable> notifications;
+    synchronized (earlyNotifications) {
+      repairTriggered = true;
+      notifications = Lists.newArrayList(earlyNotifications);
+      earlyNotifications.clear();
+    }
+    String threadName = Thread.currentThread().getName();
+    try {
+      for (Runnable notification : notifications) {
+        try {
+          notification.run();
+        } catch (RuntimeException e) {
+          LOG.error("Failed handling an early notification of repair {} for segment {}", repairNo, segmentId, e);
+        }
+      }
+    } finally {
+      Thread.currentThread().setName(threadName);
+    }
+  }
+
+  @VisibleForTesting
+  boolean isRepairTriggered() {
+    synchronized (earlyNotifications) {
+      return repairTriggered;
+    }
+  }
+
   private void declineRun() {
     LOG.info(
         "SegmentRunner declined to repair segment {} "
@@ -636,14 +708,18 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
                 .build());
 
         long start = System.currentTimeMillis();
+        // other instances answer within a second while requests keep coming, so start polling for the response
+        //  quickly and back off while it doesn't come
+        long pollInterval = METRICS_MIN_POLL_INTERVAL_MS;
 
         while ( (!result.isPresent() || result.get().isRequested())
             && start + METRICS_MAX_WAIT_MS > System.currentTimeMillis()) {
 
           try {
-            Thread.sleep(METRICS_POLL_INTERVAL_MS);
+            Thread.sleep(pollInterval);
           } catch (InterruptedException ignore) { }
-          LOG.info("Trying to get metrics from remote DCs for {} in {} of {}", node, nodeDc, clusterName);
+          pollInterval = Math.min(METRICS_MAX_POLL_INTERVAL_MS, 2 * pollInterval);
+          LOG.debug("Trying to get metrics from remote DCs for {} in {} of {}", node, nodeDc, clusterName);
           result = storage.getNodeMetrics(repairRunner.getRepairRunId(), node);
         }
       }
@@ -709,8 +785,14 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
       String message,
       JmxProxy jmxProxy) {
 
-    final RepairSegment segment = context.storage.getRepairSegment(repairRunner.getRepairRunId(), segmentId).get();
-    Thread.currentThread().setName(clusterName + ":" + segment.getRunId() + ":" + segmentId);
+    synchronized (earlyNotifications) {
+      if (!repairTriggered) {
+        // don't hold up the notification thread, which other repairs share, until triggerRepair(..) returns
+        earlyNotifications.add(() -> handle(repairNo, status, progress, message, jmxProxy));
+        return;
+      }
+    }
+    Thread.currentThread().setName(clusterName + ":" + repairRunner.getRepairRunId() + ":" + segmentId);
     LOG.debug(
         "handle called for repairCommandId {}, outcome {} / {} and message: {}",
         repairNo,
@@ -725,7 +807,7 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
     boolean failOutsideSynchronizedBlock = false;
     // DO NOT ADD EXTERNAL CALLS INSIDE THIS SYNCHRONIZED BLOCK (JMX PROXY ETC)
     synchronized (condition) {
-      RepairSegment currentSegment = context.storage.getRepairSegment(repairRunner.getRepairRunId(), segmentId).get();
+      RepairSegment currentSegment = null != trackedSegment ? trackedSegment : refreshTrackedSegment();
       // See status explanations at: https://wiki.apache.org/cassandra/RepairAsyncAPI
       // Old repair API – up to Cassandra-2.1.x
       if (status.isPresent()) {
@@ -779,7 +861,7 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
               && RepairSegment.State.NOT_STARTED == currentSegment.getState()
               && renewLead()) {
 
-            context.storage.updateRepairSegment(
+            updateTrackedSegment(
                 currentSegment
                     .with()
                     .withState(RepairSegment.State.RUNNING)
@@ -813,7 +895,7 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
                 segmentId,
                 repairNumber);
 
-            context.storage.updateRepairSegment(
+            updateTrackedSegment(
                 currentSegment
                     .with()
                     .withState(RepairSegment.State.DONE)
@@ -903,7 +985,7 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
               && RepairSegment.State.NOT_STARTED == currentSegment.getState()
               && renewLead()) {
 
-            context.storage.updateRepairSegment(
+            updateTrackedSegment(
                 currentSegment
                     .with()
                     .withState(RepairSegment.State.RUNNING)
@@ -940,7 +1022,7 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
                   segmentId,
                   repairNumber);
 
-              context.storage.updateRepairSegment(
+              updateTrackedSegment(
                   currentSegment
                       .with()
                       .withState(RepairSegment.State.DONE)
@@ -1056,13 +1138,25 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
     }
   }
 
+  /**
+   * Lets the run's intensity controller, if any, scale the delay to the load of the replicas that were just repaired.
+   */
+  private long adaptiveDelayMillis(long intensityDelayMillis) {
+    Optional<IntensityController> controller = repairRunner.getIntensityController();
+    if (!controller.isPresent()) {
+      return intensityDelayMillis;
+    }
+    IntensityController.Pressure.sample(context, clusterName, repairedReplicas).ifPresent(controller.get()::observe);
+    return controller.get().delayMillis(intensityDelayMillis);
+  }
+
   /**
    * Calculate the delay that should be used before starting the next repair segment.
    *
    * @return the delay in milliseconds.
    */
   long intensityBasedDelayMillis(double intensity) {
-    RepairSegment repairSegment = context.storage.getRepairSegment(repairRunner.getRepairRunId(), segmentId).get();
+    RepairSegment repairSegment = null != trackedSegment ? trackedSegment : refreshTrackedSegment();
     if (repairSegment.getEndTime() == null && repairSegment.getStartTime() == null) {
       return 0;
     } else if (repairSegment.getEndTime() != null && repairSegment.getStartTime() != null) {
@@ -1071,6 +1165,10 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
       long repairDuration = Math.max(1, repairEnd - repairStart);
       long delay = (long) (repairDuration / intensity - repairDuration);
       LOG.debug("Scheduling next runner run() with delay {} ms", delay);
+      if (RepairManager.partitionsRuns(context)) {
+        return delay;
+      }
+      // every instance repairs the segments of its own datacenter in the run, sharing its intensity
       int nbRunningReapers = countRunningReapers();
       LOG.debug("Concurrent reaper instances : {}", nbRunningReapers);
       return delay * nbRunningReapers;
@@ -1124,6 +1222,56 @@ final class SegmentRunner implements RepairStatusHandler, Runnable {
     }
   }
 
+  /**
+   * Reserves the replicas of the segment in the cluster's host reservation table, so no other segment of any run can
+   * start on them until this one is done. In multi-instance mode the reservation is also taken in the storage.
+   * When it fails no node has been probed, and the repair runner picks a segment on free replicas next time.
+   */
+  private boolean reserveReplicas(RepairSegment segment, String keyspace, JmxProxy coordinator) {
+    Collection<String> replicas;
+    try {
+      replicas = coordinator.tokenRangeToEndpoint(keyspace, segment.getTokenRange());
+    } catch (RuntimeException e) {
+      LOG.warn("SegmentRunner couldn't get the replicas of segment {} from coordinator", segmentId, e);
+      return false;
+    }
+
+    boolean reserved = context.hostReservations.reserve(clusterName, segmentId, replicas);
+    if (reserved && context.storage instanceof IDistributedStorage) {
+      reserved = ((IDistributedStorage) context.storage).reserveHosts(clusterName, segmentId, replicas);
+      if (!reserved) {
+        context.hostReservations.release(clusterName, segmentId);
+      }
+    }
+    if (reserved) {
+      reservedReplicas = replicas;
+      repairedReplicas = replicas;
+    } else {
+      LOG.info(
+          "SegmentRunner declined to repair segment {} because some of its replicas {} are reserved by another repair",
+          segmentId,
+          replicas);
+
+      repairRunner.updateLastEvent("Postponed due to affected hosts being reserved by other repairs");
+      context.metricRegistry.counter(MetricRegistry.name(SegmentRunner.class, "reserveHosts", "failed")).inc();
+    }
+    return reserved;
+  }
+
+  private void renewReplicasReservation() {
+    if (context.storage instanceof IDistributedStorage) {
+      ((IDistributedStorage) context.storage).renewHostReservation(clusterName, segmentId, reservedReplicas);
+    }
+  }
+
+  private void releaseReplicas() {
+    context.hostReservations.release(clusterName, segmentId);
+    if (context.storage instanceof IDistributedStorage && !reservedReplicas.isEmpty()) {
+      ((IDistributedStorage) context.storage).releaseHosts(clusterName, segmentId, reservedReplicas);
+    }
+    reservedReplicas = Collections.emptyList();
+  }
+
   private int countRunningReapers() {
     return context.storage instanceof IDistributedStorage
         ? ((IDistributedStorage) context.storage).countRunningReapers()
@@ -39,7 +39,9 @@ import io.cassandrareaper.storage.cassandra.Migration016;
 import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.SortedSet;
@@ -79,6 +81,7 @@ import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Futures;
 import io.dropwizard.setup.Environment;
@@ -103,6 +106,8 @@ public final class CassandraStorage implements IStorage, IDistributedStorage {
   private static final String SELECT_REPAIR_UNIT = "SELECT * FROM repair_unit_v1";
   private static final String SELECT_LEADERS = "SELECT * FROM leader";
   private static final String SELECT_RUNNING_REAPERS = "SELECT reaper_instance_id FROM running_reapers";
+  private static final String SELECT_RUNNING_REAPERS_HEARTBEATS
+      = "SELECT reaper_instance_id, last_heartbeat FROM running_reapers";
 
   private static final Logger LOG = LoggerFactory.getLogger(CassandraStorage.class);
 
@@ -157,10 +162,14 @@ public final class CassandraStorage implements IStorage, IDistributedStorage {
   private PreparedStatement releaseLeadPrepStmt;
   private PreparedStatement forceReleaseLeadPrepStmt;
   private PreparedStatement getRunningReapersCountPrepStmt;
+  private PreparedStatement getRunningReapersPrepStmt;
   private PreparedStatement saveHeartbeatPrepStmt;
   private PreparedStatement storeNodeMetricsPrepStmt;
   private PreparedStatement getNodeMetricsPrepStmt;
   private PreparedStatement getNodeMetricsByNodePrepStmt;
+  private PreparedStatement reserveHostPrepStmt;
+  private PreparedStatement renewHostReservationPrepStmt;
+  private PreparedStatement releaseHostPrepStmt;
   private PreparedStatement getSnapshotPrepStmt;
   private PreparedStatement deleteSnapshotPrepStmt;
   private PreparedStatement saveSnapshotPrepStmt;
@@ -341,6 +350,7 @@ public final class CassandraStorage implements IStorage, IDistributedStorage {
     releaseLeadPrepStmt = session.prepare("DELETE FROM leader WHERE leader_id = ? IF reaper_instance_id = ?");
     forceReleaseLeadPrepStmt = session.prepare("DELETE FROM leader WHERE leader_id = ?");
     getRunningReapersCountPrepStmt = session.prepare(SELECT_RUNNING_REAPERS);
+    getRunningReapersPrepStmt = session.prepare(SELECT_RUNNING_REAPERS_HEARTBEATS);
     saveHeartbeatPrepStmt = session
         .prepare(
             "INSERT INTO running_reapers(reaper_instance_id, reaper_instance_host, last_heartbeat)"
@@ -379,6 +389,19 @@ public final class CassandraStorage implements IStorage, IDistributedStorage {
             ex);
       }
     }
+
+    prepareHostReservationStatements();
+  }
+
+  private void prepareHostReservationStatements() {
+    reserveHostPrepStmt = session.prepare(
+        "INSERT INTO host_reservation (cluster_name, host, owner_id, reaper_instance_id) VALUES(?, ?, ?, ?)"
+            + " IF NOT EXISTS");
+    renewHostReservationPrepStmt = session.prepare(
+        "UPDATE host_reservation SET owner_id = ?, reaper_instance_id = ? WHERE cluster_name = ? AND host = ?"
+            + " IF owner_id = ?");
+    releaseHostPrepStmt = session.prepare(
+        "DELETE FROM host_reservation WHERE cluster_name = ? AND host = ? IF owner_id = ?");
   }
 
   @Override
@@ -480,33 +503,7 @@ public final class CassandraStorage implements IStorage, IDistributedStorage {
       assert 0 == segment.getFailCount();
       assert (null != segment.getCoordinatorHost()) == isIncremental;
 
-      if (isIncremental) {
-        repairRunBatch.add(
-            insertRepairSegmentIncrementalPrepStmt.bind(
-              segment.getRunId(),
-              segment.getId(),
-              segment.getRepairUnitId(),
-              segment.getStartToken(),
-              segment.getEndToken(),
-              segment.getState().ordinal(),
-              segment.getCoordinatorHost(),
-              segment.getFailCount()));
-      } else {
-        try {
-          repairRunBatch.add(
-              insertRepairSegmentPrepStmt.bind(
-                  segment.getRunId(),
-                  segment.getId(),
-                  segment.getRepairUnitId(),
-                  segment.getStartToken(),
-                  segment.getEndToken(),
-                  segment.getState().ordinal(),
-                  segment.getFailCount(),
-                  objectMapper.writeValueAsString(segment.getTokenRange().getTokenRanges())));
-        } catch (JsonProcessingException e) {
-          throw new IllegalStateException(e);
-        }
-      }
+      repairRunBatch.add(insertRepairSegment(segment));
 
       nbRanges += segment.getTokenRange().getTokenRanges().size();
 
@@ -535,6 +532,44 @@ public final class CassandraStorage implements IStorage, IDistributedStorage {
     return newRepairRun;
   }
 
+  @Override
+  public void addRepairSegments(Collection<RepairSegment.Builder> newSegments, UUID runId) {
+    BatchStatement segmentsBatch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+    for (RepairSegment.Builder builder : newSegments) {
+      RepairSegment segment = builder.withRunId(runId).withId(UUIDs.timeBased()).build();
+      assert RepairSegment.State.NOT_STARTED == segment.getState();
+      segmentsBatch.add(insertRepairSegment(segment));
+    }
+    session.execute(segmentsBatch);
+  }
+
+  private Statement insertRepairSegment(RepairSegment segment) {
+    if (null != segment.getCoordinatorHost()) {
+      return insertRepairSegmentIncrementalPrepStmt.bind(
+          segment.getRunId(),
+          segment.getId(),
+          segment.getRepairUnitId(),
+          segment.getStartToken(),
+          segment.getEndToken(),
+          segment.getState().ordinal(),
+          segment.getCoordinatorHost(),
+          segment.getFailCount());
+    }
+    try {
+      return insertRepairSegmentPrepStmt.bind(
+          segment.getRunId(),
+          segment.getId(),
+          segment.getRepairUnitId(),
+          segment.getStartToken(),
+          segment.getEndToken(),
+          segment.getState().ordinal(),
+          segment.getFailCount(),
+          objectMapper.writeValueAsString(segment.getTokenRange().getTokenRanges()));
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
   @Override
   public boolean updateRepairRun(RepairRun repairRun) {
     session.execute(
@@ -1225,6 +1260,43 @@ public final class CassandraStorage implements IStorage, IDistributedStorage {
     storeNodeMetricsImpl(runId, nodeMetrics, minute + 2);
   }
 
+  @Override
+  public boolean reserveHosts(String clusterName, UUID ownerId, Collection<String> hosts) {
+    // all hosts of a cluster live in one partition, so the batch's conditions are applied all at once or not at all
+    BatchStatement batch = new BatchStatement();
+    hosts.forEach(host -> batch.add(
+        reserveHostPrepStmt.bind(clusterName, host, ownerId, AppContext.REAPER_INSTANCE_ID)));
+    boolean reserved = hosts.isEmpty() || session.execute(batch).wasApplied();
+    LOG.debug(
+        "{} hosts {} of cluster {} for {}",
+        reserved ? "Reserved" : "Could not reserve",
+        hosts,
+        clusterName,
+        ownerId);
+    return reserved;
+  }
+
+  @Override
+  public boolean renewHostReservation(String clusterName, UUID ownerId, Collection<String> hosts) {
+    BatchStatement batch = new BatchStatement();
+    hosts.forEach(host -> batch.add(
+        renewHostReservationPrepStmt.bind(ownerId, AppContext.REAPER_INSTANCE_ID, clusterName, host, ownerId)));
+    boolean renewed = hosts.isEmpty() || session.execute(batch).wasApplied();
+    if (!renewed) {
+      LOG.warn("Failed to renew reservation of hosts {} of cluster {} for {}", hosts, clusterName, ownerId);
+    }
+    return renewed;
+  }
+
+  @Override
+  public void releaseHosts(String clusterName, UUID ownerId, Collection<String> hosts) {
+    BatchStatement batch = new BatchStatement();
+    hosts.forEach(host -> batch.add(releaseHostPrepStmt.bind(clusterName, host, ownerId)));
+    if (!hosts.isEmpty() && !session.execute(batch).wasApplied()) {
+      LOG.warn("Hosts {} of cluster {} were no longer reserved for {}", hosts, clusterName, ownerId);
+    }
+  }
+
   private void storeNodeMetricsImpl(UUID runId, NodeMetrics nodeMetrics, long minute) {
     session.executeAsync(
         storeNodeMetricsPrepStmt.bind(
@@ -1275,6 +1347,16 @@ public final class CassandraStorage implements IStorage, IDistributedStorage {
     return runningReapers > 0 ? runningReapers : 1;
   }
 
+  @Override
+  public Map<UUID, DateTime> getRunningReapers() {
+    Map<UUID, DateTime> heartbeats = Maps.newHashMap();
+    for (Row row : session.execute(getRunningReapersPrepStmt.bind())) {
+      Date lastHeartbeat = row.getTimestamp("last_heartbeat");
+      heartbeats.put(row.getUUID("reaper_instance_id"), null != lastHeartbeat ? new DateTime(lastHeartbeat) : null);
+    }
+    return heartbeats;
+  }
+
   @Override
   public void saveHeartbeat() {
     session.executeAsync(
@@ -0,0 +1,702 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.storage;
+
+import io.cassandrareaper.ReaperApplicationConfiguration.EmbeddedStorageConfiguration;
+import io.cassandrareaper.ReaperException;
+import io.cassandrareaper.core.Cluster;
+import io.cassandrareaper.core.RepairRun;
+import io.cassandrareaper.core.RepairSchedule;
+import io.cassandrareaper.core.RepairSegment;
+import io.cassandrareaper.core.RepairUnit;
+import io.cassandrareaper.core.Snapshot;
+import io.cassandrareaper.resources.view.RepairRunStatus;
+import io.cassandrareaper.resources.view.RepairScheduleStatus;
+import io.cassandrareaper.service.RepairParameters;
+import io.cassandrareaper.service.RingRange;
+import io.cassandrareaper.storage.embedded.EntityCodec;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.function.Function;
+
+import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+import io.dropwizard.lifecycle.Managed;
+import org.h2.mvstore.MVMap;
+import org.h2.mvstore.MVStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implements the StorageAPI on top of a single-file, log-structured key-value store (H2's MVStore).
+ *
+ * <p>Every entity is kept as a JSON document in a primary map. Secondary maps hold ordered composite keys
+ * (cluster, unit, run state) so that the lookups the repair loop makes on every tick are served by prefix range scans
+ * instead of full scans. Segments are keyed by run and start token, with their state leading the document, so that a
+ * state change is a single put and scans by state don't decode the other segments. Writes are appended to the file and
+ * made durable at the configured auto-commit delay, as well as on shutdown.
+ *
+ * <p>This is meant for single-instance deployments that want persistence without operating a database.
+ */
+public final class EmbeddedStorage implements IStorage, Managed {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EmbeddedStorage.class);
+
+  private static final char SEP = (char) 1;
+  private static final char END = (char) 2;
+  // shifts every partitioner's token space into non-negative values, so fixed-width hex sorts like the tokens do
+  private static final BigInteger TOKEN_OFFSET = BigInteger.valueOf(2).pow(127);
+
+  private final MVStore store;
+  private final MVMap<String, String> clusters;
+  private final MVMap<String, String> repairUnits;
+  private final MVMap<String, String> repairUnitsByKey;
+  private final MVMap<String, String> repairRuns;
+  private final MVMap<String, String> repairRunsByCluster;
+  private final MVMap<String, String> repairRunsByUnit;
+  private final MVMap<String, String> repairRunsByState;
+  private final MVMap<String, String> repairSegments;
+  private final MVMap<String, String> repairSegmentKeys;
+  private final MVMap<String, String> repairSchedules;
+  private final MVMap<String, String> snapshots;
+
+  public EmbeddedStorage(EmbeddedStorageConfiguration config) throws ReaperException {
+    this(open(config));
+  }
+
+  private EmbeddedStorage(MVStore store) {
+    this.store = store;
+    clusters = store.openMap("cluster");
+    repairUnits = store.openMap("repair_unit");
+    repairUnitsByKey = store.openMap("repair_unit_by_key");
+    repairRuns = store.openMap("repair_run");
+    repairRunsByCluster = store.openMap("repair_run_by_cluster");
+    repairRunsByUnit = store.openMap("repair_run_by_unit");
+    repairRunsByState = store.openMap("repair_run_by_state");
+    repairSegments = store.openMap("repair_segment");
+    repairSegmentKeys = store.openMap("repair_segment_key");
+    repairSchedules = store.openMap("repair_schedule");
+    snapshots = store.openMap("snapshot");
+  }
+
+  private static MVStore open(EmbeddedStorageConfiguration config) throws ReaperException {
+    File file = new File(config.getPath());
+    if (null != file.getParentFile() && !file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+      throw new ReaperException("cannot create directory for embedded storage: " + file.getParent());
+    }
+    try {
+      LOG.info("opening embedded storage at {}", file.getAbsolutePath());
+      MVStore store = new MVStore.Builder()
+          .fileName(file.getAbsolutePath())
+          .cacheSize(config.getCacheSizeInMb())
+          .compress()
+          .open();
+
+      store.setAutoCommitDelay((int) config.getAutoCommitDelay().toMillis());
+      return store;
+    } catch (IllegalStateException e) {
+      throw new ReaperException("cannot open embedded storage at " + file.getAbsolutePath(), e);
+    }
+  }
+
+  @Override
+  public void start() {
+    // the store is opened in the constructor
+  }
+
+  @Override
+  public void stop() {
+    if (!store.isClosed()) {
+      store.close();
+    }
+  }
+
+  @Override
+  public boolean isStorageConnected() {
+    return !store.isClosed();
+  }
+
+  @Override
+  public Collection<Cluster> getClusters() {
+    return Lists.newArrayList(values(clusters, EntityCodec::decodeCluster));
+  }
+
+  @Override
+  public boolean addCluster(Cluster cluster) {
+    return null == clusters.putIfAbsent(cluster.getName(), EntityCodec.encodeCluster(cluster));
+  }
+
+  @Override
+  public synchronized boolean updateCluster(Cluster newCluster) {
+    if (!clusters.containsKey(newCluster.getName())) {
+      return false;
+    }
+    clusters.put(newCluster.getName(), EntityCodec.encodeCluster(newCluster));
+    return true;
+  }
+
+  @Override
+  public Optional<Cluster> getCluster(String clusterName) {
+    return Optional.ofNullable(clusters.get(clusterName)).map(EntityCodec::decodeCluster);
+  }
+
+  @Override
+  public synchronized Optional<Cluster> deleteCluster(String clusterName) {
+    if (getRepairSchedulesForCluster(clusterName).isEmpty()
+        && !scan(repairRunsByCluster, prefix(clusterName)).hasNext()) {
+
+      for (String key : Lists.newArrayList(scan(repairUnitsByKey, prefix(clusterName)))) {
+        String unitId = repairUnitsByKey.remove(key);
+        repairUnits.remove(unitId);
+      }
+      return Optional.ofNullable(clusters.remove(clusterName)).map(EntityCodec::decodeCluster);
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public synchronized RepairRun addRepairRun(
+      RepairRun.Builder repairRun,
+      Collection<RepairSegment.Builder> newSegments) {
+
+    RepairRun newRepairRun = repairRun.build(UUIDs.timeBased());
+    repairRuns.put(newRepairRun.getId().toString(), EntityCodec.encodeRepairRun(newRepairRun));
+    repairRunsByCluster.put(runByClusterKey(newRepairRun), newRepairRun.getId().toString());
+    repairRunsByUnit.put(key(newRepairRun.getRepairUnitId(), newRepairRun.getId()), "");
+    repairRunsByState.put(runByStateKey(newRepairRun), "");
+
+    for (RepairSegment.Builder segment : newSegments) {
+      putRepairSegment(segment.withRunId(newRepairRun.getId()).withId(UUIDs.timeBased()).build());
+    }
+    return newRepairRun;
+  }
+
+  @Override
+  public synchronized boolean updateRepairRun(RepairRun repairRun) {
+    Optional<RepairRun> oldRepairRun = getRepairRun(repairRun.getId());
+    if (!oldRepairRun.isPresent()) {
+      return false;
+    }
+    // the new state's entry goes in before the old one goes, so lookups by state, which check the run's actual state,
+    // never miss the run
+    repairRunsByState.put(runByStateKey(repairRun), "");
+    repairRuns.put(repairRun.getId().toString(), EntityCodec.encodeRepairRun(repairRun));
+    if (oldRepairRun.get().getRunState() != repairRun.getRunState()) {
+      repairRunsByState.remove(runByStateKey(oldRepairRun.get()));
+    }
+    return true;
+  }
+
+  @Override
+  public Optional<RepairRun> getRepairRun(UUID id) {
+    return Optional.ofNullable(repairRuns.get(id.toString())).map(EntityCodec::decodeRepairRun);
+  }
+
+  @Override
+  public List<RepairRun> getRepairRunsForCluster(String clusterName, Optional<Integer> limit) {
+    List<RepairRun> foundRepairRuns = Lists.newArrayList();
+    Iterator<String> keys = scan(repairRunsByCluster, prefix(clusterName));
+    while (keys.hasNext() && foundRepairRuns.size() < limit.orElse(1000)) {
+      getRepairRun(UUID.fromString(repairRunsByCluster.get(keys.next()))).ifPresent(foundRepairRuns::add);
+    }
+    return foundRepairRuns;
+  }
+
+  @Override
+  public Collection<RepairRun> getRepairRunsForUnit(UUID repairUnitId) {
+    List<RepairRun> foundRepairRuns = Lists.newArrayList();
+    Iterator<String> keys = scan(repairRunsByUnit, prefix(repairUnitId.toString()));
+    while (keys.hasNext()) {
+      getRepairRun(UUID.fromString(lastPart(keys.next()))).ifPresent(foundRepairRuns::add);
+    }
+    return foundRepairRuns;
+  }
+
+  @Override
+  public Collection<RepairRun> getRepairRunsWithState(RepairRun.RunState runState) {
+    List<RepairRun> foundRepairRuns = Lists.newArrayList();
+    Iterator<String> keys = scan(repairRunsByState, prefix(runState.name()));
+    while (keys.hasNext()) {
+      getRepairRun(UUID.fromString(lastPart(keys.next())))
+          .filter(repairRun -> repairRun.getRunState() == runState)
+          .ifPresent(foundRepairRuns::add);
+    }
+    return foundRepairRuns;
+  }
+
+  @Override
+  public synchronized Optional<RepairRun> deleteRepairRun(UUID id) {
+    Optional<RepairRun> deletedRun = getRepairRun(id);
+    if (deletedRun.isPresent()) {
+      RepairRun run = deletedRun.get();
+      repairRuns.remove(id.toString());
+      repairRunsByCluster.remove(runByClusterKey(run));
+      repairRunsByUnit.remove(key(run.getRepairUnitId(), id));
+      repairRunsByState.remove(runByStateKey(run));
+
+      if (getSegmentAmountForRepairRunWithState(id, RepairSegment.State.RUNNING) == 0) {
+        deleteRepairUnit(run.getRepairUnitId());
+        deleteRepairSegmentsForRun(id);
+        deletedRun = Optional.of(run.with().runState(RepairRun.RunState.DELETED).build(id));
+      }
+    }
+    return deletedRun;
+  }
+
+  /**
+   * Delete a RepairUnit instance from Storage, but only if no run or schedule is referencing it.
+   */
+  private void deleteRepairUnit(UUID repairUnitId) {
+    boolean referenced = scan(repairRunsByUnit, prefix(repairUnitId.toString())).hasNext()
+        || values(repairSchedules, EntityCodec::decodeRepairSchedule).stream()
+            .anyMatch(schedule -> schedule.getRepairUnitId().equals(repairUnitId));
+
+    if (!referenced) {
+      String unit = repairUnits.remove(repairUnitId.toString());
+      if (null != unit) {
+        repairUnitsByKey.remove(unitKey(EntityCodec.decodeRepairUnit(unit).with()));
+      }
+    }
+  }
+
+  private void deleteRepairSegmentsForRun(UUID runId) {
+    for (String key : Lists.newArrayList(scan(repairSegments, prefix(runId.toString())))) {
+      repairSegments.remove(key);
+      repairSegmentKeys.remove(lastPart(key));
+    }
+  }
+
+  @Override
+  public synchronized RepairUnit addRepairUnit(RepairUnit.Builder repairUnit) {
+    Optional<RepairUnit> existing = getRepairUnit(repairUnit);
+    if (existing.isPresent() && repairUnit.incrementalRepair == existing.get().getIncrementalRepair()) {
+      return existing.get();
+    }
+    RepairUnit newRepairUnit = repairUnit.build(UUIDs.timeBased());
+    repairUnits.put(newRepairUnit.getId().toString(), EntityCodec.encodeRepairUnit(newRepairUnit));
+    repairUnitsByKey.put(unitKey(repairUnit), newRepairUnit.getId().toString());
+    return newRepairUnit;
+  }
+
+  @Override
+  public RepairUnit getRepairUnit(UUID id) {
+    String unit = repairUnits.get(id.toString());
+    Preconditions.checkArgument(null != unit);
+    return EntityCodec.decodeRepairUnit(unit);
+  }
+
+  @Override
+  public Optional<RepairUnit> getRepairUnit(RepairUnit.Builder params) {
+    return Optional.ofNullable(repairUnitsByKey.get(unitKey(params)))
+        .map(repairUnits::get)
+        .map(EntityCodec::decodeRepairUnit);
+  }
+
+  @Override
+  public synchronized void addRepairSegments(Collection<RepairSegment.Builder> newSegments, UUID runId) {
+    for (RepairSegment.Builder segment : newSegments) {
+      putRepairSegment(segment.withRunId(runId).withId(UUIDs.timeBased()).build());
+    }
+  }
+
+  private void putRepairSegment(RepairSegment segment) {
+    String key = segmentKey(segment);
+    repairSegments.put(key, segmentValue(segment));
+    repairSegmentKeys.put(segment.getId().toString(), key);
+  }
+
+  @Override
+  public synchronized boolean updateRepairSegment(RepairSegment newRepairSegment) {
+    String key = repairSegmentKeys.get(newRepairSegment.getId().toString());
+    if (null == key) {
+      return false;
+    }
+    // the state is part of the value, so the segment moves from one state to the other in a single put
+    repairSegments.put(key, segmentValue(newRepairSegment));
+    return true;
+  }
+
+  @Override
+  public Optional<RepairSegment> getRepairSegment(UUID runId, UUID segmentId) {
+    return Optional.ofNullable(repairSegmentKeys.get(segmentId.toString()))
+        .map(repairSegments::get)
+        .map(EmbeddedStorage::decodeSegmentValue);
+  }
+
+  @Override
+  public Collection<RepairSegment> getRepairSegmentsForRun(UUID runId) {
+    List<RepairSegment> segments = Lists.newArrayList();
+    Iterator<String> keys = scan(repairSegments, prefix(runId.toString()));
+    while (keys.hasNext()) {
+      segments.add(decodeSegmentValue(repairSegments.get(keys.next())));
+    }
+    return segments;
+  }
+
+  @Override
+  public Optional<RepairSegment> getNextFreeSegmentInRange(UUID runId, Optional<RingRange> range) {
+    String runPrefix = prefix(runId.toString());
+    if (!range.isPresent()) {
+      return firstEnclosed(Optional.empty(), scan(repairSegments, runPrefix));
+    }
+    // segments are ordered by start token, so scanning starts at the range start and stops past its end,
+    // wrapping around the ring once for wrapping ranges
+    RingRange ringRange = range.get();
+    String from = runPrefix + token(ringRange.getStart());
+    String to = runPrefix + token(ringRange.getEnd()) + END;
+
+    Optional<RepairSegment> segment = firstEnclosed(range, scan(repairSegments, from, limit(runPrefix)));
+    if (!segment.isPresent() && ringRange.isWrapping()) {
+      segment = firstEnclosed(range, scan(repairSegments, runPrefix, to));
+    }
+    return segment;
+  }
+
+  /**
+   * @return the first segment not started yet that the range, if any, encloses
+   */
+  private Optional<RepairSegment> firstEnclosed(Optional<RingRange> range, Iterator<String> keys) {
+    while (keys.hasNext()) {
+      String value = repairSegments.get(keys.next());
+      if (!hasState(value, RepairSegment.State.NOT_STARTED)) {
+        continue;
+      }
+      RepairSegment segment = decodeSegmentValue(value);
+      if (!range.isPresent() || range.get().encloses(segment.getTokenRange().getBaseRange())) {
+        return Optional.of(segment);
+      }
+      if (!range.get().isWrapping() && 0 < segment.getStartToken().compareTo(range.get().getEnd())) {
+        break;
+      }
+    }
+    return Optional.empty();
+  }
+
+  @Override
+  public Collection<RepairSegment> getSegmentsWithState(UUID runId, RepairSegment.State segmentState) {
+    List<RepairSegment> segments = Lists.newArrayList();
+    Iterator<String> keys = scan(repairSegments, prefix(runId.toString()));
+    while (keys.hasNext()) {
+      String value = repairSegments.get(keys.next());
+      if (hasState(value, segmentState)) {
+        segments.add(decodeSegmentValue(value));
+      }
+    }
+    return segments;
+  }
+
+  @Override
+  public Collection<RepairParameters> getOngoingRepairsInCluster(String clusterName) {
+    List<RepairParameters> ongoingRepairs = Lists.newArrayList();
+    for (RepairRun run : getRepairRunsWithState(RepairRun.RunState.RUNNING)) {
+      if (!clusterName.equals(run.getClusterName())) {
+        continue;
+      }
+      for (RepairSegment segment : getSegmentsWithState(run.getId(), RepairSegment.State.RUNNING)) {
+        RepairUnit unit = getRepairUnit(segment.getRepairUnitId());
+        ongoingRepairs.add(
+            new RepairParameters(
+                segment.getTokenRange(), unit.getKeyspaceName(), unit.getColumnFamilies(), run.getRepairParallelism()));
+      }
+    }
+    return ongoingRepairs;
+  }
+
+  @Override
+  public SortedSet<UUID> getRepairRunIdsForCluster(String clusterName) {
+    SortedSet<UUID> repairRunIds = new TreeSet<>(
+        (u0, u1) -> u0.timestamp() != u1.timestamp() ? Long.compare(u0.timestamp(), u1.timestamp()) : u0.compareTo(u1));
+    Iterator<String> keys = scan(repairRunsByCluster, prefix(clusterName));
+    while (keys.hasNext()) {
+      repairRunIds.add(UUID.fromString(repairRunsByCluster.get(keys.next())));
+    }
+    return repairRunIds;
+  }
+
+  @Override
+  public int getSegmentAmountForRepairRun(UUID runId) {
+    return count(repairSegments, prefix(runId.toString()));
+  }
+
+  @Override
+  public int getSegmentAmountForRepairRunWithState(UUID runId, RepairSegment.State state) {
+    int count = 0;
+    Iterator<String> keys = scan(repairSegments, prefix(runId.toString()));
+    while (keys.hasNext()) {
+      if (hasState(repairSegments.get(keys.next()), state)) {
+        ++count;
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public RepairSchedule addRepairSchedule(RepairSchedule.Builder repairSchedule) {
+    RepairSchedule newRepairSchedule = repairSchedule.build(UUIDs.timeBased());
+    repairSchedules.put(newRepairSchedule.getId().toString(), EntityCodec.encodeRepairSchedule(newRepairSchedule));
+    return newRepairSchedule;
+  }
+
+  @Override
+  public Optional<RepairSchedule> getRepairSchedule(UUID id) {
+    return Optional.ofNullable(repairSchedules.get(id.toString())).map(EntityCodec::decodeRepairSchedule);
+  }
+
+  @Override
+  public Collection<RepairSchedule> getRepairSchedulesForCluster(String clusterName) {
+    Collection<RepairSchedule> foundRepairSchedules = new ArrayList<>();
+    for (RepairSchedule repairSchedule : getAllRepairSchedules()) {
+      RepairUnit repairUnit = getRepairUnit(repairSchedule.getRepairUnitId());
+      if (repairUnit.getClusterName().equals(clusterName)) {
+        foundRepairSchedules.add(repairSchedule);
+      }
+    }
+    return foundRepairSchedules;
+  }
+
+  @Override
+  public Collection<RepairSchedule> getRepairSchedulesForKeyspace(String keyspaceName) {
+    Collection<RepairSchedule> foundRepairSchedules = new ArrayList<>();
+    for (RepairSchedule repairSchedule : getAllRepairSchedules()) {
+      RepairUnit repairUnit = getRepairUnit(repairSchedule.getRepairUnitId());
+      if (repairUnit.getKeyspaceName().equals(keyspaceName)) {
+        foundRepairSchedules.add(repairSchedule);
+      }
+    }
+    return foundRepairSchedules;
+  }
+
+  @Override
+  public Collection<RepairSchedule> getRepairSchedulesForClusterAndKeyspace(String clusterName, String keyspaceName) {
+    Collection<RepairSchedule> foundRepairSchedules = new ArrayList<>();
+    for (RepairSchedule repairSchedule : getAllRepairSchedules()) {
+      RepairUnit repairUnit = getRepairUnit(repairSchedule.getRepairUnitId());
+      if (repairUnit.getClusterName().equals(clusterName) && repairUnit.getKeyspaceName().equals(keyspaceName)) {
+        foundRepairSchedules.add(repairSchedule);
+      }
+    }
+    return foundRepairSchedules;
+  }
+
+  @Override
+  public Collection<RepairSchedule> getAllRepairSchedules() {
+    return values(repairSchedules, EntityCodec::decodeRepairSchedule);
+  }
+
+  @Override
+  public synchronized boolean updateRepairSchedule(RepairSchedule newRepairSchedule) {
+    if (!repairSchedules.containsKey(newRepairSchedule.getId().toString())) {
+      return false;
+    }
+    repairSchedules.put(newRepairSchedule.getId().toString(), EntityCodec.encodeRepairSchedule(newRepairSchedule));
+    return true;
+  }
+
+  @Override
+  public synchronized Optional<RepairSchedule> deleteRepairSchedule(UUID id) {
+    return Optional.ofNullable(repairSchedules.remove(id.toString()))
+        .map(EntityCodec::decodeRepairSchedule)
+        .map(schedule -> schedule.with().state(RepairSchedule.State.DELETED).build(id));
+  }
+
+  @Override
+  public Collection<RepairRunStatus> getClusterRunStatuses(String clusterName, int limit) {
+    if (!clusters.containsKey(clusterName)) {
+      return Collections.emptyList();
+    }
+    List<RepairRunStatus> runStatuses = Lists.newArrayList();
+    for (RepairRun run : getRepairRunsForCluster(clusterName, Optional.of(limit))) {
+      RepairUnit unit = getRepairUnit(run.getRepairUnitId());
+      int segmentsRepaired = getSegmentAmountForRepairRunWithState(run.getId(), RepairSegment.State.DONE);
+      int totalSegments = getSegmentAmountForRepairRun(run.getId())
+          - getSegmentAmountForRepairRunWithState(run.getId(), RepairSegment.State.SUPERSEDED);
+      runStatuses.add(
+          new RepairRunStatus(
+              run.getId(),
+              clusterName,
+              unit.getKeyspaceName(),
+              unit.getColumnFamilies(),
+              segmentsRepaired,
+              totalSegments,
+              run.getRunState(),
+              run.getStartTime(),
+              run.getEndTime(),
+              run.getCause(),
+              run.getOwner(),
+              run.getLastEvent(),
+              run.getCreationTime(),
+              run.getPauseTime(),
+              run.getIntensity(),
+              unit.getIncrementalRepair(),
+              run.getRepairParallelism(),
+              unit.getNodes(),
+              unit.getDatacenters(),
+              unit.getBlacklistedTables(),
+              unit.getRepairThreadCount()));
+    }
+    return runStatuses;
+  }
+
+  @Override
+  public Collection<RepairScheduleStatus> getClusterScheduleStatuses(String clusterName) {
+    if (!clusters.containsKey(clusterName)) {
+      return Collections.emptyList();
+    }
+    List<RepairScheduleStatus> scheduleStatuses = Lists.newArrayList();
+    for (RepairSchedule schedule : getRepairSchedulesForCluster(clusterName)) {
+      RepairUnit unit = getRepairUnit(schedule.getRepairUnitId());
+      scheduleStatuses.add(new RepairScheduleStatus(schedule, unit));
+    }
+    return scheduleStatuses;
+  }
+
+  @Override
+  public boolean saveSnapshot(Snapshot snapshot) {
+    snapshots.put(key(snapshot.getClusterName(), snapshot.getName()), EntityCodec.encodeSnapshot(snapshot));
+    return true;
+  }
+
+  @Override
+  public boolean deleteSnapshot(Snapshot snapshot) {
+    snapshots.remove(key(snapshot.getClusterName(), snapshot.getName()));
+    return true;
+  }
+
+  @Override
+  public Snapshot getSnapshot(String clusterName, String snapshotName) {
+    String snapshot = snapshots.get(key(clusterName, snapshotName));
+    return null != snapshot ? EntityCodec.decodeSnapshot(snapshot) : null;
+  }
+
+  private static String segmentValue(RepairSegment segment) {
+    return key(segment.getState().name(), EntityCodec.encodeRepairSegment(segment));
+  }
+
+  private static boolean hasState(String segmentValue, RepairSegment.State state) {
+    return segmentValue.startsWith(prefix(state.name()));
+  }
+
+  private static RepairSegment decodeSegmentValue(String segmentValue) {
+    return EntityCodec.decodeRepairSegment(segmentValue.substring(segmentValue.indexOf(SEP) + 1));
+  }
+
+  private static String runByClusterKey(RepairRun run) {
+    // newest first, as the listing endpoints expect
+    return key(run.getClusterName(), String.format("%016x", Long.MAX_VALUE - run.getId().timestamp()), run.getId());
+  }
+
+  private static String segmentKey(RepairSegment segment) {
+    return key(segment.getRunId(), token(segment.getStartToken()), segment.getId());
+  }
+
+  private static String runByStateKey(RepairRun run) {
+    return key(run.getRunState().name(), run.getId());
+  }
+
+  private static String unitKey(RepairUnit.Builder unit) {
+    return key(
+        unit.clusterName,
+        unit.keyspaceName,
+        new TreeSet<>(unit.columnFamilies),
+        unit.incrementalRepair,
+        new TreeSet<>(unit.nodes),
+        new TreeSet<>(unit.datacenters),
+        new TreeSet<>(unit.blacklistedTables),
+        unit.repairThreadCount);
+  }
+
+  private static String token(BigInteger token) {
+    return String.format("%040x", token.add(TOKEN_OFFSET));
+  }
+
+  private static String key(Object... parts) {
+    StringBuilder key = new StringBuilder();
+    for (Object part : parts) {
+      if (0 < key.length()) {
+        key.append(SEP);
+      }
+      key.append(part);
+    }
+    return key.toString();
+  }
+
+  private static String prefix(Object... parts) {
+    return key(parts) + SEP;
+  }
+
+  private static String limit(String prefix) {
+    return prefix.substring(0, prefix.length() - 1) + END;
+  }
+
+  private static String lastPart(String key) {
+    return key.substring(key.lastIndexOf(SEP) + 1);
+  }
+
+  private static Iterator<String> scan(MVMap<String, String> map, String prefix) {
+    return scan(map, prefix, limit(prefix));
+  }
+
+  private static Iterator<String> scan(MVMap<String, String> map, String from, String to) {
+    Iterator<String> keys = map.keyIterator(from);
+    return new Iterator<String>() {
+      private String next = advance();
+
+      private String advance() {
+        if (keys.hasNext()) {
+          String key = keys.next();
+          return key.compareTo(to) < 0 ? key : null;
+        }
+        return null;
+      }
+
+      @Override
+      public boolean hasNext() {
+        return null != next;
+      }
+
+      @Override
+      public String next() {
+        String current = next;
+        next = advance();
+        return current;
+      }
+    };
+  }
+
+  private static int count(MVMap<String, String> map, String prefix) {
+    int count = 0;
+    for (Iterator<String> keys = scan(map, prefix); keys.hasNext(); keys.next()) {
+      ++count;
+    }
+    return count;
+  }
+
+  private static <T> List<T> values(MVMap<String, String> map, Function<String, T> decoder) {
+    List<T> values = Lists.newArrayListWithCapacity(map.size());
+    map.values().forEach(value -> values.add(decoder.apply(value)));
+    return values;
+  }
+}
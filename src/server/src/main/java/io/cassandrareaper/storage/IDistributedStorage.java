@@ -18,9 +18,12 @@ import io.cassandrareaper.core.NodeMetrics;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
+import org.joda.time.DateTime;
+
 
 /**
  * Definition for a storage that can run in distributed (peer-to-peer) mode. For example Cassandra.
@@ -39,6 +42,11 @@ public interface IDistributedStorage {
 
   int countRunningReapers();
 
+  /**
+   * @return the last heartbeat of each running Reaper instance, by instance id
+   */
+  Map<UUID, DateTime> getRunningReapers();
+
   void saveHeartbeat();
 
   Collection<NodeMetrics> getNodeMetrics(UUID runId);
@@ -47,4 +55,15 @@ public interface IDistributedStorage {
 
   void storeNodeMetrics(UUID runId, NodeMetrics nodeMetrics);
 
+  /**
+   * Atomically reserves all the given hosts of the cluster for the owner, or none of them.
+   *
+   * @return true if the owner now holds all the hosts
+   */
+  boolean reserveHosts(String clusterName, UUID ownerId, Collection<String> hosts);
+
+  boolean renewHostReservation(String clusterName, UUID ownerId, Collection<String> hosts);
+
+  void releaseHosts(String clusterName, UUID ownerId, Collection<String> hosts);
+
 }
@@ -84,6 +84,11 @@ public interface IStorage {
 
   Optional<RepairUnit> getRepairUnit(RepairUnit.Builder repairUnit);
 
+  /**
+   * Adds segments to an existing repair run, in place of one of its segments that was split.
+   */
+  void addRepairSegments(Collection<RepairSegment.Builder> newSegments, UUID runId);
+
   boolean updateRepairSegment(RepairSegment newRepairSegment);
 
   Optional<RepairSegment> getRepairSegment(UUID runId, UUID segmentId);
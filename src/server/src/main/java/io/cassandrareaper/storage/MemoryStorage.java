@@ -24,6 +24,7 @@ import io.cassandrareaper.resources.view.RepairRunStatus;
 import io.cassandrareaper.resources.view.RepairScheduleStatus;
 import io.cassandrareaper.service.RepairParameters;
 import io.cassandrareaper.service.RingRange;
+import io.cassandrareaper.service.RingRangeIndex;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -55,6 +56,7 @@ public final class MemoryStorage implements IStorage {
   private final ConcurrentMap<RepairUnit.Builder, RepairUnit> repairUnitsByKey = Maps.newConcurrentMap();
   private final ConcurrentMap<UUID, RepairSegment> repairSegments = Maps.newConcurrentMap();
   private final ConcurrentMap<UUID, LinkedHashMap<UUID, RepairSegment>> repairSegmentsByRunId = Maps.newConcurrentMap();
+  private final ConcurrentMap<UUID, RingRangeIndex<UUID>> repairSegmentIdsByRange = Maps.newConcurrentMap();
   private final ConcurrentMap<UUID, RepairSchedule> repairSchedules = Maps.newConcurrentMap();
   private final ConcurrentMap<String, Snapshot> snapshots = Maps.newConcurrentMap();
 
@@ -207,6 +209,7 @@ public final class MemoryStorage implements IStorage {
 
   private int deleteRepairSegmentsForRun(UUID runId) {
     Map<UUID, RepairSegment> segmentsMap = repairSegmentsByRunId.remove(runId);
+    repairSegmentIdsByRange.remove(runId);
     if (null != segmentsMap) {
       for (RepairSegment segment : segmentsMap.values()) {
         repairSegments.remove(segment.getId());
@@ -253,14 +256,20 @@ public final class MemoryStorage implements IStorage {
     return Optional.ofNullable(repairUnitsByKey.get(params));
   }
 
-  private void addRepairSegments(Collection<RepairSegment.Builder> segments, UUID runId) {
-    LinkedHashMap<UUID, RepairSegment> newSegments = Maps.newLinkedHashMap();
+  @Override
+  public void addRepairSegments(Collection<RepairSegment.Builder> segments, UUID runId) {
+    // copied rather than modified in place, as the run's segments may be being iterated over
+    LinkedHashMap<UUID, RepairSegment> newSegments
+        = Maps.newLinkedHashMap(repairSegmentsByRunId.getOrDefault(runId, Maps.newLinkedHashMap()));
     for (RepairSegment.Builder segment : segments) {
       RepairSegment newRepairSegment = segment.withRunId(runId).withId(UUIDs.timeBased()).build();
       repairSegments.put(newRepairSegment.getId(), newRepairSegment);
       newSegments.put(newRepairSegment.getId(), newRepairSegment);
     }
     repairSegmentsByRunId.put(runId, newSegments);
+    repairSegmentIdsByRange.put(
+        runId,
+        RingRangeIndex.of(newSegments.keySet(), id -> newSegments.get(id).getTokenRange().getBaseRange()));
   }
 
   @Override
@@ -297,9 +306,9 @@ public final class MemoryStorage implements IStorage {
   @Override
   public Optional<RepairSegment> getNextFreeSegmentInRange(UUID runId, Optional<RingRange> range) {
     if (range.isPresent()) {
-      for (RepairSegment segment : repairSegmentsByRunId.get(runId).values()) {
-        if (segment.getState() == RepairSegment.State.NOT_STARTED
-            && range.get().encloses(segment.getTokenRange().getBaseRange())) {
+      for (UUID segmentId : repairSegmentIdsByRange.get(runId).enclosedBy(range.get())) {
+        RepairSegment segment = repairSegments.get(segmentId);
+        if (segment.getState() == RepairSegment.State.NOT_STARTED) {
           return Optional.of(segment);
         }
       }
@@ -447,7 +456,8 @@ public final class MemoryStorage implements IStorage {
       for (RepairRun run : getRepairRunsForCluster(clusterName, Optional.of(limit))) {
         RepairUnit unit = getRepairUnit(run.getRepairUnitId());
         int segmentsRepaired = getSegmentAmountForRepairRunWithState(run.getId(), RepairSegment.State.DONE);
-        int totalSegments = getSegmentAmountForRepairRun(run.getId());
+        int totalSegments = getSegmentAmountForRepairRun(run.getId())
+            - getSegmentAmountForRepairRunWithState(run.getId(), RepairSegment.State.SUPERSEDED);
         runStatuses.add(
             new RepairRunStatus(
                 run.getId(),
@@ -239,7 +239,7 @@ public final class PostgresStorage implements IStorage {
       long insertedId = getPostgresStorage(h).insertRepairRun(newRepairRun.build(null));
       result = newRepairRun.build(UuidUtil.fromSequenceId(insertedId));
     }
-    addRepairSegments(newSegments, result.getId());
+    insertRepairSegments(newSegments, result.getId());
     return result;
   }
 
@@ -294,7 +294,16 @@ public final class PostgresStorage implements IStorage {
     return Optional.ofNullable(result);
   }
 
-  private void addRepairSegments(Collection<RepairSegment.Builder> newSegments, UUID runId)
+  @Override
+  public void addRepairSegments(Collection<RepairSegment.Builder> newSegments, UUID runId) {
+    try {
+      insertRepairSegments(newSegments, runId);
+    } catch (ReaperException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private void insertRepairSegments(Collection<RepairSegment.Builder> newSegments, UUID runId)
       throws ReaperException {
     List<PostgresRepairSegment> insertableSegments = new ArrayList<>();
     for (RepairSegment.Builder segment : newSegments) {
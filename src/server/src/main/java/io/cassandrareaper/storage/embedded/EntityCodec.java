@@ -0,0 +1,280 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.storage.embedded;
+
+import io.cassandrareaper.core.Cluster;
+import io.cassandrareaper.core.RepairRun;
+import io.cassandrareaper.core.RepairSchedule;
+import io.cassandrareaper.core.RepairSegment;
+import io.cassandrareaper.core.RepairUnit;
+import io.cassandrareaper.core.Segment;
+import io.cassandrareaper.core.Snapshot;
+import io.cassandrareaper.service.RingRange;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Sets;
+import org.apache.cassandra.repair.RepairParallelism;
+import org.joda.time.DateTime;
+
+/**
+ * Encodes the core entities into the JSON documents held as values by the embedded storage.
+ *
+ * <p>Dates are stored as epoch millis and enums by name, so documents stay readable and independent of the Jackson
+ * modules registered on the application's own ObjectMapper.
+ */
+public final class EntityCodec {
+
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final TypeReference<List<RingRange>> RING_RANGE_LIST = new TypeReference<List<RingRange>>() {};
+
+  private EntityCodec() {
+    throw new IllegalStateException("Utility class");
+  }
+
+  public static String encodeCluster(Cluster cluster) {
+    ObjectNode node = MAPPER.createObjectNode()
+        .put("name", cluster.getName())
+        .put("partitioner", cluster.getPartitioner());
+
+    putStrings(node, "seed_hosts", cluster.getSeedHosts());
+    return node.toString();
+  }
+
+  public static Cluster decodeCluster(String json) {
+    JsonNode node = read(json);
+    return new Cluster(text(node, "name"), text(node, "partitioner"), strings(node, "seed_hosts"));
+  }
+
+  public static String encodeRepairUnit(RepairUnit unit) {
+    ObjectNode node = MAPPER.createObjectNode()
+        .put("id", unit.getId().toString())
+        .put("cluster_name", unit.getClusterName())
+        .put("keyspace_name", unit.getKeyspaceName())
+        .put("incremental_repair", unit.getIncrementalRepair())
+        .put("repair_thread_count", unit.getRepairThreadCount());
+
+    putStrings(node, "column_families", unit.getColumnFamilies());
+    putStrings(node, "nodes", unit.getNodes());
+    putStrings(node, "datacenters", unit.getDatacenters());
+    putStrings(node, "blacklisted_tables", unit.getBlacklistedTables());
+    return node.toString();
+  }
+
+  public static RepairUnit decodeRepairUnit(String json) {
+    JsonNode node = read(json);
+    return RepairUnit.builder()
+        .clusterName(text(node, "cluster_name"))
+        .keyspaceName(text(node, "keyspace_name"))
+        .columnFamilies(strings(node, "column_families"))
+        .incrementalRepair(node.get("incremental_repair").asBoolean())
+        .nodes(strings(node, "nodes"))
+        .datacenters(strings(node, "datacenters"))
+        .blacklistedTables(strings(node, "blacklisted_tables"))
+        .repairThreadCount(node.get("repair_thread_count").asInt())
+        .build(UUID.fromString(text(node, "id")));
+  }
+
+  public static String encodeRepairRun(RepairRun run) {
+    ObjectNode node = MAPPER.createObjectNode()
+        .put("id", run.getId().toString())
+        .put("cluster_name", run.getClusterName())
+        .put("repair_unit_id", run.getRepairUnitId().toString())
+        .put("cause", run.getCause())
+        .put("owner", run.getOwner())
+        .put("state", run.getRunState().name())
+        .put("intensity", run.getIntensity())
+        .put("last_event", run.getLastEvent())
+        .put("segment_count", run.getSegmentCount())
+        .put("repair_parallelism", run.getRepairParallelism().name());
+
+    putDate(node, "creation_time", run.getCreationTime());
+    putDate(node, "start_time", run.getStartTime());
+    putDate(node, "end_time", run.getEndTime());
+    putDate(node, "pause_time", run.getPauseTime());
+    return node.toString();
+  }
+
+  public static RepairRun decodeRepairRun(String json) {
+    JsonNode node = read(json);
+    return RepairRun.builder(text(node, "cluster_name"), UUID.fromString(text(node, "repair_unit_id")))
+        .cause(text(node, "cause"))
+        .owner(text(node, "owner"))
+        .runState(RepairRun.RunState.valueOf(text(node, "state")))
+        .intensity(node.get("intensity").asDouble())
+        .lastEvent(text(node, "last_event"))
+        .segmentCount(node.get("segment_count").asInt())
+        .repairParallelism(RepairParallelism.valueOf(text(node, "repair_parallelism")))
+        .creationTime(date(node, "creation_time"))
+        .startTime(date(node, "start_time"))
+        .endTime(date(node, "end_time"))
+        .pauseTime(date(node, "pause_time"))
+        .build(UUID.fromString(text(node, "id")));
+  }
+
+  public static String encodeRepairSegment(RepairSegment segment) {
+    ObjectNode node = MAPPER.createObjectNode()
+        .put("id", segment.getId().toString())
+        .put("run_id", segment.getRunId().toString())
+        .put("repair_unit_id", segment.getRepairUnitId().toString())
+        .put("start_token", segment.getStartToken().toString())
+        .put("end_token", segment.getEndToken().toString())
+        .put("fail_count", segment.getFailCount())
+        .put("state", segment.getState().name())
+        .put("coordinator_host", segment.getCoordinatorHost());
+
+    node.set("token_ranges", MAPPER.valueToTree(segment.getTokenRange().getTokenRanges()));
+    putDate(node, "start_time", segment.getStartTime());
+    putDate(node, "end_time", segment.getEndTime());
+    return node.toString();
+  }
+
+  public static RepairSegment decodeRepairSegment(String json) {
+    JsonNode node = read(json);
+
+    Segment tokenRange = Segment.builder()
+        .withBaseRange(
+            new RingRange(new BigInteger(text(node, "start_token")), new BigInteger(text(node, "end_token"))))
+        .withTokenRanges(MAPPER.convertValue(node.get("token_ranges"), RING_RANGE_LIST))
+        .build();
+
+    return RepairSegment.builder(tokenRange, UUID.fromString(text(node, "repair_unit_id")))
+        .withRunId(UUID.fromString(text(node, "run_id")))
+        .withFailCount(node.get("fail_count").asInt())
+        .withState(RepairSegment.State.valueOf(text(node, "state")))
+        .withCoordinatorHost(text(node, "coordinator_host"))
+        .withStartTime(date(node, "start_time"))
+        .withEndTime(date(node, "end_time"))
+        .withId(UUID.fromString(text(node, "id")))
+        .build();
+  }
+
+  public static String encodeRepairSchedule(RepairSchedule schedule) {
+    ObjectNode node = MAPPER.createObjectNode()
+        .put("id", schedule.getId().toString())
+        .put("repair_unit_id", schedule.getRepairUnitId().toString())
+        .put("state", schedule.getState().name())
+        .put("days_between", schedule.getDaysBetween())
+        .put("segment_count", schedule.getSegmentCount())
+        .put("segment_count_per_node", schedule.getSegmentCountPerNode())
+        .put("repair_parallelism", schedule.getRepairParallelism().name())
+        .put("intensity", schedule.getIntensity())
+        .put("owner", schedule.getOwner());
+
+    ArrayNode runHistory = node.putArray("run_history");
+    schedule.getRunHistory().forEach(runId -> runHistory.add(runId.toString()));
+    putDate(node, "next_activation", schedule.getNextActivation());
+    putDate(node, "creation_time", schedule.getCreationTime());
+    putDate(node, "pause_time", schedule.getPauseTime());
+    return node.toString();
+  }
+
+  public static RepairSchedule decodeRepairSchedule(String json) {
+    JsonNode node = read(json);
+    ImmutableList.Builder<UUID> runHistory = ImmutableList.builder();
+    node.get("run_history").forEach(runId -> runHistory.add(UUID.fromString(runId.asText())));
+
+    return RepairSchedule.builder(UUID.fromString(text(node, "repair_unit_id")))
+        .state(RepairSchedule.State.valueOf(text(node, "state")))
+        .daysBetween(node.get("days_between").asInt())
+        .segmentCount(node.get("segment_count").asInt())
+        .segmentCountPerNode(node.get("segment_count_per_node").asInt())
+        .repairParallelism(RepairParallelism.valueOf(text(node, "repair_parallelism")))
+        .intensity(node.get("intensity").asDouble())
+        .owner(text(node, "owner"))
+        .runHistory(runHistory.build())
+        .nextActivation(date(node, "next_activation"))
+        .creationTime(date(node, "creation_time"))
+        .pauseTime(date(node, "pause_time"))
+        .build(UUID.fromString(text(node, "id")));
+  }
+
+  public static String encodeSnapshot(Snapshot snapshot) {
+    ObjectNode node = MAPPER.createObjectNode()
+        .put("name", snapshot.getName())
+        .put("host", snapshot.getHost())
+        .put("keyspace", snapshot.getKeyspace())
+        .put("table", snapshot.getTable())
+        .put("true_size", snapshot.getTrueSize())
+        .put("size_on_disk", snapshot.getSizeOnDisk())
+        .put("owner", snapshot.getOwner().orElse(null))
+        .put("cause", snapshot.getCause().orElse(null))
+        .put("cluster_name", snapshot.getClusterName());
+
+    putDate(node, "creation_date", snapshot.getCreationDate().orElse(null));
+    return node.toString();
+  }
+
+  public static Snapshot decodeSnapshot(String json) {
+    JsonNode node = read(json);
+    return Snapshot.builder()
+        .withName(text(node, "name"))
+        .withHost(text(node, "host"))
+        .withKeyspace(text(node, "keyspace"))
+        .withTable(text(node, "table"))
+        .withTrueSize(node.hasNonNull("true_size") ? node.get("true_size").asDouble() : null)
+        .withSizeOnDisk(node.hasNonNull("size_on_disk") ? node.get("size_on_disk").asDouble() : null)
+        .withOwner(text(node, "owner"))
+        .withCause(text(node, "cause"))
+        .withClusterName(text(node, "cluster_name"))
+        .withCreationDate(date(node, "creation_date"))
+        .build();
+  }
+
+  private static JsonNode read(String json) {
+    try {
+      return MAPPER.readTree(json);
+    } catch (IOException e) {
+      throw new IllegalStateException("corrupted document in embedded storage: " + json, e);
+    }
+  }
+
+  private static String text(JsonNode node, String field) {
+    return node.hasNonNull(field) ? node.get(field).asText() : null;
+  }
+
+  private static DateTime date(JsonNode node, String field) {
+    return node.hasNonNull(field) ? new DateTime(node.get(field).asLong()) : null;
+  }
+
+  private static void putDate(ObjectNode node, String field, DateTime date) {
+    if (null != date) {
+      node.put(field, date.getMillis());
+    }
+  }
+
+  private static Set<String> strings(JsonNode node, String field) {
+    Set<String> values = Sets.newHashSet();
+    if (node.hasNonNull(field)) {
+      node.get(field).forEach(value -> values.add(value.asText()));
+    }
+    return values;
+  }
+
+  private static void putStrings(ObjectNode node, String field, Set<String> values) {
+    ArrayNode array = node.putArray(field);
+    values.forEach(array::add);
+  }
+}
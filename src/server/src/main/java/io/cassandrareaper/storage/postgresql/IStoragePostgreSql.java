@@ -210,7 +210,9 @@ public interface IStoragePostgreSql {
           + "(SELECT COUNT(case when state = 2 then 1 else null end) "
           + "FROM repair_segment "
           + "WHERE run_id = repair_run.id) AS segments_repaired, "
-          + "(SELECT COUNT(*) FROM repair_segment WHERE run_id = repair_run.id) AS segments_total, "
+          + "(SELECT COUNT(*) - COUNT(case when state = 3 then 1 else null end) "
+          + "FROM repair_segment "
+          + "WHERE run_id = repair_run.id) AS segments_total, "
           + "repair_run.state, repair_run.start_time, "
           + "repair_run.end_time, cause, owner, last_event, creation_time, "
           + "pause_time, intensity, repair_parallelism, incremental_repair, repair_thread_count "
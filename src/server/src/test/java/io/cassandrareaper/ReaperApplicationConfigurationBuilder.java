@@ -120,6 +120,7 @@ public final class ReaperApplicationConfigurationBuilder {
     private Duration periodBetweenPolls;
     private Duration timeBeforeFirstSchedule;
     private Duration scheduleSpreadPeriod;
+    private boolean balancedPlacement;
 
     public ReaperApplicationConfiguration.AutoSchedulingConfiguration build() {
       ReaperApplicationConfiguration.AutoSchedulingConfiguration autoSchedulingConfig
@@ -130,6 +131,7 @@ public final class ReaperApplicationConfigurationBuilder {
       autoSchedulingConfig.setPeriodBetweenPolls(periodBetweenPolls);
       autoSchedulingConfig.setTimeBeforeFirstSchedule(timeBeforeFirstSchedule);
       autoSchedulingConfig.setScheduleSpreadPeriod(scheduleSpreadPeriod);
+      autoSchedulingConfig.setBalancedPlacement(balancedPlacement);
       return autoSchedulingConfig;
     }
 
@@ -162,6 +164,11 @@ public final class ReaperApplicationConfigurationBuilder {
       this.scheduleSpreadPeriod = scheduleSpreadPeriod;
       return this;
     }
+
+    public AutoSchedulingConfigurationBuilder withBalancedPlacement() {
+      this.balancedPlacement = true;
+      return this;
+    }
   }
 
 }
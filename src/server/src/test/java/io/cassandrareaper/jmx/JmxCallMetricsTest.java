@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.jmx;
+
+import java.net.SocketTimeoutException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.MetricRegistry;
+import io.prometheus.client.CollectorRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public final class JmxCallMetricsTest {
+
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+  private final JmxCallMetrics callMetrics = new JmxCallMetrics(metricRegistry);
+
+  @Test
+  public void testSummarisesTheSlowestHostsFirst() {
+    callMetrics.timer("prod", "10.0.0.1", "getKeyspaces").update(5, TimeUnit.MILLISECONDS);
+    callMetrics.timer("prod", "10.0.0.2", "getKeyspaces").update(10, TimeUnit.MILLISECONDS);
+    callMetrics.timer("prod", "10.0.0.2", "takeSnapshot").update(2, TimeUnit.SECONDS);
+    callMetrics.timer("test", "10.0.1.1", "getKeyspaces").update(1, TimeUnit.SECONDS);
+    callMetrics.markError("prod", "10.0.0.2", "takeSnapshot", new SocketTimeoutException());
+
+    List<JmxCallMetrics.HostLatency> hosts = callMetrics.getSlowestHosts(Optional.empty(), 10);
+
+    Assertions.assertThat(hosts).extracting(host -> host.host).containsExactly("10.0.0.2", "10.0.1.1", "10.0.0.1");
+    Assertions.assertThat(hosts.get(0).calls).isEqualTo(2);
+    Assertions.assertThat(hosts.get(0).errors).isEqualTo(1);
+    Assertions.assertThat(hosts.get(0).meanMillis).isEqualTo(1005);
+    Assertions.assertThat(hosts.get(0).p99Millis).isEqualTo(2000);
+    Assertions.assertThat(hosts.get(0).slowestOperation).isEqualTo("takeSnapshot");
+
+    Assertions.assertThat(callMetrics.getSlowestHosts(Optional.of("prod"), 1))
+        .extracting(host -> host.host)
+        .containsExactly("10.0.0.2");
+  }
+
+  @Test
+  public void testExportsLabeledSamplesToPrometheus() {
+    callMetrics.timer("prod", "10.0.0.1", "getKeyspaces").update(5, TimeUnit.MILLISECONDS);
+    callMetrics.markError("prod", "10.0.0.1", "getKeyspaces", new SocketTimeoutException());
+    CollectorRegistry registry = new CollectorRegistry();
+    registry.register(callMetrics);
+
+    Assertions.assertThat(
+        registry.getSampleValue(
+            JmxCallMetrics.LATENCY_METRIC,
+            new String[] {"cluster", "host", "operation", "quantile"},
+            new String[] {"prod", "10.0.0.1", "getKeyspaces", "0.99"}))
+        .isEqualTo(0.005);
+
+    Assertions.assertThat(
+        registry.getSampleValue(
+            JmxCallMetrics.LATENCY_METRIC + "_count",
+            new String[] {"cluster", "host", "operation"},
+            new String[] {"prod", "10.0.0.1", "getKeyspaces"}))
+        .isEqualTo(1);
+
+    Assertions.assertThat(
+        registry.getSampleValue(
+            JmxCallMetrics.ERRORS_METRIC,
+            new String[] {"cluster", "host", "operation", "exception"},
+            new String[] {"prod", "10.0.0.1", "getKeyspaces", "SocketTimeoutException"}))
+        .isEqualTo(1);
+
+    Assertions.assertThat(callMetrics.describe())
+        .extracting(family -> family.name)
+        .containsExactly(JmxCallMetrics.LATENCY_METRIC, JmxCallMetrics.ERRORS_METRIC);
+    Assertions.assertThat(metricRegistry.getTimers()).containsKey(
+        JmxCallMetrics.metricName("prod", "10.0.0.1", "getKeyspaces"));
+  }
+}
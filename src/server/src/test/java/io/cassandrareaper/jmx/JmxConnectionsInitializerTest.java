@@ -20,17 +20,29 @@ import io.cassandrareaper.ReaperApplicationConfiguration.DatacenterAvailability;
 import io.cassandrareaper.ReaperException;
 import io.cassandrareaper.core.Cluster;
 import io.cassandrareaper.core.Node;
+import io.cassandrareaper.core.RepairRun;
 import io.cassandrareaper.storage.CassandraStorage;
 import io.cassandrareaper.storage.PostgresStorage;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
 
 public class JmxConnectionsInitializerTest {
 
@@ -185,4 +197,60 @@ public class JmxConnectionsInitializerTest {
     assertEquals(0, connectionAttempts.get());
   }
 
+  /*
+   * Connections are opened in the background, a bounded number at a time, to the clusters with running repairs first.
+   */
+  @Test
+  public void initializerConnectsInTheBackgroundRunningClustersFirstTest() throws InterruptedException {
+    AppContext context = new AppContext();
+    final JmxProxy jmxProxyMock = mock(JmxProxy.class);
+    final List<String> connectedHosts = Collections.synchronizedList(Lists.newArrayList());
+    final AtomicInteger concurrentConnections = new AtomicInteger(0);
+    final AtomicInteger maxConcurrentConnections = new AtomicInteger(0);
+    final CountDownLatch connecting = new CountDownLatch(2);
+    final CountDownLatch released = new CountDownLatch(1);
+
+    context.jmxConnectionFactory = new JmxConnectionFactory() {
+          @Override
+          protected JmxProxy connectImpl(Node node, int timeout) throws InterruptedException {
+            connectedHosts.add(node.getHostname());
+            connecting.countDown();
+            maxConcurrentConnections.accumulateAndGet(concurrentConnections.incrementAndGet(), Math::max);
+            released.await();
+            concurrentConnections.decrementAndGet();
+            return jmxProxyMock;
+          }
+        };
+
+    context.config = new ReaperApplicationConfiguration();
+    context.config.setDatacenterAvailability(DatacenterAvailability.EACH);
+    context.config.setJmxConnectionsInitializerThreadCount(2);
+    context.storage = mock(CassandraStorage.class);
+
+    RepairRun runningRun = mock(RepairRun.class);
+    when(runningRun.getClusterName()).thenReturn("running");
+    when(context.storage.getRepairRunsWithState(RepairRun.RunState.RUNNING))
+        .thenReturn(Collections.singletonList(runningRun));
+
+    Cluster idle = new Cluster(
+        "idle", "murmur3partitioner", new LinkedHashSet<>(Arrays.asList("127.0.0.1", "127.0.0.2")));
+    Cluster running = new Cluster(
+        "running", "murmur3partitioner", new LinkedHashSet<>(Arrays.asList("127.0.1.1", "127.0.1.2")));
+
+    try (JmxConnectionsInitializer initializer = JmxConnectionsInitializer.create(context)) {
+      CompletableFuture<Void> initialized = initializer.on(Arrays.asList(idle, running));
+      // both threads of the pool hold a connection, so no other one can start before they are released
+      assertTrue(connecting.await(10, TimeUnit.SECONDS));
+      assertFalse(initialized.isDone());
+
+      released.countDown();
+      initialized.join();
+    }
+
+    assertEquals(4, connectedHosts.size());
+    assertEquals(Sets.newHashSet("127.0.1.1", "127.0.1.2"), Sets.newHashSet(connectedHosts.subList(0, 2)));
+    assertEquals(2, maxConcurrentConnections.get());
+    assertEquals(4, context.metricRegistry.counter(MetricRegistry.name(JmxConnectionsInitializer.class, "connected"))
+        .getCount());
+  }
 }
@@ -0,0 +1,77 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.jmx;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public final class StripedRepairNotificationExecutorTest {
+
+  private static final int STRIPES = 4;
+  private static final int REPAIRS = 50;
+  private static final int NOTIFICATIONS_PER_REPAIR = 20;
+
+  @Test
+  public void testKeepsTheOrderOfEachRepairOnBoundedThreads() throws InterruptedException {
+    StripedRepairNotificationExecutor executor = new StripedRepairNotificationExecutor(STRIPES);
+    Timer dispatchLatency = new Timer();
+    Map<Integer, List<Integer>> received = Maps.newConcurrentMap();
+    Set<String> threads = Sets.newConcurrentHashSet();
+    CountDownLatch done = new CountDownLatch(REPAIRS * NOTIFICATIONS_PER_REPAIR);
+
+    for (int notification = 0; notification < NOTIFICATIONS_PER_REPAIR; notification++) {
+      for (int repairNo = 0; repairNo < REPAIRS; repairNo++) {
+        int repair = repairNo;
+        int sequence = notification;
+        executor.submit("127.0.0.1", repair, () -> {
+          received.computeIfAbsent(repair, no -> Collections.synchronizedList(Lists.newArrayList())).add(sequence);
+          threads.add(Thread.currentThread().getName());
+          done.countDown();
+        }, dispatchLatency);
+      }
+    }
+
+    Assertions.assertThat(done.await(10, TimeUnit.SECONDS)).isTrue();
+    for (int repairNo = 0; repairNo < REPAIRS; repairNo++) {
+      Assertions.assertThat(received.get(repairNo)).isSorted().hasSize(NOTIFICATIONS_PER_REPAIR);
+    }
+    Assertions.assertThat(threads.size()).isLessThanOrEqualTo(STRIPES);
+    Assertions.assertThat(dispatchLatency.getCount()).isEqualTo(REPAIRS * NOTIFICATIONS_PER_REPAIR);
+  }
+
+  @Test
+  public void testRegistersAQueueDepthGaugePerStripe() {
+    StripedRepairNotificationExecutor executor = new StripedRepairNotificationExecutor(STRIPES);
+    MetricRegistry metricRegistry = new MetricRegistry();
+
+    executor.registerGauges(metricRegistry);
+    executor.registerGauges(metricRegistry);
+
+    Assertions.assertThat(metricRegistry.getGauges()).hasSize(STRIPES);
+    Assertions.assertThat(executor.getQueueDepth(executor.stripe("127.0.0.1", 1))).isZero();
+  }
+}
@@ -0,0 +1,214 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.jmx;
+
+import java.io.IOException;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Uninterruptibles;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public final class TimedJmxInvocationHandlerTest {
+
+  private static final String CLUSTER = "test";
+  private static final String HOST = "127.0.0.1";
+
+  private final MetricRegistry metricRegistry = new MetricRegistry();
+  private final JmxCallMetrics callMetrics = new JmxCallMetrics(metricRegistry);
+  private final CountDownLatch released = new CountDownLatch(1);
+
+  @Test
+  public void testCallsWithinTheirDeadlineReturn() throws IOException {
+    Node node = wrap(new JmxCallTimeouts(1, Collections.emptyMap()));
+
+    Assertions.assertThat(node.getVersion()).isEqualTo("3.11.2");
+    Assertions.assertThat(callMetrics.timer(CLUSTER, HOST, "getVersion").getCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testCallsPastTheirDeadlineTimeOut() throws InterruptedException {
+    Node node = wrap(new JmxCallTimeouts(1, Collections.emptyMap()));
+
+    Assertions.assertThatThrownBy(node::hang)
+        .isInstanceOf(UndeclaredThrowableException.class)
+        .hasCauseInstanceOf(SocketTimeoutException.class);
+
+    Assertions.assertThatThrownBy(node::hangWithIo).isInstanceOf(SocketTimeoutException.class);
+
+    Assertions.assertThat(released.await(10, TimeUnit.SECONDS)).isTrue();
+    Assertions.assertThat(timeouts("hang")).isEqualTo(1);
+    Assertions.assertThat(timeouts("hangWithIo")).isEqualTo(1);
+    Assertions.assertThat(errors("hang", "SocketTimeoutException")).isEqualTo(1);
+  }
+
+  @Test
+  public void testOperationsCanRunWithoutDeadline() throws IOException {
+    Node node = wrap(new JmxCallTimeouts(1, ImmutableMap.of("sleep", 0)));
+
+    Assertions.assertThat(node.sleep(1500)).isTrue();
+    Assertions.assertThat(timeouts("sleep")).isZero();
+  }
+
+  @Test
+  public void testTargetExceptionsAreThrownAsIs() {
+    Node node = wrap(new JmxCallTimeouts(1, Collections.emptyMap()));
+
+    Assertions.assertThatThrownBy(node::fail).isInstanceOf(IllegalStateException.class).hasMessage("failed");
+    Assertions.assertThat(errors("fail", "IllegalStateException")).isEqualTo(1);
+  }
+
+  @Test
+  public void testCallsOfUnknownClustersAreNotRecorded() throws IOException {
+    Node node = TimedJmxInvocationHandler.wrap(
+        Node.class, new SlowNode(), null, HOST, new JmxCallTimeouts(1, Collections.emptyMap()), callMetrics);
+
+    Assertions.assertThat(node.getVersion()).isEqualTo("3.11.2");
+    Assertions.assertThat(metricRegistry.getTimers()).isEmpty();
+  }
+
+  @Test
+  public void testHungCallsHoldABoundedNumberOfThreads() {
+    String hungHost = "127.0.0.2";
+    CountDownLatch hostResponds = new CountDownLatch(1);
+    Node node = TimedJmxInvocationHandler.wrap(
+        Node.class,
+        new HungNode(hostResponds),
+        CLUSTER,
+        hungHost,
+        new JmxCallTimeouts(1, Collections.emptyMap()),
+        callMetrics);
+
+    try {
+      for (int i = 0; i <= TimedJmxInvocationHandler.MAX_CALLS_PER_HOST; ++i) {
+        Assertions.assertThatThrownBy(node::hangWithIo).isInstanceOf(SocketTimeoutException.class);
+      }
+      Assertions.assertThat(Thread.getAllStackTraces().keySet())
+          .filteredOn(thread -> thread.getName().startsWith("JmxCall-" + hungHost + "-"))
+          .hasSize(TimedJmxInvocationHandler.MAX_CALLS_PER_HOST);
+    } finally {
+      hostResponds.countDown();
+    }
+  }
+
+  private Node wrap(JmxCallTimeouts timeouts) {
+    return TimedJmxInvocationHandler.wrap(Node.class, new SlowNode(), CLUSTER, HOST, timeouts, callMetrics);
+  }
+
+  private long timeouts(String operation) {
+    return metricRegistry
+        .counter(MetricRegistry.name(JmxCallMetrics.metricName(CLUSTER, HOST, operation), "timeouts"))
+        .getCount();
+  }
+
+  private long errors(String operation, String exception) {
+    return metricRegistry
+        .counter(MetricRegistry.name(JmxCallMetrics.metricName(CLUSTER, HOST, operation), "errors", exception))
+        .getCount();
+  }
+
+  public interface Node {
+
+    String getVersion() throws IOException;
+
+    void hang();
+
+    void hangWithIo() throws IOException;
+
+    boolean sleep(long millis) throws IOException;
+
+    void fail();
+  }
+
+  private final class SlowNode implements Node {
+
+    @Override
+    public String getVersion() {
+      return "3.11.2";
+    }
+
+    @Override
+    public void hang() {
+      try {
+        Thread.sleep(TimeUnit.MINUTES.toMillis(1));
+      } catch (InterruptedException expected) {
+        released.countDown();
+      }
+    }
+
+    @Override
+    public void hangWithIo() {
+      hang();
+    }
+
+    @Override
+    public boolean sleep(long millis) {
+      try {
+        Thread.sleep(millis);
+        return true;
+      } catch (InterruptedException e) {
+        return false;
+      }
+    }
+
+    @Override
+    public void fail() {
+      throw new IllegalStateException("failed");
+    }
+  }
+
+  /**
+   * Blocks its calls regardless of interrupts, like a socket read from a host that stopped answering.
+   */
+  private static final class HungNode implements Node {
+
+    private final CountDownLatch responds;
+
+    HungNode(CountDownLatch responds) {
+      this.responds = responds;
+    }
+
+    @Override
+    public String getVersion() {
+      return "3.11.2";
+    }
+
+    @Override
+    public void hang() {
+      Uninterruptibles.awaitUninterruptibly(responds);
+    }
+
+    @Override
+    public void hangWithIo() {
+      hang();
+    }
+
+    @Override
+    public boolean sleep(long millis) {
+      return true;
+    }
+
+    @Override
+    public void fail() {
+      throw new IllegalStateException("failed");
+    }
+  }
+}
@@ -16,6 +16,7 @@ package io.cassandrareaper.resources;
 
 import io.cassandrareaper.AppContext;
 import io.cassandrareaper.ReaperApplicationConfiguration;
+import io.cassandrareaper.ReaperApplicationConfiguration.AdaptiveIntensityConfiguration;
 import io.cassandrareaper.ReaperException;
 import io.cassandrareaper.core.Cluster;
 import io.cassandrareaper.core.RepairRun;
@@ -119,6 +120,7 @@ public final class RepairRunResourceTest {
     context.config = mock(ReaperApplicationConfiguration.class);
     when(context.config.getSegmentCount()).thenReturn(SEGMENT_CNT);
     when(context.config.getRepairIntensity()).thenReturn(REPAIR_INTENSITY);
+    when(context.config.getAdaptiveIntensity()).thenReturn(new AdaptiveIntensityConfiguration());
 
     uriInfo = mock(UriInfo.class);
     when(uriInfo.getBaseUriBuilder()).thenReturn(UriBuilder.fromUri(SAMPLE_URI));
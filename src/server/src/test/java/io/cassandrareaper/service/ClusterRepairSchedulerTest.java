@@ -18,6 +18,7 @@ import io.cassandrareaper.AppContext;
 import io.cassandrareaper.ReaperApplicationConfiguration;
 import io.cassandrareaper.ReaperException;
 import io.cassandrareaper.core.Cluster;
+import io.cassandrareaper.core.RepairRun;
 import io.cassandrareaper.core.RepairSchedule;
 import io.cassandrareaper.core.RepairUnit;
 import io.cassandrareaper.jmx.JmxConnectionFactory;
@@ -27,11 +28,13 @@ import io.cassandrareaper.storage.MemoryStorage;
 import java.time.Duration;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.apache.cassandra.repair.RepairParallelism;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
@@ -39,6 +42,8 @@ import org.mockito.Mockito;
 import static java.lang.String.format;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public final class ClusterRepairSchedulerTest {
@@ -181,6 +186,190 @@ public final class ClusterRepairSchedulerTest {
         .hasNextActivationDateCloseTo(timeOfFirstSchedule().plusHours(12));
   }
 
+  @Test
+  public void skipsClusterWhenSchemaVersionIsUnchanged() throws Exception {
+    context.storage.addCluster(CLUSTER);
+    when(jmxProxy.getSchemaVersion()).thenReturn("version1");
+    when(jmxProxy.getKeyspaces()).thenReturn(Lists.newArrayList("keyspace1"));
+    when(jmxProxy.getTableNamesForKeyspace("keyspace1")).thenReturn(Sets.newHashSet("table1"));
+
+    clusterRepairAuto.scheduleRepairs(CLUSTER);
+    clusterRepairAuto.scheduleRepairs(CLUSTER);
+
+    verify(jmxProxy, times(1)).getKeyspaces();
+    verify(jmxProxy, times(1)).getTableNamesForKeyspace("keyspace1");
+    assertThat(context.storage.getAllRepairSchedules()).hasSize(1);
+  }
+
+  @Test
+  public void recreatesDeletedScheduleWhenSchemaVersionIsUnchanged() throws Exception {
+    context.storage.addCluster(CLUSTER);
+    when(jmxProxy.getSchemaVersion()).thenReturn("version1");
+    when(jmxProxy.getKeyspaces()).thenReturn(Lists.newArrayList("keyspace1"));
+    when(jmxProxy.getTableNamesForKeyspace("keyspace1")).thenReturn(Sets.newHashSet("table1"));
+
+    long now = System.currentTimeMillis();
+    try {
+      DateTimeUtils.setCurrentMillisFixed(now);
+      clusterRepairAuto.scheduleRepairs(CLUSTER);
+      context.storage.getAllRepairSchedules()
+          .forEach(schedule -> context.storage.deleteRepairSchedule(schedule.getId()));
+
+      DateTimeUtils.setCurrentMillisFixed(now + TimeUnit.MINUTES.toMillis(59));
+      clusterRepairAuto.scheduleRepairs(CLUSTER);
+      assertThat(context.storage.getAllRepairSchedules()).isEmpty();
+
+      DateTimeUtils.setCurrentMillisFixed(now + TimeUnit.MINUTES.toMillis(61));
+      clusterRepairAuto.scheduleRepairs(CLUSTER);
+      assertThatClusterRepairSchedules(context.storage.getRepairSchedulesForCluster(CLUSTER.getName()))
+          .hasScheduleCount(1)
+          .repairScheduleForKeyspace("keyspace1");
+    } finally {
+      DateTimeUtils.setCurrentMillisSystem();
+    }
+  }
+
+  @Test
+  public void onlyProcessesChangedKeyspacesWhenSchemaChanges() throws Exception {
+    context.storage.addCluster(CLUSTER);
+    when(jmxProxy.getSchemaVersion()).thenReturn("version1");
+    when(jmxProxy.getKeyspaces()).thenReturn(Lists.newArrayList("keyspace1", "keyspace2", "keyspace3"));
+    when(jmxProxy.getTableNamesForKeyspace("keyspace1")).thenReturn(Sets.newHashSet("table1"));
+    when(jmxProxy.getTableNamesForKeyspace("keyspace2")).thenReturn(Sets.newHashSet("table1"));
+    when(jmxProxy.getTableNamesForKeyspace("keyspace3")).thenReturn(Sets.newHashSet());
+
+    clusterRepairAuto.scheduleRepairs(CLUSTER);
+
+    when(jmxProxy.getSchemaVersion()).thenReturn("version2");
+    when(jmxProxy.getKeyspaces()).thenReturn(Lists.newArrayList("keyspace1", "keyspace3", "keyspace4"));
+    when(jmxProxy.getTableNamesForKeyspace("keyspace3")).thenReturn(Sets.newHashSet("table1"));
+    when(jmxProxy.getTableNamesForKeyspace("keyspace4")).thenReturn(Sets.newHashSet("table1"));
+
+    clusterRepairAuto.scheduleRepairs(CLUSTER);
+
+    verify(jmxProxy, times(1)).getTableNamesForKeyspace("keyspace1");
+    verify(jmxProxy, times(2)).getTableNamesForKeyspace("keyspace3");
+    assertThatClusterRepairSchedules(context.storage.getRepairSchedulesForCluster(CLUSTER.getName()))
+        .hasScheduleCount(3)
+        .repairScheduleForKeyspace("keyspace1")
+        .andThen()
+        .repairScheduleForKeyspace("keyspace3")
+        .andThen()
+        .repairScheduleForKeyspace("keyspace4");
+  }
+
+  @Test
+  public void placesSchedulesByPastRunDuration() throws Exception {
+    context.config = balancedPlacementConfig();
+    context.storage.addCluster(CLUSTER);
+    addPastRun("keyspace1", Duration.ofHours(6));
+    addPastRun("keyspace2", Duration.ofHours(1));
+    addPastRun("keyspace3", Duration.ofHours(1));
+    when(jmxProxy.getKeyspaces()).thenReturn(Lists.newArrayList("keyspace1", "keyspace2", "keyspace3"));
+    when(jmxProxy.getTableNamesForKeyspace(Mockito.anyString())).thenReturn(Sets.newHashSet("sometable"));
+
+    clusterRepairAuto.scheduleRepairs(CLUSTER);
+
+    ClusterRepairScheduleAssertion schedules
+        = assertThatClusterRepairSchedules(context.storage.getRepairSchedulesForCluster(CLUSTER.getName()));
+
+    schedules.hasScheduleCount(3)
+        .repairScheduleForKeyspace("keyspace1")
+        .hasNextActivationDateCloseTo(timeOfFirstSchedule());
+
+    DateTime keyspace2 = scheduleFor("keyspace2").getNextActivation();
+    DateTime keyspace3 = scheduleFor("keyspace3").getNextActivation();
+    assertThat(keyspace2.isBefore(timeOfFirstSchedule().plusHours(6).minusMinutes(1))).isFalse();
+    assertThat(keyspace3.isBefore(timeOfFirstSchedule().plusHours(6).minusMinutes(1))).isFalse();
+    assertThat(Math.abs(keyspace2.getMillis() - keyspace3.getMillis())).isGreaterThanOrEqualTo(
+        Duration.ofHours(1).toMillis());
+  }
+
+  @Test
+  public void rebalancesAutoScheduledRepairsWhenKeyspaceIsAdded() throws Exception {
+    context.config = balancedPlacementConfig();
+    context.storage.addCluster(CLUSTER);
+    context.storage.addRepairSchedule(
+        aRepairSchedule(CLUSTER, "keyspace1", TWO_HOURS_AGO)
+            .owner("auto-scheduling")
+            .nextActivation(timeOfFirstSchedule().plusHours(10)));
+    addPastRun("keyspace1", Duration.ofHours(6));
+    addPastRun("keyspace2", Duration.ofHours(1));
+    when(jmxProxy.getKeyspaces()).thenReturn(Lists.newArrayList("keyspace1", "keyspace2"));
+    when(jmxProxy.getTableNamesForKeyspace(Mockito.anyString())).thenReturn(Sets.newHashSet("sometable"));
+
+    clusterRepairAuto.scheduleRepairs(CLUSTER);
+
+    assertThatClusterRepairSchedules(context.storage.getRepairSchedulesForCluster(CLUSTER.getName()))
+        .hasScheduleCount(2)
+        .repairScheduleForKeyspace("keyspace1")
+        .hasNextActivationDateCloseTo(timeOfFirstSchedule().plusHours(10))
+        .andThen()
+        .repairScheduleForKeyspace("keyspace2")
+        .hasNextActivationDateCloseTo(timeOfFirstSchedule());
+  }
+
+  @Test
+  public void movesAutoScheduledRepairsOnlyLaterAndToLowerThePeak() throws Exception {
+    context.config = balancedPlacementConfig();
+    context.storage.addCluster(CLUSTER);
+    context.storage.addRepairSchedule(
+        aRepairSchedule(CLUSTER, "keyspace1", TWO_HOURS_AGO)
+            .owner("auto-scheduling")
+            .nextActivation(timeOfFirstSchedule().plusMinutes(1)));
+    context.storage.addRepairSchedule(
+        aRepairSchedule(CLUSTER, "keyspace2", TWO_HOURS_AGO)
+            .owner("auto-scheduling")
+            .nextActivation(timeOfFirstSchedule().plusHours(2)));
+    addPastRun("keyspace1", Duration.ofHours(6));
+    addPastRun("keyspace2", Duration.ofHours(1));
+    addPastRun("keyspace3", Duration.ofHours(1));
+    when(jmxProxy.getKeyspaces()).thenReturn(Lists.newArrayList("keyspace1", "keyspace2", "keyspace3"));
+    when(jmxProxy.getTableNamesForKeyspace(Mockito.anyString())).thenReturn(Sets.newHashSet("sometable"));
+
+    clusterRepairAuto.scheduleRepairs(CLUSTER);
+
+    // keyspace3 goes in the first free hour, then keyspace1 moves past the two others to stop overlapping keyspace2
+    assertThatClusterRepairSchedules(context.storage.getRepairSchedulesForCluster(CLUSTER.getName()))
+        .hasScheduleCount(3)
+        .repairScheduleForKeyspace("keyspace1")
+        .hasNextActivationDateCloseTo(timeOfFirstSchedule().plusHours(7))
+        .andThen()
+        .repairScheduleForKeyspace("keyspace2")
+        .hasNextActivationDateCloseTo(timeOfFirstSchedule().plusHours(2))
+        .andThen()
+        .repairScheduleForKeyspace("keyspace3")
+        .hasNextActivationDateCloseTo(timeOfFirstSchedule().plusHours(6));
+  }
+
+  private ReaperApplicationConfiguration balancedPlacementConfig() {
+    return TestRepairConfiguration.defaultConfigBuilder()
+        .withAutoScheduling(TestRepairConfiguration.defaultAutoSchedulingConfigBuilder()
+            .thatIsEnabled()
+            .withTimeBeforeFirstSchedule(DELAY_BEFORE_SCHEDULE)
+            .withBalancedPlacement()
+            .build())
+        .build();
+  }
+
+  private void addPastRun(String keyspace, Duration duration) throws ReaperException {
+    RepairUnit unit = context.storage.addRepairUnit(aRepair(CLUSTER, keyspace));
+    DateTime end = DateTime.now().minusDays(1);
+    context.storage.addRepairRun(
+        RepairRun.builder(CLUSTER.getName(), unit.getId())
+            .runState(RepairRun.RunState.DONE)
+            .startTime(end.minus(duration.toMillis()))
+            .endTime(end)
+            .intensity(0.9)
+            .segmentCount(10)
+            .repairParallelism(RepairParallelism.DATACENTER_AWARE),
+        Collections.emptyList());
+  }
+
+  private RepairSchedule scheduleFor(String keyspace) {
+    return context.storage.getRepairSchedulesForClusterAndKeyspace(CLUSTER.getName(), keyspace).iterator().next();
+  }
+
   private DateTime timeOfFirstSchedule() {
     return DateTime.now().plus(DELAY_BEFORE_SCHEDULE.toMillis());
   }
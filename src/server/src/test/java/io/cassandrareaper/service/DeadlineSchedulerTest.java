@@ -0,0 +1,176 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.AppContext;
+import io.cassandrareaper.ReaperApplicationConfiguration.DeadlineSchedulingConfiguration;
+import io.cassandrareaper.ReaperException;
+import io.cassandrareaper.core.RepairRun;
+import io.cassandrareaper.core.RepairSchedule;
+import io.cassandrareaper.core.RepairUnit;
+import io.cassandrareaper.storage.MemoryStorage;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import com.codahale.metrics.MetricRegistry;
+import org.apache.cassandra.repair.RepairParallelism;
+import org.assertj.core.api.Assertions;
+import org.joda.time.DateTime;
+import org.junit.Before;
+import org.junit.Test;
+
+public final class DeadlineSchedulerTest {
+
+  private static final String CLUSTER_NAME = "test_cluster";
+  private static final long GC_GRACE_MILLIS = Duration.ofDays(10).toMillis();
+  private static final DateTime NOW = DateTime.now();
+
+  private AppContext context;
+  private DeadlineScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    context = new AppContext();
+    context.storage = new MemoryStorage();
+    context.metricRegistry = new MetricRegistry();
+    DeadlineSchedulingConfiguration config = new DeadlineSchedulingConfiguration();
+    config.setEnabled(true);
+    config.setMaxConcurrentRunsPerCluster(1);
+    scheduler = new DeadlineScheduler(context, config);
+  }
+
+  @Test
+  public void testDeadlineFollowsLastSuccessfulRepair() {
+    UUID unitId = UUID.randomUUID();
+    DateTime lastRepair = NOW.minusDays(3);
+
+    DeadlineScheduler.Deadline deadline = DeadlineScheduler.Deadline.of(
+        CLUSTER_NAME,
+        Arrays.asList(
+            aRun(unitId, RepairRun.RunState.DONE, lastRepair.minusHours(2), lastRepair),
+            aRun(unitId, RepairRun.RunState.DONE, NOW.minusDays(5).minusHours(4), NOW.minusDays(5)),
+            aRun(unitId, RepairRun.RunState.ERROR, NOW.minusDays(1).minusHours(20), NOW.minusDays(1))),
+        NOW.minusDays(30),
+        GC_GRACE_MILLIS);
+
+    Assertions.assertThat(deadline.deadline).isEqualTo(lastRepair.plusDays(10));
+    Assertions.assertThat(deadline.latestStart).isEqualTo(lastRepair.plusDays(10).minusHours(3));
+    Assertions.assertThat(deadline.slackSeconds(NOW)).isEqualTo(Duration.ofDays(7).minusHours(3).getSeconds());
+  }
+
+  @Test
+  public void testDeadlineOfNeverRepairedUnitFollowsSince() {
+    DeadlineScheduler.Deadline deadline
+        = DeadlineScheduler.Deadline.of(CLUSTER_NAME, Collections.emptyList(), NOW.minusDays(12), GC_GRACE_MILLIS);
+
+    Assertions.assertThat(deadline.latestStart).isEqualTo(NOW.minusDays(2));
+    Assertions.assertThat(deadline.slackSeconds(NOW)).isNegative();
+  }
+
+  @Test
+  public void testAdmitsEarliestDeadlineFirstWithinClusterBudget() throws ReaperException {
+    RepairSchedule recentlyRepaired = aSchedule(NOW.minusDays(1));
+    RepairSchedule nearlyLate = aSchedule(NOW.minusDays(9));
+    RepairSchedule otherCluster = aSchedule("other_cluster", NOW.minusDays(1));
+
+    Assertions.assertThat(scheduler.admit(Arrays.asList(recentlyRepaired, nearlyLate, otherCluster)))
+        .containsExactly(nearlyLate, otherCluster);
+
+    Assertions.assertThat(
+        context.metricRegistry.getGauges((name, metric) -> name.endsWith(nearlyLate.getRepairUnitId().toString())))
+        .hasSize(1);
+  }
+
+  @Test
+  public void testRunningRepairsCountAgainstBudget() throws ReaperException {
+    RepairSchedule schedule = aSchedule(NOW.minusDays(9));
+    RepairRun running = context.storage.addRepairRun(
+        RepairRun.builder(CLUSTER_NAME, UUID.randomUUID())
+            .runState(RepairRun.RunState.RUNNING)
+            .intensity(0.9)
+            .segmentCount(10)
+            .repairParallelism(RepairParallelism.PARALLEL),
+        Collections.emptyList());
+
+    Assertions.assertThat(scheduler.admit(Collections.singletonList(schedule))).isEmpty();
+
+    context.storage.updateRepairRun(running.with().runState(RepairRun.RunState.DONE).build(running.getId()));
+    Assertions.assertThat(scheduler.admit(Collections.singletonList(schedule))).containsExactly(schedule);
+  }
+
+  @Test
+  public void testForgetsUnitsWithoutActiveSchedule() throws ReaperException {
+    RepairSchedule kept = aSchedule(NOW.minusDays(1));
+    RepairSchedule deleted = aSchedule(NOW.minusDays(2));
+    scheduler.update(Arrays.asList(kept, deleted));
+
+    Assertions.assertThat(context.metricRegistry.getGauges()).hasSize(2);
+
+    scheduler.update(Collections.singletonList(kept));
+
+    Assertions.assertThat(context.metricRegistry.getGauges()).hasSize(1);
+    Assertions.assertThat(
+        context.metricRegistry.getGauges((name, metric) -> name.endsWith(kept.getRepairUnitId().toString())))
+        .hasSize(1);
+  }
+
+  private RepairSchedule aSchedule(DateTime lastRepair) throws ReaperException {
+    return aSchedule(CLUSTER_NAME, lastRepair);
+  }
+
+  private RepairSchedule aSchedule(String clusterName, DateTime lastRepair) throws ReaperException {
+    RepairUnit unit = context.storage.addRepairUnit(
+        RepairUnit.builder()
+            .clusterName(clusterName)
+            .keyspaceName("keyspace_" + context.storage.getAllRepairSchedules().size())
+            .columnFamilies(Collections.singleton("test_table"))
+            .incrementalRepair(false)
+            .repairThreadCount(1));
+
+    context.storage.addRepairRun(
+        RepairRun.builder(clusterName, unit.getId())
+            .runState(RepairRun.RunState.DONE)
+            .startTime(lastRepair.minusHours(1))
+            .endTime(lastRepair)
+            .intensity(0.9)
+            .segmentCount(10)
+            .repairParallelism(RepairParallelism.PARALLEL),
+        Collections.emptyList());
+
+    return context.storage.addRepairSchedule(
+        RepairSchedule.builder(unit.getId())
+            .daysBetween(7)
+            .nextActivation(NOW.minusMinutes(1))
+            .repairParallelism(RepairParallelism.PARALLEL)
+            .intensity(0.9)
+            .segmentCount(10)
+            .segmentCountPerNode(0)
+            .creationTime(NOW.minusDays(30)));
+  }
+
+  private static RepairRun aRun(UUID unitId, RepairRun.RunState state, DateTime start, DateTime end) {
+    return RepairRun.builder(CLUSTER_NAME, unitId)
+        .runState(state)
+        .startTime(start)
+        .endTime(end)
+        .intensity(0.9)
+        .segmentCount(10)
+        .repairParallelism(RepairParallelism.PARALLEL)
+        .build(UUID.randomUUID());
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.assertj.core.api.Assertions;
+import org.junit.After;
+import org.junit.Test;
+
+public final class FairSegmentSchedulerTest {
+
+  private static final ClusterBulkheads NO_BULKHEADS = new ClusterBulkheads(0, new MetricRegistry());
+
+  private final ListeningExecutorService executor = MoreExecutors.listeningDecorator(Executors.newFixedThreadPool(2));
+  private final List<String> ran = Collections.synchronizedList(Lists.newArrayList());
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testClustersTakeTurns() throws Exception {
+    FairSegmentScheduler scheduler = new FairSegmentScheduler(executor, 1, NO_BULKHEADS);
+    final CountDownLatch blocked = block(scheduler);
+
+    List<ListenableFuture<?>> results = Lists.newArrayList();
+    UUID busyRun = UUID.randomUUID();
+    for (int i = 0; i < 6; i++) {
+      results.add(scheduler.submit("busy", busyRun, 1, () -> ran.add("busy")));
+    }
+    UUID quietRun = UUID.randomUUID();
+    for (int i = 0; i < 2; i++) {
+      results.add(scheduler.submit("quiet", quietRun, 1, () -> ran.add("quiet")));
+    }
+    Assertions.assertThat(scheduler.getQueuedSegments("busy")).isEqualTo(6);
+    Assertions.assertThat(scheduler.getQueuedSegments("quiet")).isEqualTo(2);
+
+    blocked.countDown();
+    Futures.allAsList(results).get(10, TimeUnit.SECONDS);
+
+    Assertions.assertThat(ran).containsExactly("busy", "quiet", "busy", "quiet", "busy", "busy", "busy", "busy");
+    Assertions.assertThat(scheduler.getQueuedSegments("busy")).isZero();
+  }
+
+  @Test
+  public void testRunsOfAClusterShareItByWeight() throws Exception {
+    FairSegmentScheduler scheduler = new FairSegmentScheduler(executor, 1, NO_BULKHEADS);
+    final CountDownLatch blocked = block(scheduler);
+
+    List<ListenableFuture<?>> results = Lists.newArrayList();
+    UUID fastRun = UUID.randomUUID();
+    UUID slowRun = UUID.randomUUID();
+    for (int i = 0; i < 6; i++) {
+      results.add(scheduler.submit("cluster", fastRun, 1, () -> ran.add("fast")));
+      results.add(scheduler.submit("cluster", slowRun, 0.5, () -> ran.add("slow")));
+    }
+
+    blocked.countDown();
+    Futures.allAsList(results).get(10, TimeUnit.SECONDS);
+
+    Assertions.assertThat(ran.subList(0, 6)).containsExactly("fast", "fast", "slow", "fast", "fast", "slow");
+    Assertions.assertThat(ran).hasSize(12);
+  }
+
+  @Test
+  public void testRunsSegmentsInParallelUpToTheLimit() throws Exception {
+    FairSegmentScheduler scheduler = new FairSegmentScheduler(executor, 2, NO_BULKHEADS);
+    CountDownLatch release = new CountDownLatch(1);
+    CountDownLatch started = new CountDownLatch(2);
+
+    List<ListenableFuture<?>> results = Lists.newArrayList();
+    for (int i = 0; i < 3; i++) {
+      results.add(scheduler.submit("cluster", UUID.randomUUID(), 1, () -> {
+        started.countDown();
+        await(release);
+      }));
+    }
+
+    Assertions.assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+    Assertions.assertThat(scheduler.getQueuedSegments("cluster")).isEqualTo(1);
+
+    release.countDown();
+    Futures.allAsList(results).get(10, TimeUnit.SECONDS);
+    Assertions.assertThat(scheduler.getQueuedSegments("cluster")).isZero();
+  }
+
+  @Test
+  public void testClusterAtItsLimitLeavesSlotsToOthers() throws Exception {
+    MetricRegistry metricRegistry = new MetricRegistry();
+    ClusterBulkheads bulkheads = new ClusterBulkheads(1, metricRegistry);
+    FairSegmentScheduler scheduler = new FairSegmentScheduler(executor, 2, bulkheads);
+    CountDownLatch release = new CountDownLatch(1);
+
+    List<ListenableFuture<?>> stuck = Lists.newArrayList();
+    for (int i = 0; i < 2; i++) {
+      stuck.add(scheduler.submit("stuck", UUID.randomUUID(), 1, () -> await(release)));
+    }
+    scheduler.submit("healthy", UUID.randomUUID(), 1, () -> ran.add("healthy")).get(10, TimeUnit.SECONDS);
+
+    Assertions.assertThat(ran).containsExactly("healthy");
+    Assertions.assertThat(scheduler.getQueuedSegments("stuck")).isEqualTo(1);
+    Assertions.assertThat(bulkheads.tryAcquire("stuck")).isFalse();
+    Assertions.assertThat(metricRegistry.getMeters()).containsKey("io.cassandrareaper.service.RepairManager"
+        + ".clusterThreads.stuck.rejected");
+
+    release.countDown();
+    Futures.allAsList(stuck).get(10, TimeUnit.SECONDS);
+    Assertions.assertThat(bulkheads.getActive("stuck")).isZero();
+  }
+
+  /**
+   * Takes the only slot of the scheduler until the returned latch is counted down.
+   */
+  private static CountDownLatch block(FairSegmentScheduler scheduler) {
+    CountDownLatch latch = new CountDownLatch(1);
+    scheduler.submit("blocker", UUID.randomUUID(), 1, () -> await(latch));
+    return latch;
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -18,6 +18,7 @@ import io.cassandrareaper.AppContext;
 import io.cassandrareaper.ReaperApplicationConfiguration;
 import io.cassandrareaper.ReaperException;
 import io.cassandrareaper.core.NodeMetrics;
+import io.cassandrareaper.core.RepairRun;
 import io.cassandrareaper.jmx.HostConnectionCounters;
 import io.cassandrareaper.jmx.JmxConnectionFactory;
 import io.cassandrareaper.jmx.JmxProxy;
@@ -302,7 +303,7 @@ public final class HeartTest {
 
     Mockito.verify((CassandraStorage)context.storage, Mockito.times(1)).saveHeartbeat();
     Mockito.verify((CassandraStorage)context.storage, Mockito.times(2)).getNodeMetrics(any());
-    Mockito.verify(context.jmxConnectionFactory, Mockito.times(2)).connect(any(), anyInt());
+    Mockito.verify(context.jmxConnectionFactory, Mockito.times(1)).connect(any(), anyInt());
     Mockito.verify((CassandraStorage)context.storage, Mockito.times(2)).storeNodeMetrics(any(), any());
   }
 
@@ -360,7 +361,62 @@ public final class HeartTest {
 
     Mockito.verify((CassandraStorage)context.storage, Mockito.times(2)).saveHeartbeat();
     Mockito.verify((CassandraStorage)context.storage, Mockito.times(2)).getNodeMetrics(any());
-    Mockito.verify(context.jmxConnectionFactory, Mockito.times(2)).connect(any(), anyInt());
+    Mockito.verify(context.jmxConnectionFactory, Mockito.times(1)).connect(any(), anyInt());
     Mockito.verify((CassandraStorage)context.storage, Mockito.times(2)).storeNodeMetrics(any(), any());
   }
+
+  @Test
+  public void testBeat_distributedStorage_eachDatacenterAvailability_requests_relayedBetweenBeats()
+      throws InterruptedException, ReaperException {
+
+    AppContext context = new AppContext();
+    context.config = new ReaperApplicationConfiguration();
+    context.config.setDatacenterAvailability(ReaperApplicationConfiguration.DatacenterAvailability.EACH);
+    context.storage = Mockito.mock(CassandraStorage.class);
+
+    context.repairManager = RepairManager.create(
+        context,
+        Executors.newScheduledThreadPool(1),
+        REPAIR_TIMEOUT_S,
+        TimeUnit.SECONDS,
+        RETRY_DELAY_S,
+        TimeUnit.SECONDS);
+
+    // the run is processed by another instance, so only its state tells this one to look for requests
+    RepairRun run = Mockito.mock(RepairRun.class);
+    Mockito.when(run.getId()).thenReturn(UUID.randomUUID());
+    Mockito.when(context.storage.getRepairRunsWithState(RepairRun.RunState.RUNNING))
+        .thenReturn(Collections.singleton(run));
+
+    context.jmxConnectionFactory = Mockito.mock(JmxConnectionFactory.class);
+
+    Mockito
+        .when(((CassandraStorage)context.storage).getNodeMetrics(any()))
+        .thenReturn(
+            Collections.singleton(
+                NodeMetrics.builder()
+                    .withNode("test")
+                    .withDatacenter("dc1")
+                    .withCluster("cluster1")
+                    .withRequested(true)
+            .build()));
+
+    JmxProxy nodeProxy = Mockito.mock(JmxProxy.class);
+    Mockito.when(context.jmxConnectionFactory.connect(any(), anyInt())).thenReturn(nodeProxy);
+
+    try (Heart heart = Heart.create(context)) {
+      heart.beat();
+      Awaitility.await().until(() -> {
+        try {
+          Mockito.verify((CassandraStorage)context.storage, Mockito.atLeast(3))
+              .storeNodeMetrics(eq(run.getId()), any());
+          return true;
+        } catch (AssertionError ex) {
+          return false;
+        }
+      });
+    }
+
+    Mockito.verify((CassandraStorage)context.storage, Mockito.times(1)).saveHeartbeat();
+  }
 }
@@ -0,0 +1,60 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public final class HostReservationsTest {
+
+  private static final String CLUSTER_NAME = "test_cluster";
+
+  @Test
+  public void testSegmentsOnDisjointReplicasInterleave() {
+    HostReservations reservations = new HostReservations();
+    UUID first = UUID.randomUUID();
+    UUID second = UUID.randomUUID();
+
+    Assertions.assertThat(reservations.reserve(CLUSTER_NAME, first, Arrays.asList("a1", "a2", "a3"))).isTrue();
+    Assertions.assertThat(reservations.reserve(CLUSTER_NAME, second, Arrays.asList("a4", "a5", "a6"))).isTrue();
+    Assertions.assertThat(reservations.getReservedHosts(CLUSTER_NAME)).hasSize(6);
+  }
+
+  @Test
+  public void testOverlappingReservationReservesNothing() {
+    HostReservations reservations = new HostReservations();
+    UUID first = UUID.randomUUID();
+    UUID second = UUID.randomUUID();
+
+    reservations.reserve(CLUSTER_NAME, first, Arrays.asList("a1", "a2", "a3"));
+    Assertions.assertThat(reservations.reserve(CLUSTER_NAME, second, Arrays.asList("a3", "a4", "a5"))).isFalse();
+    Assertions.assertThat(reservations.getReservedHosts(CLUSTER_NAME)).containsOnly("a1", "a2", "a3");
+
+    reservations.release(CLUSTER_NAME, first);
+    Assertions.assertThat(reservations.reserve(CLUSTER_NAME, second, Arrays.asList("a3", "a4", "a5"))).isTrue();
+  }
+
+  @Test
+  public void testClustersAreReservedIndependently() {
+    HostReservations reservations = new HostReservations();
+
+    reservations.reserve(CLUSTER_NAME, UUID.randomUUID(), Arrays.asList("a1"));
+    Assertions.assertThat(reservations.reserve("other_cluster", UUID.randomUUID(), Arrays.asList("a1"))).isTrue();
+    Assertions.assertThat(reservations.getReservedHosts("unknown_cluster")).isEmpty();
+  }
+}
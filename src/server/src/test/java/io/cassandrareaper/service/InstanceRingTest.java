@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.google.common.collect.ImmutableMap;
+import org.assertj.core.api.Assertions;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+public final class InstanceRingTest {
+
+  private static final long TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+  private static final long NOW = System.currentTimeMillis();
+
+  private final UUID self = UUID.randomUUID();
+  private final UUID other = UUID.randomUUID();
+  private final UUID third = UUID.randomUUID();
+  private final List<UUID> runs = IntStream.range(0, 3000)
+      .mapToObj(i -> UUID.randomUUID())
+      .collect(Collectors.toList());
+
+  @Test
+  public void testAloneOwnsEveryRun() {
+    InstanceRing ring = new InstanceRing(self, TIMEOUT_MILLIS);
+
+    Assertions.assertThat(runs).allMatch(ring::owns);
+    Assertions.assertThat(ring.update(Collections.emptyMap(), NOW)).isFalse();
+    Assertions.assertThat(ring.getInstances()).containsExactly(self);
+  }
+
+  @Test
+  public void testSharesRunsBetweenLiveInstances() {
+    InstanceRing ring = new InstanceRing(self, TIMEOUT_MILLIS);
+
+    Assertions.assertThat(ring.update(heartbeats(self, other, third), NOW)).isTrue();
+
+    long owned = runs.stream().filter(ring::owns).count();
+    Assertions.assertThat(owned).isBetween(runs.size() / 6L, runs.size() / 2L);
+    Assertions.assertThat(ring.update(heartbeats(self, other, third), NOW)).isFalse();
+  }
+
+  @Test
+  public void testInstancesAgreeOnTheOwners() {
+    Map<UUID, DateTime> heartbeats = heartbeats(self, other);
+    InstanceRing ours = new InstanceRing(self, TIMEOUT_MILLIS);
+    InstanceRing theirs = new InstanceRing(other, TIMEOUT_MILLIS);
+    ours.update(heartbeats, NOW);
+    theirs.update(heartbeats, NOW);
+
+    Assertions.assertThat(runs).allMatch(run -> ours.owns(run) != theirs.owns(run));
+    Assertions.assertThat(runs).allMatch(run -> ours.ownerOf(run).equals(theirs.ownerOf(run)));
+  }
+
+  @Test
+  public void testJoiningOnlyMovesRunsToTheNewInstance() {
+    InstanceRing ring = new InstanceRing(self, TIMEOUT_MILLIS);
+    ring.update(heartbeats(self, other), NOW);
+    Map<UUID, UUID> before = runs.stream().collect(Collectors.toMap(run -> run, ring::ownerOf));
+
+    ring.update(heartbeats(self, other, third), NOW);
+
+    Assertions.assertThat(runs)
+        .allMatch(run -> before.get(run).equals(ring.ownerOf(run)) || third.equals(ring.ownerOf(run)));
+  }
+
+  @Test
+  public void testTakesOverInstancesPastTheTimeout() {
+    InstanceRing ring = new InstanceRing(self, TIMEOUT_MILLIS);
+    ring.update(heartbeats(self, other), NOW);
+    Assertions.assertThat(runs.stream().anyMatch(run -> !ring.owns(run))).isTrue();
+
+    Map<UUID, DateTime> stale = ImmutableMap.of(
+        self, new DateTime(NOW),
+        other, new DateTime(NOW - TIMEOUT_MILLIS - 1));
+
+    Assertions.assertThat(ring.update(stale, NOW)).isTrue();
+    Assertions.assertThat(ring.getInstances()).containsExactly(self);
+    Assertions.assertThat(runs).allMatch(ring::owns);
+  }
+
+  private static Map<UUID, DateTime> heartbeats(UUID... instances) {
+    ImmutableMap.Builder<UUID, DateTime> heartbeats = ImmutableMap.builder();
+    for (UUID instance : instances) {
+      heartbeats.put(instance, new DateTime(NOW));
+    }
+    return heartbeats.build();
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.ReaperApplicationConfiguration.AdaptiveIntensityConfiguration;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public final class IntensityControllerTest {
+
+  private static final int MAX_PENDING_COMPACTIONS = 20;
+  private static final IntensityController.Pressure IDLE = new IntensityController.Pressure(0, 0, 0, 1000);
+
+  @Test
+  public void testSpeedsUpAdditivelyWhenReplicasAreIdle() {
+    IntensityController controller = aController(4);
+
+    controller.observe(IDLE);
+    controller.observe(IDLE);
+
+    Assertions.assertThat(controller.getSpeed()).isEqualTo(1.5);
+    Assertions.assertThat(controller.delayMillis(3000)).isEqualTo(2000);
+    Assertions.assertThat(controller.allowedParallelism()).isEqualTo(4);
+  }
+
+  @Test
+  public void testBacksOffMultiplicativelyBeforeTheCompactionCutoff() {
+    IntensityController controller = aController(4);
+
+    controller.observe(new IntensityController.Pressure(MAX_PENDING_COMPACTIONS / 2 + 1, 0, 0, 1000));
+    Assertions.assertThat(controller.getSpeed()).isEqualTo(0.5);
+    Assertions.assertThat(controller.delayMillis(3000)).isEqualTo(6000);
+    Assertions.assertThat(controller.allowedParallelism()).isEqualTo(2);
+
+    controller.observe(new IntensityController.Pressure(0, 0, 0, 150_000));
+    Assertions.assertThat(controller.allowedParallelism()).isEqualTo(1);
+  }
+
+  @Test
+  public void testHoldsSpeedUnderModerateLoad() {
+    IntensityController controller = aController(2);
+
+    controller.observe(new IntensityController.Pressure(0, 0, 0.75, 1000));
+    Assertions.assertThat(controller.getSpeed()).isEqualTo(1);
+  }
+
+  @Test
+  public void testSpeedIsBounded() {
+    IntensityController controller = aController(2);
+
+    for (int i = 0; i < 100; ++i) {
+      controller.observe(IDLE);
+    }
+    Assertions.assertThat(controller.getSpeed()).isEqualTo(4);
+
+    for (int i = 0; i < 100; ++i) {
+      controller.observe(new IntensityController.Pressure(0, 10, 0, 0));
+    }
+    Assertions.assertThat(controller.getSpeed()).isPositive();
+    Assertions.assertThat(controller.allowedParallelism()).isEqualTo(1);
+  }
+
+  @Test
+  public void testZeroDroppedMessagesRateToleratesNoDrops() {
+    AdaptiveIntensityConfiguration config = new AdaptiveIntensityConfiguration();
+    config.setEnabled(true);
+    config.setMaxDroppedMessagesRate(0);
+    IntensityController controller = new IntensityController(config, MAX_PENDING_COMPACTIONS, 2);
+
+    controller.observe(IDLE);
+    Assertions.assertThat(controller.getSpeed()).isEqualTo(1.25);
+
+    controller.observe(new IntensityController.Pressure(0, 0, 0.1, 1000));
+    Assertions.assertThat(controller.getSpeed()).isEqualTo(0.625);
+  }
+
+  private static IntensityController aController(int maxParallelism) {
+    AdaptiveIntensityConfiguration config = new AdaptiveIntensityConfiguration();
+    config.setEnabled(true);
+    return new IntensityController(config, MAX_PENDING_COMPACTIONS, maxParallelism);
+  }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.ReaperException;
+import io.cassandrareaper.core.RepairSegment;
+import io.cassandrareaper.core.Segment;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public final class ParallelRepairPlanTest {
+
+  private static final UUID RUN_ID = UUID.randomUUID();
+
+  @Test
+  public void testSegmentsOfAWaveShareNoReplica() throws ReaperException {
+    Map<List<String>, List<String>> ring = RepairRunnerTest.sixNodeCluster();
+    List<RepairSegment> segments = segments(ring);
+    ParallelRepairPlan plan = ParallelRepairPlan.create(segments, ring);
+
+    Assertions.assertThat(plan.getParallelism()).isEqualTo(2);
+    Assertions.assertThat(plan.getReplicas(segments.get(0).getId())).containsOnly("a1", "a2", "a3");
+
+    Set<UUID> free = segments.stream().map(RepairSegment::getId).collect(Collectors.toSet());
+    Set<String> busyHosts = Sets.newHashSet();
+    Optional<UUID> next;
+    int started = 0;
+    while ((next = plan.nextSegment(free, busyHosts)).isPresent()) {
+      Assertions.assertThat(Collections.disjoint(plan.getReplicas(next.get()), busyHosts)).isTrue();
+      busyHosts.addAll(plan.getReplicas(next.get()));
+      free.remove(next.get());
+      ++started;
+    }
+    Assertions.assertThat(started).isEqualTo(2);
+    Assertions.assertThat(busyHosts).hasSize(6);
+  }
+
+  @Test
+  public void testEveryWaveIsConflictFree() throws ReaperException {
+    Map<List<String>, List<String>> ring = RepairRunnerTest.sixNodeCluster();
+    List<RepairSegment> segments = segments(ring);
+    ParallelRepairPlan plan = ParallelRepairPlan.create(segments, ring);
+
+    Set<UUID> free = segments.stream().map(RepairSegment::getId).collect(Collectors.toSet());
+    int waves = 0;
+    while (!free.isEmpty()) {
+      Set<String> busyHosts = Sets.newHashSet();
+      Optional<UUID> next;
+      while ((next = plan.nextSegment(free, busyHosts)).isPresent()) {
+        busyHosts.addAll(plan.getReplicas(next.get()));
+        free.remove(next.get());
+      }
+      ++waves;
+    }
+    Assertions.assertThat(waves).isLessThanOrEqualTo(plan.getWaveCount());
+  }
+
+  @Test
+  public void testUnknownReplicasConflictWithEverything() {
+    RepairSegment segment = aSegment("10", "20");
+    ParallelRepairPlan plan = ParallelRepairPlan.create(Collections.singletonList(segment), Collections.emptyMap());
+
+    Assertions.assertThat(plan.getParallelism()).isEqualTo(1);
+    Assertions.assertThat(plan.nextSegment(ImmutableSet.of(segment.getId()), Collections.emptySet()))
+        .contains(segment.getId());
+  }
+
+  private static List<RepairSegment> segments(Map<List<String>, List<String>> ring) throws ReaperException {
+    List<BigInteger> tokens = Lists.transform(
+        Lists.newArrayList("0", "50", "100", "150", "200", "250"),
+        (string) -> new BigInteger(string));
+
+    SegmentGenerator generator = new SegmentGenerator(new BigInteger("0"), new BigInteger("299"));
+    List<Segment> segments = generator
+        .generateSegments(32, tokens, Boolean.FALSE, RepairRunService.buildReplicasToRangeMap(ring), "2.2.10");
+
+    return segments.stream()
+        .map(segment -> RepairSegment.builder(segment, UUID.randomUUID())
+            .withRunId(RUN_ID)
+            .withId(UUID.randomUUID())
+            .build())
+        .collect(Collectors.toList());
+  }
+
+  private static RepairSegment aSegment(String start, String end) {
+    return RepairSegment
+        .builder(Segment.builder().withTokenRange(new RingRange(start, end)).build(), UUID.randomUUID())
+        .withRunId(RUN_ID)
+        .withId(UUID.randomUUID())
+        .build();
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public final class RangeSizeEstimatesTest {
+
+  private static final RangeSizeEstimates ESTIMATES = new RangeSizeEstimates(
+      Arrays.asList(
+          BigInteger.valueOf(-50),
+          BigInteger.valueOf(10),
+          BigInteger.valueOf(20),
+          BigInteger.valueOf(20),
+          BigInteger.valueOf(30),
+          BigInteger.valueOf(90)));
+
+  @Test
+  public void testCountsSamplesInRanges() {
+    Assertions.assertThat(ESTIMATES.total()).isEqualTo(6);
+    Assertions.assertThat(ESTIMATES.count(range(10, 30))).isEqualTo(3);
+    Assertions.assertThat(ESTIMATES.count(range(0, 10))).isEqualTo(1);
+    Assertions.assertThat(ESTIMATES.count(range(30, -40))).isEqualTo(2);
+    Assertions.assertThat(ESTIMATES.count(range(5, 5))).isEqualTo(6);
+  }
+
+  @Test
+  public void testCutsRangesInEqualShares() {
+    Assertions.assertThat(ESTIMATES.cuts(range(0, 40), 2)).containsExactly(BigInteger.valueOf(20));
+    Assertions.assertThat(ESTIMATES.cuts(range(50, 15), 2)).containsExactly(BigInteger.valueOf(90));
+    Assertions.assertThat(ESTIMATES.cuts(range(40, 50), 3)).isEmpty();
+  }
+
+  private static RingRange range(long start, long end) {
+    return new RingRange(BigInteger.valueOf(start), BigInteger.valueOf(end));
+  }
+}
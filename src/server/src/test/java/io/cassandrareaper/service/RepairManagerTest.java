@@ -16,6 +16,7 @@ package io.cassandrareaper.service;
 
 import io.cassandrareaper.AppContext;
 import io.cassandrareaper.ReaperApplicationConfiguration;
+import io.cassandrareaper.ReaperApplicationConfiguration.DatacenterAvailability;
 import io.cassandrareaper.ReaperException;
 import io.cassandrareaper.core.Cluster;
 import io.cassandrareaper.core.RepairRun;
@@ -29,14 +30,20 @@ import io.cassandrareaper.storage.IStorage;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.datastax.driver.core.utils.UUIDs;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Sets;
 import org.apache.cassandra.repair.RepairParallelism;
 import org.fest.assertions.api.Assertions;
+import org.joda.time.DateTime;
 import org.junit.Test;
 import org.mockito.ArgumentMatcher;
 import org.mockito.Mockito;
@@ -409,6 +416,43 @@ public final class RepairManagerTest {
     Mockito.verify(context.storage, Mockito.times(1)).updateRepairRun(any());
   }
 
+  @Test
+  public void runsAreOnlySharedBetweenInstancesWithDatacenterAvailabilityAll() throws ReaperException {
+    List<UUID> runs = Stream.generate(UUIDs::timeBased).limit(100).collect(Collectors.toList());
+
+    RepairManager all = managerWithOtherLiveInstances(DatacenterAvailability.ALL);
+    Assertions.assertThat(runs.stream().filter(all::ownsRun).count()).isLessThan(runs.size());
+
+    RepairManager local = managerWithOtherLiveInstances(DatacenterAvailability.LOCAL);
+    Assertions.assertThat(runs.stream().filter(local::ownsRun).count()).isEqualTo(runs.size());
+  }
+
+  private static RepairManager managerWithOtherLiveInstances(DatacenterAvailability datacenterAvailability)
+      throws ReaperException {
+
+    AppContext context = new AppContext();
+    context.storage = mock(CassandraStorage.class);
+    context.config = new ReaperApplicationConfiguration();
+    context.config.setDatacenterAvailability(datacenterAvailability);
+
+    context.repairManager = RepairManager.create(
+        context,
+        Executors.newScheduledThreadPool(1),
+        500,
+        TimeUnit.MILLISECONDS,
+        1,
+        TimeUnit.MILLISECONDS);
+
+    when(((IDistributedStorage) context.storage).getRunningReapers()).thenReturn(
+        ImmutableMap.of(
+            AppContext.REAPER_INSTANCE_ID, DateTime.now(),
+            UUIDs.random(), DateTime.now(),
+            UUIDs.random(), DateTime.now()));
+
+    context.repairManager.resumeRunningRepairRuns();
+    return context.repairManager;
+  }
+
   private static class NotEmptyList implements ArgumentMatcher<Collection<RepairSegment>> {
     @Override
     public boolean matches(Collection<RepairSegment> segments) {
@@ -43,10 +43,10 @@ import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import com.google.common.collect.Collections2;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.SettableFuture;
 import org.apache.cassandra.locator.EndpointSnitchInfoMBean;
 import org.apache.cassandra.repair.RepairParallelism;
 import org.apache.cassandra.service.ActiveRepairService;
@@ -55,14 +55,18 @@ import org.joda.time.DateTime;
 import org.joda.time.DateTimeUtils;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.Mockito;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyDouble;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
@@ -157,6 +161,7 @@ public final class RepairRunnerTest {
                           new Thread() {
                             @Override
                             public void run() {
+                              SegmentRunnerTest.awaitRepairTriggered(invocation.getArgument(7));
                               ((RepairStatusHandler)invocation.getArgument(7))
                                   .handle(repairNumber,
                                       Optional.of(ActiveRepairService.Status.STARTED),
@@ -172,13 +177,12 @@ public final class RepairRunnerTest {
                           new Thread() {
                             @Override
                             public void run() {
-
+                              SegmentRunnerTest.awaitRepairTriggered(invocation.getArgument(7));
                               ((RepairStatusHandler)invocation.getArgument(7))
                                   .handle(
                                       repairNumber,
                                       Optional.of(ActiveRepairService.Status.STARTED),
                                       Optional.empty(), null, jmx);
-
                               assertEquals(
                                   RepairSegment.State.RUNNING,
                                   storage.getRepairSegment(RUN_ID, SEGMENT_ID).get().getState());
@@ -274,10 +278,8 @@ public final class RepairRunnerTest {
     context.storage = storage;
     context.config = new ReaperApplicationConfiguration();
     final Semaphore mutex = new Semaphore(0);
-
     context.repairManager = RepairManager
         .create(context, Executors.newScheduledThreadPool(1), 500, TimeUnit.MILLISECONDS, 1, TimeUnit.MILLISECONDS);
-
     context.jmxConnectionFactory = new JmxConnectionFactory() {
           final AtomicInteger repairAttempts = new AtomicInteger(1);
           @Override
@@ -312,13 +314,13 @@ public final class RepairRunnerTest {
                       assertEquals(
                           RepairSegment.State.NOT_STARTED,
                           storage.getRepairSegment(RUN_ID, SEGMENT_ID).get().getState());
-
                       final int repairNumber = repairAttempts.getAndIncrement();
                       switch (repairNumber) {
                         case 1:
                           new Thread() {
                             @Override
                             public void run() {
+                              SegmentRunnerTest.awaitRepairTriggered(invocation.getArgument(7));
                               ((RepairStatusHandler)invocation.getArgument(7))
                                   .handle(
                                       repairNumber, Optional.empty(),
@@ -333,6 +335,7 @@ public final class RepairRunnerTest {
                           new Thread() {
                             @Override
                             public void run() {
+                              SegmentRunnerTest.awaitRepairTriggered(invocation.getArgument(7));
                               ((RepairStatusHandler)invocation.getArgument(7))
                                   .handle(
                                       repairNumber, Optional.empty(),
@@ -533,59 +536,6 @@ public final class RepairRunnerTest {
     assertEquals(2, RepairRunner.getPossibleParallelRepairsCount(map, endpointsSixNodes));
   }
 
-  @Test
-  public void getParallelSegmentsTest() throws ReaperException {
-    List<BigInteger> tokens = Lists
-        .transform(Lists.newArrayList("0", "50", "100", "150", "200", "250"), (string) -> new BigInteger(string));
-
-    SegmentGenerator generator = new SegmentGenerator(new BigInteger("0"), new BigInteger("299"));
-    List<Segment> segments =
-        generator.generateSegments(
-            32,
-            tokens,
-            Boolean.FALSE,
-            RepairRunService.buildReplicasToRangeMap(RepairRunnerTest.sixNodeCluster()),
-            "2.2.10");
-
-    Map<List<String>, List<String>> map = RepairRunnerTest.sixNodeCluster();
-    Map<String, String> endpointsSixNodes = RepairRunnerTest.sixNodeClusterEndpoint();
-    List<RingRange> ranges =
-        RepairRunner.getParallelRanges(
-            RepairRunner.getPossibleParallelRepairsCount(map, endpointsSixNodes),
-            Lists.newArrayList(
-                Collections2.transform(segments, segment -> segment.getBaseRange())));
-    assertEquals(2, ranges.size());
-    assertEquals("0", ranges.get(0).getStart().toString());
-    assertEquals("150", ranges.get(0).getEnd().toString());
-    assertEquals("150", ranges.get(1).getStart().toString());
-    assertEquals("0", ranges.get(1).getEnd().toString());
-  }
-
-  @Test
-  public void getParallelSegmentsTest2() throws ReaperException {
-    List<BigInteger> tokens = Lists.transform(
-        Lists.newArrayList("0", "25", "50", "75", "100", "125", "150", "175", "200", "225", "250"),
-        (string) -> new BigInteger(string));
-
-    SegmentGenerator generator = new SegmentGenerator(new BigInteger("0"), new BigInteger("299"));
-
-    Map<List<String>, List<String>> map = RepairRunnerTest.sixNodeCluster();
-    Map<String, String> endpointsSixNodes = RepairRunnerTest.sixNodeClusterEndpoint();
-    List<Segment> segments =
-        generator.generateSegments(
-            32, tokens, Boolean.FALSE, RepairRunService.buildReplicasToRangeMap(map), "2.2.10");
-    List<RingRange> ranges =
-        RepairRunner.getParallelRanges(
-            RepairRunner.getPossibleParallelRepairsCount(map, endpointsSixNodes),
-            Lists.newArrayList(
-                Collections2.transform(segments, segment -> segment.getBaseRange())));
-    assertEquals(2, ranges.size());
-    assertEquals("0", ranges.get(0).getStart().toString());
-    assertEquals("150", ranges.get(0).getEnd().toString());
-    assertEquals("150", ranges.get(1).getStart().toString());
-    assertEquals("0", ranges.get(1).getEnd().toString());
-  }
-
   @Test
   public void getNoSegmentCoalescingTest() throws ReaperException {
     List<BigInteger> tokens =
@@ -622,6 +572,150 @@ public final class RepairRunnerTest {
     assertEquals(6, segments.size());
   }
 
+  @Test
+  public void runHandedBackToThisInstanceGetsANewRunner() throws ReaperException {
+    AppContext context = sixNodeClusterContext(Lists.newArrayList());
+    UUID runId = addRunningRun(context, new RingRange("0", "50"));
+    String runMetrics = runId.toString().replaceAll("-", "");
+
+    RepairRunner runner = new RepairRunner(context, runId);
+    assertFalse(context.metricRegistry.getGauges((name, gauge) -> name.endsWith(runMetrics)).isEmpty());
+
+    when(context.repairManager.ownsRun(runId)).thenReturn(false);
+    runner.run();
+    Mockito.verify(context.repairManager).removeRunner(runner);
+    assertTrue(context.metricRegistry.getGauges((name, gauge) -> name.endsWith(runMetrics)).isEmpty());
+
+    when(context.repairManager.ownsRun(runId)).thenReturn(true);
+    new RepairRunner(context, runId);
+    assertFalse(context.metricRegistry.getGauges((name, gauge) -> name.endsWith(runMetrics)).isEmpty());
+  }
+
+  @Test
+  public void segmentsOfTheFirstWaveAreStartedTogether() throws ReaperException {
+    List<String> started = Lists.newArrayList();
+    AppContext context = sixNodeClusterContext(started);
+    UUID runId = addRunningRun(context, sixNodeClusterRanges());
+    when(context.repairManager.ownsRun(runId)).thenReturn(true);
+
+    new RepairRunner(context, runId).run();
+
+    // the waves are {0-50, 150-200}, {50-100, 200-250} and {100-150, 250-0}
+    assertEquals(Lists.newArrayList("(0,50]", "(150,200]"), started);
+  }
+
+  @Test
+  public void segmentsOnHostsReservedByOtherRunsAreSkipped() throws ReaperException {
+    List<String> started = Lists.newArrayList();
+    AppContext context = sixNodeClusterContext(started);
+    UUID runId = addRunningRun(context, sixNodeClusterRanges());
+    when(context.repairManager.ownsRun(runId)).thenReturn(true);
+    assertTrue(context.hostReservations.reserve("reaper", UUID.randomUUID(), Collections.singleton("a1")));
+
+    new RepairRunner(context, runId).run();
+
+    // once 150-200 started, every other segment shares a replica with it or with the reserved a1
+    assertEquals(Lists.newArrayList("(150,200]"), started);
+  }
+
+  @Test
+  public void splitSegmentsArePlannedAgain() throws ReaperException {
+    List<String> started = Lists.newArrayList();
+    AppContext context = sixNodeClusterContext(started);
+    UUID runId = addRunningRun(context, sixNodeClusterRanges());
+    when(context.repairManager.ownsRun(runId)).thenReturn(true);
+    RepairRunner runner = new RepairRunner(context, runId);
+
+    RepairSegment split = context.storage.getRepairSegmentsForRun(runId).stream()
+        .filter(segment -> "(0,50]".equals(segment.getTokenRange().getBaseRange().toString()))
+        .findFirst()
+        .get();
+    context.storage.updateRepairSegment(
+        split.with().withState(RepairSegment.State.SUPERSEDED).withId(split.getId()).build());
+    context.storage.addRepairSegments(
+        Lists.newArrayList(
+            RepairSegment.builder(
+                Segment.builder().withTokenRange(new RingRange("0", "25")).build(), split.getRepairUnitId()),
+            RepairSegment.builder(
+                Segment.builder().withTokenRange(new RingRange("25", "50")).build(), split.getRepairUnitId())),
+        runId);
+
+    runner.run();
+
+    assertEquals(Lists.newArrayList("(0,25]", "(150,200]"), started);
+  }
+
+  /**
+   * @return a context whose JMX connections see the six node cluster, and whose repair manager is a mock
+   */
+  private static AppContext sixNodeClusterContext(List<String> startedSegments) {
+    AppContext context = new AppContext();
+    context.storage = new MemoryStorage();
+    context.storage.addCluster(new Cluster("reaper", null, Collections.singleton("127.0.0.1")));
+    context.config = new ReaperApplicationConfiguration();
+    context.repairManager = mock(RepairManager.class);
+    when(context.repairManager.getRepairTimeoutMillis()).thenReturn(TimeUnit.MINUTES.toMillis(30));
+    when(context.repairManager.submitSegment(anyString(), any(UUID.class), anyDouble(), any(SegmentRunner.class)))
+        .thenAnswer(invocation -> SettableFuture.create());
+
+    context.jmxConnectionFactory = new JmxConnectionFactory() {
+          @Override
+          protected JmxProxy connectImpl(Node host, int connectionTimeout) throws ReaperException {
+            JmxProxy jmx = JmxProxyTest.mockJmxProxyImpl();
+            when(jmx.getClusterName()).thenReturn("reaper");
+            when(jmx.isConnectionAlive()).thenReturn(true);
+            when(jmx.getRangeToEndpointMap(anyString())).thenReturn(RepairRunnerTest.sixNodeCluster());
+            when(jmx.getEndpointToHostId()).thenReturn(RepairRunnerTest.sixNodeClusterEndpoint());
+            when(jmx.tokenRangeToEndpoint(anyString(), any(Segment.class))).thenAnswer(invocation -> {
+              startedSegments.add(invocation.<Segment>getArgument(1).getBaseRange().toString());
+              return Lists.newArrayList("a1");
+            });
+            EndpointSnitchInfoMBean endpointSnitchInfoMBean = mock(EndpointSnitchInfoMBean.class);
+            try {
+              when(endpointSnitchInfoMBean.getDatacenter(anyString())).thenReturn("dc1");
+            } catch (UnknownHostException ex) {
+              throw new AssertionError(ex);
+            }
+            JmxProxyTest.mockGetEndpointSnitchInfoMBean(jmx, endpointSnitchInfoMBean);
+            return jmx;
+          }
+        };
+    return context;
+  }
+
+  private static UUID addRunningRun(AppContext context, RingRange... segmentRanges) throws ReaperException {
+    RepairUnit unit = context.storage.addRepairUnit(
+        RepairUnit.builder()
+            .clusterName("reaper")
+            .keyspaceName("reaper")
+            .columnFamilies(Sets.newHashSet("reaper"))
+            .incrementalRepair(false)
+            .nodes(Collections.emptySet())
+            .datacenters(Collections.emptySet())
+            .blacklistedTables(Collections.emptySet())
+            .repairThreadCount(1));
+
+    List<RepairSegment.Builder> segments = Lists.newArrayList();
+    for (RingRange range : segmentRanges) {
+      segments.add(RepairSegment.builder(Segment.builder().withTokenRange(range).build(), unit.getId()));
+    }
+    RepairRun run = context.storage.addRepairRun(
+        RepairRun.builder("reaper", unit.getId())
+            .intensity(1)
+            .segmentCount(segmentRanges.length)
+            .repairParallelism(RepairParallelism.PARALLEL),
+        segments);
+
+    context.storage.updateRepairRun(run.with().runState(RepairRun.RunState.RUNNING).build(run.getId()));
+    return run.getId();
+  }
+
+  private static RingRange[] sixNodeClusterRanges() {
+    return sixNodeCluster().keySet().stream()
+        .map(range -> new RingRange(range.get(0), range.get(1)))
+        .toArray(RingRange[]::new);
+  }
+
   public static Map<List<String>, List<String>> threeNodeCluster() {
     Map<List<String>, List<String>> map = Maps.newHashMap();
     map = addRangeToMap(map, "0", "50", "a1", "a2", "a3");
@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public final class RingRangeIndexTest {
+
+  private static final int TOKENS = 100;
+
+  private static final List<RingRange> RING = ImmutableList.of(
+      new RingRange("0", "100"),
+      new RingRange("100", "200"),
+      new RingRange("200", "0"));
+
+  @Test
+  public void testEnclosingRangeOfARing() {
+    RingRangeIndex<RingRange> index = RingRangeIndex.of(RING, range -> range);
+
+    Assertions.assertThat(index.enclosing(new RingRange("10", "20"))).containsExactly(RING.get(0));
+    Assertions.assertThat(index.enclosing(new RingRange("250", "-5"))).containsExactly(RING.get(2));
+    Assertions.assertThat(index.enclosing(new RingRange("90", "110"))).isEmpty();
+  }
+
+  @Test
+  public void testRangesEnclosedByAWrappingRange() {
+    RingRangeIndex<RingRange> index = RingRangeIndex.of(RING, range -> range);
+
+    Assertions.assertThat(index.enclosedBy(new RingRange("150", "100"))).containsExactly(RING.get(0), RING.get(2));
+    Assertions.assertThat(index.enclosedBy(new RingRange("0", "0"))).containsExactlyElementsOf(RING);
+  }
+
+  @Test
+  public void testOwnerOfATokenAtTheBoundaries() {
+    RingRangeIndex<RingRange> index = RingRangeIndex.of(RING, range -> range);
+
+    Assertions.assertThat(index.owning(BigInteger.valueOf(100))).containsExactly(RING.get(0));
+    Assertions.assertThat(index.owning(BigInteger.valueOf(101))).containsExactly(RING.get(1));
+    Assertions.assertThat(index.owning(BigInteger.ZERO)).containsExactly(RING.get(2));
+    Assertions.assertThat(index.owning(BigInteger.valueOf(-1000))).containsExactly(RING.get(2));
+  }
+
+  @Test
+  public void testEmptyIndex() {
+    RingRangeIndex<RingRange> index = RingRangeIndex.of(ImmutableList.of(), range -> range);
+
+    Assertions.assertThat(index.size()).isZero();
+    Assertions.assertThat(index.overlapping(new RingRange("0", "0"))).isEmpty();
+  }
+
+  @Test
+  public void testAnswersAsAScan() {
+    Random random = new Random(0);
+    List<RingRange> ranges = Lists.newArrayList();
+    for (int i = 0; i < 200; i++) {
+      ranges.add(randomRange(random));
+    }
+    RingRangeIndex<RingRange> index = RingRangeIndex.of(ranges, range -> range);
+
+    for (int i = 0; i < 500; i++) {
+      RingRange query = randomRange(random);
+      BigInteger token = BigInteger.valueOf(random.nextInt(TOKENS));
+
+      Assertions.assertThat(index.enclosedBy(query))
+          .containsExactlyElementsOf(scan(ranges, range -> query.encloses(range)));
+      Assertions.assertThat(index.enclosing(query))
+          .containsExactlyElementsOf(scan(ranges, range -> range.encloses(query)));
+      Assertions.assertThat(index.overlapping(query))
+          .containsExactlyElementsOf(scan(ranges, range -> overlaps(range, query)));
+      Assertions.assertThat(index.owning(token))
+          .containsExactlyElementsOf(scan(ranges, range -> contains(range, token)));
+    }
+  }
+
+  private static RingRange randomRange(Random random) {
+    return new RingRange(BigInteger.valueOf(random.nextInt(TOKENS)), BigInteger.valueOf(random.nextInt(TOKENS)));
+  }
+
+  private static List<RingRange> scan(List<RingRange> ranges, Predicate<RingRange> filter) {
+    return ranges.stream().filter(filter).collect(Collectors.toList());
+  }
+
+  private static boolean overlaps(RingRange range, RingRange other) {
+    for (int token = -1; token <= TOKENS; token++) {
+      if (contains(range, BigInteger.valueOf(token)) && contains(other, BigInteger.valueOf(token))) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean contains(RingRange range, BigInteger token) {
+    if (!range.isWrapping()) {
+      return range.getStart().compareTo(token) < 0 && token.compareTo(range.getEnd()) <= 0;
+    }
+    return range.getStart().compareTo(token) < 0 || token.compareTo(range.getEnd()) <= 0;
+  }
+}
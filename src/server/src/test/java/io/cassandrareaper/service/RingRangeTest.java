@@ -18,6 +18,7 @@ import io.cassandrareaper.service.RingRange;
 
 import java.math.BigInteger;
 import java.util.List;
+import java.util.Random;
 
 import com.google.common.collect.Lists;
 import org.junit.Test;
@@ -116,4 +117,25 @@ public final class RingRangeTest {
     assertEquals("80", merged.getStart().toString());
     assertEquals("50", merged.getEnd().toString());
   }
+
+  @Test
+  public void enclosesMurmur3TokensTest() {
+    // shifting all tokens out of the long range keeps their ring order, but goes through BigInteger comparisons
+    BigInteger shift = BigInteger.valueOf(2).pow(100);
+    Random random = new Random(0);
+    long[] tokens = {Long.MIN_VALUE, -1000, -1, 0, 1, 1000, Long.MAX_VALUE};
+    for (int i = 0; i < 10_000; i++) {
+      long[] bounds = new long[4];
+      for (int j = 0; j < bounds.length; j++) {
+        bounds[j] = random.nextBoolean() ? tokens[random.nextInt(tokens.length)] : random.nextLong();
+      }
+      RingRange range = new RingRange(BigInteger.valueOf(bounds[0]), BigInteger.valueOf(bounds[1]));
+      RingRange other = new RingRange(BigInteger.valueOf(bounds[2]), BigInteger.valueOf(bounds[3]));
+      RingRange shiftedRange = new RingRange(range.getStart().add(shift), range.getEnd().add(shift));
+      RingRange shiftedOther = new RingRange(other.getStart().add(shift), other.getEnd().add(shift));
+
+      assertEquals(shiftedRange.isWrapping(), range.isWrapping());
+      assertEquals(range + " encloses " + other, shiftedRange.encloses(shiftedOther), range.encloses(other));
+    }
+  }
 }
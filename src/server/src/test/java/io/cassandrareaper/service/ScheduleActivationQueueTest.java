@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.core.RepairSchedule;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+import org.apache.cassandra.repair.RepairParallelism;
+import org.assertj.core.api.Assertions;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+public final class ScheduleActivationQueueTest {
+
+  private static final DateTime NOW = DateTime.now();
+
+  @Test
+  public void testPollDueReturnsDueSchedulesInActivationOrder() {
+    ScheduleActivationQueue queue = new ScheduleActivationQueue();
+    RepairSchedule later = aSchedule(RepairSchedule.State.ACTIVE, NOW.minusMinutes(1));
+    RepairSchedule earlier = aSchedule(RepairSchedule.State.ACTIVE, NOW.minusMinutes(5));
+    RepairSchedule future = aSchedule(RepairSchedule.State.ACTIVE, NOW.plusMinutes(5));
+    queue.reset(Arrays.asList(later, future, earlier));
+
+    Assertions.assertThat(queue.nextActivation()).contains(earlier.getNextActivation());
+    Assertions.assertThat(queue.pollDue(NOW)).containsExactly(earlier.getId(), later.getId());
+    Assertions.assertThat(queue.pollDue(NOW)).isEmpty();
+    Assertions.assertThat(queue.size()).isEqualTo(1);
+    Assertions.assertThat(queue.nextActivation()).contains(future.getNextActivation());
+  }
+
+  @Test
+  public void testUpdateReplacesPreviousActivation() {
+    ScheduleActivationQueue queue = new ScheduleActivationQueue();
+    RepairSchedule schedule = aSchedule(RepairSchedule.State.ACTIVE, NOW.minusMinutes(1));
+    queue.update(schedule);
+
+    RepairSchedule advanced = schedule.with().nextActivation(NOW.plusDays(1)).build(schedule.getId());
+    queue.update(advanced);
+
+    Assertions.assertThat(queue.size()).isEqualTo(1);
+    Assertions.assertThat(queue.pollDue(NOW)).isEmpty();
+    Assertions.assertThat(queue.nextActivation()).contains(advanced.getNextActivation());
+  }
+
+  @Test
+  public void testInactiveSchedulesAreNotTracked() {
+    ScheduleActivationQueue queue = new ScheduleActivationQueue();
+    RepairSchedule schedule = aSchedule(RepairSchedule.State.ACTIVE, NOW.minusMinutes(1));
+    queue.update(schedule);
+    queue.update(schedule.with().state(RepairSchedule.State.PAUSED).build(schedule.getId()));
+    queue.update(aSchedule(RepairSchedule.State.PAUSED, NOW.minusMinutes(1)));
+
+    Assertions.assertThat(queue.size()).isEqualTo(0);
+    Assertions.assertThat(queue.nextActivation()).isEmpty();
+    Assertions.assertThat(queue.pollDue(NOW)).isEmpty();
+  }
+
+  @Test
+  public void testResetForgetsSchedulesNoLongerPresent() {
+    ScheduleActivationQueue queue = new ScheduleActivationQueue();
+    RepairSchedule removed = aSchedule(RepairSchedule.State.ACTIVE, NOW.minusMinutes(1));
+    RepairSchedule kept = aSchedule(RepairSchedule.State.ACTIVE, NOW.minusMinutes(2));
+    queue.reset(Arrays.asList(removed, kept));
+    queue.reset(Lists.newArrayList(kept));
+
+    Assertions.assertThat(queue.pollDue(NOW)).containsExactly(kept.getId());
+  }
+
+  @Test
+  public void testPutPostponesActivation() {
+    ScheduleActivationQueue queue = new ScheduleActivationQueue();
+    RepairSchedule schedule = aSchedule(RepairSchedule.State.ACTIVE, NOW.minusMinutes(1));
+    queue.update(schedule);
+    queue.put(schedule.getId(), NOW.plusMinutes(1));
+
+    Assertions.assertThat(queue.pollDue(NOW)).isEmpty();
+    Assertions.assertThat(queue.pollDue(NOW.plusMinutes(1))).containsExactly(schedule.getId());
+  }
+
+  private static RepairSchedule aSchedule(RepairSchedule.State state, DateTime nextActivation) {
+    return RepairSchedule.builder(UUID.randomUUID())
+        .state(state)
+        .daysBetween(1)
+        .nextActivation(nextActivation)
+        .repairParallelism(RepairParallelism.PARALLEL)
+        .intensity(0.9)
+        .segmentCount(10)
+        .segmentCountPerNode(0)
+        .build(UUID.randomUUID());
+  }
+}
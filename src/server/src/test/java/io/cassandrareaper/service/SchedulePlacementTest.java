@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public final class SchedulePlacementTest {
+
+  private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+  private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+  @Test
+  public void testRunsArePlacedWithoutOverlapWhenTheyFit() {
+    SchedulePlacement placement = new SchedulePlacement(DAY, HOUR);
+
+    Assertions.assertThat(placement.place(8 * HOUR, DAY)).isEqualTo(0);
+    Assertions.assertThat(placement.place(4 * HOUR, DAY)).isEqualTo(8 * HOUR);
+    Assertions.assertThat(placement.place(4 * HOUR, DAY)).isEqualTo(12 * HOUR);
+    Assertions.assertThat(placement.peak()).isEqualTo(1);
+  }
+
+  @Test
+  public void testOverloadedCycleKeepsPeakLow() {
+    SchedulePlacement placement = new SchedulePlacement(DAY, HOUR);
+    for (int i = 0; i < 6; ++i) {
+      placement.place(8 * HOUR, DAY);
+    }
+    Assertions.assertThat(placement.peak()).isEqualTo(2);
+  }
+
+  @Test
+  public void testPinnedRunsWrapAroundTheCycle() {
+    SchedulePlacement placement = new SchedulePlacement(DAY, HOUR);
+    placement.pin(20 * HOUR, 8 * HOUR);
+
+    Assertions.assertThat(placement.place(2 * HOUR, DAY)).isEqualTo(4 * HOUR);
+  }
+
+  @Test
+  public void testPinnedRunsOnlyMoveLaterToLowerThePeak() {
+    SchedulePlacement placement = new SchedulePlacement(DAY, HOUR);
+    placement.pin(0, 8 * HOUR);
+    placement.pin(4 * HOUR, 2 * HOUR);
+    placement.pin(12 * HOUR, 4 * HOUR);
+
+    Assertions.assertThat(placement.moveLater(12 * HOUR, 4 * HOUR)).isEqualTo(12 * HOUR);
+    Assertions.assertThat(placement.moveLater(4 * HOUR, 2 * HOUR)).isEqualTo(8 * HOUR);
+    Assertions.assertThat(placement.peak()).isEqualTo(1);
+  }
+
+  @Test
+  public void testRunsAreNotPlacedAfterTheirMaxOffset() {
+    SchedulePlacement placement = new SchedulePlacement(DAY, HOUR);
+    placement.pin(0, 12 * HOUR);
+
+    Assertions.assertThat(placement.place(HOUR, 6 * HOUR)).isBetween(0L, 6 * HOUR);
+    Assertions.assertThat(placement.place(HOUR, -HOUR)).isEqualTo(0);
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.core.RepairSegment;
+import io.cassandrareaper.core.Segment;
+
+import java.math.BigInteger;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import org.apache.commons.lang3.tuple.Pair;
+import org.assertj.core.api.Assertions;
+import org.joda.time.DateTime;
+import org.junit.Test;
+
+public final class SegmentDurationsTest {
+
+  private static final UUID REPAIR_UNIT_ID = UUID.randomUUID();
+  private static final long DEFAULT_TIMEOUT = TimeUnit.MINUTES.toMillis(30);
+
+  @Test
+  public void testTimeoutIsAMarginOverTheRangesPastDurations() {
+    List<RepairSegment> segments = Lists.newArrayList();
+    segments.add(aDoneSegment(0, 10));
+    segments.add(aDoneSegment(0, 30));
+    segments.add(aDoneSegment(0, 20));
+
+    Assertions.assertThat(SegmentDurations.of(segments).timeoutMillis(range(0), DEFAULT_TIMEOUT))
+        .isEqualTo(TimeUnit.MINUTES.toMillis(90));
+  }
+
+  @Test
+  public void testRangesWithoutEnoughHistoryUseTheUnitsDurations() {
+    List<RepairSegment> segments = Lists.newArrayList();
+    for (int range = 1; range <= 4; ++range) {
+      for (int run = 0; run < 3; ++run) {
+        segments.add(aDoneSegment(range, 10));
+      }
+    }
+    segments.add(aDoneSegment(0, 20));
+
+    Assertions.assertThat(SegmentDurations.of(segments).timeoutMillis(range(0), DEFAULT_TIMEOUT))
+        .isEqualTo(TimeUnit.MINUTES.toMillis(60));
+  }
+
+  @Test
+  public void testDefaultTimeoutWithoutEnoughHistory() {
+    List<RepairSegment> segments = Lists.newArrayList();
+    segments.add(aDoneSegment(0, 10));
+    segments.add(aDoneSegment(1, 10));
+    segments.add(RepairSegment.builder(range(0), REPAIR_UNIT_ID)
+        .withRunId(UUID.randomUUID())
+        .withId(UUID.randomUUID())
+        .withState(RepairSegment.State.RUNNING)
+        .withStartTime(DateTime.now())
+        .build());
+
+    Assertions.assertThat(SegmentDurations.of(segments).timeoutMillis(range(0), DEFAULT_TIMEOUT))
+        .isEqualTo(DEFAULT_TIMEOUT);
+  }
+
+  @Test
+  public void testTimeoutIsBounded() {
+    List<RepairSegment> segments = Lists.newArrayList();
+    for (int run = 0; run < 3; ++run) {
+      segments.add(aDoneSegment(0, 0));
+      segments.add(aDoneSegment(1, 600));
+    }
+    SegmentDurations durations = SegmentDurations.of(segments);
+
+    Assertions.assertThat(durations.timeoutMillis(range(0), DEFAULT_TIMEOUT))
+        .isEqualTo(TimeUnit.MINUTES.toMillis(5));
+
+    Assertions.assertThat(durations.timeoutMillis(range(1), DEFAULT_TIMEOUT))
+        .isEqualTo(DEFAULT_TIMEOUT * 10);
+  }
+
+  @Test
+  public void testChronicallySlowRangesAreOutliers() {
+    List<RepairSegment> segments = Lists.newArrayList();
+    for (int run = 0; run < 3; ++run) {
+      for (int range = 1; range <= 4; ++range) {
+        segments.add(aDoneSegment(range, 10));
+      }
+      segments.add(aDoneSegment(0, 60));
+    }
+
+    Assertions.assertThat(SegmentDurations.of(segments).outliers())
+        .containsExactly(Pair.of(BigInteger.ZERO, BigInteger.valueOf(100)));
+  }
+
+  private static Segment range(int index) {
+    return Segment.builder()
+        .withTokenRange(new RingRange(BigInteger.valueOf(index * 100), BigInteger.valueOf((index + 1) * 100)))
+        .build();
+  }
+
+  private static RepairSegment aDoneSegment(int range, int minutes) {
+    DateTime start = DateTime.now().minusDays(1);
+    return RepairSegment.builder(range(range), REPAIR_UNIT_ID)
+        .withRunId(UUID.randomUUID())
+        .withId(UUID.randomUUID())
+        .withState(RepairSegment.State.DONE)
+        .withStartTime(start)
+        .withEndTime(start.plusMinutes(minutes))
+        .build();
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.ReaperException;
+import io.cassandrareaper.core.Segment;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.collect.Lists;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of generating the segments of a ring and of looking up the segments enclosing token ranges, for each
+ * partitioner and number of segments.
+ *
+ * <p>Run with {@code mvn -Pbenchmarks -Dbenchmark=SegmentGeneratorBenchmark -DskipTests test}. The gc profiler is
+ * enabled by the profile so allocation rates are reported next to ops/sec, and results are written to
+ * target/benchmarks.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SegmentGeneratorBenchmark {
+
+  private static final int VNODES = 256;
+  private static final int LOOKUPS = 1000;
+
+  @Param({"org.apache.cassandra.dht.Murmur3Partitioner", "org.apache.cassandra.dht.RandomPartitioner"})
+  public String partitioner;
+
+  @Param({"1000", "10000"})
+  public int segmentCount;
+
+  private SegmentGenerator generator;
+  private List<BigInteger> tokens;
+  private List<RingRange> segmentRanges;
+  private List<RingRange> lookups;
+
+  @Setup
+  public void setUp() throws ReaperException {
+    generator = new SegmentGenerator(partitioner);
+    boolean murmur3 = partitioner.endsWith("Murmur3Partitioner");
+    Random random = new Random(0);
+    tokens = Lists.newArrayList();
+    for (int i = 0; i < VNODES; i++) {
+      tokens.add(murmur3 ? BigInteger.valueOf(random.nextLong()) : new BigInteger(127, random));
+    }
+    Collections.sort(tokens);
+
+    segmentRanges = Lists.newArrayList();
+    generateSegments().forEach(segment -> segmentRanges.add(segment.getBaseRange()));
+
+    // the halves of random segments, as the token ranges of a repair session would be
+    lookups = Lists.newArrayList();
+    for (int i = 0; i < LOOKUPS; i++) {
+      RingRange range = segmentRanges.get(random.nextInt(segmentRanges.size()));
+      BigInteger middle = range.getStart().add(range.span(BigInteger.ONE.shiftLeft(murmur3 ? 64 : 127)).shiftRight(1));
+      lookups.add(new RingRange(range.getStart(), murmur3 ? BigInteger.valueOf(middle.longValue()) : middle));
+    }
+  }
+
+  @Benchmark
+  public List<Segment> generateSegments() throws ReaperException {
+    return generator.generateSegments(segmentCount, tokens, Boolean.FALSE, Collections.emptyMap(), "2.1.19");
+  }
+
+  @Benchmark
+  public int findEnclosingSegments() {
+    int found = 0;
+    for (RingRange lookup : lookups) {
+      for (RingRange range : segmentRanges) {
+        if (range.encloses(lookup)) {
+          ++found;
+          break;
+        }
+      }
+    }
+    return found;
+  }
+}
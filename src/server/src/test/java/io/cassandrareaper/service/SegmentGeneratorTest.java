@@ -21,6 +21,7 @@ import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -258,4 +259,157 @@ public final class SegmentGeneratorTest {
     // Ranges with 100 tokens will get coalesced two by two
     assertEquals(7, segments.size());
   }
+
+  @Test
+  public void splitSegmentTest() {
+    SegmentGenerator sg = new SegmentGenerator(BigInteger.valueOf(1), BigInteger.valueOf(1600));
+
+    List<Segment> segments = sg.split(
+        Segment.builder().withTokenRange(new RingRange(BigInteger.valueOf(100), BigInteger.valueOf(500))).build(),
+        4);
+
+    assertEquals(4, segments.size());
+    assertEquals(BigInteger.valueOf(100), segments.get(0).getBaseRange().getStart());
+    assertEquals(BigInteger.valueOf(200), segments.get(0).getBaseRange().getEnd());
+    assertEquals(BigInteger.valueOf(400), segments.get(3).getBaseRange().getStart());
+    assertEquals(BigInteger.valueOf(500), segments.get(3).getBaseRange().getEnd());
+  }
+
+  @Test
+  public void splitWrappingSegmentTest() {
+    SegmentGenerator sg = new SegmentGenerator(BigInteger.valueOf(1), BigInteger.valueOf(1600));
+
+    List<Segment> segments = sg.split(
+        Segment.builder().withTokenRange(new RingRange(BigInteger.valueOf(1500), BigInteger.valueOf(100))).build(),
+        4);
+
+    assertEquals(4, segments.size());
+    assertEquals(BigInteger.valueOf(1600), segments.get(1).getBaseRange().getEnd());
+    assertEquals(BigInteger.valueOf(50), segments.get(2).getBaseRange().getEnd());
+    assertEquals(BigInteger.valueOf(100), segments.get(3).getBaseRange().getEnd());
+  }
+
+  @Test
+  public void splitCoalescedSegmentTest() {
+    SegmentGenerator sg = new SegmentGenerator(BigInteger.valueOf(1), BigInteger.valueOf(1600));
+    List<RingRange> ranges = Lists.newArrayList(
+        new RingRange(BigInteger.valueOf(1), BigInteger.valueOf(200)),
+        new RingRange(BigInteger.valueOf(200), BigInteger.valueOf(400)),
+        new RingRange(BigInteger.valueOf(400), BigInteger.valueOf(600)));
+
+    List<Segment> segments = sg.split(Segment.builder().withTokenRanges(ranges).build(), 4);
+
+    assertEquals(3, segments.size());
+    assertTrue(segments.stream().allMatch(segment -> 1 == segment.getTokenRanges().size()));
+  }
+
+  @Test
+  public void splitTooSmallSegmentTest() {
+    SegmentGenerator sg = new SegmentGenerator(BigInteger.valueOf(1), BigInteger.valueOf(1600));
+
+    List<Segment> segments = sg.split(
+        Segment.builder().withTokenRange(new RingRange(BigInteger.valueOf(100), BigInteger.valueOf(101))).build(),
+        4);
+
+    assertEquals(1, segments.size());
+  }
+
+  @Test
+  public void generateSegmentsByDataSizeTest() throws ReaperException {
+    List<BigInteger> tokens = Lists.newArrayList(
+        BigInteger.valueOf(1), BigInteger.valueOf(400), BigInteger.valueOf(800), BigInteger.valueOf(1200));
+
+    List<BigInteger> samples = Lists.newArrayList();
+    for (int i = 0; i < 70; i++) {
+      samples.add(BigInteger.valueOf(300 + i));
+    }
+    for (int i = 0; i < 10; i++) {
+      samples.add(BigInteger.valueOf(500 + i));
+      samples.add(BigInteger.valueOf(900 + i));
+      samples.add(BigInteger.valueOf(1300 + i));
+    }
+    RangeSizeEstimates estimates = new RangeSizeEstimates(samples);
+    SegmentGenerator sg = new SegmentGenerator(BigInteger.valueOf(1), BigInteger.valueOf(1600));
+
+    List<Segment> segments
+        = sg.generateSegments(8, tokens, Boolean.FALSE, Maps.newHashMap(), "2.2.10", estimates);
+
+    // the range holding 70% of the data gets ceil(0.7 * 8) segments, the others one each
+    assertEquals(9, segments.size());
+    for (int i = 0; i < 6; i++) {
+      int count = estimates.count(segments.get(i).getBaseRange());
+      assertTrue("segment " + i + " holds " + count + " samples", 11 <= count && count <= 12);
+    }
+    assertEquals(BigInteger.valueOf(1), segments.get(0).getBaseRange().getStart());
+    assertEquals(BigInteger.valueOf(400), segments.get(5).getBaseRange().getEnd());
+  }
+
+  @Test
+  public void coalesceTokenRangesByDataSizeTest() throws ReaperException {
+    Map<List<String>, List<String>> rangeToEndpoint = Maps.newHashMap();
+    rangeToEndpoint.put(Arrays.asList("1", "200"), Arrays.asList("node1", "node2", "node3"));
+    rangeToEndpoint.put(Arrays.asList("200", "400"), Arrays.asList("node1", "node2", "node3"));
+    rangeToEndpoint.put(Arrays.asList("400", "600"), Arrays.asList("node1", "node2", "node3"));
+    rangeToEndpoint.put(Arrays.asList("600", "1"), Arrays.asList("node1", "node2", "node3"));
+    List<BigInteger> tokens = Lists.newArrayList(
+        BigInteger.valueOf(1), BigInteger.valueOf(200), BigInteger.valueOf(400), BigInteger.valueOf(600));
+
+    List<BigInteger> samples = Lists.newArrayList();
+    for (int i = 0; i < 50; i++) {
+      samples.add(BigInteger.valueOf(100 + i));
+    }
+    for (int i = 0; i < 25; i++) {
+      samples.add(BigInteger.valueOf(500 + i));
+      samples.add(BigInteger.valueOf(1000 + i));
+    }
+    RangeSizeEstimates estimates = new RangeSizeEstimates(samples);
+    SegmentGenerator sg = new SegmentGenerator(BigInteger.valueOf(1), BigInteger.valueOf(1600));
+
+    List<Segment> segments = sg.generateSegments(
+        2, tokens, Boolean.FALSE, RepairRunService.buildReplicasToRangeMap(rangeToEndpoint), "3.11.1", estimates);
+
+    assertEquals(4, segments.stream().mapToInt(segment -> segment.getTokenRanges().size()).sum());
+    for (Segment segment : segments) {
+      int count = segment.getTokenRanges().stream().mapToInt(estimates::count).sum();
+      assertTrue("segment holds " + count + " samples", count <= 50);
+    }
+  }
+
+  @Test
+  public void generateSegmentsWithoutDataSizeEstimatesTest() throws ReaperException {
+    SegmentGenerator sg = new SegmentGenerator(BigInteger.valueOf(1), BigInteger.valueOf(1600));
+    List<BigInteger> tokens = Lists.newArrayList(BigInteger.valueOf(1), BigInteger.valueOf(801));
+
+    List<Segment> segments = sg.generateSegments(
+        4, tokens, Boolean.FALSE, Maps.newHashMap(), "2.2.10", new RangeSizeEstimates(Lists.newArrayList()));
+
+    assertEquals(4, segments.size());
+  }
+
+  @Test
+  public void generateMurmur3SegmentsTest() throws ReaperException {
+    // the same ring shifted out of the long range, so that its tokens go through BigInteger arithmetic
+    BigInteger shift = BigInteger.valueOf(2).pow(100);
+    SegmentGenerator shifted = new SegmentGenerator(
+        shift.add(BigInteger.valueOf(Long.MIN_VALUE)), shift.add(BigInteger.valueOf(Long.MAX_VALUE)));
+
+    Random random = new Random(0);
+    List<BigInteger> tokens
+        = Lists.newArrayList(BigInteger.valueOf(Long.MIN_VALUE), BigInteger.valueOf(Long.MAX_VALUE));
+    for (int i = 0; i < 254; i++) {
+      tokens.add(BigInteger.valueOf(random.nextLong()));
+    }
+    tokens.sort(BigInteger::compareTo);
+    List<BigInteger> shiftedTokens = Lists.newArrayList(Lists.transform(tokens, token -> token.add(shift)));
+
+    SegmentGenerator sg = new SegmentGenerator("org.apache.cassandra.dht.Murmur3Partitioner");
+    List<Segment> segments = sg.generateSegments(1000, tokens, Boolean.FALSE, Maps.newHashMap(), "2.1.19");
+    List<Segment> expected = shifted.generateSegments(1000, shiftedTokens, Boolean.FALSE, Maps.newHashMap(), "2.1.19");
+
+    assertEquals(expected.size(), segments.size());
+    for (int i = 0; i < segments.size(); i++) {
+      assertEquals(expected.get(i).getBaseRange().getStart(), segments.get(i).getBaseRange().getStart().add(shift));
+      assertEquals(expected.get(i).getBaseRange().getEnd(), segments.get(i).getBaseRange().getEnd().add(shift));
+    }
+  }
 }
@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.service;
+
+import io.cassandrareaper.core.RepairUnit;
+import io.cassandrareaper.core.Segment;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.assertj.core.api.Assertions;
+import org.junit.Test;
+
+public final class SegmentPlanCacheTest {
+
+  private static final String PARTITIONER = "org.apache.cassandra.dht.Murmur3Partitioner";
+  private static final List<BigInteger> TOKENS
+      = ImmutableList.of(BigInteger.valueOf(-100), BigInteger.ZERO, BigInteger.valueOf(100));
+
+  private static final Map<List<String>, List<String>> RANGE_TO_ENDPOINT = ImmutableMap.of(
+      ImmutableList.of("-100", "0"), ImmutableList.of("node1", "node2"),
+      ImmutableList.of("0", "100"), ImmutableList.of("node2", "node3"),
+      ImmutableList.of("100", "-100"), ImmutableList.of("node3", "node1"));
+
+  @Test
+  public void testFingerprintIgnoresTheOrderOfTokensAndRanges() {
+    Map<List<String>, List<String>> reordered = ImmutableMap.of(
+        ImmutableList.of("100", "-100"), ImmutableList.of("node3", "node1"),
+        ImmutableList.of("0", "100"), ImmutableList.of("node2", "node3"),
+        ImmutableList.of("-100", "0"), ImmutableList.of("node1", "node2"));
+
+    Assertions.assertThat(fingerprint(TOKENS, RANGE_TO_ENDPOINT, 10))
+        .isEqualTo(fingerprint(ImmutableList.copyOf(TOKENS).reverse(), reordered, 10));
+  }
+
+  @Test
+  public void testFingerprintChangesWithTheRingAndTheSettings() {
+    String fingerprint = fingerprint(TOKENS, RANGE_TO_ENDPOINT, 10);
+
+    List<BigInteger> movedTokens = ImmutableList.of(BigInteger.valueOf(-100), BigInteger.ONE, BigInteger.valueOf(100));
+    Map<List<String>, List<String>> movedReplicas = ImmutableMap.of(
+        ImmutableList.of("-100", "0"), ImmutableList.of("node1", "node4"),
+        ImmutableList.of("0", "100"), ImmutableList.of("node2", "node3"),
+        ImmutableList.of("100", "-100"), ImmutableList.of("node3", "node1"));
+
+    Assertions.assertThat(fingerprint(movedTokens, RANGE_TO_ENDPOINT, 10)).isNotEqualTo(fingerprint);
+    Assertions.assertThat(fingerprint(TOKENS, movedReplicas, 10)).isNotEqualTo(fingerprint);
+    Assertions.assertThat(fingerprint(TOKENS, RANGE_TO_ENDPOINT, 20)).isNotEqualTo(fingerprint);
+  }
+
+  @Test
+  public void testReusesPlans() {
+    SegmentPlanCache cache = new SegmentPlanCache();
+    String fingerprint = fingerprint(TOKENS, RANGE_TO_ENDPOINT, 10);
+    List<Segment> segments = ImmutableList.of(
+        Segment.builder().withTokenRange(new RingRange(BigInteger.valueOf(-100), BigInteger.ZERO)).build());
+
+    Assertions.assertThat(cache.get(fingerprint)).isEmpty();
+    cache.put(fingerprint, segments);
+    Assertions.assertThat(cache.get(fingerprint)).contains(segments);
+  }
+
+  private static String fingerprint(
+      List<BigInteger> tokens,
+      Map<List<String>, List<String>> rangeToEndpoint,
+      int segmentCount) {
+
+    RepairUnit unit = RepairUnit.builder()
+        .clusterName("test")
+        .keyspaceName("ks")
+        .columnFamilies(Collections.emptySet())
+        .incrementalRepair(false)
+        .nodes(ImmutableSet.of("node1", "node2"))
+        .datacenters(Collections.emptySet())
+        .blacklistedTables(Collections.emptySet())
+        .repairThreadCount(1)
+        .build(UUID.randomUUID());
+
+    return SegmentPlanCache.fingerprint(PARTITIONER, tokens, rangeToEndpoint, "3.11.4", unit, segmentCount, 0, false);
+  }
+}
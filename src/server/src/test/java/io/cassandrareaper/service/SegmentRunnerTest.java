@@ -42,6 +42,7 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
@@ -53,8 +54,10 @@ import org.apache.commons.lang3.mutable.MutableObject;
 import org.apache.commons.lang3.tuple.Pair;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.AdditionalAnswers;
 import org.mockito.Mockito;
 
+import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -63,6 +66,7 @@ import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -151,6 +155,7 @@ public final class SegmentRunnerTest {
                               new Thread() {
                                 @Override
                                 public void run() {
+                                  awaitRepairTriggered(invocation.getArgument(7));
                                   ((RepairStatusHandler)invocation.getArgument(7))
                                       .handle(
                                           1,
@@ -266,10 +271,10 @@ public final class SegmentRunnerTest {
                       assertEquals(
                           RepairSegment.State.NOT_STARTED,
                           storage.getRepairSegment(runId, segmentId).get().getState());
-
                       future.setValue(
                           executor.submit(
                               () -> {
+                                awaitRepairTriggered(invocation.getArgument(7));
                                 ((RepairStatusHandler)invocation.getArgument(7))
                                     .handle(
                                         1,
@@ -349,6 +354,129 @@ public final class SegmentRunnerTest {
     assertEquals(0, storage.getRepairSegment(runId, segmentId).get().getFailCount());
   }
 
+  @Test
+  public void notificationsBeforeTheRepairNumberAreHandledAfterItTest()
+      throws InterruptedException, ReaperException, ExecutionException {
+    final IStorage storage = new MemoryStorage();
+
+    RepairUnit cf = storage.addRepairUnit(
+            RepairUnit.builder()
+                .clusterName("reaper")
+                .keyspaceName("reaper")
+                .columnFamilies(Sets.newHashSet("reaper"))
+                .incrementalRepair(false)
+                .nodes(Sets.newHashSet("127.0.0.1"))
+                .repairThreadCount(1));
+
+    RepairRun run = storage.addRepairRun(
+            RepairRun.builder("reaper", cf.getId())
+                .intensity(0.5)
+                .segmentCount(1)
+                .repairParallelism(RepairParallelism.PARALLEL),
+            Collections.singleton(
+                RepairSegment.builder(
+                    Segment.builder()
+                        .withTokenRange(new RingRange(BigInteger.ONE, BigInteger.ZERO))
+                        .build(),
+                    cf.getId())));
+
+    final UUID runId = run.getId();
+    final UUID segmentId = storage.getNextFreeSegmentInRange(run.getId(), Optional.empty()).get().getId();
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    AppContext context = new AppContext();
+    context.storage = storage;
+    context.config = Mockito.mock(ReaperApplicationConfiguration.class);
+    when(context.config.getJmxConnectionTimeoutInSeconds()).thenReturn(30);
+    when(context.config.getDatacenterAvailability()).thenReturn(DatacenterAvailability.ALL);
+
+    context.jmxConnectionFactory = new JmxConnectionFactory() {
+          @Override
+          protected JmxProxy connectImpl(Node host, int connectionTimeout) throws ReaperException {
+            JmxProxy jmx = JmxProxyTest.mockJmxProxyImpl();
+            when(jmx.getClusterName()).thenReturn("reaper");
+            when(jmx.isConnectionAlive()).thenReturn(true);
+            when(jmx.tokenRangeToEndpoint(anyString(), any(Segment.class))).thenReturn(Lists.newArrayList(""));
+            EndpointSnitchInfoMBean endpointSnitchInfoMBean = mock(EndpointSnitchInfoMBean.class);
+            when(endpointSnitchInfoMBean.getDatacenter()).thenReturn("dc1");
+            try {
+              when(endpointSnitchInfoMBean.getDatacenter(anyString())).thenReturn("dc1");
+            } catch (UnknownHostException ex) {
+              throw new AssertionError(ex);
+            }
+            JmxProxyTest.mockGetEndpointSnitchInfoMBean(jmx, endpointSnitchInfoMBean);
+
+            when(jmx.triggerRepair(
+                    any(BigInteger.class),
+                    any(BigInteger.class),
+                    any(),
+                    any(RepairParallelism.class),
+                    any(),
+                    anyBoolean(),
+                    any(),
+                    any(),
+                    any(),
+                    any(Integer.class)))
+                .then(
+                    (invocation) -> {
+                      // the whole repair is notified before triggerRepair(..) returns its number
+                      executor.submit(
+                          () -> {
+                            RepairStatusHandler handler = invocation.getArgument(7);
+                            handler.handle(
+                                1,
+                                Optional.of(ActiveRepairService.Status.STARTED),
+                                Optional.empty(),
+                                "Repair command 1 has started",
+                                jmx);
+
+                            handler.handle(
+                                1,
+                                Optional.of(ActiveRepairService.Status.SESSION_SUCCESS),
+                                Optional.empty(),
+                                "Repair session succeeded in command 1",
+                                jmx);
+
+                            handler.handle(
+                                1,
+                                Optional.of(ActiveRepairService.Status.FINISHED),
+                                Optional.empty(),
+                                "Repair command 1 has finished",
+                                jmx);
+                          }).get(5, TimeUnit.SECONDS);
+
+                      assertEquals(
+                          RepairSegment.State.NOT_STARTED,
+                          storage.getRepairSegment(runId, segmentId).get().getState());
+                      return 1;
+                    });
+
+            return jmx;
+          }
+        };
+
+    RepairRunner rr = mock(RepairRunner.class);
+    RepairUnit ru = mock(RepairUnit.class);
+
+    SegmentRunner sr = new SegmentRunner(
+        context,
+        segmentId,
+        Collections.singleton(""),
+        5000,
+        0.5,
+        RepairParallelism.PARALLEL,
+        "reaper",
+        ru,
+        rr);
+
+    sr.run();
+    executor.shutdown();
+
+    assertEquals(RepairSegment.State.DONE, storage.getRepairSegment(runId, segmentId).get().getState());
+    assertEquals(0, storage.getRepairSegment(runId, segmentId).get().getFailCount());
+  }
+
   @Test
   public void failureTest() throws InterruptedException, ReaperException, ExecutionException {
     final IStorage storage = new MemoryStorage();
@@ -423,6 +551,7 @@ public final class SegmentRunnerTest {
                       future.setValue(
                           executor.submit(
                               () -> {
+                                awaitRepairTriggered(invocation.getArgument(7));
                                 ((RepairStatusHandler)invocation.getArgument(7))
                                     .handle(
                                         1,
@@ -568,6 +697,7 @@ public final class SegmentRunnerTest {
                       future.setValue(
                           executor.submit(
                               () -> {
+                                awaitRepairTriggered(invocation.getArgument(7));
                                 ((RepairStatusHandler) invocation.getArgument(7))
                                     .handle(
                                         1,
@@ -710,6 +840,7 @@ public final class SegmentRunnerTest {
                       future.setValue(
                           executor.submit(
                               () -> {
+                                awaitRepairTriggered(invocation.getArgument(7));
                                 ((RepairStatusHandler) invocation.getArgument(7))
                                     .handle(
                                         1,
@@ -774,6 +905,151 @@ public final class SegmentRunnerTest {
     assertEquals(0, storage.getRepairSegment(runId, segmentId).get().getFailCount());
   }
 
+  @Test
+  public void notificationsDoNotReadTheSegmentTest()
+      throws InterruptedException, ReaperException, ExecutionException {
+    final IStorage storage = mock(IStorage.class, AdditionalAnswers.delegatesTo(new MemoryStorage()));
+
+    RepairUnit cf = storage.addRepairUnit(
+            RepairUnit.builder()
+                .clusterName("reaper")
+                .keyspaceName("reaper")
+                .columnFamilies(Sets.newHashSet("reaper"))
+                .incrementalRepair(false)
+                .nodes(Sets.newHashSet("127.0.0.1"))
+                .repairThreadCount(1));
+
+    RepairRun run = storage.addRepairRun(
+            RepairRun.builder("reaper", cf.getId())
+                .intensity(0.5)
+                .segmentCount(1)
+                .repairParallelism(RepairParallelism.PARALLEL),
+            Collections.singleton(
+                RepairSegment.builder(
+                    Segment.builder()
+                        .withTokenRange(new RingRange(BigInteger.ONE, BigInteger.ZERO))
+                        .build(),
+                    cf.getId())));
+
+    final UUID runId = run.getId();
+    final UUID segmentId = storage.getNextFreeSegmentInRange(run.getId(), Optional.empty()).get().getId();
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    final MutableObject<Future<?>> future = new MutableObject<>();
+
+    AppContext context = new AppContext();
+    context.storage = storage;
+    context.config = Mockito.mock(ReaperApplicationConfiguration.class);
+    when(context.config.getJmxConnectionTimeoutInSeconds()).thenReturn(30);
+    when(context.config.getDatacenterAvailability()).thenReturn(DatacenterAvailability.ALL);
+
+    context.jmxConnectionFactory =
+        new JmxConnectionFactory() {
+          @Override
+          protected JmxProxy connectImpl(Node host, int connectionTimeout) throws ReaperException {
+
+            JmxProxy jmx = JmxProxyTest.mockJmxProxyImpl();
+            when(jmx.getClusterName()).thenReturn("reaper");
+            when(jmx.isConnectionAlive()).thenReturn(true);
+            when(jmx.tokenRangeToEndpoint(anyString(), any(Segment.class)))
+                .thenReturn(Lists.newArrayList(""));
+
+            EndpointSnitchInfoMBean endpointSnitchInfoMBean = mock(EndpointSnitchInfoMBean.class);
+            when(endpointSnitchInfoMBean.getDatacenter()).thenReturn("dc1");
+            try {
+              when(endpointSnitchInfoMBean.getDatacenter(anyString())).thenReturn("dc1");
+            } catch (UnknownHostException ex) {
+              throw new AssertionError(ex);
+            }
+            JmxProxyTest.mockGetEndpointSnitchInfoMBean(jmx, endpointSnitchInfoMBean);
+
+            when(jmx.triggerRepair(
+                    any(BigInteger.class),
+                    any(BigInteger.class),
+                    any(),
+                    any(RepairParallelism.class),
+                    any(),
+                    anyBoolean(),
+                    any(),
+                    any(),
+                    any(),
+                    any(Integer.class)))
+                .then(
+                    invocation -> {
+                      future.setValue(
+                          executor.submit(
+                              () -> {
+                                awaitRepairTriggered(invocation.getArgument(7));
+                                RepairStatusHandler handler = invocation.getArgument(7);
+                                Mockito.clearInvocations(storage);
+
+                                handler.handle(
+                                    1,
+                                    Optional.empty(),
+                                    Optional.of(ProgressEventType.START),
+                                    "Repair command 1 has started",
+                                    jmx);
+
+                                for (int i = 0; i < 10; i++) {
+                                  handler.handle(
+                                      1,
+                                      Optional.empty(),
+                                      Optional.of(ProgressEventType.PROGRESS),
+                                      "Repair session progressed in command 1",
+                                      jmx);
+                                }
+
+                                handler.handle(
+                                    1,
+                                    Optional.empty(),
+                                    Optional.of(ProgressEventType.SUCCESS),
+                                    "Repair session succeeded in command 1",
+                                    jmx);
+
+                                // only the RUNNING and DONE transitions touch storage, by writing the segment
+                                verify(storage, times(2)).updateRepairSegment(any(RepairSegment.class));
+                                verify(storage, never()).getRepairSegment(runId, segmentId);
+
+                                handler.handle(
+                                    1,
+                                    Optional.empty(),
+                                    Optional.of(ProgressEventType.COMPLETE),
+                                    "Repair command 1 has finished",
+                                    jmx);
+                              }));
+                      return 1;
+                    });
+
+            return jmx;
+          }
+        };
+
+    RepairRunner rr = mock(RepairRunner.class);
+    when(rr.getRepairRunId()).thenReturn(runId);
+    RepairUnit ru = mock(RepairUnit.class);
+
+    SegmentRunner sr =
+        new SegmentRunner(
+            context,
+            segmentId,
+            Collections.singleton(""),
+            5000,
+            0.5,
+            RepairParallelism.PARALLEL,
+            "reaper",
+            ru,
+            rr);
+
+    sr.run();
+
+    future.getValue().get();
+    executor.shutdown();
+
+    assertEquals(
+        RepairSegment.State.DONE, storage.getRepairSegment(runId, segmentId).get().getState());
+    assertEquals(0, storage.getRepairSegment(runId, segmentId).get().getFailCount());
+  }
+
   @Test
   public void outOfOrderFailureCass21Test()
       throws InterruptedException, ReaperException, ExecutionException {
@@ -852,6 +1128,7 @@ public final class SegmentRunnerTest {
                       future.setValue(
                           executor.submit(
                               () -> {
+                                awaitRepairTriggered(invocation.getArgument(7));
                                 ((RepairStatusHandler) invocation.getArgument(7))
                                     .handle(
                                         1,
@@ -995,6 +1272,7 @@ public final class SegmentRunnerTest {
                       future.setValue(
                           executor.submit(
                               () -> {
+                                awaitRepairTriggered(invocation.getArgument(7));
                                 ((RepairStatusHandler) invocation.getArgument(7))
                                     .handle(
                                         1,
@@ -1060,6 +1338,13 @@ public final class SegmentRunnerTest {
     assertEquals(2, storage.getRepairSegment(runId, segmentId).get().getFailCount());
   }
 
+  /**
+   * Waits for the runner to know the number of its repair command, after which it handles notifications as they come.
+   */
+  static void awaitRepairTriggered(RepairStatusHandler handler) {
+    await().pollInterval(1, TimeUnit.MILLISECONDS).until(((SegmentRunner) handler)::isRepairTriggered);
+  }
+
   @Test
   public void parseRepairIdTest() {
     String msg = "Repair session 883fd090-12f1-11e5-94c5-03d4762e50b7 for range (1,2] failed with";
@@ -0,0 +1,226 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.storage;
+
+import io.cassandrareaper.ReaperApplicationConfiguration.EmbeddedStorageConfiguration;
+import io.cassandrareaper.ReaperException;
+import io.cassandrareaper.core.Cluster;
+import io.cassandrareaper.core.RepairRun;
+import io.cassandrareaper.core.RepairSegment;
+import io.cassandrareaper.core.RepairUnit;
+import io.cassandrareaper.core.Segment;
+import io.cassandrareaper.service.RingRange;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import com.google.common.collect.Lists;
+import org.apache.cassandra.repair.RepairParallelism;
+import org.assertj.core.api.Assertions;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class EmbeddedStorageTest {
+
+  private static final String CLUSTER_NAME = "test_cluster";
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private EmbeddedStorageConfiguration config;
+  private EmbeddedStorage storage;
+
+  @Before
+  public void setUp() throws Exception {
+    config = new EmbeddedStorageConfiguration();
+    config.setPath(folder.newFolder().getAbsolutePath() + "/reaper.mv.db");
+    storage = new EmbeddedStorage(config);
+  }
+
+  @After
+  public void tearDown() {
+    storage.stop();
+  }
+
+  @Test
+  public void testRunsAndSegmentsSurviveRestart() throws ReaperException {
+    RepairUnit unit = addUnit();
+    RepairRun run = addRun(unit, 10);
+    RepairSegment segment = storage.getNextFreeSegmentInRange(run.getId(), Optional.empty()).get();
+
+    storage.updateRepairSegment(
+        segment.with().withState(RepairSegment.State.RUNNING).withStartTime(DateTime.now()).build());
+
+    storage.stop();
+    storage = new EmbeddedStorage(config);
+
+    Assertions.assertThat(storage.getCluster(CLUSTER_NAME)).isPresent();
+    Assertions.assertThat(storage.getRepairRun(run.getId()).get().getRepairUnitId()).isEqualTo(unit.getId());
+    Assertions.assertThat(storage.getRepairUnit(unit.with()).get().getId()).isEqualTo(unit.getId());
+    Assertions.assertThat(storage.getSegmentAmountForRepairRun(run.getId())).isEqualTo(10);
+    Assertions.assertThat(storage.getSegmentAmountForRepairRunWithState(run.getId(), RepairSegment.State.RUNNING))
+        .isEqualTo(1);
+    Assertions.assertThat(storage.getRepairSegment(run.getId(), segment.getId()).get().getState())
+        .isEqualTo(RepairSegment.State.RUNNING);
+  }
+
+  @Test
+  public void testNextFreeSegmentInRange() {
+    RepairRun run = addRun(addUnit(), 10);
+
+    RepairSegment segment = storage
+        .getNextFreeSegmentInRange(run.getId(), Optional.of(range(30, 60)))
+        .get();
+
+    Assertions.assertThat(segment.getStartToken()).isEqualTo(BigInteger.valueOf(30));
+
+    RepairSegment wrapping = storage
+        .getNextFreeSegmentInRange(run.getId(), Optional.of(range(95, 20)))
+        .get();
+
+    Assertions.assertThat(wrapping.getStartToken()).isEqualTo(BigInteger.ZERO);
+
+    Assertions.assertThat(
+        storage.getNextFreeSegmentInRange(
+            run.getId(),
+            Optional.of(range(31, 39))))
+        .isEmpty();
+  }
+
+  @Test
+  public void testRunsForClusterAreNewestFirst() {
+    RepairUnit unit = addUnit();
+    List<UUID> runIds = Lists.newArrayList();
+    for (int i = 0; i < 5; ++i) {
+      runIds.add(addRun(unit, 1).getId());
+    }
+    Collections.reverse(runIds);
+
+    Assertions.assertThat(storage.getRepairRunsForCluster(CLUSTER_NAME, Optional.of(3)))
+        .extracting(RepairRun::getId)
+        .containsExactlyElementsOf(runIds.subList(0, 3));
+
+    Assertions.assertThat(storage.getRepairRunsForUnit(unit.getId())).hasSize(5);
+  }
+
+  @Test
+  public void testOngoingRepairsAreThoseOfTheCluster() {
+    RepairRun run = addRun(addUnit(), 4);
+    RepairRun otherRun = addRun(addUnit("other_cluster"), 4);
+    for (RepairRun repairRun : Lists.newArrayList(run, otherRun)) {
+      storage.updateRepairRun(repairRun.with().runState(RepairRun.RunState.RUNNING).build(repairRun.getId()));
+      RepairSegment segment = storage.getNextFreeSegmentInRange(repairRun.getId(), Optional.empty()).get();
+      storage.updateRepairSegment(
+          segment.with().withState(RepairSegment.State.RUNNING).withStartTime(DateTime.now()).build());
+    }
+
+    Assertions.assertThat(storage.getOngoingRepairsInCluster(CLUSTER_NAME)).hasSize(1);
+    Assertions.assertThat(storage.getOngoingRepairsInCluster("other_cluster")).hasSize(1);
+  }
+
+  @Test
+  public void testRunsWithStateFollowTheirStateChanges() {
+    RepairUnit unit = addUnit();
+    RepairRun run = addRun(unit, 1);
+    RepairRun otherRun = addRun(unit, 1);
+
+    storage.updateRepairRun(run.with().runState(RepairRun.RunState.RUNNING).build(run.getId()));
+    Assertions.assertThat(storage.getRepairRunsWithState(RepairRun.RunState.RUNNING))
+        .extracting(RepairRun::getId)
+        .containsExactly(run.getId());
+    Assertions.assertThat(storage.getRepairRunsWithState(RepairRun.RunState.NOT_STARTED))
+        .extracting(RepairRun::getId)
+        .containsExactly(otherRun.getId());
+
+    storage.updateRepairRun(run.with().runState(RepairRun.RunState.PAUSED).build(run.getId()));
+    Assertions.assertThat(storage.getRepairRunsWithState(RepairRun.RunState.RUNNING)).isEmpty();
+    Assertions.assertThat(storage.getRepairRunsWithState(RepairRun.RunState.PAUSED))
+        .extracting(RepairRun::getId)
+        .containsExactly(run.getId());
+
+    storage.deleteRepairRun(run.getId());
+    Assertions.assertThat(storage.getRepairRunsWithState(RepairRun.RunState.PAUSED)).isEmpty();
+  }
+
+  @Test
+  public void testRunIdsForClusterAreInTimeOrder() {
+    RepairUnit unit = addUnit();
+    List<UUID> runIds = Lists.newArrayList();
+    for (int i = 0; i < 5; ++i) {
+      runIds.add(addRun(unit, 1).getId());
+    }
+
+    Assertions.assertThat(storage.getRepairRunIdsForCluster(CLUSTER_NAME)).containsExactlyElementsOf(runIds);
+  }
+
+  @Test
+  public void testDeleteRunAndCluster() {
+    RepairUnit unit = addUnit();
+    RepairRun run = addRun(unit, 4);
+
+    Assertions.assertThat(storage.deleteCluster(CLUSTER_NAME)).isEmpty();
+    Assertions.assertThat(storage.deleteRepairRun(run.getId()).get().getRunState())
+        .isEqualTo(RepairRun.RunState.DELETED);
+
+    Assertions.assertThat(storage.getRepairRun(run.getId())).isEmpty();
+    Assertions.assertThat(storage.getSegmentAmountForRepairRun(run.getId())).isEqualTo(0);
+    Assertions.assertThat(storage.getRepairUnit(unit.with())).isEmpty();
+    Assertions.assertThat(storage.deleteCluster(CLUSTER_NAME)).isPresent();
+  }
+
+  private RepairUnit addUnit() {
+    return addUnit(CLUSTER_NAME);
+  }
+
+  private RepairUnit addUnit(String clusterName) {
+    storage.addCluster(new Cluster(clusterName, "murmur3", Collections.singleton("127.0.0.1")));
+    return storage.addRepairUnit(
+        RepairUnit.builder()
+            .clusterName(clusterName)
+            .keyspaceName("test_keyspace")
+            .columnFamilies(Collections.singleton("test_table"))
+            .incrementalRepair(false)
+            .repairThreadCount(1));
+  }
+
+  private RepairRun addRun(RepairUnit unit, int segmentCount) {
+    List<RepairSegment.Builder> segments = Lists.newArrayList();
+    for (int i = 0; i < segmentCount; ++i) {
+      segments.add(
+          RepairSegment.builder(
+              Segment.builder()
+                  .withTokenRange(range(i * 10, i * 10 + 10))
+                  .build(),
+              unit.getId()));
+    }
+    return storage.addRepairRun(
+        RepairRun.builder(unit.getClusterName(), unit.getId())
+            .intensity(0.5)
+            .segmentCount(segmentCount)
+            .repairParallelism(RepairParallelism.PARALLEL),
+        segments);
+  }
+
+  private static RingRange range(long start, long end) {
+    return new RingRange(BigInteger.valueOf(start), BigInteger.valueOf(end));
+  }
+}
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.storage;
+
+import io.cassandrareaper.ReaperApplicationConfiguration.EmbeddedStorageConfiguration;
+import io.cassandrareaper.ReaperException;
+
+import java.io.File;
+
+import io.dropwizard.jdbi.args.JodaDateTimeArgumentFactory;
+import org.flywaydb.core.Flyway;
+import org.h2.jdbcx.JdbcDataSource;
+import org.skife.jdbi.v2.DBI;
+
+/**
+ * The storage backends that can run in-process, shared by the conformance tests and the benchmarks.
+ *
+ * <p>Postgres is stood in for by H2 in PostgreSQL mode, exactly as the h2 storage type does. There is no in-process
+ * stand-in for Cassandra.
+ */
+public enum StorageBackend {
+
+  MEMORY {
+    @Override
+    public IStorage create(File directory) {
+      return new MemoryStorage();
+    }
+  },
+
+  EMBEDDED {
+    @Override
+    public IStorage create(File directory) throws ReaperException {
+      EmbeddedStorageConfiguration config = new EmbeddedStorageConfiguration();
+      config.setPath(new File(directory, "reaper.mv.db").getAbsolutePath());
+      return new EmbeddedStorage(config);
+    }
+  },
+
+  H2 {
+    @Override
+    public IStorage create(File directory) {
+      JdbcDataSource ds = new JdbcDataSource();
+      ds.setUrl("jdbc:h2:" + new File(directory, "reaper").getAbsolutePath() + ";MODE=PostgreSQL");
+      Flyway flyway = new Flyway();
+      flyway.setLocations("/db/h2");
+      flyway.setDataSource(ds);
+      flyway.migrate();
+      DBI dbi = new DBI(ds);
+      // registered by dropwizard's DBIFactory in the application
+      dbi.registerArgumentFactory(new JodaDateTimeArgumentFactory());
+      return new PostgresStorage(dbi);
+    }
+  };
+
+  public abstract IStorage create(File directory) throws ReaperException;
+
+  public static void close(IStorage storage) {
+    if (storage instanceof EmbeddedStorage) {
+      ((EmbeddedStorage) storage).stop();
+    }
+  }
+}
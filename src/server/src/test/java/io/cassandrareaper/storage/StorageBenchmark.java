@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.storage;
+
+import io.cassandrareaper.ReaperException;
+import io.cassandrareaper.core.Cluster;
+import io.cassandrareaper.core.RepairRun;
+import io.cassandrareaper.core.RepairSegment;
+import io.cassandrareaper.core.RepairUnit;
+import io.cassandrareaper.core.Segment;
+import io.cassandrareaper.resources.view.RepairRunStatus;
+import io.cassandrareaper.service.RingRange;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import com.google.common.collect.Lists;
+import org.apache.cassandra.repair.RepairParallelism;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the storage calls on the repair loop's hot path, for each in-process backend and run size.
+ *
+ * <p>Run with {@code mvn -Pbenchmarks -Dbenchmark=StorageBenchmark -DskipTests test}. The gc profiler is enabled by the
+ * profile so allocation rates are reported next to ops/sec, and results are written to target/benchmarks.json.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class StorageBenchmark {
+
+  private static final String CLUSTER_NAME = "benchmark_cluster";
+  private static final int SEGMENTS_PER_RANGE = 10;
+  private static final int TOKENS_PER_SEGMENT = 100;
+
+  @Param({"MEMORY", "EMBEDDED", "H2"})
+  public StorageBackend backend;
+
+  @Param({"1000", "10000", "100000"})
+  public int segmentsPerRun;
+
+  private Path directory;
+  private IStorage storage;
+  private RepairUnit unit;
+  private RepairRun run;
+  private List<RepairSegment.Builder> newSegments;
+  private List<RepairSegment> segments;
+  private List<RingRange> ranges;
+
+  // addRepairRun grows the store, so each iteration measures a fresh one
+  @Setup(Level.Iteration)
+  public void setUp() throws IOException, ReaperException {
+    directory = Files.createTempDirectory("reaper-storage-benchmark");
+    storage = backend.create(directory.toFile());
+    storage.addCluster(new Cluster(CLUSTER_NAME, "murmur3", Collections.singleton("127.0.0.1")));
+
+    unit = storage.addRepairUnit(
+        RepairUnit.builder()
+            .clusterName(CLUSTER_NAME)
+            .keyspaceName("benchmark_keyspace")
+            .columnFamilies(Collections.singleton("benchmark_table"))
+            .incrementalRepair(false)
+            .repairThreadCount(1));
+
+    newSegments = Lists.newArrayListWithCapacity(segmentsPerRun);
+    for (int i = 0; i < segmentsPerRun; ++i) {
+      newSegments.add(
+          RepairSegment.builder(
+              Segment.builder().withTokenRange(range(i, i + 1, TOKENS_PER_SEGMENT)).build(),
+              unit.getId()));
+    }
+    run = addRepairRun();
+    segments = Lists.newArrayList(storage.getRepairSegmentsForRun(run.getId()));
+
+    ranges = Lists.newArrayList();
+    for (int i = 0; i < segmentsPerRun; i += SEGMENTS_PER_RANGE) {
+      ranges.add(range(i, i + SEGMENTS_PER_RANGE, TOKENS_PER_SEGMENT));
+    }
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() throws IOException {
+    StorageBackend.close(storage);
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+    }
+  }
+
+  @Benchmark
+  public Optional<RepairSegment> getNextFreeSegmentInRange() {
+    RingRange range = ranges.get(ThreadLocalRandom.current().nextInt(ranges.size()));
+    return storage.getNextFreeSegmentInRange(run.getId(), Optional.of(range));
+  }
+
+  @Benchmark
+  public boolean updateRepairSegment() {
+    RepairSegment segment = segments.get(ThreadLocalRandom.current().nextInt(segments.size()));
+    return storage.updateRepairSegment(segment.with().withCoordinatorHost("127.0.0.1").build());
+  }
+
+  @Benchmark
+  public Collection<RepairSegment> getRepairSegmentsForRun() {
+    return storage.getRepairSegmentsForRun(run.getId());
+  }
+
+  @Benchmark
+  public Collection<RepairRunStatus> getClusterRunStatuses() {
+    return storage.getClusterRunStatuses(CLUSTER_NAME, 10);
+  }
+
+  @Benchmark
+  public RepairRun addRepairRun() throws ReaperException {
+    return storage.addRepairRun(
+        RepairRun.builder(CLUSTER_NAME, unit.getId())
+            .intensity(0.9)
+            .segmentCount(segmentsPerRun)
+            .repairParallelism(RepairParallelism.PARALLEL),
+        newSegments);
+  }
+
+  private static RingRange range(long start, long end, long tokensPerSegment) {
+    return new RingRange(BigInteger.valueOf(start * tokensPerSegment), BigInteger.valueOf(end * tokensPerSegment));
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.cassandrareaper.storage;
+
+import io.cassandrareaper.ReaperException;
+import io.cassandrareaper.core.Cluster;
+import io.cassandrareaper.core.RepairRun;
+import io.cassandrareaper.core.RepairSegment;
+import io.cassandrareaper.core.RepairUnit;
+import io.cassandrareaper.core.Segment;
+import io.cassandrareaper.resources.view.RepairRunStatus;
+import io.cassandrareaper.service.RingRange;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import com.google.common.collect.Lists;
+import org.apache.cassandra.repair.RepairParallelism;
+import org.assertj.core.api.Assertions;
+import org.joda.time.DateTime;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+/**
+ * Asserts that every in-process storage backend behaves the same on the calls the repair loop makes most.
+ */
+@RunWith(Parameterized.class)
+public final class StorageConformanceTest {
+
+  private static final String CLUSTER_NAME = "conformance_cluster";
+  private static final int SEGMENT_COUNT = 20;
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final StorageBackend backend;
+  private IStorage storage;
+  private RepairUnit unit;
+
+  public StorageConformanceTest(StorageBackend backend) {
+    this.backend = backend;
+  }
+
+  @Parameterized.Parameters(name = "{0}")
+  public static Collection<StorageBackend> backends() {
+    return Lists.newArrayList(StorageBackend.values());
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    storage = backend.create(folder.newFolder());
+    storage.addCluster(new Cluster(CLUSTER_NAME, "murmur3", Collections.singleton("127.0.0.1")));
+    unit = storage.addRepairUnit(
+        RepairUnit.builder()
+            .clusterName(CLUSTER_NAME)
+            .keyspaceName("conformance_keyspace")
+            .columnFamilies(Collections.singleton("conformance_table"))
+            .incrementalRepair(false)
+            .repairThreadCount(1));
+  }
+
+  @After
+  public void tearDown() {
+    StorageBackend.close(storage);
+  }
+
+  @Test
+  public void testAddRepairRun() throws ReaperException {
+    RepairRun run = addRun();
+
+    Assertions.assertThat(storage.getRepairRun(run.getId())).isPresent();
+    Assertions.assertThat(storage.getSegmentAmountForRepairRun(run.getId())).isEqualTo(SEGMENT_COUNT);
+    Assertions.assertThat(storage.getRepairSegmentsForRun(run.getId()))
+        .hasSize(SEGMENT_COUNT)
+        .allMatch(segment -> run.getId().equals(segment.getRunId()))
+        .allMatch(segment -> RepairSegment.State.NOT_STARTED == segment.getState());
+  }
+
+  @Test
+  public void testGetNextFreeSegmentInRange() throws ReaperException {
+    RepairRun run = addRun();
+
+    Assertions.assertThat(storage.getNextFreeSegmentInRange(run.getId(), Optional.empty())).isPresent();
+
+    start(assertNextFreeSegmentIn(run, range(50, 70)));
+    Assertions.assertThat(storage.getNextFreeSegmentInRange(run.getId(), Optional.of(range(51, 59)))).isEmpty();
+    assertNextFreeSegmentIn(run, range(195, 10));
+
+    start(assertNextFreeSegmentIn(run, range(50, 70)));
+    Assertions.assertThat(storage.getNextFreeSegmentInRange(run.getId(), Optional.of(range(50, 70)))).isEmpty();
+  }
+
+  @Test
+  public void testUpdateRepairSegment() throws ReaperException {
+    RepairRun run = addRun();
+    RepairSegment segment = storage.getNextFreeSegmentInRange(run.getId(), Optional.empty()).get();
+
+    start(segment);
+    Assertions.assertThat(storage.getRepairSegment(run.getId(), segment.getId()).get().getState())
+        .isEqualTo(RepairSegment.State.RUNNING);
+    Assertions.assertThat(storage.getSegmentsWithState(run.getId(), RepairSegment.State.RUNNING)).hasSize(1);
+
+    RepairSegment running = storage.getRepairSegment(run.getId(), segment.getId()).get();
+    Assertions.assertThat(
+        storage.updateRepairSegment(
+            running.with().withState(RepairSegment.State.DONE).withEndTime(DateTime.now()).build()))
+        .isTrue();
+
+    Assertions.assertThat(storage.getSegmentAmountForRepairRunWithState(run.getId(), RepairSegment.State.RUNNING))
+        .isEqualTo(0);
+    Assertions.assertThat(storage.getSegmentAmountForRepairRunWithState(run.getId(), RepairSegment.State.DONE))
+        .isEqualTo(1);
+    Assertions.assertThat(storage.getSegmentAmountForRepairRunWithState(run.getId(), RepairSegment.State.NOT_STARTED))
+        .isEqualTo(SEGMENT_COUNT - 1);
+  }
+
+  @Test
+  public void testAddRepairSegmentsToRun() throws ReaperException {
+    RepairRun run = addRun();
+    RepairSegment segment = assertNextFreeSegmentIn(run, range(50, 60));
+
+    storage.addRepairSegments(
+        Lists.newArrayList(
+            RepairSegment.builder(Segment.builder().withTokenRange(range(50, 55)).build(), unit.getId()),
+            RepairSegment.builder(Segment.builder().withTokenRange(range(55, 60)).build(), unit.getId())),
+        run.getId());
+
+    Assertions.assertThat(
+        storage.updateRepairSegment(segment.with().withState(RepairSegment.State.SUPERSEDED).build()))
+        .isTrue();
+
+    Assertions.assertThat(storage.getSegmentAmountForRepairRun(run.getId())).isEqualTo(SEGMENT_COUNT + 2);
+    Assertions.assertThat(storage.getSegmentAmountForRepairRunWithState(run.getId(), RepairSegment.State.SUPERSEDED))
+        .isEqualTo(1);
+    Assertions.assertThat(storage.getSegmentAmountForRepairRunWithState(run.getId(), RepairSegment.State.NOT_STARTED))
+        .isEqualTo(SEGMENT_COUNT + 1);
+
+    RepairSegment subrange = assertNextFreeSegmentIn(run, range(50, 60));
+    Assertions.assertThat(subrange.getId()).isNotEqualTo(segment.getId());
+    Assertions.assertThat(subrange.getRunId()).isEqualTo(run.getId());
+
+    Assertions.assertThat(storage.getClusterRunStatuses(CLUSTER_NAME, 10))
+        .extracting(RepairRunStatus::getTotalSegments)
+        .containsExactly(SEGMENT_COUNT + 1);
+  }
+
+  @Test
+  public void testGetClusterRunStatuses() throws ReaperException {
+    RepairRun older = addRun();
+    RepairRun newer = addRun();
+    RepairSegment segment = storage.getNextFreeSegmentInRange(newer.getId(), Optional.empty()).get();
+    start(segment);
+    RepairSegment running = storage.getRepairSegment(newer.getId(), segment.getId()).get();
+    storage.updateRepairSegment(running.with().withState(RepairSegment.State.DONE).withEndTime(DateTime.now()).build());
+
+    List<RepairRunStatus> statuses = Lists.newArrayList(storage.getClusterRunStatuses(CLUSTER_NAME, 10));
+    Assertions.assertThat(statuses).extracting(RepairRunStatus::getId).containsOnly(older.getId(), newer.getId());
+
+    RepairRunStatus status = statuses.stream().filter(s -> newer.getId().equals(s.getId())).findFirst().get();
+    Assertions.assertThat(status.getSegmentsRepaired()).isEqualTo(1);
+    Assertions.assertThat(status.getTotalSegments()).isEqualTo(SEGMENT_COUNT);
+
+    Assertions.assertThat(storage.getClusterRunStatuses(CLUSTER_NAME, 1)).hasSize(1);
+    Assertions.assertThat(storage.getClusterRunStatuses("unknown_cluster", 10)).isEmpty();
+  }
+
+  private RepairRun addRun() throws ReaperException {
+    List<RepairSegment.Builder> segments = Lists.newArrayList();
+    for (int i = 0; i < SEGMENT_COUNT; ++i) {
+      segments.add(
+          RepairSegment.builder(Segment.builder().withTokenRange(range(i * 10, i * 10 + 10)).build(), unit.getId()));
+    }
+    return storage.addRepairRun(
+        RepairRun.builder(CLUSTER_NAME, unit.getId())
+            .intensity(0.9)
+            .segmentCount(SEGMENT_COUNT)
+            .repairParallelism(RepairParallelism.PARALLEL),
+        segments);
+  }
+
+  /**
+   * Asserts that the segment given for the range is one of the run's free segments the range encloses, as backends may
+   * pick any of them.
+   */
+  private RepairSegment assertNextFreeSegmentIn(RepairRun run, RingRange range) {
+    RepairSegment segment = storage.getNextFreeSegmentInRange(run.getId(), Optional.of(range)).get();
+    Assertions.assertThat(storage.getSegmentsWithState(run.getId(), RepairSegment.State.NOT_STARTED))
+        .filteredOn(free -> range.encloses(free.getTokenRange().getBaseRange()))
+        .extracting(RepairSegment::getId)
+        .contains(segment.getId());
+    return segment;
+  }
+
+  private void start(RepairSegment segment) {
+    Assertions.assertThat(
+        storage.updateRepairSegment(
+            segment.with()
+                .withState(RepairSegment.State.RUNNING)
+                .withCoordinatorHost("127.0.0.1")
+                .withStartTime(DateTime.now())
+                .build()))
+        .isTrue();
+  }
+
+  private static RingRange range(long start, long end) {
+    return new RingRange(BigInteger.valueOf(start), BigInteger.valueOf(end));
+  }
+}